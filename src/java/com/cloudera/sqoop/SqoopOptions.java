@@ -114,6 +114,9 @@ public class SqoopOptions implements Cloneable {
   @StoredAsProperty("db.username") private String username;
   @StoredAsProperty("db.export.staging.table") private String stagingTableName;
   @StoredAsProperty("db.clear.staging.table") private boolean clearStagingTable;
+  // Number of key ranges in which data is moved out of the staging table.
+  @StoredAsProperty("db.export.staging.migration.chunks")
+  private int stagingMigrationChunks;
   private Properties connectionParams; //Properties stored as db.connect.params
 
 
@@ -139,6 +142,7 @@ public class SqoopOptions implements Cloneable {
   @StoredAsProperty("db.where.clause") private String whereClause;
   @StoredAsProperty("db.query") private String sqlQuery;
   @StoredAsProperty("db.query.boundary") private String boundaryQuery;
+  @StoredAsProperty("db.split.balanced") private boolean balancedSplits;
   @StoredAsProperty("jdbc.driver.class") private String driverClassName;
   @StoredAsProperty("hdfs.warehouse.dir") private String warehouseDir;
   @StoredAsProperty("hdfs.target.dir") private String targetDir;
@@ -179,7 +183,15 @@ public class SqoopOptions implements Cloneable {
   // class to use.
   @StoredAsProperty("codegen.jar.file") private String existingJarFile;
 
+  // If true, generated classes hold numeric and boolean columns in
+  // primitive fields with a null bitmap, rather than as boxed objects.
+  @StoredAsProperty("codegen.primitive.fields")
+  private boolean primitiveFields;
+
   @StoredAsProperty("mapreduce.num.mappers") private int numMappers;
+  // If greater than one, cut the import into this many chunks per map
+  // task, which claim chunks from one another as they finish.
+  @StoredAsProperty("mapreduce.chunks.per.mapper") private int chunksPerMapper;
   @StoredAsProperty("enable.compression") private boolean useCompression;
   @StoredAsProperty("compression.codec") private String compressionCodec;
 
@@ -194,12 +206,29 @@ public class SqoopOptions implements Cloneable {
   // database when more rows are needed.
   @StoredAsProperty("import.fetch.size") private Integer fetchSize;
 
+  // If positive, read each split in pages of at most this many rows,
+  // with a separate query for each page.
+  @StoredAsProperty("import.page.size") private int pageSize;
+
+  // If positive, each map task checkpoints its progress after about this
+  // many rows, so that a later attempt can resume from there.
+  @StoredAsProperty("import.checkpoint.rows") private long checkpointRows;
+
   // HDFS path to read from when performing an export
   @StoredAsProperty("export.source.dir") private String exportDir;
 
   // Column to use for the WHERE clause in an UPDATE-based export.
   @StoredAsProperty("export.update.col") private String updateKeyCol;
 
+  // Number of database connections each export map task writes over.
+  @StoredAsProperty("export.connections.per.mapper")
+  private int connectionsPerMapper;
+
+  // If non-negative, records refused by the database are written to the
+  // reject directory, and each map task fails after more than this many.
+  @StoredAsProperty("export.max.rejects") private long maxRejects;
+  @StoredAsProperty("export.reject.dir") private String rejectDir;
+
   /**
    * Update mode option specifies how updates are performed when
    * new rows are found with non-matching keys in database.
@@ -216,6 +245,29 @@ public class SqoopOptions implements Cloneable {
 
   @StoredAsProperty("export.new.update") private UpdateMode updateMode;
 
+  /**
+   * Update partitioning specifies how the records of an update-based
+   * export are divided among the tasks that write them.
+   * <ul>
+   * <li>None: This is the default. Each map task writes the records of
+   * the files it reads.</li>
+   * <li>Hash: Records are shuffled to reduce tasks by a hash of their
+   * update key.</li>
+   * <li>Range: Records are shuffled to reduce tasks by ranges of the first
+   * update key column.</li>
+   * </ul>
+   * Under Hash and Range, each reduce task writes its records in update
+   * key order.
+   */
+  public enum UpdatePartitioning {
+    None,
+    Hash,
+    Range
+  }
+
+  @StoredAsProperty("export.update.partitioning")
+  private UpdatePartitioning updatePartitioning;
+
   private DelimiterSet inputDelimiters; // codegen.input.delimiters.
   private DelimiterSet outputDelimiters; // codegen.output.delimiters.
   private boolean areDelimsManuallySet;
@@ -839,6 +891,11 @@ public class SqoopOptions implements Cloneable {
     this.incrementalMode = IncrementalMode.None;
 
     this.updateMode = UpdateMode.UpdateOnly;
+    this.updatePartitioning = UpdatePartitioning.None;
+
+    this.connectionsPerMapper = 1;
+    this.maxRejects = -1;
+    this.stagingMigrationChunks = 1;
 
     // Creating instances for user specific mapping
     this.mapColumnHive = new Properties();
@@ -974,6 +1031,18 @@ public class SqoopOptions implements Cloneable {
     clearStagingTable = clear;
   }
 
+  /**
+   * @return the number of key ranges in which data is moved from the
+   * staging table to the destination table, each in its own transaction.
+   */
+  public int getStagingMigrationChunks() {
+    return stagingMigrationChunks;
+  }
+
+  public void setStagingMigrationChunks(int chunks) {
+    stagingMigrationChunks = chunks;
+  }
+
   public String getExportDir() {
     return exportDir;
   }
@@ -1112,6 +1181,18 @@ public class SqoopOptions implements Cloneable {
     this.numMappers = m;
   }
 
+  /**
+   * @return the number of chunks to cut each map task's share of an
+   * import into, or 0 if each map task reads a single fixed range.
+   */
+  public int getChunksPerMapper() {
+    return this.chunksPerMapper;
+  }
+
+  public void setChunksPerMapper(int chunks) {
+    this.chunksPerMapper = chunks;
+  }
+
   /**
    * @return the user-specified absolute class name for the table.
    */
@@ -1135,6 +1216,18 @@ public class SqoopOptions implements Cloneable {
     this.packageName = name;
   }
 
+  /**
+   * @return true if generated classes should store numeric and boolean
+   * columns as primitives via --primitive-fields.
+   */
+  public boolean usePrimitiveFields() {
+    return primitiveFields;
+  }
+
+  public void setPrimitiveFields(boolean primitive) {
+    this.primitiveFields = primitive;
+  }
+
   public String getHiveHome() {
     return hiveHome;
   }
@@ -1261,6 +1354,18 @@ public class SqoopOptions implements Cloneable {
     boundaryQuery = sqlStatement;
   }
 
+  /**
+   * @return true if splits should hold equal numbers of rows, based on a
+   * histogram of the split column, rather than equal ranges of values.
+   */
+  public boolean useBalancedSplits() {
+    return balancedSplits;
+  }
+
+  public void setBalancedSplits(boolean balanced) {
+    this.balancedSplits = balanced;
+  }
+
   /**
    * @return The JDBC driver class name specified with --driver.
    */
@@ -1600,6 +1705,66 @@ public class SqoopOptions implements Cloneable {
     this.fetchSize = size;
   }
 
+  /**
+   * @return the maximum number of rows in each page of a split read in
+   * pages, or 0 if each split is read with a single query.
+   */
+  public int getPageSize() {
+    return this.pageSize;
+  }
+
+  public void setPageSize(int size) {
+    this.pageSize = size;
+  }
+
+  /**
+   * @return the number of rows a map task reads between checkpoints of
+   * its progress, or 0 if map tasks do not checkpoint.
+   */
+  public long getCheckpointRows() {
+    return this.checkpointRows;
+  }
+
+  public void setCheckpointRows(long rows) {
+    this.checkpointRows = rows;
+  }
+
+  /**
+   * @return the number of database connections, each with its own
+   * transactions, over which each export map task spreads its statements.
+   */
+  public int getConnectionsPerMapper() {
+    return this.connectionsPerMapper;
+  }
+
+  public void setConnectionsPerMapper(int conns) {
+    this.connectionsPerMapper = conns;
+  }
+
+  /**
+   * @return the number of records each export map task may reject before
+   * it fails, or -1 if any error from the database fails the task.
+   */
+  public long getMaxRejects() {
+    return this.maxRejects;
+  }
+
+  public void setMaxRejects(long rejects) {
+    this.maxRejects = rejects;
+  }
+
+  /**
+   * @return the directory to which rejected records are written, or null
+   * to use the default.
+   */
+  public String getRejectDir() {
+    return this.rejectDir;
+  }
+
+  public void setRejectDir(String dir) {
+    this.rejectDir = dir;
+  }
+
   /**
    * @return true if the delimiters have been explicitly set by the user.
    */
@@ -1680,6 +1845,22 @@ public class SqoopOptions implements Cloneable {
     return updateMode;
   }
 
+  /**
+   * Set how the records of an update-based export are divided among the
+   * tasks that write them.
+   */
+  public void setUpdatePartitioning(UpdatePartitioning partitioning) {
+    this.updatePartitioning = partitioning;
+  }
+
+  /**
+   * @return how the records of an update-based export are divided among
+   * the tasks that write them.
+   */
+  public UpdatePartitioning getUpdatePartitioning() {
+    return updatePartitioning;
+  }
+
   /**
    * @return an ordered list of column names. The code generator should
    * generate the DBWritable.write(PreparedStatement) method with columns
@@ -21,6 +21,7 @@
 
 package com.cloudera.sqoop.io;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.DataInput;
@@ -28,15 +29,21 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -53,6 +60,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PositionedReadable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.DataInputBuffer;
@@ -65,6 +73,7 @@ import org.apache.hadoop.io.compress.Compressor;
 import org.apache.hadoop.io.compress.CompressorStream;
 import org.apache.hadoop.io.compress.Decompressor;
 import org.apache.hadoop.io.compress.DecompressorStream;
+import org.apache.hadoop.util.StringUtils;
 
 import com.cloudera.sqoop.util.RandomHash;
 
@@ -85,7 +94,7 @@ public final class LobFile {
 
   public static final Log LOG = LogFactory.getLog(LobFile.class.getName());
 
-  public static final int LATEST_LOB_VERSION = 0;
+  public static final int LATEST_LOB_VERSION = 1;
   static final char [] HEADER_ID_STR = { 'L', 'O', 'B' };
 
   // Value for entryId to write to the beginning of an IndexSegment.
@@ -97,6 +106,30 @@ public final class LobFile {
   // Value for entryID to write before the IndexTable
   static final long INDEX_TABLE_ID = -3;
 
+  // Bit set in the flags of a record (version 1 and later) whose data is
+  // compressed with the file's codec.
+  static final int RECORD_COMPRESSED = 1;
+
+  /**
+   * Records holding up to this many bytes of data are kept in memory until
+   * they are finished; larger records are spooled to a local temporary
+   * file instead. Either way, a record identical to one already in the
+   * file is stored only once, and a record which does not shrink when
+   * compressed is stored as-is.
+   */
+  public static final String MAX_BUFFERED_RECORD_KEY =
+      "sqoop.lob.writer.buffered.record.max";
+  public static final int DEFAULT_MAX_BUFFERED_RECORD = 1024 * 1024;
+
+  // Size of the buffer used to copy a spooled record into the file.
+  private static final int SPOOL_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * If true (the default), a record identical to one already written to
+   * the same file is not stored again.
+   */
+  public static final String DEDUP_RECORDS_KEY = "sqoop.lob.writer.dedup";
+
   /**
    * Represents a header block in a LobFile. Can write a new header
    * block (and generate a record start mark), or read an existing
@@ -110,9 +143,10 @@ public final class LobFile {
 
     /**
      * Create a new LobFileHeader.
+     * @param version the version of the file format to write.
      */
-    public LobFileHeader() {
-      this.version = LATEST_LOB_VERSION;
+    public LobFileHeader(int version) {
+      this.version = version;
       this.startMark = new RecordStartMark();
       this.metaBlock = new MetaBlock();
     }
@@ -150,8 +184,7 @@ public final class LobFile {
       checkHeaderChars(chars);
 
       this.version = WritableUtils.readVInt(in);
-      if (this.version != LATEST_LOB_VERSION) {
-        // Right now we only have one version we can handle.
+      if (this.version < 0 || this.version > LATEST_LOB_VERSION) {
         throw new IOException("Unexpected LobFile version " + this.version);
       }
 
@@ -459,12 +492,6 @@ public final class LobFile {
     private long curOffset; // offset into the file of the current record.
     private long curLen; // length of the current record in bytes.
 
-    // Used to allow rewindOnce() to go backwards a single position in the
-    // iterator.
-    private int prevInputBufPos; // prev offset into dataInputBuf.
-    private long prevOffset;
-    private long prevLen;
-
     /**
      * Resets the record index iterator.
      */
@@ -479,7 +506,6 @@ public final class LobFile {
      * @return true if there is another record described in this IndexSegment.
      */
     public boolean next() {
-      this.prevOffset = this.curOffset;
       if (null == dataInputBuf) {
         // We need to set up the iterator; this is the first use.
         if (null == recordLenBytes) {
@@ -491,17 +517,14 @@ public final class LobFile {
             0, recordLenBytes.getLength());
 
         this.curOffset = this.tableEntry.getFirstIndexOffset();
-        this.prevOffset = 0;
       } else {
         this.curOffset += this.curLen;
       }
 
       boolean available = dataInputBuf.getPosition() < dataInputBuf.getLength();
       if (available) {
-        this.prevInputBufPos = dataInputBuf.getPosition();
         // Then read out the next record length.
         try {
-          this.prevLen = this.curLen;
           this.curLen = WritableUtils.readVLong(dataInputBuf);
         } catch (IOException ioe) {
           // Shouldn't happen; data in DataInputBuffer is materialized.
@@ -512,32 +535,6 @@ public final class LobFile {
       return available;
     }
 
-    /**
-     * Undoes a single call to next(). This cannot be called twice in a row;
-     * before calling this again, next() must be called in the interim. This
-     * makes a subsequent call to next() yield the same iterated values as the
-     * previous call.
-     */
-    public void rewindOnce() {
-      // Move the buffer backwards so we deserialize the same VLong with
-      // the next call.
-      if (prevInputBufPos == 0) {
-        // We actually rewound the first next() in the iterator.
-        // Just reset the iterator to the beginning. Otherwise we'll
-        // backfill it with bogus data.
-        reset();
-      } else {
-        // Use the normal codepath; move the serialization buffer
-        // backwards and restores the previously yielded values.
-        dataInputBuf.reset(recordLenBytes.getBytes(), prevInputBufPos,
-            recordLenBytes.getLength() - prevInputBufPos);
-
-        // And restore the previously-yielded values.
-        this.curLen = this.prevLen;
-        this.curOffset = this.prevOffset;
-      }
-    }
-
     /**
      * Returns the length of the current record.
      * You must call next() and it must return true before calling this method.
@@ -635,19 +632,6 @@ public final class LobFile {
     public long getSegmentOffset() {
       return this.segmentOffset;
     }
-
-    /**
-     * Inform whether the user's requested offset corresponds
-     * to a record that starts in this IndexSegment. If this
-     * returns true, the requested offset may actually be in
-     * a previous IndexSegment.
-     * @param off the offset of the start of a record to test.
-     * @return true if the user's requested offset is in this
-     * or a previous IndexSegment.
-     */
-    public boolean containsOffset(long off) {
-      return off <= getLastIndexOffset();
-    }
   }
 
   /**
@@ -742,6 +726,14 @@ public final class LobFile {
      */
     public abstract void finishRecord() throws IOException;
 
+    /**
+     * Terminates the current record as finishRecord() does, replacing the
+     * length claimed for it when it was declared. This lets a record be
+     * declared before its length is known, e.g. while it is streamed.
+     * @param len the number of bytes or characters written to the record.
+     */
+    public abstract void finishRecord(long len) throws IOException;
+
     /**
      * Declares a new BLOB record to be written to the file.
      * @param len the "claimed" number of bytes that will be written to
@@ -763,6 +755,15 @@ public final class LobFile {
      */
     public abstract long tell() throws IOException;
 
+    /**
+     * Report where the most recently finished record can be read from.
+     * This is usually the position at which the record was started, but a
+     * record identical to an earlier one may not be stored again, in which
+     * case this is the offset of the earlier record.
+     * @return the offset to seek a Reader to in order to read the record.
+     */
+    public abstract long getRecordOffset();
+
     /**
      * Checks whether an underlying stream is present or null.
      * @param out the stream to check for null-ness.
@@ -783,14 +784,14 @@ public final class LobFile {
     public static final Log LOG = LogFactory.getLog(
         V0Writer.class.getName());
 
-    private Configuration conf;
+    protected Configuration conf;
     private Path path;
     private boolean isCharData;
-    private LobFileHeader header;
+    protected LobFileHeader header;
 
     private String codecName;
-    private CompressionCodec codec;
-    private Compressor compressor;
+    protected CompressionCodec codec;
+    protected Compressor compressor;
 
     // The LobIndex we are constructing.
     private LinkedList<IndexSegment> indexSegments;
@@ -805,18 +806,21 @@ public final class LobFile {
     static final int DEFAULT_MAX_SEGMENT_ENTRIES = 4096;
 
     // Our OutputStream to the underlying file.
-    private DataOutputStream out;
+    protected DataOutputStream out;
 
     // 'out' is layered on top of this stream, which gives us a count
     // of how much data we've written so far.
     private CountingOutputStream countingOut;
 
     // State regarding the current record being written.
-    private long curEntryId; // entryId of the current LOB being written.
-    private long curClaimedLen; // The user claims a length for a record.
+    protected long curEntryId; // entryId of the current LOB being written.
+    protected long curClaimedLen; // The user claims a length for a record.
+
+    // The offset at which the current (or last finished) record starts.
+    protected long curRecordOffset;
 
     // The user's OutputStream and/or Writer that writes to us.
-    private OutputStream userOutputStream;
+    protected OutputStream userOutputStream;
     private java.io.Writer userWriter;
 
     // The userCountingOutputStream may be the same as userOutputStream;
@@ -839,7 +843,7 @@ public final class LobFile {
       this.path = LobReaderCache.qualify(p, conf);
       this.conf = conf;
       this.isCharData = isCharData;
-      this.header = new LobFileHeader();
+      this.header = new LobFileHeader(getFormatVersion());
       this.indexSegments = new LinkedList<IndexSegment>();
       this.indexTable = new IndexTable();
       this.maxEntriesPerSegment = entriesPerSegment;
@@ -855,6 +859,13 @@ public final class LobFile {
       init();
     }
 
+    /**
+     * @return the version of the file format this Writer produces.
+     */
+    protected int getFormatVersion() {
+      return 0;
+    }
+
     /**
      * Open the file and write its header.
      */
@@ -909,6 +920,14 @@ public final class LobFile {
       return this.countingOut.getByteCount();
     }
 
+    @Override
+    /**
+     * {@inheritDoc}
+     */
+    public long getRecordOffset() {
+      return this.curRecordOffset;
+    }
+
     @Override
     /**
      * {@inheritDoc}
@@ -932,11 +951,39 @@ public final class LobFile {
      * {@inheritDoc}
      */
     public void finishRecord() throws IOException {
+      closeUserWriter();
+      finishStreamedRecord();
+
+      if (null != this.out) {
+        out.flush();
+      }
+    }
+
+    @Override
+    /**
+     * {@inheritDoc}
+     * A version 0 record's claimed length is written before its data, so
+     * it is left as declared.
+     */
+    public void finishRecord(long len) throws IOException {
+      finishRecord();
+    }
+
+    /**
+     * Close the Writer returned by writeClobRecord(), if any.
+     */
+    protected void closeUserWriter() throws IOException {
       if (null != this.userWriter) {
         this.userWriter.close();
         this.userWriter = null;
       }
+    }
 
+    /**
+     * Close the streams set up by startStreamedRecord() and add the record
+     * to the index, if a record is being written through them.
+     */
+    protected void finishStreamedRecord() throws IOException {
       if (null != this.userCountingOutputStream) {
 
         // If there is a wrapping stream for compression,
@@ -950,18 +997,11 @@ public final class LobFile {
         this.userCountingOutputStream.close();
 
         // Write the true length of the current record to the index.
-        updateIndex(this.userCountingOutputStream.getByteCount()
-            + RecordStartMark.START_MARK_LENGTH
-            + WritableUtils.getVIntSize(curEntryId)
-            + WritableUtils.getVIntSize(curClaimedLen));
+        updateIndex(tell() - this.curRecordOffset);
 
         this.userOutputStream = null;
         this.userCountingOutputStream = null;
       }
-
-      if (null != this.out) {
-        out.flush();
-      }
     }
 
     /**
@@ -969,7 +1009,7 @@ public final class LobFile {
      * record we just finished writing.
      * @param curRecordLen the true length in bytes of the compressed record.
      */
-    private void updateIndex(long curRecordLen) throws IOException {
+    protected void updateIndex(long curRecordLen) throws IOException {
       LOG.debug("Adding index entry: id=" + curEntryId
           + "; len=" + curRecordLen);
       indexSegments.getLast().addRecordLen(curRecordLen);
@@ -1009,7 +1049,7 @@ public final class LobFile {
      * If this is is the first record in the current IndexSegment, we need
      * to record its entryId and the current file position.
      */
-    private void startRecordIndex() throws IOException {
+    protected void startRecordIndex() throws IOException {
       if (entriesInSegment == maxEntriesPerSegment
           || indexSegments.size() == 0) {
         // The current segment is full. Start a new one.
@@ -1035,12 +1075,25 @@ public final class LobFile {
     public OutputStream writeBlobRecord(long claimedLen) throws IOException {
       finishRecord(); // finish any previous record.
       checkForNull(this.out);
+      return startStreamedRecord(claimedLen);
+    }
+
+    /**
+     * Write the header of a new record to the file, and set up the streams
+     * through which its data is written straight to the file.
+     * @param claimedLen the claimed length of the record.
+     * @return the stream to write the record's data to.
+     */
+    protected OutputStream startStreamedRecord(long claimedLen)
+        throws IOException {
       startRecordIndex();
+      this.curRecordOffset = tell();
       this.header.getStartMark().write(out);
       LOG.debug("Starting new record; id=" + curEntryId
           + "; claimedLen=" + claimedLen);
       WritableUtils.writeVLong(out, curEntryId);
       WritableUtils.writeVLong(out, claimedLen);
+      writeRecordFlags(null == this.codec ? 0 : RECORD_COMPRESSED);
       this.curClaimedLen = claimedLen;
       this.userCountingOutputStream = new CountingOutputStream(
           new CloseShieldOutputStream(out));
@@ -1058,6 +1111,15 @@ public final class LobFile {
       return this.userOutputStream;
     }
 
+    /**
+     * Write the flags of a record to the file, after its claimed length.
+     * Version 0 records have no flags; if the file has a codec, every
+     * record is compressed with it.
+     * @param flags the flags of the record, e.g. RECORD_COMPRESSED.
+     */
+    protected void writeRecordFlags(int flags) throws IOException {
+    }
+
     @Override
     /**
      * {@inheritDoc}
@@ -1075,6 +1137,393 @@ public final class LobFile {
     }
   }
 
+  /**
+   * Concrete writer implementation for LobFile format version 1.
+   * Instantiate via LobFile.create().
+   *
+   * Version 1 adds a set of flags to each record, which say whether the
+   * record's data is compressed. Each record is held back until it is
+   * finished: in memory if it is no longer than MAX_BUFFERED_RECORD_KEY
+   * bytes, or in a local temporary file otherwise. A record is then
+   * stored uncompressed if compression would not make it smaller, and is
+   * not stored at all if an identical record was already written to the
+   * file, in which case getRecordOffset() returns the offset of the
+   * earlier record.
+   */
+  private static class V1Writer extends V0Writer {
+
+    private int maxBufferedRecordLen;
+    private boolean dedupRecords;
+
+    // Computes the digests that identify the contents of records.
+    private MessageDigest digester;
+
+    // The offsets of the records written so far, keyed by their digest
+    // and claimed length.
+    private Map<String, Long> recordOffsetsByDigest;
+
+    // The data of the current record, while it is held in memory.
+    private DataOutputBuffer recordData;
+
+    // Holds the data of a buffered record while it is compressed.
+    private DataOutputBuffer compressedData;
+
+    // Decompresses a spooled record which did not shrink when compressed.
+    private Decompressor decompressor;
+
+    // The stream the user writes the current record to.
+    private RecordBuffer recordBuffer;
+
+    V1Writer(Path p, Configuration conf, boolean isCharData,
+        String codecName, int entriesPerSegment) throws IOException {
+      super(p, conf, isCharData, codecName, entriesPerSegment);
+
+      this.maxBufferedRecordLen = conf.getInt(MAX_BUFFERED_RECORD_KEY,
+          DEFAULT_MAX_BUFFERED_RECORD);
+      this.dedupRecords = conf.getBoolean(DEDUP_RECORDS_KEY, true);
+      try {
+        this.digester = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException nsae) {
+        throw new IOException("Could not create record digest", nsae);
+      }
+      this.recordOffsetsByDigest = new HashMap<String, Long>();
+      this.recordData = new DataOutputBuffer();
+      this.compressedData = new DataOutputBuffer();
+    }
+
+    @Override
+    protected int getFormatVersion() {
+      return 1;
+    }
+
+    @Override
+    protected void writeRecordFlags(int flags) throws IOException {
+      WritableUtils.writeVInt(out, flags);
+    }
+
+    @Override
+    /**
+     * {@inheritDoc}
+     */
+    public OutputStream writeBlobRecord(long claimedLen) throws IOException {
+      finishRecord(); // finish any previous record.
+      checkForNull(this.out);
+      this.curClaimedLen = claimedLen;
+      this.recordData.reset();
+      this.digester.reset();
+      this.recordBuffer = new RecordBuffer();
+      this.userOutputStream = this.recordBuffer;
+      return this.userOutputStream;
+    }
+
+    @Override
+    /**
+     * {@inheritDoc}
+     */
+    public void finishRecord() throws IOException {
+      closeUserWriter();
+      finishRecordData();
+
+      if (null != this.out) {
+        out.flush();
+      }
+    }
+
+    @Override
+    /**
+     * {@inheritDoc}
+     */
+    public void finishRecord(long len) throws IOException {
+      if (null != this.recordBuffer) {
+        // The record's header is only written once it is finished.
+        this.curClaimedLen = len;
+      }
+      finishRecord();
+    }
+
+    @Override
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        // Don't leave behind the spool file of an unfinished record.
+        if (null != this.recordBuffer) {
+          this.recordBuffer.discardSpool();
+        }
+      }
+    }
+
+    /**
+     * Complete the record being written through recordBuffer, if any.
+     */
+    private void finishRecordData() throws IOException {
+      if (null != this.recordBuffer) {
+        // Any further writes through the user's stream are an error.
+        RecordBuffer buffer = this.recordBuffer;
+        buffer.closed = true;
+        this.userOutputStream = null;
+        try {
+          if (buffer.isSpooled()) {
+            writeSpooledRecord(buffer);
+          } else {
+            writeBufferedRecord();
+          }
+        } finally {
+          buffer.discardSpool();
+          this.recordBuffer = null;
+        }
+      }
+    }
+
+    /**
+     * @return the key under which the record just finished is listed in
+     * recordOffsetsByDigest, or null if records are not deduplicated.
+     */
+    private String getRecordDigest() {
+      if (!dedupRecords) {
+        return null;
+      }
+
+      return StringUtils.byteToHexString(digester.digest())
+          + "/" + curClaimedLen;
+    }
+
+    /**
+     * If an identical record has already been written to the file, make
+     * it the current record.
+     * @return true if an identical record was found.
+     */
+    private boolean reuseIdenticalRecord(String digest) {
+      if (null == digest) {
+        return false;
+      }
+
+      Long prevOffset = recordOffsetsByDigest.get(digest);
+      if (null == prevOffset) {
+        return false;
+      }
+
+      LOG.debug("Record is identical to the one at offset " + prevOffset);
+      this.curRecordOffset = prevOffset;
+      return true;
+    }
+
+    /**
+     * Write the header of a new record to the file.
+     */
+    private void startRecord(int flags) throws IOException {
+      startRecordIndex();
+      this.curRecordOffset = tell();
+      this.header.getStartMark().write(out);
+      LOG.debug("Writing record; id=" + curEntryId
+          + "; claimedLen=" + curClaimedLen + "; flags=" + flags);
+      WritableUtils.writeVLong(out, curEntryId);
+      WritableUtils.writeVLong(out, curClaimedLen);
+      writeRecordFlags(flags);
+    }
+
+    /**
+     * Add the record just written to the index, and remember it so that
+     * an identical record need not be stored again.
+     */
+    private void finishRecordIndex(String digest) throws IOException {
+      updateIndex(tell() - this.curRecordOffset);
+      if (null != digest) {
+        recordOffsetsByDigest.put(digest, this.curRecordOffset);
+      }
+    }
+
+    /**
+     * Write the record held in recordData to the file, unless an identical
+     * record has already been written.
+     */
+    private void writeBufferedRecord() throws IOException {
+      String digest = getRecordDigest();
+      if (reuseIdenticalRecord(digest)) {
+        return;
+      }
+
+      byte [] data = recordData.getData();
+      int dataLen = recordData.getLength();
+      int flags = 0;
+      if (null != this.codec) {
+        // Store the compressed data only if it is actually smaller.
+        compressedData.reset();
+        this.compressor.reset();
+        CompressorStream compressorStream = new CompressorStream(
+            compressedData, compressor);
+        compressorStream.write(data, 0, dataLen);
+        compressorStream.finish();
+        if (compressedData.getLength() < dataLen) {
+          data = compressedData.getData();
+          dataLen = compressedData.getLength();
+          flags |= RECORD_COMPRESSED;
+        }
+      }
+
+      startRecord(flags);
+      out.write(data, 0, dataLen);
+      finishRecordIndex(digest);
+    }
+
+    /**
+     * Copy the record spooled by the RecordBuffer to the file, unless an
+     * identical record has already been written. If the file has a codec,
+     * the spool holds the compressed data; it is decompressed again if it
+     * is no smaller than the record itself.
+     */
+    private void writeSpooledRecord(RecordBuffer buffer) throws IOException {
+      buffer.closeSpool();
+      String digest = getRecordDigest();
+      if (reuseIdenticalRecord(digest)) {
+        return;
+      }
+
+      int flags = 0;
+      InputStream in = new BufferedInputStream(
+          new FileInputStream(buffer.spoolFile));
+      try {
+        if (null != this.codec) {
+          if (buffer.spoolCounter.getByteCount() < buffer.recordLen) {
+            flags |= RECORD_COMPRESSED;
+          } else {
+            if (null == this.decompressor) {
+              this.decompressor = codec.createDecompressor();
+            }
+            this.decompressor.reset();
+            in = new DecompressorStream(in, decompressor);
+          }
+        }
+
+        startRecord(flags);
+        byte [] buf = new byte[SPOOL_BUFFER_SIZE];
+        int bytesRead;
+        while ((bytesRead = in.read(buf)) != -1) {
+          out.write(buf, 0, bytesRead);
+        }
+      } finally {
+        in.close();
+      }
+      finishRecordIndex(digest);
+    }
+
+    /**
+     * The stream through which the user writes a record. The data is held
+     * in recordData until it exceeds maxBufferedRecordLen bytes; after that,
+     * it is spooled (compressed, if the file has a codec) to a local
+     * temporary file. Closing the stream completes the record, so that
+     * tell() then reports the position after it.
+     */
+    private class RecordBuffer extends OutputStream {
+      // Once the record is being spooled, the file and the streams its
+      // data goes to.
+      private File spoolFile;
+      private CountingOutputStream spoolCounter;
+      private OutputStream spoolOut;
+
+      // The number of bytes written to the record so far.
+      private long recordLen;
+
+      private boolean closed;
+
+      public boolean isSpooled() {
+        return null != spoolFile;
+      }
+
+      /**
+       * Start spooling the record to a temporary file, beginning with
+       * whatever has been buffered so far.
+       */
+      private void startSpooling() throws IOException {
+        LOG.debug("Record exceeds " + maxBufferedRecordLen
+            + " bytes; spooling it to a local file.");
+        spoolFile = File.createTempFile("lobrecord", ".tmp");
+        spoolCounter = new CountingOutputStream(new BufferedOutputStream(
+            new FileOutputStream(spoolFile)));
+        if (null == codec) {
+          spoolOut = spoolCounter;
+        } else {
+          compressor.reset();
+          spoolOut = new CompressorStream(spoolCounter, compressor);
+        }
+        spoolOut.write(recordData.getData(), 0, recordData.getLength());
+        recordData.reset();
+      }
+
+      /**
+       * Finish writing the spool file, so that it can be copied.
+       */
+      private void closeSpool() throws IOException {
+        if (null != spoolOut) {
+          spoolOut.close();
+          spoolOut = null;
+        }
+      }
+
+      /**
+       * Close and remove the spool file, if any.
+       */
+      private void discardSpool() {
+        if (null != spoolFile) {
+          try {
+            closeSpool();
+          } catch (IOException ioe) {
+            LOG.warn("Could not close record spool file: " + ioe);
+          }
+
+          if (!spoolFile.delete()) {
+            LOG.warn("Could not remove record spool file " + spoolFile);
+          }
+          spoolFile = null;
+        }
+      }
+
+      private void checkOpen() throws IOException {
+        if (closed) {
+          throw new IOException("Record has already been closed.");
+        }
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte [] b, int off, int len) throws IOException {
+        checkOpen();
+        if (!isSpooled()
+            && recordData.getLength() + len > maxBufferedRecordLen) {
+          startSpooling();
+        }
+
+        if (dedupRecords) {
+          digester.update(b, off, len);
+        }
+
+        recordLen += len;
+        if (isSpooled()) {
+          spoolOut.write(b, off, len);
+        } else {
+          recordData.write(b, off, len);
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (!closed) {
+          closed = true;
+          if (this == recordBuffer) {
+            finishRecordData();
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Class that can read a LobFile. Create with LobFile.open().
    */
@@ -1187,16 +1636,162 @@ public final class LobFile {
     }
   }
 
+  /**
+   * An InputStream over a range of bytes in a file, which fetches its data
+   * with positional reads rather than by moving the file pointer of the
+   * underlying stream. Data is read from the file a buffer at a time.
+   */
+  private static class PositionedInputStream extends InputStream {
+
+    private PositionedReadable in;
+
+    private byte [] buf;
+    private int bufPos; // offset of the next byte to return from buf.
+    private int bufLen; // number of valid bytes in buf.
+
+    // The file offset of the byte following the last one in buf.
+    private long pos;
+
+    // The file offset at which this stream reports EOF.
+    private long end;
+
+    public PositionedInputStream(PositionedReadable in, int bufferSize) {
+      this.in = in;
+      this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Discard any buffered data and read the bytes from 'start' up to
+     * (but not including) 'endPos' from now on.
+     */
+    public void setRange(long start, long endPos) {
+      this.pos = start;
+      this.end = endPos;
+      this.bufPos = 0;
+      this.bufLen = 0;
+    }
+
+    /**
+     * @return the offset in the file of the next byte to be read.
+     */
+    public long getPos() {
+      return pos - (bufLen - bufPos);
+    }
+
+    /**
+     * Read up to 'len' bytes at the current position directly into 'b'.
+     * @return the number of bytes read, or -1 at the end of the range.
+     */
+    private int readAt(byte [] b, int off, int len) throws IOException {
+      if (pos >= end) {
+        return -1;
+      }
+
+      int toRead = (int) Math.min(len, end - pos);
+      int received = in.read(pos, b, off, toRead);
+      if (received < 1) {
+        throw new EOFException("Unexpected end of file at offset " + pos);
+      }
+
+      pos += received;
+      return received;
+    }
+
+    /**
+     * Refill the buffer if it has been consumed.
+     * @return false if the end of the range has been reached.
+     */
+    private boolean fill() throws IOException {
+      if (bufPos < bufLen) {
+        return true;
+      }
+
+      int received = readAt(buf, 0, buf.length);
+      bufPos = 0;
+      bufLen = Math.max(0, received);
+      return received > 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!fill()) {
+        return -1;
+      }
+
+      return buf[bufPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte [] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+
+      if (bufPos == bufLen && len >= buf.length) {
+        // Nothing is buffered and the caller wants at least a buffer's
+        // worth; don't bother copying it through our own buffer.
+        return readAt(b, off, len);
+      }
+
+      if (!fill()) {
+        return -1;
+      }
+
+      int numBytes = Math.min(len, bufLen - bufPos);
+      System.arraycopy(buf, bufPos, b, off, numBytes);
+      bufPos += numBytes;
+      return numBytes;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      if (n <= 0) {
+        return 0;
+      }
+
+      long buffered = bufLen - bufPos;
+      if (n <= buffered) {
+        bufPos += (int) n;
+        return n;
+      }
+
+      // Skip past the buffer, then just move the position along.
+      bufPos = bufLen;
+      long skipped = Math.min(n - buffered, Math.max(0, end - pos));
+      pos += skipped;
+      return buffered + skipped;
+    }
+
+    @Override
+    public int available() {
+      return bufLen - bufPos;
+    }
+
+    @Override
+    public void close() {
+      // The underlying file is owned by the Reader; nothing to do.
+    }
+  }
+
   /**
    * Reader implementation for LobFile format version 0. Acquire with
    * LobFile.open().
+   *
+   * The entire index is read when the file is opened and held as arrays
+   * of record offsets and lengths. seek() binary-searches these arrays,
+   * and records are read with positional reads at their indexed offsets,
+   * so moving to an arbitrary record costs no I/O beyond reading the
+   * record itself, regardless of where the previous record was.
    */
   private static class V0Reader extends Reader {
     public static final Log LOG = LogFactory.getLog(
         V0Reader.class.getName());
 
-    // Forward seeks of up to this size are performed by reading, not seeking.
-    private static final long MAX_CONSUMPTION_WIDTH = 512 * 1024;
+    // Size of the buffer used to read records and the index from the file.
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // Initial capacity of the arrays holding the index.
+    private static final int INITIAL_INDEX_CAPACITY = 64;
 
     private LobFileHeader header;
 
@@ -1230,16 +1825,21 @@ public final class LobFile {
     // true length from the index.
     private long indexRecordLen;
 
+    // After we've aligned on a record, this contains its flags.
+    private int curRecordFlags;
+
     // tmp buffer used to consume RecordStartMarks during alignment.
     private byte [] tmpRsmBuf;
 
-    // The actual file stream itself, which we can move around (e.g. with
-    // seeking).
+    // The actual file stream itself. Past the header, it is only accessed
+    // through positional reads, so its own file pointer never moves.
     private FSDataInputStream underlyingInput;
 
-    // The data deserializer we typically place on top of this.
-    // If we use underlyingInput.seek(), then we instantiate a new
-    // dataIn on top of it.
+    // Reads the current record (or, while opening the file, the index)
+    // from underlyingInput.
+    private PositionedInputStream positionedIn;
+
+    // The data deserializer we place on top of positionedIn.
     private DataInputStream dataIn;
 
     // The user accesses the current record through a stream memoized here.
@@ -1247,14 +1847,15 @@ public final class LobFile {
     // userInputStream when they want to align on the next record.
     private InputStream userInputStream;
 
-    // The current index segment to read record lengths from.
-    private IndexSegment curIndexSegment;
-
-    // The offset into the indexTable of the curIndexSegment.
-    private int curIndexSegmentId;
+    // The starting offsets and true lengths of all the records in the
+    // file, in the order in which they appear in the file.
+    private long [] recordOffsets;
+    private long [] recordLens;
+    private int numRecords;
 
-    // The IndexTable that provides fast pointers to the IndexSegments.
-    private IndexTable indexTable;
+    // The position in recordOffsets of the record that the next call
+    // to next() will align on.
+    private int nextRecordIdx;
 
     // The path being opened.
     private Path path;
@@ -1266,8 +1867,9 @@ public final class LobFile {
       this.path = LobReaderCache.qualify(path, conf);
       this.conf = conf;
       this.header = header;
-      this.dataIn = dis;
       this.underlyingInput = stream;
+      this.positionedIn = new PositionedInputStream(stream, READ_BUFFER_SIZE);
+      this.dataIn = new DataInputStream(this.positionedIn);
       this.isAligned = false;
       this.tmpRsmBuf = new byte[RecordStartMark.START_MARK_LENGTH];
       this.fileLen = fileLen;
@@ -1293,20 +1895,17 @@ public final class LobFile {
     }
 
     /**
-     * Get the first index segment out of the file; determine
-     * where that is by loading the index locator at the end of
-     * the file.
+     * Load the index of the file; determine where that is by loading
+     * the index locator at the end of the file.
      */
     private void openIndex() throws IOException {
-      // Jump to the end of the file.
       // At the end of the file is a RSM followed by two VLongs;
       // the first of these is the value -2 (one byte) and the
       // second of these is the offset of the beginning of the index (up to
       // 9 bytes).
-      internalSeek(fileLen - RecordStartMark.START_MARK_LENGTH - 10);
-
       byte [] finaleBuffer = new byte[RecordStartMark.START_MARK_LENGTH + 10];
-      this.dataIn.readFully(finaleBuffer);
+      this.underlyingInput.readFully(fileLen - finaleBuffer.length,
+          finaleBuffer);
 
       // Figure out where in the finaleBuffer the RSM actually starts,
       // as the finale might not fully fill the finaleBuffer.
@@ -1332,24 +1931,19 @@ public final class LobFile {
       long indexTableStart = WritableUtils.readVLong(inBuf);
       LOG.debug("IndexTable begins at " + indexTableStart);
 
-      readIndexTable(indexTableStart);
-
-      // Set up to read records from the beginning of the file. This
-      // starts with the first IndexSegment.
-      curIndexSegmentId = 0;
-      loadIndexSegment();
+      IndexTable indexTable = readIndexTable(indexTableStart);
+      readIndexSegments(indexTable);
 
-      // This has moved the file pointer all over but we don't need to
-      // worry about resetting it now. The next() method will seek the
-      // file pointer to the first record when the user is ready to
-      // consume it.
+      // Set up to read records from the beginning of the file.
+      this.nextRecordIdx = 0;
     }
 
     /**
      * Load the entire IndexTable into memory and decode it.
      */
-    private void readIndexTable(long indexTableOffset) throws IOException {
-      internalSeek(indexTableOffset);
+    private IndexTable readIndexTable(long indexTableOffset)
+        throws IOException {
+      this.positionedIn.setRange(indexTableOffset, fileLen);
 
       // Read the RecordStartMark ahead of the IndexTable.
       this.dataIn.readFully(tmpRsmBuf);
@@ -1357,59 +1951,62 @@ public final class LobFile {
         throw new IOException("Expected record start mark before IndexTable");
       }
 
-      this.indexTable = new IndexTable(dataIn);
+      return new IndexTable(dataIn);
     }
 
     /**
-     * Ingest the next IndexSegment.
+     * Read every IndexSegment described by the IndexTable, decoding the
+     * offsets and lengths of all the records in the file into
+     * recordOffsets and recordLens.
      */
-    private void readNextIndexSegment() throws IOException {
-      this.curIndexSegmentId++;
-      loadIndexSegment();
-    }
+    private void readIndexSegments(IndexTable indexTable) throws IOException {
+      this.recordOffsets = new long[INITIAL_INDEX_CAPACITY];
+      this.recordLens = new long[INITIAL_INDEX_CAPACITY];
+      this.numRecords = 0;
 
-    /**
-     * Load curIndexSegment with the segment specified by curIndexSegmentId.
-     * The file pointer will be moved to the position after this segment.
-     * If the segment id does not exist, then the curIndexSegment will be
-     * set to null.
-     */
-    private void loadIndexSegment() throws IOException {
-      if (indexTable.size() <= curIndexSegmentId || curIndexSegmentId < 0) {
-        // We've iterated past the last IndexSegment. Set this to null
-        // and return; the next() method will then return false.
-        this.curIndexSegment = null;
-        return;
+      for (int i = 0; i < indexTable.size(); i++) {
+        IndexTableEntry tableEntry = indexTable.get(i);
+        long segmentOffset = tableEntry.getSegmentOffset();
+        LOG.debug("Reading index segment at " + segmentOffset);
+        this.positionedIn.setRange(segmentOffset, fileLen);
+
+        // Read the RecordStartMark ahead of the IndexSegment.
+        this.dataIn.readFully(tmpRsmBuf);
+        if (!matchesRsm(tmpRsmBuf)) {
+          throw new IOException(
+              "Expected record start mark before IndexSegment");
+        }
+
+        IndexSegment segment = new IndexSegment(tableEntry, this.dataIn);
+        while (segment.next()) {
+          addIndexedRecord(segment.getCurRecordStart(),
+              segment.getCurRecordLen());
+        }
       }
 
-      // Otherwise, seek to the segment and load it.
-      IndexTableEntry tableEntry = indexTable.get(curIndexSegmentId);
-      long segmentOffset = tableEntry.getSegmentOffset();
-      internalSeek(segmentOffset);
-      readPositionedIndexSegment();
+      LOG.debug("Index describes " + numRecords + " records");
     }
 
     /**
-     * When the underlying stream is aligned on the RecordStartMark
-     * ahead of an IndexSegment, read in the next IndexSegment.
-     * After this method the curIndexSegment contains the next
-     * IndexSegment to read in the file; if the entire index has been
-     * read in this fastion, curIndexSegment will be null.
+     * Append the offset and length of a record to the in-memory index.
      */
-    private void readPositionedIndexSegment() throws IOException {
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Reading index segment at " + tell());
+    private void addIndexedRecord(long offset, long len) throws IOException {
+      if (numRecords > 0 && offset <= recordOffsets[numRecords - 1]) {
+        // seek() relies on the offsets being in ascending order.
+        throw new IOException("Index lists record offset " + offset
+            + " after offset " + recordOffsets[numRecords - 1]
+            + ". The IndexTable appears corrupt.");
       }
 
-      // Read the RecordStartMark ahead of the IndexSegment.
-      this.dataIn.readFully(tmpRsmBuf);
-      if (!matchesRsm(tmpRsmBuf)) {
-        throw new IOException("Expected record start mark before IndexSegment");
+      if (numRecords == recordOffsets.length) {
+        int newCapacity = recordOffsets.length * 2;
+        this.recordOffsets = Arrays.copyOf(recordOffsets, newCapacity);
+        this.recordLens = Arrays.copyOf(recordLens, newCapacity);
       }
 
-      // Read the IndexSegment proper.
-      this.curIndexSegment = new IndexSegment(
-          this.indexTable.get(curIndexSegmentId), this.dataIn);
+      recordOffsets[numRecords] = offset;
+      recordLens[numRecords] = len;
+      numRecords++;
     }
 
     /**
@@ -1461,10 +2058,22 @@ public final class LobFile {
     }
 
     @Override
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     * If the current record has not been read, this is the offset of the
+     * point within it that has been reached. Otherwise, it is the offset
+     * of the record that the next call to next() will align on, or the
+     * length of the file if no records remain.
+     */
     public long tell() throws IOException {
       checkForNull(this.underlyingInput);
-      return this.underlyingInput.getPos();
+      if (this.isAligned || null != this.userInputStream) {
+        return this.positionedIn.getPos();
+      } else if (nextRecordIdx < numRecords) {
+        return recordOffsets[nextRecordIdx];
+      } else {
+        return fileLen;
+      }
     }
 
     @Override
@@ -1473,105 +2082,26 @@ public final class LobFile {
       closeUserStream();
       checkForNull(this.underlyingInput);
       this.isAligned = false;
-      searchForRecord(pos);
-    }
-
-    /**
-     * Search the index for the first record starting on or after 'start'.
-     * @param start the offset in the file where we should start looking
-     * for a record.
-     */
-    private void searchForRecord(long start) throws IOException {
-      LOG.debug("Looking for the first record at/after offset " + start);
-
-      // Scan through the IndexTable until we find the IndexSegment
-      // that contains the offset.
-      for (int i = 0; i < indexTable.size(); i++) {
-        IndexTableEntry tableEntry = indexTable.get(i);
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Checking index table entry for range: "
-              + tableEntry.getFirstIndexOffset() + ", "
-              + tableEntry.getLastIndexOffset());
-        }
-
-        if (tableEntry.containsOffset(start)) {
-          // Seek to the IndexSegment associated with this tableEntry.
-          curIndexSegmentId = i;
-          loadIndexSegment();
-
-          // Use this index segment. The record index iterator
-          // is at the beginning of the IndexSegment, since we just
-          // read it in.
-          LOG.debug("Found matching index segment.");
-          while (this.curIndexSegment.next()) {
-            long curStart = this.curIndexSegment.getCurRecordStart();
-            if (curStart >= start) {
-              LOG.debug("Found seek target record with offset " + curStart);
-              // This is the first record to meet this criterion.
-              // Rewind the index iterator by one so that the next()
-              // method will do the right thing. next() will also
-              // take care of actually seeking to the correct position
-              // in the file to read the record proper.
-              this.curIndexSegment.rewindOnce();
-              return;
-            }
-          }
-
-          // If it wasn't actually in this IndexSegment, then we've
-          // got a corrupt IndexTableEntry; the entry represented that
-          // the segment ran longer than it actually does.
-          throw new IOException("IndexTableEntry claims last offset of "
-              + tableEntry.getLastIndexOffset()
-              + " but IndexSegment ends early."
-              + " The IndexTable appears corrupt.");
-        }
-      }
-
-      // If we didn't return inside the loop, then we've searched the entire
-      // file and it's not there. Advance the IndexSegment iterator to
-      // the end of the road so that next() returns false.
-      this.curIndexSegmentId = indexTable.size();
-      loadIndexSegment();
-    }
-
-    /**
-     * Read data from the stream and discard it.
-     * @param numBytes number of bytes to read and discard.
-     */
-    private void consumeBytes(int numBytes) throws IOException {
-      int remaining = numBytes;
-      while (remaining > 0) {
-        int received = dataIn.skipBytes(remaining);
-        if (received < 1) {
-          throw new IOException("Could not consume additional bytes");
-        }
-        remaining -= received;
+      LOG.debug("Looking for the first record at/after offset " + pos);
+
+      // Find the first record starting on or after 'pos'. If there is
+      // none, this leaves nextRecordIdx at numRecords and next() will
+      // return false.
+      int idx = Arrays.binarySearch(recordOffsets, 0, numRecords, pos);
+      if (idx < 0) {
+        idx = -(idx + 1); // The insertion point.
       }
+      this.nextRecordIdx = idx;
     }
 
     /**
-     * Seek to position 'pos' (offset from start of file). If this
-     * is nearby, actually just consume data from the underlying
-     * stream rather than doing a real seek.
-     * @param targetPos the position to seek to, expressed as an offset
-     * from the start of the file.
+     * Read the flags of a record, which follow its claimed length.
+     * Version 0 records have no flags; if the file has a codec, every
+     * record is compressed with it.
+     * @return the flags of the record, e.g. RECORD_COMPRESSED.
      */
-    private void internalSeek(long targetPos) throws IOException {
-      long curPos = this.underlyingInput.getPos();
-      LOG.debug("Internal seek: target=" + targetPos + "; cur=" + curPos);
-      long distance = targetPos - curPos;
-      if (targetPos == curPos) {
-        LOG.debug("(no motion required)");
-        return; // We're already there!
-      } else if (targetPos > curPos && distance < MAX_CONSUMPTION_WIDTH) {
-        // We're "close enough" that we should just read it.
-        LOG.debug("Advancing by " + distance + " bytes.");
-        consumeBytes((int) distance);
-      } else {
-        LOG.debug("Direct seek to target");
-        this.underlyingInput.seek(targetPos);
-        this.dataIn = new DataInputStream(this.underlyingInput);
-      }
+    protected int readRecordFlags(DataInput in) throws IOException {
+      return null == this.codec ? 0 : RECORD_COMPRESSED;
     }
 
     /**
@@ -1593,44 +2123,24 @@ public final class LobFile {
       closeUserStream();
       this.isAligned = false; // false until proven true.
 
-      // Get the position of the next record start.
       // Check the index: is there another record?
-      if (null == curIndexSegment) {
+      if (nextRecordIdx >= numRecords) {
         LOG.debug("Index is finished; false");
-        return false; // No index remains. Ergo, no more records.
-      }
-      boolean moreInSegment = curIndexSegment.next();
-      if (!moreInSegment) {
-        // The current IndexSegment has been exhausted. Move to the next.
-        LOG.debug("Loading next index segment.");
-        readNextIndexSegment();
-        if (null == curIndexSegment) {
-          LOG.debug("Index is finished; false");
-          return false; // No index; no records.
-        }
-
-        // Try again with the next IndexSegment.
-        moreInSegment = curIndexSegment.next();
-      }
-
-      if (!moreInSegment) {
-        // Nothing left in the last IndexSegment.
-        LOG.debug("Last index segment is finished; false.");
-        this.curIndexSegment = null;
         return false;
       }
 
       // Determine where the next record starts.
-      this.indexRecordLen = this.curIndexSegment.getCurRecordLen();
-      this.curRecordOffset = this.curIndexSegment.getCurRecordStart();
+      this.indexRecordLen = recordLens[nextRecordIdx];
+      this.curRecordOffset = recordOffsets[nextRecordIdx];
+      this.nextRecordIdx++;
 
       LOG.debug("Next record starts at position: " + this.curRecordOffset
           + "; indexedLen=" + this.indexRecordLen);
 
-      // Make sure we're at the target position.
-      internalSeek(this.curRecordOffset);
+      // Read the record, and no further.
+      this.positionedIn.setRange(this.curRecordOffset,
+          this.curRecordOffset + this.indexRecordLen);
 
-      // We are now on top of the next record's RecordStartMark.
       // Consume the RSM and the record header.
       this.dataIn.readFully(this.tmpRsmBuf);
       if (!matchesRsm(tmpRsmBuf)) {
@@ -1640,16 +2150,17 @@ public final class LobFile {
 
       this.curEntryId = WritableUtils.readVLong(this.dataIn);
       if (this.curEntryId < 0) {
-        // We've moved past the end of the records and started
-        // trying to consume the index. This is the EOF from
-        // the client's perspective.
+        // The index points at an IndexSegment rather than a record.
+        // This is the EOF from the client's perspective.
         LOG.debug("Indexed position is itself an IndexSegment; false.");
+        this.nextRecordIdx = numRecords;
         return false;
       }
       LOG.debug("Aligned on record id=" + this.curEntryId);
 
       this.claimedRecordLen = WritableUtils.readVLong(this.dataIn);
       LOG.debug("Record has claimed length " + this.claimedRecordLen);
+      this.curRecordFlags = readRecordFlags(this.dataIn);
       // We are now aligned on the start of the user's data.
       this.isAligned = true;
       return true;
@@ -1697,15 +2208,18 @@ public final class LobFile {
       // Mark this record as consumed.
       this.isAligned = false;
 
-      // The length of the stream we can return to the user is
-      // the indexRecordLen minus the length of any per-record headers.
-      // That includes the RecordStartMark, the entryId, and the claimedLen.
-      long streamLen = this.indexRecordLen - RecordStartMark.START_MARK_LENGTH
-          - WritableUtils.getVIntSize(this.curEntryId)
-          - WritableUtils.getVIntSize(this.claimedRecordLen);
+      // The length of the stream we can return to the user is the rest
+      // of the record, now that its header has been consumed.
+      long streamLen = this.curRecordOffset + this.indexRecordLen
+          - this.positionedIn.getPos();
       LOG.debug("Yielding stream to user with length " + streamLen);
       this.userInputStream = new FixedLengthInputStream(this.dataIn, streamLen);
-      if (this.codec != null) {
+      if ((this.curRecordFlags & RECORD_COMPRESSED) != 0) {
+        if (null == this.codec) {
+          throw new IOException("Record " + this.curEntryId
+              + " is compressed, but the file has no codec.");
+        }
+
         // The user needs to decompress the data; wrap the InputStream.
         decompressor.reset();
         this.userInputStream = new DecompressorStream(
@@ -1747,6 +2261,26 @@ public final class LobFile {
     }
   }
 
+  /**
+   * Reader implementation for LobFile format version 1, in which each
+   * record has flags saying whether its data is compressed. Acquire with
+   * LobFile.open().
+   */
+  private static class V1Reader extends V0Reader {
+
+    // Users should use LobFile.open() instead of directly calling this.
+    V1Reader(Path path, Configuration conf, LobFileHeader header,
+        DataInputStream dis, FSDataInputStream stream, long fileLen)
+        throws IOException {
+      super(path, conf, header, dis, stream, fileLen);
+    }
+
+    @Override
+    protected int readRecordFlags(DataInput in) throws IOException {
+      return WritableUtils.readVInt(in);
+    }
+  }
+
   /**
    * Creates a LobFile Reader configured to read from the specified file.
    */
@@ -1763,6 +2297,8 @@ public final class LobFile {
 
     if (version == 0) {
       return new V0Reader(p, conf, header, dis, fis, stats[0].getLen());
+    } else if (version == 1) {
+      return new V1Reader(p, conf, header, dis, fis, stats[0].getLen());
     } else {
       throw new IOException("No reader available for LobFile version "
           + version);
@@ -1813,7 +2349,30 @@ public final class LobFile {
   public static Writer create(Path p, Configuration conf, boolean isCharData,
       String codec, int entriesPerSegment)
       throws IOException {
-    return new V0Writer(p, conf, isCharData, codec, entriesPerSegment);
+    return create(p, conf, isCharData, codec, entriesPerSegment,
+        LATEST_LOB_VERSION);
+  }
+
+  /**
+   * Creates a LobFile Writer for a specific version of the file format.
+   * @param p the path to create.
+   * @param conf the configuration to use to interact with the filesystem.
+   * @param isCharData true if this is for CLOBs, false for BLOBs.
+   * @param codec the compression codec to use (or null for none).
+   * @param entriesPerSegment number of entries per index segment.
+   * @param version the version of the file format to write.
+   */
+  static Writer create(Path p, Configuration conf, boolean isCharData,
+      String codec, int entriesPerSegment, int version)
+      throws IOException {
+    if (version == 0) {
+      return new V0Writer(p, conf, isCharData, codec, entriesPerSegment);
+    } else if (version == 1) {
+      return new V1Writer(p, conf, isCharData, codec, entriesPerSegment);
+    } else {
+      throw new IOException("No writer available for LobFile version "
+          + version);
+    }
   }
 }
 
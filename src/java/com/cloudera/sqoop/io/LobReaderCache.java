@@ -18,12 +18,16 @@
  * limitations under the License.
  */
 
-
 package com.cloudera.sqoop.io;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,26 +37,83 @@ import org.apache.hadoop.conf.Configuration;
 
 /**
  * A cache of open LobFile.Reader objects.
- * This maps from filenames to the open Reader, if any.  This uses the
- * Singleton pattern. While nothing prevents multiple LobReaderCache
- * instances, it is most useful to have a single global cache. This cache is
- * internally synchronized; only one thread can insert or retrieve a reader
- * from the cache at a time.
+ * This maps from filenames to the idle Readers open on them, if any. This
+ * uses the Singleton pattern. While nothing prevents multiple LobReaderCache
+ * instances, it is most useful to have a single global cache.
+ *
+ * Each reader is used by one caller at a time: get() removes a reader from
+ * the cache, and recycle() returns it. Several readers may be cached for
+ * the same file, so that concurrent callers reading the same file can each
+ * reuse a reader of their own.
+ *
+ * The cache is bounded. It holds at most a few idle readers per file, and
+ * a limited number in all; when it is full, the reader which has been idle
+ * longest is closed. Readers left idle for too long are closed as well, so
+ * a long-running process does not hold files open indefinitely. The limits
+ * are taken from the configuration passed to get().
+ *
+ * This cache is internally synchronized; readers are opened and closed
+ * outside of its lock.
  */
 public final class LobReaderCache {
 
   public static final Log LOG = LogFactory.getLog(
       LobReaderCache.class.getName());
 
-  private Map<Path, LobFile.Reader> readerMap;
+  /** The maximum number of idle readers to cache in all. */
+  public static final String MAX_READERS_KEY =
+      "sqoop.lob.reader.cache.max.readers";
+  public static final int DEFAULT_MAX_READERS = 16;
+
+  /** The maximum number of idle readers to cache for any one file. */
+  public static final String MAX_READERS_PER_FILE_KEY =
+      "sqoop.lob.reader.cache.max.readers.per.file";
+  public static final int DEFAULT_MAX_READERS_PER_FILE = 4;
 
-  private LobReaderCache() {
-    this.readerMap = new TreeMap<Path, LobFile.Reader>();
+  /** How long a reader may stay idle in the cache before it is closed. */
+  public static final String MAX_IDLE_MILLIS_KEY =
+      "sqoop.lob.reader.cache.max.idle.ms";
+  public static final long DEFAULT_MAX_IDLE_MILLIS = 60000;
+
+  /**
+   * An idle reader, and the time at which it was returned to the cache.
+   */
+  private static class IdleReader {
+    private final LobFile.Reader reader;
+    private final long idleSince;
+
+    IdleReader(LobFile.Reader reader, long idleSince) {
+      this.reader = reader;
+      this.idleSince = idleSince;
+    }
+  }
+
+  // The idle readers of each file, most recently returned last.
+  private Map<Path, LinkedList<IdleReader>> readerMap;
+
+  // All of the idle readers, least recently returned first.
+  private LinkedHashSet<IdleReader> lruReaders;
+
+  private int maxReaders;
+  private int maxReadersPerFile;
+  private long maxIdleMillis;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  LobReaderCache(int maxReaders, int maxReadersPerFile, long maxIdleMillis) {
+    this.readerMap = new HashMap<Path, LinkedList<IdleReader>>();
+    this.lruReaders = new LinkedHashSet<IdleReader>();
+    this.maxReaders = maxReaders;
+    this.maxReadersPerFile = maxReadersPerFile;
+    this.maxIdleMillis = maxIdleMillis;
   }
 
   private static final LobReaderCache CACHE;
   static {
-    CACHE = new LobReaderCache();
+    CACHE = new LobReaderCache(DEFAULT_MAX_READERS,
+        DEFAULT_MAX_READERS_PER_FILE, DEFAULT_MAX_IDLE_MILLIS);
   }
 
   /**
@@ -92,58 +153,187 @@ public final class LobReaderCache {
   public LobFile.Reader get(Path path, Configuration conf)
       throws IOException {
 
-    LobFile.Reader reader = null;
     Path canonicalPath = qualify(path, conf);
+    List<LobFile.Reader> toClose = new ArrayList<LobFile.Reader>();
+    LobFile.Reader reader = null;
+
     // Look up an entry in the cache.
     synchronized(this) {
-      reader = readerMap.remove(canonicalPath);
+      maxReaders = conf.getInt(MAX_READERS_KEY, maxReaders);
+      maxReadersPerFile = conf.getInt(MAX_READERS_PER_FILE_KEY,
+          maxReadersPerFile);
+      maxIdleMillis = conf.getLong(MAX_IDLE_MILLIS_KEY, maxIdleMillis);
+      evictExpired(System.currentTimeMillis(), toClose);
+
+      LinkedList<IdleReader> idle = readerMap.get(canonicalPath);
+      while (null != idle && !idle.isEmpty() && null == reader) {
+        IdleReader entry = idle.removeLast();
+        lruReaders.remove(entry);
+        if (!entry.reader.isClosed()) {
+          reader = entry.reader;
+        }
+      }
+
+      if (null != idle && idle.isEmpty()) {
+        readerMap.remove(canonicalPath);
+      }
     }
 
-    if (null != reader && !reader.isClosed()) {
+    closeAll(toClose);
+
+    if (null != reader) {
       // Cache hit. return it.
       LOG.debug("Using cached reader for " + canonicalPath);
+      hits.incrementAndGet();
       return reader;
     }
 
     // Cache miss; open the file.
     LOG.debug("No cached reader available for " + canonicalPath);
+    misses.incrementAndGet();
     return LobFile.open(path, conf);
   }
 
   /**
-   * Return a reader back to the cache. If there's already a reader for
-   * this path, then the current reader is closed.
+   * Return a reader back to the cache. If the cache already holds as many
+   * readers for this path as it may, then the current reader is closed.
    * @param reader the opened reader. Any record-specific subreaders should be
    * closed.
    * @throws IOException if there's an error accessing the path's filesystem.
    */
   public void recycle(LobFile.Reader reader) throws IOException {
+    if (reader.isClosed()) {
+      return;
+    }
+
     Path canonicalPath = reader.getPath();
+    List<LobFile.Reader> toClose = new ArrayList<LobFile.Reader>();
 
-    // Check if the cache has a reader for this path already. If not, add this.
-    boolean cached = false;
     synchronized(this) {
-      if (readerMap.get(canonicalPath) == null) {
+      evictExpired(System.currentTimeMillis(), toClose);
+
+      LinkedList<IdleReader> idle = readerMap.get(canonicalPath);
+      if (null == idle) {
+        idle = new LinkedList<IdleReader>();
+        readerMap.put(canonicalPath, idle);
+      }
+
+      if (idle.size() >= maxReadersPerFile) {
+        LOG.debug("Enough readers already present for path: "
+            + canonicalPath + "; closing.");
+        toClose.add(reader);
+        evictions.incrementAndGet();
+      } else {
         LOG.debug("Caching reader for path: " + canonicalPath);
-        readerMap.put(canonicalPath, reader);
-        cached = true;
+        IdleReader entry = new IdleReader(reader,
+            System.currentTimeMillis());
+        idle.addLast(entry);
+        lruReaders.add(entry);
+      }
+
+      // Make room by closing the readers idle the longest.
+      while (lruReaders.size() > maxReaders) {
+        evict(lruReaders.iterator().next(), toClose);
       }
     }
 
-    if (!cached) {
-      LOG.debug("Reader already present for path: " + canonicalPath
-          + "; closing.");
-      reader.close();
+    closeAll(toClose);
+  }
+
+  /**
+   * Close all of the cached readers.
+   */
+  public void clear() throws IOException {
+    List<LobFile.Reader> toClose = new ArrayList<LobFile.Reader>();
+    synchronized(this) {
+      for (IdleReader entry : lruReaders) {
+        toClose.add(entry.reader);
+      }
+      lruReaders.clear();
+      readerMap.clear();
+    }
+
+    closeAll(toClose);
+  }
+
+  /**
+   * @return the number of calls to get() which returned a cached reader.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of calls to get() which opened a new reader.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * @return the number of readers closed because the cache was full, or
+   * because they were idle for too long.
+   */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * @return the number of idle readers in the cache.
+   */
+  public synchronized int size() {
+    return lruReaders.size();
+  }
+
+  /**
+   * Remove an idle reader from the cache, and add it to the readers to
+   * close.
+   */
+  private void evict(IdleReader entry, List<LobFile.Reader> toClose)
+      throws IOException {
+    lruReaders.remove(entry);
+
+    Path path = entry.reader.getPath();
+    LinkedList<IdleReader> idle = readerMap.get(path);
+    if (null != idle) {
+      idle.remove(entry);
+      if (idle.isEmpty()) {
+        readerMap.remove(path);
+      }
+    }
+
+    toClose.add(entry.reader);
+    evictions.incrementAndGet();
+  }
+
+  /**
+   * Evict the readers which have been idle for too long.
+   */
+  private void evictExpired(long now, List<LobFile.Reader> toClose)
+      throws IOException {
+    while (!lruReaders.isEmpty()) {
+      IdleReader oldest = lruReaders.iterator().next();
+      if (now - oldest.idleSince <= maxIdleMillis) {
+        break; // The rest were returned more recently.
+      }
+      evict(oldest, toClose);
+    }
+  }
+
+  private void closeAll(List<LobFile.Reader> readers) throws IOException {
+    for (LobFile.Reader r : readers) {
+      if (!r.isClosed()) {
+        r.close();
+      }
     }
   }
 
   @Override
   protected synchronized void finalize() throws Throwable {
-    for (LobFile.Reader r : readerMap.values()) {
-      r.close();
+    for (IdleReader entry : lruReaders) {
+      entry.reader.close();
     }
 
     super.finalize();
   }
 }
-
@@ -0,0 +1,670 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.lib;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Parses a UTF-8 encoded record directly from its bytes, without
+ * transcoding the record to a String first.
+ *
+ * This follows the same state machine (and therefore the same rules for
+ * field delimiters, record delimiters, enclosing and escape characters)
+ * as RecordParser. Instead of building a List of Strings, it records the
+ * start and end offset of each field into reusable int arrays. Fields are
+ * only materialized when requested via getString(), or are parsed straight
+ * from the bytes via getInt(), getLong() and getBigDecimal().
+ *
+ * Fields which contain no escape sequences are left in place in the input
+ * buffer. Fields which must be unescaped are copied into an internal
+ * scratch buffer which is reused between records.
+ *
+ * Byte-level scanning is only correct when all of the delimiter characters
+ * are 7-bit ASCII, since UTF-8 never uses such bytes within a multi-byte
+ * sequence. Use supports() to check a DelimiterSet before constructing a
+ * parser for it.
+ *
+ * Unlike RecordParser, an enclosed-by or escaped-by character of '\000'
+ * is treated as "not set", as documented in DelimiterSet.
+ *
+ * When neither an enclosing nor an escape character is set, fields are
+ * found by scanning eight bytes at a time for the delimiters ("SWAR"),
+ * rather than by running the state machine on every byte.
+ *
+ * This class is not synchronized. Multiple threads must use separate
+ * instances of ByteRecordParser.
+ *
+ * The fields returned by this parser are backed by the input buffer and
+ * by an internal buffer; both must remain unmodified until the fields
+ * have been read. The next call to parseRecord() invalidates all fields.
+ */
+public final class ByteRecordParser {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final int INITIAL_FIELD_CAPACITY = 16;
+
+  /** The maximum number of decimal digits which always fit in a long. */
+  private static final int MAX_LONG_DIGITS = 18;
+
+  // Constants for word-at-a-time delimiter scanning.
+  private static final int WORD_BYTES = 8;
+  private static final long LOW_BITS = 0x0101010101010101L;
+  private static final long HIGH_BITS = 0x8080808080808080L;
+
+  private static final int FIELD_START = 0;
+  private static final int ENCLOSED_FIELD = 1;
+  private static final int UNENCLOSED_FIELD = 2;
+  private static final int ENCLOSED_ESCAPE = 3;
+  private static final int ENCLOSED_EXPECT_DELIMITER = 4;
+  private static final int UNENCLOSED_ESCAPE = 5;
+
+  private final DelimiterSet delimiters;
+
+  private final byte fieldDelim;
+  private final byte recordDelim;
+  private final byte enclosingChar;
+  private final byte escapeChar;
+  private final boolean hasEncloser;
+  private final boolean hasEscape;
+  private final boolean enclosingRequired;
+
+  // If true, records are split with splitOnDelimiters() instead of the
+  // state machine.
+  private final boolean splitOnDelimitersOnly;
+
+  // fieldDelim and recordDelim repeated in every byte of a long.
+  private final long fieldDelimWord;
+  private final long recordDelimWord;
+
+  // A little-endian view of the most recent record buffer, used to read
+  // it a word at a time. Reused for as long as the caller reuses the
+  // same byte array (as Text does).
+  private ByteBuffer wordView;
+
+  // The record most recently passed to parseRecord().
+  private byte [] record;
+
+  // Holds the unescaped contents of fields that could not be left in place.
+  private byte [] scratch;
+  private int scratchLen;
+
+  // Per-field offsets. If inScratch[i] is true, the offsets refer to the
+  // scratch buffer; otherwise they refer to the record buffer.
+  private int [] starts;
+  private int [] ends;
+  private boolean [] inScratch;
+  private int fieldCount;
+
+  // State of the field currently being parsed.
+  private boolean fieldOpen;
+  private int curStart;
+  private int curEnd;
+  private boolean curInScratch;
+
+  // Result of the most recent successful call to parseDigits().
+  private long parsedLong;
+
+  public ByteRecordParser(final DelimiterSet delimitersIn) {
+    if (!supports(delimitersIn)) {
+      throw new IllegalArgumentException(
+          "ByteRecordParser requires 7-bit ASCII delimiters: " + delimitersIn);
+    }
+
+    this.delimiters = delimitersIn.copy();
+    this.fieldDelim = (byte) delimiters.getFieldsTerminatedBy();
+    this.recordDelim = (byte) delimiters.getLinesTerminatedBy();
+    this.enclosingChar = (byte) delimiters.getEnclosedBy();
+    this.escapeChar = (byte) delimiters.getEscapedBy();
+    this.hasEncloser = DelimiterSet.NULL_CHAR != delimiters.getEnclosedBy();
+    this.hasEscape = DelimiterSet.NULL_CHAR != delimiters.getEscapedBy();
+    this.enclosingRequired = delimiters.isEncloseRequired();
+    this.splitOnDelimitersOnly = !hasEncloser && !hasEscape
+        && !enclosingRequired;
+    this.fieldDelimWord = (fieldDelim & 0xFFL) * LOW_BITS;
+    this.recordDelimWord = (recordDelim & 0xFFL) * LOW_BITS;
+
+    this.scratch = new byte[0];
+    this.starts = new int[INITIAL_FIELD_CAPACITY];
+    this.ends = new int[INITIAL_FIELD_CAPACITY];
+    this.inScratch = new boolean[INITIAL_FIELD_CAPACITY];
+  }
+
+  /**
+   * @return true if the specified delimiters can be parsed at the byte
+   * level; i.e., if every delimiter character is 7-bit ASCII.
+   */
+  public static boolean supports(DelimiterSet delimiters) {
+    return isAscii(delimiters.getFieldsTerminatedBy())
+        && isAscii(delimiters.getLinesTerminatedBy())
+        && isAscii(delimiters.getEnclosedBy())
+        && isAscii(delimiters.getEscapedBy());
+  }
+
+  private static boolean isAscii(char c) {
+    return c < 0x80;
+  }
+
+  /**
+   * Encode a String as UTF-8. Used by generated code to prepare constants
+   * (e.g., null representations) to compare against fields with
+   * fieldEquals().
+   */
+  public static byte [] toUtf8(String s) {
+    return s.getBytes(UTF8);
+  }
+
+  /**
+   * Parse the fields of the record held in a Text object.
+   * @return the number of fields in the record.
+   */
+  public int parseRecord(Text input) throws RecordParser.ParseError {
+    if (null == input) {
+      throw new RecordParser.ParseError("null input string");
+    }
+
+    return parseRecord(input.getBytes(), 0, input.getLength());
+  }
+
+  /**
+   * Parse the fields of the record held in buf[off..off+len).
+   * @return the number of fields in the record.
+   */
+  // CHECKSTYLE:OFF
+  public int parseRecord(byte [] buf, int off, int len)
+      throws RecordParser.ParseError {
+    if (null == buf) {
+      throw new RecordParser.ParseError("null input string");
+    }
+
+    this.record = buf;
+    this.scratchLen = 0;
+    this.fieldCount = 0;
+    this.fieldOpen = false;
+
+    if (splitOnDelimitersOnly) {
+      splitOnDelimiters(buf, off, off + len);
+      return fieldCount;
+    }
+
+    // See RecordParser.parseRecord(CharBuffer) for a description of the
+    // state machine implemented here.
+
+    byte curByte = 0;
+    boolean sawAny = false;
+    int state = FIELD_START;
+    int end = off + len;
+
+    scan:
+    for (int pos = off; pos < end; pos++) {
+      curByte = buf[pos];
+      sawAny = true;
+      switch (state) {
+      case FIELD_START:
+        // ready to start processing a new field.
+        if (fieldOpen) {
+          // We finished processing a previous field.
+          finishField();
+        }
+
+        beginField(pos + 1);
+        if (hasEncloser && enclosingChar == curByte) {
+          // got an opening encloser.
+          state = ENCLOSED_FIELD;
+        } else if (hasEscape && escapeChar == curByte) {
+          state = UNENCLOSED_ESCAPE;
+        } else if (fieldDelim == curByte) {
+          // we have a zero-length field. This is a no-op.
+          continue;
+        } else if (recordDelim == curByte) {
+          // we have a zero-length field, that ends processing.
+          break scan;
+        } else {
+          // current byte is part of the field.
+          state = UNENCLOSED_FIELD;
+          curStart = pos;
+          curEnd = pos + 1;
+
+          if (enclosingRequired) {
+            throw new RecordParser.ParseError(
+                "Opening field-encloser expected at position " + (pos - off));
+          }
+        }
+
+        break;
+
+      case ENCLOSED_FIELD:
+        if (hasEscape && escapeChar == curByte) {
+          // the next byte is escaped. Treat it literally.
+          state = ENCLOSED_ESCAPE;
+        } else if (enclosingChar == curByte) {
+          // we're at the end of the enclosing field. Expect an EOF or EOR.
+          state = ENCLOSED_EXPECT_DELIMITER;
+        } else {
+          // this is a regular byte, or an EOF / EOR inside an encloser.
+          append(buf, pos);
+        }
+
+        break;
+
+      case UNENCLOSED_FIELD:
+        if (hasEscape && escapeChar == curByte) {
+          // the next byte is escaped. Treat it literally.
+          state = UNENCLOSED_ESCAPE;
+        } else if (fieldDelim == curByte) {
+          // we're at the end of this field; may be the start of another one.
+          state = FIELD_START;
+        } else if (recordDelim == curByte) {
+          break scan; // terminate processing immediately.
+        } else {
+          append(buf, pos);
+        }
+
+        break;
+
+      case ENCLOSED_ESCAPE:
+        append(buf, pos);
+        state = ENCLOSED_FIELD;
+        break;
+
+      case ENCLOSED_EXPECT_DELIMITER:
+        if (fieldDelim == curByte) {
+          state = FIELD_START;
+        } else if (recordDelim == curByte) {
+          break scan;
+        } else {
+          throw new RecordParser.ParseError("Expected delimiter at position "
+              + (pos - off));
+        }
+
+        break;
+
+      case UNENCLOSED_ESCAPE:
+        append(buf, pos);
+        state = UNENCLOSED_FIELD;
+        break;
+
+      default:
+        throw new RecordParser.ParseError("Unexpected parser state: " + state);
+      }
+    }
+
+    if (state == FIELD_START && sawAny && curByte == fieldDelim
+        && fieldOpen) {
+      // The last legal byte was a field delimiter; record the field before
+      // it along with the trailing zero-length field.
+      finishField();
+      beginField(end);
+    }
+
+    if (fieldOpen) {
+      finishField();
+    }
+
+    return fieldCount;
+  }
+  // CHECKSTYLE:ON
+
+  /**
+   * Split buf[off..end) on field delimiters, up to the first record
+   * delimiter. This is equivalent to the state machine when there is no
+   * enclosing or escape character.
+   */
+  private void splitOnDelimiters(byte [] buf, int off, int end) {
+    if (off == end) {
+      return;
+    }
+
+    int start = off;
+    while (true) {
+      int pos = scanDelimiters(buf, start, end);
+      curStart = start;
+      curEnd = pos;
+      curInScratch = false;
+      finishField();
+
+      if (pos == end || buf[pos] != fieldDelim) {
+        // End of input, or the record delimiter.
+        return;
+      }
+
+      start = pos + 1;
+    }
+  }
+
+  /**
+   * @return the position of the first field or record delimiter in
+   * buf[pos..end), or 'end' if there is none.
+   */
+  private int scanDelimiters(byte [] buf, int pos, int end) {
+    // Short fields are common (e.g., numbers); check the first word's
+    // worth of bytes individually before switching to whole words.
+    int limit = Math.min(end, pos + WORD_BYTES);
+    for (; pos < limit; pos++) {
+      byte b = buf[pos];
+      if (b == fieldDelim || b == recordDelim) {
+        return pos;
+      }
+    }
+
+    if (pos + WORD_BYTES <= end) {
+      ByteBuffer words = getWordView(buf);
+      do {
+        long word = words.getLong(pos);
+        long matches = zeroBytes(word ^ fieldDelimWord)
+            | zeroBytes(word ^ recordDelimWord);
+        if (matches != 0) {
+          // The lowest flagged byte is always a true match.
+          return pos + (Long.numberOfTrailingZeros(matches) >>> 3);
+        }
+        pos += WORD_BYTES;
+      } while (pos + WORD_BYTES <= end);
+    }
+
+    for (; pos < end; pos++) {
+      byte b = buf[pos];
+      if (b == fieldDelim || b == recordDelim) {
+        return pos;
+      }
+    }
+
+    return end;
+  }
+
+  /**
+   * @return a word with the high bit set in the lowest byte of 'word' that
+   * is zero. Higher bytes may also be flagged spuriously, due to borrows.
+   */
+  private static long zeroBytes(long word) {
+    return (word - LOW_BITS) & ~word & HIGH_BITS;
+  }
+
+  private ByteBuffer getWordView(byte [] buf) {
+    if (null == wordView || wordView.array() != buf) {
+      wordView = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return wordView;
+  }
+
+  /**
+   * Start a new, empty field whose content would begin at 'pos'.
+   */
+  private void beginField(int pos) {
+    fieldOpen = true;
+    curStart = pos;
+    curEnd = pos;
+    curInScratch = false;
+  }
+
+  /**
+   * Add the byte at buf[pos] to the current field. Bytes which directly
+   * follow the field's content so far are kept in place; otherwise (i.e.,
+   * after an escape character or encloser was skipped) the field is moved
+   * to the scratch buffer.
+   */
+  private void append(byte [] buf, int pos) {
+    if (!curInScratch) {
+      if (pos == curEnd) {
+        curEnd++;
+        return;
+      }
+
+      // Move the field so far into the scratch buffer.
+      int curLen = curEnd - curStart;
+      ensureScratch(curLen + 1);
+      System.arraycopy(buf, curStart, scratch, scratchLen, curLen);
+      curStart = scratchLen;
+      curEnd = scratchLen + curLen;
+      scratchLen = curEnd;
+      curInScratch = true;
+    }
+
+    ensureScratch(1);
+    scratch[scratchLen++] = buf[pos];
+    curEnd = scratchLen;
+  }
+
+  private void ensureScratch(int extra) {
+    int needed = scratchLen + extra;
+    if (needed > scratch.length) {
+      byte [] newScratch = new byte[Math.max(needed, scratch.length * 2)];
+      System.arraycopy(scratch, 0, newScratch, 0, scratchLen);
+      scratch = newScratch;
+    }
+  }
+
+  private void finishField() {
+    if (fieldCount == starts.length) {
+      int newCapacity = starts.length * 2;
+      int [] newStarts = new int[newCapacity];
+      int [] newEnds = new int[newCapacity];
+      boolean [] newInScratch = new boolean[newCapacity];
+      System.arraycopy(starts, 0, newStarts, 0, fieldCount);
+      System.arraycopy(ends, 0, newEnds, 0, fieldCount);
+      System.arraycopy(inScratch, 0, newInScratch, 0, fieldCount);
+      starts = newStarts;
+      ends = newEnds;
+      inScratch = newInScratch;
+    }
+
+    starts[fieldCount] = curStart;
+    ends[fieldCount] = curEnd;
+    inScratch[fieldCount] = curInScratch;
+    fieldCount++;
+    fieldOpen = false;
+  }
+
+  private void checkField(int field) {
+    if (field < 0 || field >= fieldCount) {
+      throw new NoSuchElementException("No field at position " + field
+          + "; record has " + fieldCount + " fields");
+    }
+  }
+
+  /**
+   * @return the number of fields parsed by the last call to parseRecord().
+   */
+  public int getFieldCount() {
+    return fieldCount;
+  }
+
+  /**
+   * @return the buffer holding the contents of the specified field.
+   */
+  public byte [] getFieldBuffer(int field) {
+    checkField(field);
+    return inScratch[field] ? scratch : record;
+  }
+
+  /**
+   * @return the offset of the specified field within getFieldBuffer().
+   */
+  public int getFieldStart(int field) {
+    checkField(field);
+    return starts[field];
+  }
+
+  /**
+   * @return the length in bytes of the specified field.
+   */
+  public int getFieldLength(int field) {
+    checkField(field);
+    return ends[field] - starts[field];
+  }
+
+  /**
+   * @return true if the specified field is byte-for-byte identical to 'val'.
+   */
+  public boolean fieldEquals(int field, byte [] val) {
+    checkField(field);
+    int start = starts[field];
+    int len = ends[field] - start;
+    if (len != val.length) {
+      return false;
+    }
+
+    byte [] buf = inScratch[field] ? scratch : record;
+    for (int i = 0; i < len; i++) {
+      if (buf[start + i] != val[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * @return the specified field decoded as a String.
+   */
+  public String getString(int field) {
+    checkField(field);
+    byte [] buf = inScratch[field] ? scratch : record;
+    return new String(buf, starts[field], ends[field] - starts[field], UTF8);
+  }
+
+  /**
+   * @return the specified field parsed as an int.
+   * @throws NumberFormatException if the field is not a valid int.
+   */
+  public int getInt(int field) {
+    checkField(field);
+    if (parseDigits(field) && parsedLong >= Integer.MIN_VALUE
+        && parsedLong <= Integer.MAX_VALUE) {
+      return (int) parsedLong;
+    }
+
+    // Let Integer report (or handle) anything unusual.
+    return Integer.parseInt(getString(field));
+  }
+
+  /**
+   * @return the specified field parsed as a long.
+   * @throws NumberFormatException if the field is not a valid long.
+   */
+  public long getLong(int field) {
+    checkField(field);
+    if (parseDigits(field)) {
+      return parsedLong;
+    }
+
+    return Long.parseLong(getString(field));
+  }
+
+  /**
+   * @return the specified field parsed as a BigDecimal.
+   * @throws NumberFormatException if the field is not a valid BigDecimal.
+   */
+  public BigDecimal getBigDecimal(int field) {
+    checkField(field);
+    byte [] buf = inScratch[field] ? scratch : record;
+    int pos = starts[field];
+    int end = ends[field];
+
+    // Fast path for [-]digits[.digits] with an unscaled value that fits
+    // in a long. Everything else goes through the BigDecimal constructor.
+    boolean negative = false;
+    if (pos < end && buf[pos] == '-') {
+      negative = true;
+      pos++;
+    }
+
+    long unscaled = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean sawPoint = false;
+    boolean fast = pos < end;
+    for (; fast && pos < end; pos++) {
+      int b = buf[pos];
+      if (b >= '0' && b <= '9') {
+        if (++digits > MAX_LONG_DIGITS) {
+          fast = false;
+        }
+        unscaled = unscaled * 10 + (b - '0');
+        if (sawPoint) {
+          scale++;
+        }
+      } else if (b == '.' && !sawPoint) {
+        sawPoint = true;
+      } else {
+        fast = false;
+      }
+    }
+
+    if (fast && digits > 0) {
+      return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    return new BigDecimal(getString(field));
+  }
+
+  /**
+   * Parse a field consisting of an optional '-' followed by up to
+   * MAX_LONG_DIGITS ASCII digits into parsedLong.
+   * @return false if the field is not of that form.
+   */
+  private boolean parseDigits(int field) {
+    byte [] buf = inScratch[field] ? scratch : record;
+    int pos = starts[field];
+    int end = ends[field];
+
+    boolean negative = false;
+    if (pos < end && buf[pos] == '-') {
+      negative = true;
+      pos++;
+    }
+
+    if (pos == end || end - pos > MAX_LONG_DIGITS) {
+      return false;
+    }
+
+    long val = 0;
+    for (; pos < end; pos++) {
+      int digit = buf[pos] - '0';
+      if (digit < 0 || digit > 9) {
+        return false;
+      }
+      val = val * 10 + digit;
+    }
+
+    parsedLong = negative ? -val : val;
+    return true;
+  }
+
+  public boolean isEnclosingRequired() {
+    return enclosingRequired;
+  }
+
+  @Override
+  public String toString() {
+    return "ByteRecordParser[" + delimiters.toString() + "]";
+  }
+
+  @Override
+  public int hashCode() {
+    return this.delimiters.hashCode();
+  }
+}
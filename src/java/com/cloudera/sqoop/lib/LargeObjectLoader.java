@@ -31,6 +31,8 @@ import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -56,6 +58,18 @@ public class LargeObjectLoader implements Closeable {
   public static final String MAX_INLINE_LOB_LEN_KEY =
       "sqoop.inline.lob.length.max";
 
+  // The codec with which to compress the records of external LobFiles.
+  public static final String LOB_COMPRESSION_CODEC_KEY =
+      "sqoop.lob.compression.codec";
+
+  // Size of the buffers used to copy LOB data into LobFiles.
+  public static final String TRANSFER_BUFFER_SIZE_KEY =
+      "sqoop.lob.transfer.buffer.size";
+  public static final int DEFAULT_TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+  // The longest array we can safely allocate for inline LOB data.
+  private static final int MAX_INLINE_ARRAY_LEN = Integer.MAX_VALUE - 16;
+
   private Configuration conf;
   private Path workPath;
   private FileSystem fs;
@@ -64,6 +78,12 @@ public class LargeObjectLoader implements Closeable {
   private LobFile.Writer curBlobWriter;
   private LobFile.Writer curClobWriter;
 
+  // Buffers reused to read every LOB handled by this loader. They never
+  // grow; LOBs larger than them are read into further chunks which are
+  // dropped once each LOB has been handled.
+  private byte [] byteBuf;
+  private char [] charBuf;
+
   // Counter that is used with the current task attempt id to
   // generate unique LOB file names.
   private long nextLobFileId = 0;
@@ -132,7 +152,8 @@ public class LargeObjectLoader implements Closeable {
    */
   private LobFile.Writer getBlobWriter() throws IOException {
     if (null == this.curBlobWriter) {
-      this.curBlobWriter = LobFile.create(getNextLobFilePath(), conf, false);
+      this.curBlobWriter = LobFile.create(getNextLobFilePath(), conf, false,
+          conf.get(LOB_COMPRESSION_CODEC_KEY));
     }
 
     return this.curBlobWriter;
@@ -143,7 +164,8 @@ public class LargeObjectLoader implements Closeable {
    */
   private LobFile.Writer getClobWriter() throws IOException {
     if (null == this.curClobWriter) {
-      this.curClobWriter = LobFile.create(getNextLobFilePath(), conf, true);
+      this.curClobWriter = LobFile.create(getNextLobFilePath(), conf, true,
+          conf.get(LOB_COMPRESSION_CODEC_KEY));
     }
 
     return this.curClobWriter;
@@ -172,17 +194,166 @@ public class LargeObjectLoader implements Closeable {
     return writerPathStr;
   }
 
+  /**
+   * @return the buffer used to transfer BLOB data, allocating it if needed.
+   */
+  private byte [] getByteBuffer() {
+    if (null == this.byteBuf) {
+      this.byteBuf = new byte[conf.getInt(TRANSFER_BUFFER_SIZE_KEY,
+          DEFAULT_TRANSFER_BUFFER_SIZE)];
+    }
+
+    return this.byteBuf;
+  }
+
+  /**
+   * @return the buffer used to transfer CLOB data, allocating it if needed.
+   */
+  private char [] getCharBuffer() {
+    if (null == this.charBuf) {
+      this.charBuf = new char[conf.getInt(TRANSFER_BUFFER_SIZE_KEY,
+          DEFAULT_TRANSFER_BUFFER_SIZE)];
+    }
+
+    return this.charBuf;
+  }
+
+  /**
+   * @return the largest LOB to store inline, in bytes or characters.
+   */
+  private int getMaxInlineLobLen() {
+    long maxInlineLobLen = conf.getLong(
+        MAX_INLINE_LOB_LEN_KEY,
+        DEFAULT_MAX_LOB_LENGTH);
+
+    // The inline data must fit in an array, with room for one more
+    // element to tell whether there is more data.
+    return (int) Math.max(0, Math.min(maxInlineLobLen, MAX_INLINE_ARRAY_LEN));
+  }
+
+  /**
+   * Reads from the provided InputStream into a list of chunks, each the
+   * size of the transfer buffer, until either the stream ends or more than
+   * maxLen bytes have been read. The first chunk is byteBuf itself, so a
+   * LOB that fits the transfer buffer needs no further memory. Larger LOBs
+   * are never copied into ever-larger buffers, and the chunks beyond the
+   * first can be freed as soon as the LOB has been handled.
+   * @param input data source
+   * @param maxLen the number of bytes beyond which to stop reading.
+   * @param chunks the list to add the chunks read to.
+   * @return the number of bytes read; this is maxLen + 1 if the stream
+   * holds more than maxLen bytes.
+   * @throws IOException if an I/O error occurs while reading.
+   */
+  private int readHead(InputStream input, int maxLen, List<byte []> chunks)
+      throws IOException {
+    int limit = maxLen + 1;
+    int len = 0;
+    byte [] buf = getByteBuffer();
+    chunks.add(buf);
+    int chunkLen = 0;
+
+    while (len < limit) {
+      if (chunkLen == buf.length) {
+        buf = new byte[Math.min(buf.length, limit - len)];
+        chunks.add(buf);
+        chunkLen = 0;
+      }
+
+      int bytesRead = input.read(buf, chunkLen, Math.min(buf.length - chunkLen,
+          limit - len));
+      if (-1 == bytesRead) {
+        break; // no more stream to read.
+      }
+      chunkLen += bytesRead;
+      len += bytesRead;
+    }
+
+    return len;
+  }
+
+  /**
+   * Reads from the provided Reader into a list of chunks, each the size of
+   * the transfer buffer, until either the Reader ends or more than maxLen
+   * characters have been read. As with readHead(InputStream, ...), the
+   * first chunk is charBuf itself.
+   * @param reader data source
+   * @param maxLen the number of characters beyond which to stop reading.
+   * @param chunks the list to add the chunks read to.
+   * @return the number of characters read; this is maxLen + 1 if the
+   * Reader holds more than maxLen characters.
+   * @throws IOException if an I/O error occurs while reading.
+   */
+  private int readHead(Reader reader, int maxLen, List<char []> chunks)
+      throws IOException {
+    int limit = maxLen + 1;
+    int len = 0;
+    char [] buf = getCharBuffer();
+    chunks.add(buf);
+    int chunkLen = 0;
+
+    while (len < limit) {
+      if (chunkLen == buf.length) {
+        buf = new char[Math.min(buf.length, limit - len)];
+        chunks.add(buf);
+        chunkLen = 0;
+      }
+
+      int charsRead = reader.read(buf, chunkLen, Math.min(buf.length - chunkLen,
+          limit - len));
+      if (-1 == charsRead) {
+        break; // no more stream to read.
+      }
+      chunkLen += charsRead;
+      len += charsRead;
+    }
+
+    return len;
+  }
+
+  /**
+   * Copies the first len bytes held in a list of chunks into a single
+   * array of exactly that length, and empties the list.
+   */
+  private static byte [] joinByteChunks(List<byte []> chunks, int len) {
+    byte [] data = new byte[len];
+    int pos = 0;
+    for (byte [] chunk : chunks) {
+      int n = Math.min(chunk.length, len - pos);
+      System.arraycopy(chunk, 0, data, pos, n);
+      pos += n;
+    }
+    chunks.clear();
+    return data;
+  }
+
+  /**
+   * Copies the first len characters held in a list of chunks into a
+   * single array of exactly that length, and empties the list.
+   */
+  private static char [] joinCharChunks(List<char []> chunks, int len) {
+    char [] data = new char[len];
+    int pos = 0;
+    for (char [] chunk : chunks) {
+      int n = Math.min(chunk.length, len - pos);
+      System.arraycopy(chunk, 0, data, pos, n);
+      pos += n;
+    }
+    chunks.clear();
+    return data;
+  }
+
   /**
    * Copies all character data from the provided Reader to the provided
    * Writer. Does not close handles when it's done.
    * @param reader data source
    * @param writer data sink
+   * @return the number of characters copied.
    * @throws IOException if an I/O error occurs either reading or writing.
    */
-  private void copyAll(Reader reader, Writer writer) throws IOException {
-    int bufferSize = conf.getInt("io.file.buffer.size",
-        4096);
-    char [] buf = new char[bufferSize];
+  private long copyAll(Reader reader, Writer writer) throws IOException {
+    char [] buf = getCharBuffer();
+    long copied = 0;
 
     while (true) {
       int charsRead = reader.read(buf);
@@ -190,7 +361,9 @@ public class LargeObjectLoader implements Closeable {
         break; // no more stream to read.
       }
       writer.write(buf, 0, charsRead);
+      copied += charsRead;
     }
+    return copied;
   }
 
   /**
@@ -198,27 +371,35 @@ public class LargeObjectLoader implements Closeable {
    * OutputStream. Does not close handles when it's done.
    * @param input data source
    * @param output data sink
+   * @return the number of bytes copied.
    * @throws IOException if an I/O error occurs either reading or writing.
    */
-  private void copyAll(InputStream input, OutputStream output)
+  private long copyAll(InputStream input, OutputStream output)
       throws IOException {
-    int bufferSize = conf.getInt("io.file.buffer.size",
-        4096);
-    byte [] buf = new byte[bufferSize];
+    byte [] buf = getByteBuffer();
+    long copied = 0;
 
     while (true) {
-      int bytesRead = input.read(buf, 0, bufferSize);
+      int bytesRead = input.read(buf);
       if (-1 == bytesRead) {
         break; // no more stream to read.
       }
       output.write(buf, 0, bytesRead);
+      copied += bytesRead;
     }
+    return copied;
   }
 
   /**
    * Actually read a BlobRef instance from the ResultSet and materialize
    * the data either inline or to a file.
    *
+   * The BLOB is read as a stream. Whether it is small enough to store
+   * inline is decided by reading up to the inline limit from the stream,
+   * rather than by calling Blob.length(), which some drivers can only
+   * answer by fetching the whole BLOB. Larger BLOBs are streamed on into
+   * a LobFile, and their length is the number of bytes streamed.
+   *
    * @param colNum the column of the ResultSet's current row to read.
    * @param r the ResultSet to read from.
    * @return a BlobRef encapsulating the data in this field.
@@ -228,48 +409,59 @@ public class LargeObjectLoader implements Closeable {
   public BlobRef readBlobRef(int colNum, ResultSet r)
       throws IOException, InterruptedException, SQLException {
 
-    long maxInlineLobLen = conf.getLong(
-        MAX_INLINE_LOB_LEN_KEY,
-        DEFAULT_MAX_LOB_LENGTH);
+    int maxInlineLobLen = getMaxInlineLobLen();
 
     Blob b = r.getBlob(colNum);
     if (null == b) {
       return null;
-    } else if (b.length() > maxInlineLobLen) {
-      // Deserialize very large BLOBs into separate files.
-      long len = b.length();
+    }
+
+    InputStream is = b.getBinaryStream();
+    try {
+      List<byte []> chunks = new ArrayList<byte []>();
+      int headLen = readHead(is, maxInlineLobLen, chunks);
+      if (headLen <= maxInlineLobLen) {
+        return new BlobRef(joinByteChunks(chunks, headLen));
+      }
+
+      // Deserialize very large BLOBs into separate files. The length is
+      // counted as the BLOB is streamed, and given to the writer once the
+      // record is finished.
+      long len = headLen;
       LobFile.Writer lobWriter = getBlobWriter();
 
-      long recordOffset = lobWriter.tell();
-      InputStream is = null;
-      OutputStream os = lobWriter.writeBlobRecord(len);
+      OutputStream os = lobWriter.writeBlobRecord(headLen);
       try {
-        is = b.getBinaryStream();
-        copyAll(is, os);
-      } finally {
-        if (null != os) {
-          os.close();
-        }
-
-        if (null != is) {
-          is.close();
+        int remaining = headLen;
+        for (byte [] chunk : chunks) {
+          int n = Math.min(chunk.length, remaining);
+          os.write(chunk, 0, n);
+          remaining -= n;
         }
+        chunks.clear();
+        len += copyAll(is, os);
+      } finally {
+        os.close();
 
         // Mark the record as finished.
-        lobWriter.finishRecord();
+        lobWriter.finishRecord(len);
       }
 
-      return new BlobRef(getRelativePath(curBlobWriter), recordOffset, len);
-    } else {
-      // This is a 1-based array.
-      return new BlobRef(b.getBytes(1, (int) b.length()));
+      // An identical BLOB may already be in the file; if so, the record
+      // offset refers to that copy.
+      return new BlobRef(getRelativePath(lobWriter),
+          lobWriter.getRecordOffset(), len);
+    } finally {
+      is.close();
     }
   }
 
 
   /**
    * Actually read a ClobRef instance from the ResultSet and materialize
-   * the data either inline or to a file.
+   * the data either inline or to a file. As with readBlobRef(), the CLOB
+   * is read as a stream, and the length of a CLOB stored in a file is the
+   * number of characters streamed.
    *
    * @param colNum the column of the ResultSet's current row to read.
    * @param r the ResultSet to read from.
@@ -280,41 +472,49 @@ public class LargeObjectLoader implements Closeable {
   public ClobRef readClobRef(int colNum, ResultSet r)
       throws IOException, InterruptedException, SQLException {
 
-    long maxInlineLobLen = conf.getLong(
-        MAX_INLINE_LOB_LEN_KEY,
-        DEFAULT_MAX_LOB_LENGTH);
+    int maxInlineLobLen = getMaxInlineLobLen();
 
     Clob c = r.getClob(colNum);
     if (null == c) {
       return null;
-    } else if (c.length() > maxInlineLobLen) {
+    }
+
+    Reader reader = c.getCharacterStream();
+    try {
+      List<char []> chunks = new ArrayList<char []>();
+      int headLen = readHead(reader, maxInlineLobLen, chunks);
+      if (headLen <= maxInlineLobLen) {
+        if (1 == chunks.size()) {
+          return new ClobRef(new String(charBuf, 0, headLen));
+        }
+        return new ClobRef(new String(joinCharChunks(chunks, headLen)));
+      }
+
       // Deserialize large CLOB into separate file.
-      long len = c.length();
+      long len = headLen;
       LobFile.Writer lobWriter = getClobWriter();
 
-      long recordOffset = lobWriter.tell();
-      Reader reader = null;
-      Writer w = lobWriter.writeClobRecord(len);
+      Writer w = lobWriter.writeClobRecord(headLen);
       try {
-        reader = c.getCharacterStream();
-        copyAll(reader, w);
-      } finally {
-        if (null != w) {
-          w.close();
-        }
-
-        if (null != reader) {
-          reader.close();
+        int remaining = headLen;
+        for (char [] chunk : chunks) {
+          int n = Math.min(chunk.length, remaining);
+          w.write(chunk, 0, n);
+          remaining -= n;
         }
+        chunks.clear();
+        len += copyAll(reader, w);
+      } finally {
+        w.close();
 
         // Mark the record as finished.
-        lobWriter.finishRecord();
+        lobWriter.finishRecord(len);
       }
 
-      return new ClobRef(getRelativePath(lobWriter), recordOffset, len);
-    } else {
-      // This is a 1-based array.
-      return new ClobRef(c.getSubString(1, (int) c.length()));
+      return new ClobRef(getRelativePath(lobWriter),
+          lobWriter.getRecordOffset(), len);
+    } finally {
+      reader.close();
     }
   }
 }
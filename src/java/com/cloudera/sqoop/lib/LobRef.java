@@ -141,6 +141,29 @@ public abstract class LobRef<DATATYPE, CONTAINERTYPE, ACCESSORTYPE>
     return fileName != null;
   }
 
+  /**
+   * @return the path of the LobFile holding an external LOB, relative to
+   * the rest of the dataset; null if the LOB is materialized inline.
+   */
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * @return the offset of an external LOB's record in its LobFile.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return the length of an external LOB, in bytes for a BLOB or
+   * characters for a CLOB.
+   */
+  public long getLength() {
+    return length;
+  }
+
   /**
    * Convenience method to access #getDataStream(Configuration, Path)
    * from within a map task that read this LobRef from a file-based
@@ -0,0 +1,328 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.lib;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Formats the fields of a record as delimited UTF-8 text into a reusable
+ * byte buffer. This is the allocation-free counterpart to building a
+ * String with FieldFormatter.escapeAndEnclose() for each field and then
+ * encoding the result into a Text.
+ *
+ * Fields are escaped and enclosed exactly as escapeAndEnclose() would do
+ * it. If the delimiter characters overlap in ways that make that
+ * ordering-sensitive (e.g., the escape character is also the field
+ * delimiter), fields are handed to escapeAndEnclose() instead.
+ *
+ * Usage: call reset(), then appendField() for each field (the field
+ * delimiter is inserted automatically between fields), optionally
+ * appendRecordDelim(), and finally writeTo() to copy the record into a
+ * Text.
+ *
+ * This class is not synchronized. Multiple threads must use separate
+ * instances of RecordFormatter.
+ */
+public final class RecordFormatter {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  // Written in place of an unpaired surrogate, as Text.encode() does.
+  private static final byte REPLACEMENT_BYTE = (byte) '?';
+
+  private final DelimiterSet delimiters;
+
+  private final char fieldDelim;
+  private final char recordDelim;
+  private final char enclose;
+  private final char escape;
+  private final boolean escapingLegal;
+  private final boolean canEnclose;
+  private final boolean encloseRequired;
+
+  // True if the delimiter characters are all distinct, so escaping can
+  // be done one character at a time.
+  private final boolean distinctDelims;
+
+  // True if numbers can be written without any escaping.
+  private final boolean numbersAreSafe;
+
+  private byte [] buf;
+  private int len;
+  private boolean firstField;
+
+  public RecordFormatter(final DelimiterSet delimitersIn) {
+    this.delimiters = delimitersIn;
+    this.fieldDelim = delimitersIn.getFieldsTerminatedBy();
+    this.recordDelim = delimitersIn.getLinesTerminatedBy();
+    this.enclose = delimitersIn.getEnclosedBy();
+    this.escape = delimitersIn.getEscapedBy();
+    this.escapingLegal = DelimiterSet.NULL_CHAR != escape;
+    this.canEnclose = DelimiterSet.NULL_CHAR != enclose;
+    this.encloseRequired = delimitersIn.isEncloseRequired();
+
+    boolean distinct = fieldDelim != recordDelim;
+    if (escapingLegal) {
+      distinct &= escape != fieldDelim && escape != recordDelim
+          && escape != enclose;
+    }
+    if (canEnclose) {
+      distinct &= enclose != fieldDelim && enclose != recordDelim;
+    }
+    this.distinctDelims = distinct;
+    this.numbersAreSafe = distinct && !isNumberChar(fieldDelim)
+        && !isNumberChar(recordDelim) && !isNumberChar(escape)
+        && !isNumberChar(enclose);
+
+    this.buf = new byte[INITIAL_CAPACITY];
+    reset();
+  }
+
+  private static boolean isNumberChar(char c) {
+    return (c >= '0' && c <= '9') || c == '-';
+  }
+
+  /**
+   * @return true if this formatter writes with the specified delimiters.
+   */
+  public boolean uses(DelimiterSet other) {
+    return delimiters == other || delimiters.equals(other);
+  }
+
+  /**
+   * Discard any formatted data and prepare to format a new record.
+   */
+  public void reset() {
+    len = 0;
+    firstField = true;
+  }
+
+  /**
+   * Append the formatted record to 'out'.
+   */
+  public void writeTo(Text out) {
+    out.append(buf, 0, len);
+  }
+
+  /**
+   * @return the number of bytes formatted since the last reset().
+   */
+  public int getLength() {
+    return len;
+  }
+
+  private void startField() {
+    if (firstField) {
+      firstField = false;
+    } else {
+      appendChar(fieldDelim);
+    }
+  }
+
+  /**
+   * Append the end-of-record delimiter.
+   */
+  public void appendRecordDelim() {
+    appendChar(recordDelim);
+  }
+
+  /**
+   * Append a field holding the specified string, escaped and enclosed
+   * according to the delimiters.
+   */
+  public void appendField(String str) {
+    if (!distinctDelims) {
+      appendFormatted(FieldFormatter.escapeAndEnclose(str, delimiters));
+      return;
+    }
+
+    startField();
+
+    int strLen = str.length();
+    if (!canEnclose) {
+      for (int i = 0; i < strLen; i++) {
+        char c = str.charAt(i);
+        if (escapingLegal
+            && (c == escape || c == fieldDelim || c == recordDelim)) {
+          appendChar(escape);
+        }
+        appendChar(c, str, i);
+        if (Character.isHighSurrogate(c) && isPair(str, i)) {
+          i++;
+        }
+      }
+      return;
+    }
+
+    boolean doEnclose = encloseRequired;
+    for (int i = 0; i < strLen && !doEnclose; i++) {
+      char c = str.charAt(i);
+      doEnclose = c == fieldDelim || c == recordDelim;
+    }
+
+    if (doEnclose) {
+      appendChar(enclose);
+    }
+
+    for (int i = 0; i < strLen; i++) {
+      char c = str.charAt(i);
+      if (escapingLegal && (c == escape || c == enclose)) {
+        appendChar(escape);
+      }
+      appendChar(c, str, i);
+      if (Character.isHighSurrogate(c) && isPair(str, i)) {
+        i++;
+      }
+    }
+
+    if (doEnclose) {
+      appendChar(enclose);
+    }
+  }
+
+  /**
+   * Append a field holding the decimal representation of 'val'.
+   */
+  public void appendField(long val) {
+    if (!numbersAreSafe) {
+      appendField(Long.toString(val));
+      return;
+    }
+
+    startField();
+
+    boolean doEnclose = encloseRequired && canEnclose;
+    if (doEnclose) {
+      appendChar(enclose);
+    }
+
+    if (val == Long.MIN_VALUE) {
+      // Cannot be negated.
+      appendAscii(Long.toString(val));
+    } else {
+      if (val < 0) {
+        ensureCapacity(1);
+        buf[len++] = (byte) '-';
+        val = -val;
+      }
+
+      int digits = 1;
+      for (long v = val / 10; v != 0; v /= 10) {
+        digits++;
+      }
+
+      ensureCapacity(digits);
+      int pos = len + digits;
+      do {
+        buf[--pos] = (byte) ('0' + (int) (val % 10));
+        val /= 10;
+      } while (val != 0);
+      len += digits;
+    }
+
+    if (doEnclose) {
+      appendChar(enclose);
+    }
+  }
+
+  /**
+   * Append a field whose contents have already been escaped and enclosed
+   * (e.g., by FieldFormatter).
+   */
+  public void appendFormatted(String formatted) {
+    startField();
+    int strLen = formatted.length();
+    for (int i = 0; i < strLen; i++) {
+      char c = formatted.charAt(i);
+      appendChar(c, formatted, i);
+      if (Character.isHighSurrogate(c) && isPair(formatted, i)) {
+        i++;
+      }
+    }
+  }
+
+  private void appendAscii(String s) {
+    int sLen = s.length();
+    ensureCapacity(sLen);
+    for (int i = 0; i < sLen; i++) {
+      buf[len++] = (byte) s.charAt(i);
+    }
+  }
+
+  private static boolean isPair(String s, int i) {
+    return i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1));
+  }
+
+  /**
+   * Append a delimiter character; delimiters are never surrogates.
+   */
+  private void appendChar(char c) {
+    if (c < 0x80) {
+      ensureCapacity(1);
+      buf[len++] = (byte) c;
+    } else {
+      appendChar(c, null, 0);
+    }
+  }
+
+  /**
+   * Append the UTF-8 encoding of the character s[i] (== c). If it is the
+   * first half of a surrogate pair, the pair is encoded together and the
+   * caller must skip the second half.
+   */
+  private void appendChar(char c, String s, int i) {
+    ensureCapacity(4);
+    if (c < 0x80) {
+      buf[len++] = (byte) c;
+    } else if (c < 0x800) {
+      buf[len++] = (byte) (0xC0 | (c >> 6));
+      buf[len++] = (byte) (0x80 | (c & 0x3F));
+    } else if (c >= Character.MIN_SURROGATE
+        && c <= Character.MAX_SURROGATE) {
+      if (Character.isHighSurrogate(c) && null != s && isPair(s, i)) {
+        int cp = Character.toCodePoint(c, s.charAt(i + 1));
+        buf[len++] = (byte) (0xF0 | (cp >> 18));
+        buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        buf[len++] = (byte) (0x80 | (cp & 0x3F));
+      } else {
+        buf[len++] = REPLACEMENT_BYTE;
+      }
+    } else {
+      buf[len++] = (byte) (0xE0 | (c >> 12));
+      buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      buf[len++] = (byte) (0x80 | (c & 0x3F));
+    }
+  }
+
+  private void ensureCapacity(int extra) {
+    if (len + extra > buf.length) {
+      byte [] newBuf = new byte[Math.max(len + extra, buf.length * 2)];
+      System.arraycopy(buf, 0, newBuf, 0, len);
+      buf = newBuf;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RecordFormatter[" + delimiters.toString() + "]";
+  }
+}
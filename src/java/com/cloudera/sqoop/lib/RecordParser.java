@@ -91,9 +91,17 @@ public final class RecordParser {
   private DelimiterSet delimiters;
   private ArrayList<String> outputs;
 
+  // True if there is no enclosing or escape character, so records can be
+  // split on delimiters alone.
+  private boolean splitOnDelimitersOnly;
+
   public RecordParser(final DelimiterSet delimitersIn) {
     this.delimiters = delimitersIn.copy();
     this.outputs = new ArrayList<String>();
+    this.splitOnDelimitersOnly =
+        delimiters.getEnclosedBy() == DelimiterSet.NULL_CHAR
+        && delimiters.getEscapedBy() == DelimiterSet.NULL_CHAR
+        && !delimiters.isEncloseRequired();
   }
 
   /**
@@ -170,6 +178,10 @@ public final class RecordParser {
       throw new ParseError("null input string");
     }
 
+    if (splitOnDelimitersOnly && splitOnDelimiters(input)) {
+      return outputs;
+    }
+
     /*
       This method implements the following state machine to perform
       parsing.
@@ -344,6 +356,52 @@ public final class RecordParser {
   }
   // CHECKSTYLE:ON
 
+  /**
+   * Fast path for parseRecord() when no enclosing or escape character is
+   * set. Without those, the state machine reduces to splitting the input
+   * on field delimiters up to the first record delimiter, which we do
+   * here without per-character state or StringBuilders.
+   *
+   * The state machine compares characters against the enclosing and
+   * escape characters even when they are '\000'; to preserve that, this
+   * gives up (returning false, with the input unconsumed) if it sees a
+   * '\000' character.
+   *
+   * @return true if the record was parsed into 'outputs'.
+   */
+  private boolean splitOnDelimiters(CharBuffer input) {
+    char fieldDelim = delimiters.getFieldsTerminatedBy();
+    char recordDelim = delimiters.getLinesTerminatedBy();
+    int base = input.position();
+    int len = input.remaining();
+    int consumed = len;
+
+    outputs.clear();
+    if (len == 0) {
+      return true;
+    }
+
+    int start = 0;
+    int end = len;
+    for (int pos = 0; pos < len; pos++) {
+      char c = input.get(base + pos);
+      if (c == DelimiterSet.NULL_CHAR) {
+        return false;
+      } else if (c == fieldDelim) {
+        outputs.add(input.subSequence(start, pos).toString());
+        start = pos + 1;
+      } else if (c == recordDelim) {
+        end = pos;
+        consumed = pos + 1;
+        break;
+      }
+    }
+
+    outputs.add(input.subSequence(start, end).toString());
+    input.position(base + consumed);
+    return true;
+  }
+
   public boolean isEnclosingRequired() {
     return delimiters.isEncloseRequired();
   }
@@ -97,6 +97,30 @@ public abstract class SqoopRecord implements Cloneable, DBWritable,
     }
   }
 
+  /**
+   * Append this record, formatted with the default delimiters and an
+   * end-of-record delimiter, to 'out' as UTF-8. This produces the same
+   * bytes as toString(), but generated classes implement it without
+   * creating intermediate Strings.
+   */
+  public void writeTo(Text out) {
+    // Method body should be overridden by generated classes in 1.4.0+
+    Text formatted = new Text(toString());
+    out.append(formatted.getBytes(), 0, formatted.getLength());
+  }
+
+  /**
+   * Append this record, formatted according to the specified delimiters,
+   * to 'out' as UTF-8. An end-of-record delimiter is only appended if
+   * useRecordDelim is true.
+   */
+  public void writeTo(Text out, DelimiterSet delimiters,
+      boolean useRecordDelim) {
+    // Method body should be overridden by generated classes in 1.4.0+
+    Text formatted = new Text(toString(delimiters, useRecordDelim));
+    out.append(formatted.getBytes(), 0, formatted.getLength());
+  }
+
   @Override
   public Object clone() throws CloneNotSupportedException {
     return super.clone();
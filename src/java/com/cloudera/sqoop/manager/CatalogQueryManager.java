@@ -138,7 +138,7 @@ public abstract class CatalogQueryManager extends GenericJdbcManager {
 
   protected abstract String getListColumnsQuery(String tableName);
   @Override
-  public String[] getColumnNames(String tableName) {
+  protected String[] readColumnNames(String tableName) {
     Connection c = null;
     Statement s = null;
     ResultSet rs = null;
@@ -183,7 +183,7 @@ public abstract class CatalogQueryManager extends GenericJdbcManager {
 
   protected abstract String getPrimaryKeyQuery(String tableName);
   @Override
-  public String getPrimaryKey(String tableName) {
+  protected String readPrimaryKey(String tableName) {
     Connection c = null;
     Statement s = null;
     ResultSet rs = null;
@@ -35,8 +35,10 @@ import java.util.StringTokenizer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.mapreduce.InputFormat;
 
 import com.cloudera.sqoop.SqoopOptions;
+import com.cloudera.sqoop.mapreduce.db.DataDrivenDBInputFormat;
 import com.cloudera.sqoop.util.ExportException;
 import com.cloudera.sqoop.util.ImportException;
 
@@ -77,6 +79,14 @@ public abstract class ConnManager {
    */
   public abstract String getPrimaryKey(String tableName);
 
+  /**
+   * Look up the schemas of several tables at once, ahead of their use,
+   * where this is cheaper than looking up each table when it is needed.
+   * The default implementation does nothing.
+   */
+  public void discoverTables(String [] tableNames) {
+  }
+
   /**
    * Return java type for SQL type.
    * @param sqlType     sql type
@@ -181,6 +191,30 @@ public abstract class ConnManager {
       throw new UnsupportedOperationException();
   }
 
+  /**
+   * Returns the statements which apply the rows of a staging table to the
+   * target table of an update-based export, in bulk rather than one row at
+   * a time. Rows are matched on the update key columns, and matching rows
+   * of the target table have the other columns set from the staging table.
+   * The statements are run in a single transaction, after which the same
+   * rows are deleted from the staging table.
+   * @param fromTable the name of the staging table
+   * @param toTable the name of the target table
+   * @param updateCols the (unescaped) columns to set in matching rows
+   * @param keyCols the (unescaped) update key columns
+   * @param allowInsert if true, staged rows which match no row of the
+   * target table are inserted into it; otherwise they are ignored.
+   * @param whereClause if not null, only the staged rows matching this
+   * condition on the columns of the staging table are applied.
+   * @return the statements to run, or null if this connection manager does
+   * not support applying staged updates.
+   */
+  public String [] getStagedUpdateStatements(String fromTable,
+      String toTable, String [] updateCols, String [] keyCols,
+      boolean allowInsert, String whereClause) {
+    return null;
+  }
+
   /**
    * Return an unordered mapping from colname to sqltype for
    * all columns in a query.
@@ -219,6 +253,14 @@ public abstract class ConnManager {
    */
   public abstract void execAndPrint(String s);
 
+  /**
+   * @return the InputFormat which reads this database's tables in ranges
+   * of a column; its splitters also cut the chunks of a staging table.
+   */
+  public Class<? extends InputFormat> getInputFormat() {
+    return DataDrivenDBInputFormat.class;
+  }
+
   /**
    * Perform an import of a table from the database into HDFS.
    */
@@ -368,6 +410,27 @@ public abstract class ConnManager {
     return "'" + datetime + "'";
   }
 
+  /**
+   * @return a format string (as for String.format()) which turns a string
+   * of hexadecimal digits into a literal that this database compares with
+   * its BINARY and VARBINARY columns, e.g. "X'%s'"; or null if there is
+   * none, in which case such columns cannot be used to split an import.
+   */
+  public String getBinaryLiteralFormat() {
+    return null;
+  }
+
+  /**
+   * @return a format string (as for String.format()) which limits a query
+   * to its first rows: it is given the text of the query after its leading
+   * SELECT keyword and the number of rows, e.g. "SELECT %1$s LIMIT %2$d";
+   * or null if there is none, in which case imports cannot be read in
+   * pages.
+   */
+  public String getRowLimitFormat() {
+    return null;
+  }
+
   /**
    * This method allows the ConnManager to override the creation of an
    * input-bounds query that is used to create splits when running import
@@ -382,5 +445,42 @@ public abstract class ConnManager {
   public String getInputBoundsQuery(String splitByCol, String sanitizedQuery) {
       return null;
   }
+
+  /**
+   * This method allows the ConnManager to provide a query returning a
+   * histogram of the split column, used to create splits holding roughly
+   * equal numbers of rows when --balanced-splits is given. The query must
+   * return one row per bucket, ordered by value, holding the lowest value
+   * in the bucket, the highest value in the bucket, and the number of rows
+   * in the bucket. A null return value indicates that the splits should be
+   * generated from the minimum and maximum values of the column instead.
+   * @param splitByCol the (escaped) column name to split on.
+   * @param sourceQuery a query selecting the rows to be imported.
+   * @param numSplits the number of splits that will be generated.
+   * @return a histogram query or <tt>null</tt> if histograms are not
+   * supported.
+   */
+  public String getInputHistogramQuery(String splitByCol, String sourceQuery,
+      int numSplits) {
+    return null;
+  }
+
+  /**
+   * This method allows the ConnManager to provide a query returning the
+   * split points of a composite split key (e.g., --split-by a,b), used to
+   * create splits over the whole key. The query must return one row per
+   * split, ordered by the key, holding the first key in the split. A null
+   * return value indicates that the splits should be generated from the
+   * leading column of the key alone.
+   * @param splitByCols the (escaped) names of the key columns.
+   * @param sourceQuery a query selecting the rows to be imported.
+   * @param numSplits the number of splits that will be generated.
+   * @return a split points query or <tt>null</tt> if composite keys are
+   * not supported.
+   */
+  public String getInputSplitPointsQuery(String [] splitByCols,
+      String sourceQuery, int numSplits) {
+    return null;
+  }
 }
 
@@ -108,4 +108,9 @@ public class Db2Manager extends GenericJdbcManager {
 
     return databases.toArray(new String[databases.size()]);
   }
+
+  @Override
+  public String getRowLimitFormat() {
+    return "SELECT %1$s FETCH FIRST %2$d ROWS ONLY";
+  }
 }
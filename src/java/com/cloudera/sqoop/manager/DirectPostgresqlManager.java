@@ -36,19 +36,22 @@ import org.apache.commons.logging.LogFactory;
 
 import com.cloudera.sqoop.SqoopOptions;
 import com.cloudera.sqoop.io.SplittableBufferedWriter;
+import com.cloudera.sqoop.mapreduce.PostgresqlCopyImportJob;
+import com.cloudera.sqoop.mapreduce.PostgresqlExportJob;
 import com.cloudera.sqoop.util.AsyncSink;
 import com.cloudera.sqoop.util.DirectImportUtils;
 import com.cloudera.sqoop.util.ErrorableAsyncSink;
 import com.cloudera.sqoop.util.ErrorableThread;
 import com.cloudera.sqoop.util.Executor;
+import com.cloudera.sqoop.util.ExportException;
 import com.cloudera.sqoop.util.ImportException;
 import com.cloudera.sqoop.util.JdbcUrl;
 import com.cloudera.sqoop.util.LoggingAsyncSink;
 import com.cloudera.sqoop.util.PerfCounters;
 
 /**
- * Manages direct dumps from Postgresql databases via psql COPY TO STDOUT
- * commands.
+ * Manages direct dumps from Postgresql databases via COPY TO STDOUT
+ * commands, and direct exports via COPY FROM STDIN.
  */
 public class DirectPostgresqlManager extends PostgresqlManager {
   public static final Log LOG = LogFactory.getLog(
@@ -62,6 +65,12 @@ public class DirectPostgresqlManager extends PostgresqlManager {
 
   private static final String PSQL_CMD = "psql";
 
+  /**
+   * If true, direct imports run psql in the client rather than a
+   * MapReduce job.
+   */
+  public static final String PSQL_IMPORT_KEY = "sqoop.postgresql.import.psql";
+
   /** Copies data directly into HDFS, adding the user's chosen line terminator
       char to each record.
     */
@@ -150,7 +159,7 @@ public class DirectPostgresqlManager extends PostgresqlManager {
    * Takes a list of columns and turns them into a string like
    * "col1, col2, col3...".
    */
-  private String getColumnListStr(String [] cols) {
+  private static String getColumnListStr(String [] cols) {
     if (null == cols) {
       return null;
     }
@@ -168,6 +177,38 @@ public class DirectPostgresqlManager extends PostgresqlManager {
     return sb.toString();
   }
 
+  /**
+   * @return the " TO STDOUT WITH ..." clause of a COPY command which
+   * writes the columns 'cols' with the user's output delimiters.
+   */
+  public static String getCopyOutOptions(SqoopOptions options,
+      String [] cols) {
+    StringBuilder sb = new StringBuilder();
+
+    // Translate delimiter characters to '\ooo' octal representation.
+    sb.append(" TO STDOUT WITH DELIMITER E'\\");
+    sb.append(Integer.toString((int) options.getOutputFieldDelim(), 8));
+    sb.append("' CSV ");
+    if (options.getOutputEnclosedBy() != '\0') {
+      sb.append("QUOTE E'\\");
+      sb.append(Integer.toString((int) options.getOutputEnclosedBy(), 8));
+      sb.append("' ");
+    }
+    if (options.getOutputEscapedBy() != '\0') {
+      sb.append("ESCAPE E'\\");
+      sb.append(Integer.toString((int) options.getOutputEscapedBy(), 8));
+      sb.append("' ");
+    }
+
+    // add the "FORCE QUOTE col, col, col..." clause if quotes are required.
+    if (null != cols && options.isOutputEncloseRequired()) {
+      sb.append("FORCE QUOTE ");
+      sb.append(getColumnListStr(cols));
+    }
+
+    return sb.toString();
+  }
+
   /**
    * @return the Postgresql-specific SQL command to copy the
    * table ("COPY .... TO STDOUT").
@@ -217,27 +258,7 @@ public class DirectPostgresqlManager extends PostgresqlManager {
       }
     }
 
-    // Translate delimiter characters to '\ooo' octal representation.
-    sb.append(" TO STDOUT WITH DELIMITER E'\\");
-    sb.append(Integer.toString((int) this.options.getOutputFieldDelim(), 8));
-    sb.append("' CSV ");
-    if (this.options.getOutputEnclosedBy() != '\0') {
-      sb.append("QUOTE E'\\");
-      sb.append(Integer.toString((int) this.options.getOutputEnclosedBy(), 8));
-      sb.append("' ");
-    }
-    if (this.options.getOutputEscapedBy() != '\0') {
-      sb.append("ESCAPE E'\\");
-      sb.append(Integer.toString((int) this.options.getOutputEscapedBy(), 8));
-      sb.append("' ");
-    }
-
-    // add the "FORCE QUOTE col, col, col..." clause if quotes are required.
-    if (null != cols && this.options.isOutputEncloseRequired()) {
-      sb.append("FORCE QUOTE ");
-      sb.append(getColumnListStr(cols));
-    }
-
+    sb.append(getCopyOutOptions(this.options, cols));
     sb.append(";");
 
     String copyCmd = sb.toString();
@@ -279,14 +300,59 @@ public class DirectPostgresqlManager extends PostgresqlManager {
     return tempFile.toString();
   }
 
+  /**
+   * Import the table into HDFS with a MapReduce job whose map tasks each
+   * copy a split of the table out of the database via COPY TO STDOUT,
+   * through the copy API of the JDBC driver. If PSQL_IMPORT_KEY is set,
+   * the table is copied out by a single psql process instead.
+   */
+  @Override
+  public void importTable(ImportJobContext context)
+      throws IOException, ImportException {
+
+    SqoopOptions options = context.getOptions();
+    if (options.getConf().getBoolean(PSQL_IMPORT_KEY, false)) {
+      importTableWithPsql(context);
+      return;
+    }
+
+    String tableName = context.getTableName();
+    String jarFile = context.getJarFile();
+    context.setConnManager(this);
+
+    PostgresqlCopyImportJob importer = null;
+    try {
+      importer = new PostgresqlCopyImportJob(options, context);
+    } catch (ClassNotFoundException cnfe) {
+      throw new IOException("Could not load required classes", cnfe);
+    }
+
+    String splitCol = getSplitColumn(options, tableName);
+    if (null == splitCol && options.getNumMappers() > 1) {
+      // Can't infer a primary key.
+      throw new ImportException("No primary key could be found for table "
+          + tableName + ". Please specify one with --split-by or perform "
+          + "a sequential import with '-m 1'.");
+    }
+
+    LOG.info("Beginning COPY fast path import");
+
+    if (options.getFileLayout() != SqoopOptions.FileLayout.TextFile) {
+      LOG.warn("File import layout " + options.getFileLayout()
+          + " is not supported by");
+      LOG.warn("Postgresql direct import; import will proceed as text files.");
+    }
+
+    importer.runImport(tableName, jarFile, splitCol, options.getConf());
+  }
+
   // TODO(aaron): Refactor this method to be much shorter.
   // CHECKSTYLE:OFF
-  @Override
   /**
    * Import the table into HDFS by using psql to pull the data out of the db
    * via COPY FILE TO STDOUT.
    */
-  public void importTable(ImportJobContext context)
+  private void importTableWithPsql(ImportJobContext context)
     throws IOException, ImportException {
 
     String tableName = context.getTableName();
@@ -468,9 +534,21 @@ public class DirectPostgresqlManager extends PostgresqlManager {
     }
   }
 
+  /**
+   * Export the table from HDFS by copying each task's records into the
+   * database with COPY ... FROM STDIN.
+   */
+  @Override
+  public void exportTable(ExportJobContext context)
+      throws IOException, ExportException {
+    context.setConnManager(this);
+    PostgresqlExportJob exportJob = new PostgresqlExportJob(context);
+    exportJob.runExport();
+  }
+
   @Override
   public boolean supportsStagingForExport() {
-    return false;
+    return true;
   }
   // CHECKSTYLE:ON
 }
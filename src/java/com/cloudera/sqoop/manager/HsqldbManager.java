@@ -83,6 +83,18 @@ public class HsqldbManager extends GenericJdbcManager {
     // HSQLDB does not support multi-row inserts; disable that before export.
     context.getOptions().getConf().setInt(
         AsyncSqlOutputFormat.RECORDS_PER_STATEMENT_KEY, 1);
+    context.getOptions().getConf().setInt(
+        AsyncSqlOutputFormat.MAX_RECORDS_PER_STATEMENT_KEY, 1);
     super.exportTable(context);
   }
+
+  @Override
+  public String getBinaryLiteralFormat() {
+    return "X'%s'";
+  }
+
+  @Override
+  public String getRowLimitFormat() {
+    return "SELECT %1$s LIMIT %2$d";
+  }
 }
@@ -216,6 +216,55 @@ public class MySQLManager extends InformationSchemaManager {
     return true;
   }
 
+  /**
+   * {@inheritDoc}
+   * Updates the matching rows with a single multiple-table UPDATE, or, when
+   * inserts are allowed, applies all of the staged rows with an INSERT ...
+   * ON DUPLICATE KEY UPDATE; the latter relies on a unique index of the
+   * target table over the update key columns.
+   */
+  @Override
+  public String [] getStagedUpdateStatements(String fromTable,
+      String toTable, String [] updateCols, String [] keyCols,
+      boolean allowInsert, String whereClause) {
+    String where = (null == whereClause) ? "" : " WHERE " + whereClause;
+    StringBuilder sb = new StringBuilder();
+    if (allowInsert) {
+      StringBuilder cols = new StringBuilder();
+      for (String col : keyCols) {
+        cols.append(cols.length() > 0 ? ", " : "").append(escapeColName(col));
+      }
+      for (String col : updateCols) {
+        cols.append(", ").append(escapeColName(col));
+      }
+
+      // With nothing else to set, a duplicate key sets itself.
+      String [] setCols = updateCols.length > 0 ? updateCols : keyCols;
+      sb.append("INSERT INTO ").append(toTable).append(" (").append(cols)
+          .append(") SELECT ").append(cols).append(" FROM ")
+          .append(fromTable).append(where)
+          .append(" ON DUPLICATE KEY UPDATE ");
+      for (int i = 0; i < setCols.length; i++) {
+        String col = escapeColName(setCols[i]);
+        sb.append(i > 0 ? ", " : "").append(col).append(" = VALUES(")
+            .append(col).append(')');
+      }
+    } else if (updateCols.length > 0) {
+      sb.append("UPDATE ").append(toTable).append(" JOIN (SELECT * FROM ")
+          .append(fromTable).append(where).append(") s ON ")
+          .append(getStagedKeyMatch(toTable, keyCols)).append(" SET ");
+      for (int i = 0; i < updateCols.length; i++) {
+        String col = escapeColName(updateCols[i]);
+        sb.append(i > 0 ? ", " : "").append(toTable).append('.').append(col)
+            .append(" = s.").append(col);
+      }
+    } else {
+      return new String[0];
+    }
+
+    return new String[] { sb.toString() };
+  }
+
   @Override
   protected String getListDatabasesQuery() {
     return "SELECT SCHEMA_NAME FROM INFORMATION_SCHEMA.SCHEMATA";
@@ -225,5 +274,15 @@ public class MySQLManager extends InformationSchemaManager {
   protected String getSchemaQuery() {
     return "SELECT SCHEMA()";
   }
+
+  @Override
+  public String getBinaryLiteralFormat() {
+    return "X'%s'";
+  }
+
+  @Override
+  public String getRowLimitFormat() {
+    return "SELECT %1$s LIMIT %2$d";
+  }
 }
 
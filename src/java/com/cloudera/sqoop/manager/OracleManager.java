@@ -31,6 +31,7 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -42,6 +43,7 @@ import java.util.StringTokenizer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.mapreduce.InputFormat;
 
 import com.cloudera.sqoop.SqoopOptions;
 import com.cloudera.sqoop.SqoopOptions.UpdateMode;
@@ -371,12 +373,17 @@ public class OracleManager extends GenericJdbcManager {
     }
   }
 
+  @Override
+  public Class<? extends InputFormat> getInputFormat() {
+    return OracleDataDrivenDBInputFormat.class;
+  }
+
   @Override
   public void importTable(ImportJobContext context)
       throws IOException, ImportException {
     context.setConnManager(this);
     // Specify the Oracle-specific DBInputFormat for import.
-    context.setInputFormat(OracleDataDrivenDBInputFormat.class);
+    context.setInputFormat(getInputFormat());
     super.importTable(context);
   }
 
@@ -615,6 +622,58 @@ public class OracleManager extends GenericJdbcManager {
     return true;
   }
 
+  /**
+   * {@inheritDoc}
+   * Applies the staged rows with a single MERGE.
+   */
+  @Override
+  public String [] getStagedUpdateStatements(String fromTable,
+      String toTable, String [] updateCols, String [] keyCols,
+      boolean allowInsert, String whereClause) {
+    if (updateCols.length == 0 && !allowInsert) {
+      return new String[0];
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("MERGE INTO ").append(toTable).append(" USING (SELECT * FROM ")
+        .append(fromTable);
+    if (null != whereClause) {
+      sb.append(" WHERE ").append(whereClause);
+    }
+    sb.append(") s ON (").append(getStagedKeyMatch(toTable, keyCols))
+        .append(')');
+
+    // Oracle does not allow the columns of the ON clause to be updated.
+    if (updateCols.length > 0) {
+      sb.append(" WHEN MATCHED THEN UPDATE SET ");
+      for (int i = 0; i < updateCols.length; i++) {
+        String col = escapeColName(updateCols[i]);
+        sb.append(i > 0 ? ", " : "").append(toTable).append('.').append(col)
+            .append(" = s.").append(col);
+      }
+    }
+
+    if (allowInsert) {
+      StringBuilder cols = new StringBuilder();
+      StringBuilder values = new StringBuilder();
+      List<String> allCols = new ArrayList<String>();
+      Collections.addAll(allCols, keyCols);
+      Collections.addAll(allCols, updateCols);
+      for (String col : allCols) {
+        if (cols.length() > 0) {
+          cols.append(", ");
+          values.append(", ");
+        }
+        cols.append(escapeColName(col));
+        values.append("s.").append(escapeColName(col));
+      }
+      sb.append(" WHEN NOT MATCHED THEN INSERT (").append(cols)
+          .append(") VALUES (").append(values).append(')');
+    }
+
+    return new String[] { sb.toString() };
+  }
+
   /**
    * The concept of database in Oracle is mapped to schemas. Each schema
    * is identified by the corresponding username.
@@ -728,7 +787,19 @@ public class OracleManager extends GenericJdbcManager {
   }
 
   @Override
-  public String[] getColumnNames(String tableName) {
+  protected String getMetadataSchemaPattern() {
+    // getColumnNames() looks up unqualified tables in the user's schema.
+    // Oracle stores unquoted user names, and so schema names, in upper
+    // case, and the metadata pattern is matched case-sensitively.
+    String username = this.options.getUsername();
+    if (null == username) {
+      return null;
+    }
+    return username.toUpperCase();
+  }
+
+  @Override
+  protected String[] readColumnNames(String tableName) {
     Connection conn = null;
     PreparedStatement pStmt = null;
     ResultSet rset = null;
@@ -791,7 +862,7 @@ public class OracleManager extends GenericJdbcManager {
   }
 
   @Override
-  public String getPrimaryKey(String tableName) {
+  protected String readPrimaryKey(String tableName) {
     Connection conn = null;
     PreparedStatement pStmt = null;
     ResultSet rset = null;
@@ -880,5 +951,16 @@ public class OracleManager extends GenericJdbcManager {
       return "SELECT MIN(" + splitByCol + "), MAX(" + splitByCol + ") FROM ("
                    + sanitizedQuery + ") t1";
   }
+
+  @Override
+  public String getBinaryLiteralFormat() {
+    return "HEXTORAW('%s')";
+  }
+
+  // Oracle has no LIMIT clause; filter the ordered rows by ROWNUM.
+  @Override
+  public String getRowLimitFormat() {
+    return "SELECT * FROM (SELECT %1$s) WHERE ROWNUM <= %2$d";
+  }
 }
 
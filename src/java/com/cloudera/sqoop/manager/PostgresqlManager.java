@@ -107,6 +107,27 @@ public class PostgresqlManager extends CatalogQueryManager {
     return true;
   }
 
+  /**
+   * {@inheritDoc}
+   * Joins the staging table with UPDATE ... FROM.
+   */
+  @Override
+  protected String getStagedUpdateStatement(String fromTable, String toTable,
+      String [] updateCols, String [] keyCols, String whereClause) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("UPDATE ").append(toTable).append(" SET ");
+    for (int i = 0; i < updateCols.length; i++) {
+      String col = escapeColName(updateCols[i]);
+      sb.append(i > 0 ? ", " : "").append(col).append(" = s.").append(col);
+    }
+    sb.append(" FROM (SELECT * FROM ").append(fromTable);
+    if (null != whereClause) {
+      sb.append(" WHERE ").append(whereClause);
+    }
+    sb.append(") s WHERE ").append(getStagedKeyMatch(toTable, keyCols));
+    return sb.toString();
+  }
+
   @Override
   protected String getListDatabasesQuery() {
     return
@@ -150,5 +171,17 @@ public class PostgresqlManager extends CatalogQueryManager {
   private String escapeLiteral(String literal) {
     return literal.replace("'", "''");
   }
+
+  // PostgreSQL reads X'..' as a bit string, which cannot be compared with
+  // a bytea value.
+  @Override
+  public String getBinaryLiteralFormat() {
+    return "decode('%s', 'hex')";
+  }
+
+  @Override
+  public String getRowLimitFormat() {
+    return "SELECT %1$s LIMIT %2$d";
+  }
 }
 
@@ -78,5 +78,15 @@ public class SQLServerManager extends InformationSchemaManager {
   protected String getSchemaQuery() {
     return "SELECT SCHEMA_NAME()";
   }
+
+  @Override
+  public String getBinaryLiteralFormat() {
+    return "0x%s";
+  }
+
+  @Override
+  public String getRowLimitFormat() {
+    return "SELECT TOP %2$d %1$s";
+  }
 }
 
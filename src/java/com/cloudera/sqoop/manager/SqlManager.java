@@ -23,6 +23,7 @@ package com.cloudera.sqoop.manager;
 import java.sql.Timestamp;
 
 import com.cloudera.sqoop.SqoopOptions;
+import com.cloudera.sqoop.SqoopOptions.UpdateMode;
 import com.cloudera.sqoop.hbase.HBaseUtil;
 import com.cloudera.sqoop.hive.HiveTypes;
 import com.cloudera.sqoop.lib.BlobRef;
@@ -48,15 +49,23 @@ import java.sql.Statement;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.util.StringUtils;
 import com.cloudera.sqoop.mapreduce.db.DataDrivenDBInputFormat;
+import com.cloudera.sqoop.mapreduce.db.StagingTableMigrator;
 
 /**
  * ConnManager implementation for generic SQL-compliant database.
@@ -75,9 +84,23 @@ public abstract class SqlManager extends ConnManager {
 
   protected static final int DEFAULT_FETCH_SIZE = 1000;
 
+  /** Number of histogram buckets to request for each split. */
+  protected static final int HISTOGRAM_BUCKETS_PER_SPLIT = 8;
+
   protected SqoopOptions options;
   private Statement lastStatement;
 
+  // Schema metadata read during this run, by table name. Tables are not
+  // expected to change while Sqoop runs, and the same metadata is looked
+  // up several times for each table (by code generation, by the import
+  // job, etc.). A table with no primary key maps to null in primaryKeys.
+  private final Map<String, String []> columnNames =
+      new HashMap<String, String []>();
+  private final Map<String, Map<String, Integer>> columnTypes =
+      new HashMap<String, Map<String, Integer>>();
+  private final Map<String, String> primaryKeys =
+      new HashMap<String, String>();
+
   /**
    * Constructs the SqlManager.
    * @param opts the SqoopOptions describing the user's requested action.
@@ -110,6 +133,22 @@ public abstract class SqlManager extends ConnManager {
   @Override
   /** {@inheritDoc} */
   public String[] getColumnNames(String tableName) {
+    String [] colNames = columnNames.get(tableName);
+    if (null == colNames) {
+      colNames = readColumnNames(tableName);
+      if (null == colNames || colNames.length == 0) {
+        return colNames;
+      }
+      columnNames.put(tableName, colNames);
+    }
+    return colNames.clone();
+  }
+
+  /**
+   * Read the column names of a table from the database. The result is
+   * cached by getColumnNames().
+   */
+  protected String[] readColumnNames(String tableName) {
     String stmt = getColNamesQuery(tableName);
     return getColumnNamesForRawQuery(stmt);
   }
@@ -175,6 +214,22 @@ public abstract class SqlManager extends ConnManager {
 
   @Override
   public Map<String, Integer> getColumnTypes(String tableName) {
+    Map<String, Integer> colTypes = columnTypes.get(tableName);
+    if (null == colTypes) {
+      colTypes = readColumnTypes(tableName);
+      if (null == colTypes || colTypes.isEmpty()) {
+        return colTypes;
+      }
+      columnTypes.put(tableName, colTypes);
+    }
+    return new HashMap<String, Integer>(colTypes);
+  }
+
+  /**
+   * Read the column types of a table from the database. The result is
+   * cached by getColumnTypes().
+   */
+  protected Map<String, Integer> readColumnTypes(String tableName) {
     String stmt = getColTypesQuery(tableName);
     return getColumnTypesForRawQuery(stmt);
   }
@@ -314,6 +369,17 @@ public abstract class SqlManager extends ConnManager {
 
   @Override
   public String getPrimaryKey(String tableName) {
+    if (!primaryKeys.containsKey(tableName)) {
+      primaryKeys.put(tableName, readPrimaryKey(tableName));
+    }
+    return primaryKeys.get(tableName);
+  }
+
+  /**
+   * Read the primary key of a table from the database. The result is
+   * cached by getPrimaryKey().
+   */
+  protected String readPrimaryKey(String tableName) {
     try {
       DatabaseMetaData metaData = this.getConnection().getMetaData();
       ResultSet results = metaData.getPrimaryKeys(null, null, tableName);
@@ -338,6 +404,91 @@ public abstract class SqlManager extends ConnManager {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Reads the column names of every table in one call to
+   * DatabaseMetaData.getColumns(), rather than running a query for each
+   * table. Tables whose name appears in more than one schema are left to
+   * be looked up one at a time.
+   */
+  @Override
+  public void discoverTables(String [] tableNames) {
+    Set<String> wanted = new HashSet<String>();
+    for (String tableName : tableNames) {
+      if (!columnNames.containsKey(tableName)) {
+        wanted.add(tableName);
+      }
+    }
+
+    if (wanted.isEmpty()) {
+      return;
+    }
+
+    Map<String, SortedMap<Integer, String>> tableCols =
+        new HashMap<String, SortedMap<Integer, String>>();
+    Map<String, String> tableSchemas = new HashMap<String, String>();
+    Set<String> ambiguous = new HashSet<String>();
+    ResultSet results = null;
+    try {
+      DatabaseMetaData metaData = getConnection().getMetaData();
+      results = metaData.getColumns(null, getMetadataSchemaPattern(), "%",
+          "%");
+      while (results.next()) {
+        String tableName = results.getString("TABLE_NAME");
+        if (!wanted.contains(tableName)) {
+          continue;
+        }
+
+        String schema = String.valueOf(results.getString("TABLE_SCHEM"));
+        String prevSchema = tableSchemas.put(tableName, schema);
+        if (null != prevSchema && !prevSchema.equals(schema)) {
+          ambiguous.add(tableName);
+        }
+
+        SortedMap<Integer, String> cols = tableCols.get(tableName);
+        if (null == cols) {
+          cols = new TreeMap<Integer, String>();
+          tableCols.put(tableName, cols);
+        }
+        cols.put(results.getInt("ORDINAL_POSITION"),
+            results.getString("COLUMN_NAME"));
+      }
+    } catch (SQLException sqlException) {
+      LOG.warn("Could not read column metadata; tables will be examined "
+          + "one at a time: " + sqlException.toString());
+      return;
+    } finally {
+      if (null != results) {
+        try {
+          results.close();
+          getConnection().commit();
+        } catch (SQLException sqlE) {
+          LOG.warn("Exception closing ResultSet: " + sqlE.toString());
+        }
+      }
+    }
+
+    for (Map.Entry<String, SortedMap<Integer, String>> entry
+        : tableCols.entrySet()) {
+      if (!ambiguous.contains(entry.getKey())) {
+        columnNames.put(entry.getKey(),
+            entry.getValue().values().toArray(new String[0]));
+      }
+    }
+
+    LOG.debug("Discovered columns of " + (tableCols.size() - ambiguous.size())
+        + " of " + wanted.size() + " tables");
+  }
+
+  /**
+   * @return the schema pattern that discoverTables() passes to
+   * DatabaseMetaData.getColumns(), or null to search every schema.
+   */
+  protected String getMetadataSchemaPattern() {
+    return null;
+  }
+
   /**
    * Retrieve the actual connection from the outer ConnManager.
    */
@@ -736,6 +887,25 @@ public abstract class SqlManager extends ConnManager {
     exportJob.runExport();
   }
 
+  @Override
+  /**
+   * {@inheritDoc}
+   * Without a database-specific upsert, this is only possible by way of a
+   * staging table, from which the rows are applied in bulk.
+   */
+  public void upsertTable(ExportJobContext context)
+      throws IOException, ExportException {
+    if (null == options.getStagingTableName()
+        || !supportsStagingForExport()) {
+      super.upsertTable(context);
+      return;
+    }
+
+    context.setConnManager(this);
+    JdbcUpdateExportJob exportJob = new JdbcUpdateExportJob(context);
+    exportJob.runExport();
+  }
+
   /**
    * @return a SQL query to retrieve the current timestamp from the db.
    */
@@ -847,6 +1017,16 @@ public abstract class SqlManager extends ConnManager {
   public void migrateData(String fromTable, String toTable)
     throws SQLException {
     release(); // Release any previous ResultSet
+    if (options.getStagingMigrationChunks() > 1
+        && migrateDataInChunks(fromTable, toTable)) {
+      return;
+    }
+
+    if (null != options.getUpdateKeyCol()) {
+      applyStagedUpdates(fromTable, toTable);
+      return;
+    }
+
     String updateQuery = "INSERT INTO " + toTable
           + " ( SELECT * FROM " + fromTable + " )";
 
@@ -885,7 +1065,267 @@ public abstract class SqlManager extends ConnManager {
     }
   }
 
+  /**
+   * Move the data from the staging table in chunks of its primary key,
+   * several at a time, each in its own transaction.
+   * @return false if the staging table cannot be cut into chunks, in which
+   * case no data was moved.
+   */
+  protected boolean migrateDataInChunks(String fromTable, String toTable)
+      throws SQLException {
+    String keyCol = getPrimaryKey(fromTable);
+    if (null == keyCol) {
+      LOG.warn("Staging table " + fromTable + " has no primary key; "
+          + "migrating its data in a single transaction.");
+      return false;
+    }
+
+    final boolean isUpdate = null != options.getUpdateKeyCol();
+    StagingTableMigrator migrator = new StagingTableMigrator(
+        options.getStagingMigrationChunks(), options.getNumMappers(),
+        getInputFormat()) {
+      @Override
+      protected Connection newConnection() throws SQLException {
+        return makeConnection();
+      }
+
+      @Override
+      protected long copyRows(Statement stmt, String from, String to,
+          String whereClause) throws SQLException {
+        if (!isUpdate) {
+          return super.copyRows(stmt, from, to, whereClause);
+        }
+
+        for (String update : getStagedUpdateStatements(from, to,
+            whereClause)) {
+          stmt.executeUpdate(update);
+        }
+        return -1;
+      }
+    };
+    return migrator.migrate(fromTable, toTable, escapeColName(keyCol));
+  }
+
+  /**
+   * Apply all of the rows of the staging table of an update-based export
+   * to the target table, and empty the staging table, in a single
+   * transaction.
+   */
+  protected void applyStagedUpdates(String fromTable, String toTable)
+      throws SQLException {
+    Statement stmt = null;
+    try {
+      Connection conn = getConnection();
+      stmt = conn.createStatement();
+      for (String update : getStagedUpdateStatements(fromTable, toTable,
+          null)) {
+        stmt.executeUpdate(update);
+      }
+      int deleteCount = stmt.executeUpdate("DELETE FROM " + fromTable);
+      conn.commit();
+      LOG.info("Applied " + deleteCount + " staged records from "
+          + fromTable + " to " + toTable);
+    } catch (SQLException ex) {
+      LOG.error("Unable to apply staged updates from "
+          + fromTable + " to " + toTable, ex);
+      throw ex;
+    } finally {
+      if (stmt != null) {
+        try {
+          stmt.close();
+        } catch (SQLException ex) {
+          LOG.error("Unable to close statement", ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the statements applying the staged rows matching a WHERE
+   * clause (or all of them, if it is null) to the target table, for the
+   * update key, columns and update mode of this export.
+   */
+  protected String [] getStagedUpdateStatements(String fromTable,
+      String toTable, String whereClause) throws SQLException {
+    Set<String> keys = new LinkedHashSet<String>();
+    Set<String> keysUppercase = new HashSet<String>();
+    for (String key : options.getUpdateKeyCol().split(",")) {
+      if (key.trim().length() > 0) {
+        keys.add(key.trim());
+        keysUppercase.add(key.trim().toUpperCase());
+      }
+    }
+
+    String [] colNames = options.getColumns();
+    if (null == colNames) {
+      colNames = getColumnNames(toTable);
+    }
+    List<String> updateCols = new ArrayList<String>();
+    for (String col : colNames) {
+      if (!keysUppercase.contains(col.toUpperCase())) {
+        updateCols.add(col);
+      }
+    }
+
+    String [] statements = getStagedUpdateStatements(fromTable, toTable,
+        updateCols.toArray(new String[updateCols.size()]),
+        keys.toArray(new String[keys.size()]),
+        options.getUpdateMode() == UpdateMode.AllowInsert, whereClause);
+    if (null == statements) {
+      throw new SQLException("This database does not support applying "
+          + "staged updates");
+    }
+    return statements;
+  }
+
+  /**
+   * {@inheritDoc}
+   * Updates the matching rows with a correlated subquery per column, and
+   * inserts the rest with an INSERT ... SELECT ... WHERE NOT EXISTS, which
+   * are understood by most databases. Each staged row must have a distinct
+   * update key.
+   */
+  @Override
+  public String [] getStagedUpdateStatements(String fromTable,
+      String toTable, String [] updateCols, String [] keyCols,
+      boolean allowInsert, String whereClause) {
+    List<String> statements = new ArrayList<String>();
+    if (updateCols.length > 0) {
+      statements.add(getStagedUpdateStatement(fromTable, toTable,
+          updateCols, keyCols, whereClause));
+    }
+    if (allowInsert) {
+      statements.add(getStagedInsertStatement(fromTable, toTable,
+          updateCols, keyCols, whereClause));
+    }
+    return statements.toArray(new String[statements.size()]);
+  }
+
+  /**
+   * @return a condition matching the staged row "s" with the row of toTable
+   * which has the same update key.
+   */
+  protected String getStagedKeyMatch(String toTable, String [] keyCols) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < keyCols.length; i++) {
+      if (i > 0) {
+        sb.append(" AND ");
+      }
+      String key = escapeColName(keyCols[i]);
+      sb.append(toTable).append('.').append(key).append(" = s.").append(key);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return the statement setting the columns of the rows of toTable which
+   * match a staged row.
+   */
+  protected String getStagedUpdateStatement(String fromTable, String toTable,
+      String [] updateCols, String [] keyCols, String whereClause) {
+    String match = getStagedKeyMatch(toTable, keyCols);
+    StringBuilder sb = new StringBuilder();
+    sb.append("UPDATE ").append(toTable).append(" SET ");
+    for (int i = 0; i < updateCols.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      String col = escapeColName(updateCols[i]);
+      sb.append(col).append(" = (SELECT s.").append(col).append(" FROM ")
+          .append(fromTable).append(" s WHERE ").append(match).append(')');
+    }
+
+    // Unqualified columns of the WHERE clause refer to the staging table,
+    // as it is the innermost table in scope.
+    sb.append(" WHERE EXISTS (SELECT 1 FROM ").append(fromTable)
+        .append(" s WHERE ").append(match);
+    if (null != whereClause) {
+      sb.append(" AND (").append(whereClause).append(')');
+    }
+    sb.append(')');
+    return sb.toString();
+  }
+
+  /**
+   * @return the statement inserting the staged rows which match no row of
+   * toTable.
+   */
+  protected String getStagedInsertStatement(String fromTable, String toTable,
+      String [] updateCols, String [] keyCols, String whereClause) {
+    StringBuilder cols = new StringBuilder();
+    StringBuilder stagedCols = new StringBuilder();
+    List<String> allCols = new ArrayList<String>(Arrays.asList(keyCols));
+    allCols.addAll(Arrays.asList(updateCols));
+    for (String col : allCols) {
+      if (cols.length() > 0) {
+        cols.append(", ");
+        stagedCols.append(", ");
+      }
+      cols.append(escapeColName(col));
+      stagedCols.append("s.").append(escapeColName(col));
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("INSERT INTO ").append(toTable).append(" (").append(cols)
+        .append(") SELECT ").append(stagedCols).append(" FROM ")
+        .append(fromTable).append(" s WHERE ");
+    if (null != whereClause) {
+      sb.append('(').append(whereClause).append(") AND ");
+    }
+    sb.append("NOT EXISTS (SELECT 1 FROM ").append(toTable).append(" WHERE ")
+        .append(getStagedKeyMatch(toTable, keyCols)).append(')');
+    return sb.toString();
+  }
+
   public String getInputBoundsQuery(String splitByCol, String sanitizedQuery) {
     return options.getBoundaryQuery();
   }
+
+  /**
+   * {@inheritDoc}
+   * Buckets the rows with the SQL:2003 NTILE() window function, using a
+   * few buckets per split so that the splits can be balanced even when
+   * many rows share the same value. Databases without window functions
+   * will reject this query, and the splits are then generated from the
+   * minimum and maximum values as usual.
+   */
+  @Override
+  public String getInputHistogramQuery(String splitByCol, String sourceQuery,
+      int numSplits) {
+    int numBuckets = numSplits * HISTOGRAM_BUCKETS_PER_SPLIT;
+    return "SELECT MIN(" + splitByCol + "), MAX(" + splitByCol + "), "
+        + "COUNT(*) FROM (SELECT " + splitByCol + ", NTILE(" + numBuckets
+        + ") OVER (ORDER BY " + splitByCol + ") sqoop_tile FROM ("
+        + sourceQuery + ") t1 WHERE " + splitByCol + " IS NOT NULL) t2 "
+        + "GROUP BY sqoop_tile ORDER BY sqoop_tile";
+  }
+
+  /**
+   * {@inheritDoc}
+   * Divides the rows into tiles with the SQL:2003 NTILE() window function,
+   * and numbers the rows of each tile with ROW_NUMBER() to select the first
+   * key of each one. Databases without window functions will reject this
+   * query, and the splits are then generated from the leading column.
+   */
+  @Override
+  public String getInputSplitPointsQuery(String [] splitByCols,
+      String sourceQuery, int numSplits) {
+    StringBuilder cols = new StringBuilder();
+    StringBuilder notNull = new StringBuilder();
+    for (int i = 0; i < splitByCols.length; i++) {
+      if (i > 0) {
+        cols.append(", ");
+        notNull.append(" AND ");
+      }
+      cols.append(splitByCols[i]);
+      notNull.append(splitByCols[i]).append(" IS NOT NULL");
+    }
+
+    return "SELECT " + cols + " FROM (SELECT " + cols + ", ROW_NUMBER() "
+        + "OVER (PARTITION BY sqoop_tile ORDER BY " + cols + ") sqoop_row "
+        + "FROM (SELECT " + cols + ", NTILE(" + numSplits + ") OVER "
+        + "(ORDER BY " + cols + ") sqoop_tile FROM (" + sourceQuery
+        + ") t1 WHERE " + notNull + ") t2) t3 WHERE sqoop_row = 1 "
+        + "ORDER BY " + cols;
+  }
 }
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Chooses the number of records per statement and the number of
+ * statements per transaction for an export, based on the time the
+ * database takes to execute and commit them.
+ *
+ * Each size is grown by a fixed step for as long as the rate of rows
+ * written keeps up with the rate measured before the last change, and
+ * halved when the rate drops (additive increase, multiplicative decrease).
+ * Sizes are kept within the configured bounds; a size whose bounds are
+ * equal is never changed.
+ *
+ * The rate of statements is measured over a window of several statements
+ * of the current size. The rate of transactions is measured over each
+ * transaction, including the time taken to commit it.
+ *
+ * Instances are shared by the RecordWriter and its execution threads,
+ * so all methods are synchronized.
+ */
+public class AdaptiveBatchController {
+
+  /** Counters reporting the sizes chosen by each task. */
+  public enum Counter {
+    /** Number of tasks which adapted their batch sizes. */
+    ADAPTIVE_TASKS,
+    /** Sum over the tasks of the final records per statement. */
+    RECORDS_PER_STATEMENT,
+    /** Sum over the tasks of the final statements per transaction. */
+    STATEMENTS_PER_TRANSACTION,
+    /** Number of times a size was grown. */
+    BATCH_SIZE_INCREASES,
+    /** Number of times a size was shrunk. */
+    BATCH_SIZE_DECREASES
+  }
+
+  private static final Log LOG = LogFactory.getLog(
+      AdaptiveBatchController.class);
+
+  /** Number of statements over which the rate of statements is measured. */
+  public static final int STATEMENT_WINDOW = 5;
+
+  /**
+   * Fraction by which a rate may fall below the previous one before the
+   * size is shrunk, to allow for noise in the measurements.
+   */
+  public static final double RATE_TOLERANCE = 0.05;
+
+  /**
+   * A size that is adapted to the rate of rows written with it.
+   */
+  private static class AdaptedSize {
+    private final String name;
+    private final int min;
+    private final int max;
+    private final int step;
+    private int value;
+    private double lastRate;
+
+    AdaptedSize(String name, int initial, int min, int max) {
+      this.name = name;
+      this.min = min;
+      this.max = max;
+      this.value = Math.min(max, Math.max(min, initial));
+      this.step = Math.max(1, this.value / 10);
+      this.lastRate = 0;
+    }
+
+    boolean isFixed() {
+      return min >= max;
+    }
+
+    /**
+     * Adjust the size given the rate of rows written with it.
+     * @return 1 if the size was grown, -1 if it was shrunk, or 0.
+     */
+    int update(double rate) {
+      if (isFixed()) {
+        return 0;
+      }
+
+      double lastRate = this.lastRate;
+      this.lastRate = rate;
+      int oldValue = value;
+      if (lastRate > 0 && rate < lastRate * (1.0 - RATE_TOLERANCE)) {
+        value = Math.max(min, value / 2);
+      } else {
+        value = Math.min(max, value + step);
+      }
+
+      if (value != oldValue && LOG.isDebugEnabled()) {
+        LOG.debug("Changed " + name + " from " + oldValue + " to " + value
+            + " at " + (long) rate + " rows/sec");
+      }
+
+      return Integer.signum(value - oldValue);
+    }
+  }
+
+  private final AdaptedSize recordsPerStmt;
+  private final AdaptedSize stmtsPerTx;
+
+  // Statements of the current size measured in this window.
+  private int windowStmts;
+  private long windowRows;
+  private long windowNanos;
+
+  private long numIncreases;
+  private long numDecreases;
+
+  /**
+   * @param recordsPerStmt the initial number of records per statement.
+   * @param minRecords the least number of records per statement.
+   * @param maxRecords the greatest number of records per statement.
+   * @param stmtsPerTx the initial number of statements per transaction.
+   * @param minStmts the least number of statements per transaction.
+   * @param maxStmts the greatest number of statements per transaction.
+   */
+  public AdaptiveBatchController(int recordsPerStmt, int minRecords,
+      int maxRecords, int stmtsPerTx, int minStmts, int maxStmts) {
+    this.recordsPerStmt = new AdaptedSize("records per statement",
+        recordsPerStmt, Math.max(1, minRecords), maxRecords);
+    if (stmtsPerTx
+        == AsyncSqlOutputFormat.UNLIMITED_STATEMENTS_PER_TRANSACTION) {
+      // A single transaction per task; there is nothing to adapt.
+      this.stmtsPerTx = new AdaptedSize("statements per transaction",
+          stmtsPerTx, stmtsPerTx, stmtsPerTx);
+    } else {
+      this.stmtsPerTx = new AdaptedSize("statements per transaction",
+          stmtsPerTx, Math.max(1, minStmts), maxStmts);
+    }
+  }
+
+  /**
+   * @return the number of records to put in the next statement.
+   */
+  public synchronized int getRecordsPerStatement() {
+    return recordsPerStmt.value;
+  }
+
+  /**
+   * @return the number of statements to execute before committing.
+   */
+  public synchronized int getStatementsPerTransaction() {
+    return stmtsPerTx.value;
+  }
+
+  public synchronized long getNumIncreases() {
+    return numIncreases;
+  }
+
+  public synchronized long getNumDecreases() {
+    return numDecreases;
+  }
+
+  private void count(int change) {
+    if (change > 0) {
+      numIncreases++;
+    } else if (change < 0) {
+      numDecreases++;
+    }
+  }
+
+  /**
+   * Record the execution of a statement.
+   * @param numRows the number of records in the statement.
+   * @param nanos the time taken to execute it.
+   */
+  public synchronized void statementExecuted(int numRows, long nanos) {
+    if (numRows != recordsPerStmt.value) {
+      // Filled before the last change, or the final partial statement.
+      return;
+    }
+
+    windowStmts++;
+    windowRows += numRows;
+    windowNanos += nanos;
+    if (windowStmts >= STATEMENT_WINDOW) {
+      count(recordsPerStmt.update(rate(windowRows, windowNanos)));
+      windowStmts = 0;
+      windowRows = 0;
+      windowNanos = 0;
+    }
+  }
+
+  /**
+   * Record the commit of a transaction of getStatementsPerTransaction()
+   * statements.
+   * @param numRows the number of records written in the transaction.
+   * @param nanos the time taken to execute its statements and commit it.
+   */
+  public synchronized void transactionCommitted(long numRows, long nanos) {
+    count(stmtsPerTx.update(rate(numRows, nanos)));
+  }
+
+  private static double rate(long numRows, long nanos) {
+    return numRows * 1000000000.0 / Math.max(1, nanos);
+  }
+}
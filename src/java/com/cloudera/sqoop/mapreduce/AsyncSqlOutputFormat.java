@@ -24,7 +24,17 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -85,6 +95,63 @@ public abstract class AsyncSqlOutputFormat<K extends SqoopRecord, V>
    */
   public static final int UNLIMITED_STATEMENTS_PER_TRANSACTION = -1;
 
+  /** conf key: number of statements which may wait to be executed while
+   * another one runs. If this is 0, the RecordWriter waits for each
+   * statement to start executing before it fills the next one.
+   */
+  public static final String QUEUED_STATEMENTS_KEY =
+      "sqoop.export.queued.statements";
+
+  /** Default number of statements which may wait to be executed. */
+  public static final int DEFAULT_QUEUED_STATEMENTS = 2;
+
+  /** conf key: number of connections, each with its own thread and
+   * transactions, over which each task spreads its statements.
+   */
+  public static final String CONNECTIONS_PER_TASK_KEY =
+      "sqoop.export.connections.per.task";
+
+  /** conf key: if true, the number of records per statement and of
+   * statements per transaction are adapted to the time the database takes
+   * to execute and commit them, within the bounds set by the keys below.
+   */
+  public static final String ADAPTIVE_BATCH_KEY =
+      "sqoop.export.adaptive.batch";
+
+  /** conf key: least number of records per statement when adaptive. */
+  public static final String MIN_RECORDS_PER_STATEMENT_KEY =
+      "sqoop.export.records.per.statement.min";
+
+  /** conf key: greatest number of records per statement when adaptive. */
+  public static final String MAX_RECORDS_PER_STATEMENT_KEY =
+      "sqoop.export.records.per.statement.max";
+
+  /** conf key: least number of statements per transaction when adaptive. */
+  public static final String MIN_STATEMENTS_PER_TRANSACTION_KEY =
+      "sqoop.export.statements.per.transaction.min";
+
+  /** conf key: greatest number of statements per transaction when
+   * adaptive.
+   */
+  public static final String MAX_STATEMENTS_PER_TRANSACTION_KEY =
+      "sqoop.export.statements.per.transaction.max";
+
+  /** Default greatest number of records per statement when adaptive. */
+  public static final int DEFAULT_MAX_RECORDS_PER_STATEMENT = 1000;
+
+  /** Default greatest number of statements per transaction when adaptive. */
+  public static final int DEFAULT_MAX_STATEMENTS_PER_TRANSACTION = 1000;
+
+  /** conf key: if non-negative, a statement which fails is split to find
+   * the records at fault, which are written to the reject directory
+   * rather than failing the task. The task fails once it has rejected
+   * more than this many records.
+   */
+  public static final String MAX_REJECTS_KEY = "sqoop.export.max.rejects";
+
+  /** conf key: the directory to which rejected records are written. */
+  public static final String REJECT_DIR_KEY = "sqoop.export.reject.dir";
+
   private static final Log LOG = LogFactory.getLog(AsyncSqlOutputFormat.class);
 
   @Override
@@ -117,6 +184,8 @@ public abstract class AsyncSqlOutputFormat<K extends SqoopRecord, V>
     private final boolean isBatch;
     private final boolean commit;
     private final boolean stopThread;
+    private final int numRows;
+    private final List<SqoopRecord> records;
 
     @Deprecated
     /** Do not use AsyncDBOperation(PreparedStatement s, boolean
@@ -140,10 +209,47 @@ public abstract class AsyncSqlOutputFormat<K extends SqoopRecord, V>
      */
     public AsyncDBOperation(PreparedStatement s, boolean batch,
         boolean commit, boolean stopThread) {
+      this(s, batch, commit, stopThread, 0);
+    }
+
+    /**
+     * Create an asynchronous database operation.
+     * @param s the statement, if any, to execute.
+     * @param batch is true if this is a batch PreparedStatement, or false
+     * if it's a normal singleton statement.
+     * @param commit is true if this statement should be committed to the
+     * database.
+     * @param stopThread if true, the executor thread should stop after this
+     * operation.
+     * @param numRows the number of records written by the statement.
+     */
+    public AsyncDBOperation(PreparedStatement s, boolean batch,
+        boolean commit, boolean stopThread, int numRows) {
+      this(s, batch, commit, stopThread, numRows, null);
+    }
+
+    /**
+     * Create an asynchronous database operation.
+     * @param s the statement, if any, to execute.
+     * @param batch is true if this is a batch PreparedStatement, or false
+     * if it's a normal singleton statement.
+     * @param commit is true if this statement should be committed to the
+     * database.
+     * @param stopThread if true, the executor thread should stop after this
+     * operation.
+     * @param numRows the number of records written by the statement.
+     * @param records the records written by the statement, if the
+     * executor should find the ones at fault when it fails. May be null.
+     */
+    public AsyncDBOperation(PreparedStatement s, boolean batch,
+        boolean commit, boolean stopThread, int numRows,
+        List<SqoopRecord> records) {
       this.stmt = s;
       this.isBatch = batch;
       this.commit = commit;
       this.stopThread = stopThread;
+      this.numRows = numRows;
+      this.records = records;
     }
 
     /**
@@ -174,6 +280,185 @@ public abstract class AsyncSqlOutputFormat<K extends SqoopRecord, V>
     public boolean execAsBatch() {
       return this.isBatch;
     }
+
+    /**
+     * @return the number of records written by the statement, if known.
+     */
+    public int getNumRows() {
+      return this.numRows;
+    }
+
+    /**
+     * @return the records written by the statement, or null if they were
+     * not kept.
+     */
+    public List<SqoopRecord> getRecords() {
+      return this.records;
+    }
+  }
+
+  /**
+   * Used by an execution thread to find the records at fault when a
+   * statement fails. The records are split into smaller and smaller
+   * statements until each failing record is alone in its statement.
+   */
+  public interface RejectHandler {
+    /**
+     * Generate a statement writing the given records, on the connection
+     * of the execution thread. Called without the connection's lock held.
+     */
+    PreparedStatement getPreparedStatement(List<SqoopRecord> records)
+        throws SQLException;
+
+    /**
+     * Handle a record which the database refused.
+     * @throws IOException if the task should fail.
+     */
+    void reject(SqoopRecord record, SQLException cause) throws IOException;
+  }
+
+  /**
+   * Holds PreparedStatements which have been executed, so that they can be
+   * filled and executed again rather than preparing the same SQL anew.
+   * Statements are taken from the cache with prepare() and handed back
+   * with release() once they have run, possibly by another thread.
+   */
+  public static class PreparedStatementCache {
+
+    /** Maximum number of idle statements held open. */
+    public static final int MAX_IDLE_STATEMENTS = 16;
+
+    private final Connection conn;
+
+    // Idle statements by SQL, least recently used first.
+    private final LinkedHashMap<String, LinkedList<PreparedStatement>> idle;
+    private int numIdle;
+
+    // The SQL of each statement handed out by prepare().
+    private final Map<PreparedStatement, String> inUse;
+
+    public PreparedStatementCache(Connection conn) {
+      this.conn = conn;
+      this.idle = new LinkedHashMap<String, LinkedList<PreparedStatement>>(
+          16, 0.75f, true);
+      this.inUse = new IdentityHashMap<PreparedStatement, String>();
+    }
+
+    /**
+     * @return an idle statement for 'sql', or a newly-prepared one.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+      PreparedStatement stmt = null;
+      synchronized (this) {
+        LinkedList<PreparedStatement> stmts = idle.get(sql);
+        if (null != stmts) {
+          stmt = stmts.removeFirst();
+          numIdle--;
+          if (stmts.isEmpty()) {
+            idle.remove(sql);
+          }
+        }
+      }
+
+      if (null == stmt) {
+        // Do not hold our own lock here: the exec thread releases
+        // statements while it holds the lock on the connection.
+        synchronized (conn) {
+          stmt = conn.prepareStatement(sql);
+        }
+      }
+
+      synchronized (this) {
+        inUse.put(stmt, sql);
+      }
+      return stmt;
+    }
+
+    /**
+     * Hand back a statement which has been executed, to be reused. A
+     * statement which did not come from this cache is closed.
+     */
+    public void release(PreparedStatement stmt) throws SQLException {
+      String sql;
+      synchronized (this) {
+        sql = inUse.remove(stmt);
+      }
+
+      if (null == sql) {
+        stmt.close();
+        return;
+      }
+
+      try {
+        stmt.clearParameters();
+        stmt.clearBatch();
+      } catch (SQLException sqlE) {
+        LOG.debug("Cannot reuse statement: " + sqlE.toString());
+        stmt.close();
+        return;
+      }
+
+      PreparedStatement evicted = null;
+      synchronized (this) {
+        LinkedList<PreparedStatement> stmts = idle.get(sql);
+        if (null == stmts) {
+          stmts = new LinkedList<PreparedStatement>();
+          idle.put(sql, stmts);
+        }
+        stmts.addLast(stmt);
+        numIdle++;
+
+        if (numIdle > MAX_IDLE_STATEMENTS) {
+          Iterator<LinkedList<PreparedStatement>> it =
+              idle.values().iterator();
+          LinkedList<PreparedStatement> eldest = it.next();
+          evicted = eldest.removeFirst();
+          numIdle--;
+          if (eldest.isEmpty()) {
+            it.remove();
+          }
+        }
+      }
+
+      if (null != evicted) {
+        evicted.close();
+      }
+    }
+
+    /**
+     * Close a statement which cannot be reused, e.g. because executing it
+     * failed.
+     */
+    public void discard(PreparedStatement stmt) throws SQLException {
+      synchronized (this) {
+        inUse.remove(stmt);
+      }
+      stmt.close();
+    }
+
+    /**
+     * Close all of the idle statements.
+     */
+    public void close() throws SQLException {
+      SQLException lastErr = null;
+      synchronized (this) {
+        for (LinkedList<PreparedStatement> stmts : idle.values()) {
+          for (PreparedStatement stmt : stmts) {
+            try {
+              stmt.close();
+            } catch (SQLException sqlE) {
+              lastErr = sqlE;
+            }
+          }
+        }
+        idle.clear();
+        numIdle = 0;
+      }
+
+      if (null != lastErr) {
+        throw lastErr;
+      }
+    }
   }
 
   /**
@@ -186,11 +471,30 @@ public abstract class AsyncSqlOutputFormat<K extends SqoopRecord, V>
     private SQLException err; // Error from a previously-run statement.
 
     // How we receive database operations from the RecordWriter.
-    private SynchronousQueue<AsyncDBOperation> opsQueue;
+    private BlockingQueue<AsyncDBOperation> opsQueue;
+
+    // Where executed statements go to be reused, if anywhere.
+    private final PreparedStatementCache stmtCache;
+
+    // Operations put() but not yet completed.
+    private final AtomicInteger numPending;
+
+    // Chooses the number of statements per transaction, if anything does.
+    private final AdaptiveBatchController batchController;
+
+    // Isolates the records at fault when a statement fails, if non-null.
+    private RejectHandler rejectHandler;
+
+    // False once the driver has refused to release a savepoint.
+    private boolean canReleaseSavepoints = true;
 
     protected int curNumStatements; // statements executed thus far in the tx.
     protected final int stmtsPerTx;  // statements per transaction.
 
+    // Records written, and time spent in the database, thus far in the tx.
+    private long curNumRows;
+    private long curNanos;
+
     /**
      * Create a new update thread that interacts with the database.
      * @param conn the connection to use. This must only be used by this
@@ -199,10 +503,75 @@ public abstract class AsyncSqlOutputFormat<K extends SqoopRecord, V>
      * the current transaction.
      */
     public AsyncSqlExecThread(Connection conn, int stmtsPerTx) {
+      this(conn, stmtsPerTx, 0, null);
+    }
+
+    /**
+     * Create a new update thread that interacts with the database.
+     * @param conn the connection to use. This must only be used by this
+     * thread.
+     * @param stmtsPerTx the number of statements to execute before committing
+     * the current transaction.
+     * @param queuedStmts the number of operations which may wait for this
+     * thread while it executes another.
+     * @param stmtCache the cache to which executed statements are released,
+     * or null if they should be closed.
+     */
+    public AsyncSqlExecThread(Connection conn, int stmtsPerTx,
+        int queuedStmts, PreparedStatementCache stmtCache) {
+      this(conn, stmtsPerTx, queuedStmts, stmtCache, null);
+    }
+
+    /**
+     * Create a new update thread that interacts with the database.
+     * @param conn the connection to use. This must only be used by this
+     * thread.
+     * @param stmtsPerTx the number of statements to execute before committing
+     * the current transaction, if batchController is null.
+     * @param queuedStmts the number of operations which may wait for this
+     * thread while it executes another.
+     * @param stmtCache the cache to which executed statements are released,
+     * or null if they should be closed.
+     * @param batchController the controller which chooses the number of
+     * statements per transaction, and which is told how long each statement
+     * and transaction took. May be null.
+     */
+    public AsyncSqlExecThread(Connection conn, int stmtsPerTx,
+        int queuedStmts, PreparedStatementCache stmtCache,
+        AdaptiveBatchController batchController) {
       this.conn = conn;
       this.err = null;
-      this.opsQueue = new SynchronousQueue<AsyncDBOperation>();
+      if (queuedStmts > 0) {
+        this.opsQueue = new ArrayBlockingQueue<AsyncDBOperation>(queuedStmts);
+      } else {
+        this.opsQueue = new SynchronousQueue<AsyncDBOperation>();
+      }
       this.stmtsPerTx = stmtsPerTx;
+      this.stmtCache = stmtCache;
+      this.numPending = new AtomicInteger(0);
+      this.batchController = batchController;
+    }
+
+    /**
+     * Have statements which fail split to find the records at fault, which
+     * are passed to the given handler. Each statement then runs within a
+     * savepoint, so that the part of it which succeeded can be undone.
+     * Must be called before the thread is started.
+     */
+    public void setRejectHandler(RejectHandler handler) {
+      this.rejectHandler = handler;
+    }
+
+    /**
+     * @return the number of statements to execute before committing the
+     * current transaction.
+     */
+    private int getStatementsPerTransaction() {
+      if (null == batchController) {
+        return stmtsPerTx;
+      } else {
+        return batchController.getStatementsPerTransaction();
+      }
     }
 
     public void run() {
@@ -222,60 +591,250 @@ public abstract class AsyncSqlOutputFormat<K extends SqoopRecord, V>
           continue;
         }
 
-        PreparedStatement stmt = op.getStatement();
-        // Synchronize on the connection to ensure it does not conflict
-        // with the prepareStatement() call in the main thread.
-        synchronized (conn) {
-          try {
-            if (null != stmt) {
-              if (op.execAsBatch()) {
-                stmt.executeBatch();
-              } else {
-                stmt.execute();
-              }
-              stmt.close();
-              stmt = null;
-              this.curNumStatements++;
+        try {
+          execute(op);
+        } finally {
+          numPending.decrementAndGet();
+        }
+
+        // Always check whether we should end the loop, regardless
+        // of the presence of an exception.
+        if (op.stop()) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Run a statement, isolating the records at fault if it fails and a
+     * RejectHandler is set, then commit if necessary.
+     */
+    private void execute(AsyncDBOperation op) {
+      PreparedStatement stmt = op.getStatement();
+      SQLException failure = null;
+      boolean success = false;
+      // Synchronize on the connection to ensure it does not conflict
+      // with the prepareStatement() call in the main thread.
+      synchronized (conn) {
+        try {
+          if (null != stmt) {
+            Savepoint savepoint = null;
+            if (null != rejectHandler && null != op.getRecords()) {
+              savepoint = conn.setSavepoint();
             }
 
-            if (op.requiresCommit() || (curNumStatements >= stmtsPerTx
-                && stmtsPerTx != UNLIMITED_STATEMENTS_PER_TRANSACTION)) {
-              LOG.debug("Committing transaction of " + curNumStatements
-                  + " statements");
-              this.conn.commit();
-              this.curNumStatements = 0;
+            long start = System.nanoTime();
+            try {
+              executeStatement(stmt, op.execAsBatch());
+              releaseSavepoint(savepoint);
+            } catch (SQLException sqlE) {
+              if (null == savepoint) {
+                throw sqlE;
+              }
+
+              // Undo whatever part of the statement succeeded; the records
+              // are written again below, apart from the ones at fault.
+              conn.rollback(savepoint);
+              failure = sqlE;
             }
-          } catch (SQLException sqlE) {
-            setLastError(sqlE);
-          } finally {
-            // Close the statement on our way out if that didn't happen
-            // via the normal execution path.
-            if (null != stmt) {
-              try {
-                stmt.close();
-              } catch (SQLException sqlE) {
-                setLastError(sqlE);
+
+            if (null == failure) {
+              long execNanos = System.nanoTime() - start;
+              this.curNanos += execNanos;
+              this.curNumRows += op.getNumRows();
+              if (null != batchController) {
+                batchController.statementExecuted(op.getNumRows(),
+                    execNanos);
               }
+              releaseStatement(stmt);
+              stmt = null;
             }
+            this.curNumStatements++;
+          }
+          success = true;
+        } catch (SQLException sqlE) {
+          setLastError(sqlE);
+        } finally {
+          // Close the statement on our way out if that didn't happen
+          // via the normal execution path.
+          if (null != stmt) {
+            try {
+              discardStatement(stmt);
+            } catch (SQLException sqlE) {
+              setLastError(sqlE);
+              success = false;
+            }
+          }
+        } // try .. catch .. finally.
+      } // synchronized (conn)
+
+      if (success && null != failure) {
+        // Done without the connection's lock, which must not be held while
+        // the RejectHandler generates statements.
+        try {
+          isolateRejects(op.getRecords(), failure, op.execAsBatch());
+        } catch (SQLException sqlE) {
+          setLastError(sqlE);
+          success = false;
+        }
+      }
 
-            // Always check whether we should end the loop, regardless
-            // of the presence of an exception.
-            if (op.stop()) {
-              return;
+      if (!success) {
+        return;
+      }
+
+      synchronized (conn) {
+        try {
+          int txStmts = getStatementsPerTransaction();
+          boolean txFull = curNumStatements >= txStmts
+              && txStmts != UNLIMITED_STATEMENTS_PER_TRANSACTION;
+          if (op.requiresCommit() || txFull) {
+            LOG.debug("Committing transaction of " + curNumStatements
+                + " statements");
+            long start = System.nanoTime();
+            this.conn.commit();
+            this.curNanos += System.nanoTime() - start;
+            if (txFull && null != batchController) {
+              batchController.transactionCommitted(curNumRows, curNanos);
             }
-          } // try .. catch .. finally.
-        } // synchronized (conn)
+            this.curNumStatements = 0;
+            this.curNumRows = 0;
+            this.curNanos = 0;
+          }
+        } catch (SQLException sqlE) {
+          setLastError(sqlE);
+        }
+      }
+    }
+
+    private void executeStatement(PreparedStatement stmt, boolean batch)
+        throws SQLException {
+      if (batch) {
+        stmt.executeBatch();
+      } else {
+        stmt.execute();
+      }
+    }
+
+    /**
+     * Release the savepoint of a statement which succeeded. Otherwise every
+     * statement of a transaction would hold one until the commit, and each
+     * costs the database locks and undo state (and, in PostgreSQL, a
+     * subtransaction). Drivers which cannot release savepoints leave them
+     * to be freed by the commit.
+     */
+    private void releaseSavepoint(Savepoint savepoint) {
+      if (null == savepoint || !canReleaseSavepoints) {
+        return;
+      }
+
+      try {
+        conn.releaseSavepoint(savepoint);
+      } catch (SQLException sqlE) {
+        LOG.debug("Cannot release savepoints; leaving them to the commit: "
+            + sqlE.toString());
+        canReleaseSavepoints = false;
+      }
+    }
+
+    /** Hand back a statement which was executed, to be reused. */
+    private void releaseStatement(PreparedStatement stmt)
+        throws SQLException {
+      if (null != stmtCache) {
+        stmtCache.release(stmt);
+      } else {
+        stmt.close();
+      }
+    }
+
+    /** Close a statement which failed. */
+    private void discardStatement(PreparedStatement stmt)
+        throws SQLException {
+      if (null != stmtCache) {
+        stmtCache.discard(stmt);
+      } else {
+        stmt.close();
+      }
+    }
+
+    /**
+     * Write the given records, which failed together with the given error,
+     * by splitting them in halves until each record at fault is alone in
+     * its statement, and passing those to the RejectHandler.
+     */
+    private void isolateRejects(List<SqoopRecord> records,
+        SQLException cause, boolean batch) throws SQLException {
+      if (records.size() == 1) {
+        try {
+          rejectHandler.reject(records.get(0), cause);
+        } catch (IOException ioe) {
+          throw new SQLException(ioe.getMessage(), ioe);
+        }
+        return;
+      }
+
+      int mid = records.size() / 2;
+      List<SqoopRecord> firstHalf = records.subList(0, mid);
+      List<SqoopRecord> secondHalf = records.subList(mid, records.size());
+      SQLException firstErr = tryExecute(firstHalf, batch);
+      if (null != firstErr) {
+        isolateRejects(firstHalf, firstErr, batch);
+      }
+
+      SQLException secondErr = tryExecute(secondHalf, batch);
+      if (null != secondErr) {
+        isolateRejects(secondHalf, secondErr, batch);
+      }
+    }
+
+    /**
+     * Write the given records in a statement of their own, undoing it if
+     * it fails.
+     * @return the error from the statement, or null if it succeeded.
+     */
+    private SQLException tryExecute(List<SqoopRecord> records,
+        boolean batch) throws SQLException {
+      PreparedStatement stmt = rejectHandler.getPreparedStatement(records);
+      synchronized (conn) {
+        Savepoint savepoint = conn.setSavepoint();
+        try {
+          executeStatement(stmt, batch);
+        } catch (SQLException sqlE) {
+          conn.rollback(savepoint);
+          discardStatement(stmt);
+          return sqlE;
+        }
+        releaseSavepoint(savepoint);
+
+        this.curNumRows += records.size();
+        releaseStatement(stmt);
+        return null;
       }
     }
 
     /**
      * Allows a user to enqueue the next database operation to run.
      * Since the connection can only execute a single operation at a time,
-     * the put() method may block if another operation is already underway.
+     * the put() method may block if another operation is already underway
+     * and the queue of waiting operations is full.
      * @param op the database operation to perform.
      */
     public void put(AsyncDBOperation op) throws InterruptedException {
-      opsQueue.put(op);
+      numPending.incrementAndGet();
+      try {
+        opsQueue.put(op);
+      } catch (InterruptedException ie) {
+        numPending.decrementAndGet();
+        throw ie;
+      }
+    }
+
+    /**
+     * @return the number of operations which have been put() but have not
+     * yet been completed.
+     */
+    public int getNumPending() {
+      return numPending.get();
     }
 
     /**
@@ -30,8 +30,10 @@ import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 import com.cloudera.sqoop.mapreduce.db.DBConfiguration;
 import com.cloudera.sqoop.util.LoggingUtils;
 import com.cloudera.sqoop.lib.SqoopRecord;
@@ -44,6 +46,17 @@ import com.cloudera.sqoop.lib.SqoopRecord;
  * Record objects are buffered before actually performing the INSERT
  * statements; this requires that the key implement the SqoopRecord interface.
  *
+ * The writer may use several connections, each with its own background
+ * thread and transactions. Each statement is prepared on the connection
+ * whose thread has the fewest statements waiting for it.
+ *
+ * If sqoop.export.adaptive.batch is set, the number of records per
+ * statement and of statements per transaction are chosen by an
+ * AdaptiveBatchController, and reported in its counters on close.
+ *
+ * If sqoop.export.max.rejects is set, a statement which fails is split to
+ * find the records at fault, which are written by a RejectFileWriter.
+ *
  * Uses DBOutputFormat/DBConfiguration for configuring the output.
  */
 public abstract class AsyncSqlRecordWriter<K extends SqoopRecord, V>
@@ -51,18 +64,33 @@ public abstract class AsyncSqlRecordWriter<K extends SqoopRecord, V>
 
   private static final Log LOG = LogFactory.getLog(AsyncSqlRecordWriter.class);
 
-  private Connection connection;
-
   private Configuration conf;
 
   protected final int rowsPerStmt; // rows to insert per statement.
 
+  // Adapts rowsPerStmt and the statements per transaction, if non-null.
+  private AdaptiveBatchController batchController;
+
+  // Where records refused by the database go, if they are isolated.
+  private RejectFileWriter rejectWriter;
+
+  // Held while generating a statement, which the execution threads may
+  // also do when isolating rejected records.
+  private final Object stmtLock = new Object();
+
   // Buffer for records to be put into export SQL statements.
   private List<SqoopRecord> records;
 
-  // Background thread to actually perform the updates.
-  private AsyncSqlOutputFormat.AsyncSqlExecThread execThread;
-  private boolean startedExecThread;
+  // For each connection: the connection, the statements which have been
+  // executed on it, to be filled again, and the background thread which
+  // actually performs the updates.
+  private Connection [] connections;
+  private AsyncSqlOutputFormat.PreparedStatementCache [] stmtCaches;
+  private AsyncSqlOutputFormat.AsyncSqlExecThread [] execThreads;
+  private boolean startedExecThreads;
+
+  // The connection on which the next statement is prepared.
+  private int curConn;
 
   public AsyncSqlRecordWriter(TaskAttemptContext context)
       throws ClassNotFoundException, SQLException {
@@ -74,27 +102,66 @@ public abstract class AsyncSqlRecordWriter<K extends SqoopRecord, V>
     int stmtsPerTx = conf.getInt(
         AsyncSqlOutputFormat.STATEMENTS_PER_TRANSACTION_KEY,
         AsyncSqlOutputFormat.DEFAULT_STATEMENTS_PER_TRANSACTION);
+    int queuedStmts = conf.getInt(
+        AsyncSqlOutputFormat.QUEUED_STATEMENTS_KEY,
+        AsyncSqlOutputFormat.DEFAULT_QUEUED_STATEMENTS);
 
-    DBConfiguration dbConf = new DBConfiguration(conf);
-    this.connection = dbConf.getConnection();
-    this.connection.setAutoCommit(false);
+    int numConns = Math.max(1, conf.getInt(
+        AsyncSqlOutputFormat.CONNECTIONS_PER_TASK_KEY, 1));
 
     this.records = new ArrayList<SqoopRecord>(this.rowsPerStmt);
 
-    this.execThread = new AsyncSqlOutputFormat.AsyncSqlExecThread(
-        connection, stmtsPerTx);
-    this.execThread.setDaemon(true);
-    this.startedExecThread = false;
+    if (conf.getBoolean(AsyncSqlOutputFormat.ADAPTIVE_BATCH_KEY, false)) {
+      this.batchController = new AdaptiveBatchController(rowsPerStmt,
+          conf.getInt(AsyncSqlOutputFormat.MIN_RECORDS_PER_STATEMENT_KEY, 1),
+          conf.getInt(AsyncSqlOutputFormat.MAX_RECORDS_PER_STATEMENT_KEY,
+              AsyncSqlOutputFormat.DEFAULT_MAX_RECORDS_PER_STATEMENT),
+          stmtsPerTx,
+          conf.getInt(AsyncSqlOutputFormat.MIN_STATEMENTS_PER_TRANSACTION_KEY,
+              1),
+          conf.getInt(AsyncSqlOutputFormat.MAX_STATEMENTS_PER_TRANSACTION_KEY,
+              AsyncSqlOutputFormat.DEFAULT_MAX_STATEMENTS_PER_TRANSACTION));
+    }
+
+    long maxRejects = conf.getLong(AsyncSqlOutputFormat.MAX_REJECTS_KEY, -1);
+    if (maxRejects >= 0) {
+      this.rejectWriter = new RejectFileWriter(conf,
+          new Path(conf.get(AsyncSqlOutputFormat.REJECT_DIR_KEY)),
+          context.getTaskAttemptID().getTaskID().getId(), maxRejects);
+    }
+
+    DBConfiguration dbConf = new DBConfiguration(conf);
+    this.connections = new Connection[numConns];
+    this.stmtCaches = new AsyncSqlOutputFormat.PreparedStatementCache[numConns];
+    this.execThreads = new AsyncSqlOutputFormat.AsyncSqlExecThread[numConns];
+    for (int i = 0; i < numConns; i++) {
+      connections[i] = dbConf.getConnection();
+      connections[i].setAutoCommit(false);
+
+      stmtCaches[i] = new AsyncSqlOutputFormat.PreparedStatementCache(
+          connections[i]);
+      execThreads[i] = new AsyncSqlOutputFormat.AsyncSqlExecThread(
+          connections[i], stmtsPerTx, queuedStmts, stmtCaches[i],
+          batchController);
+      execThreads[i].setDaemon(true);
+      if (null != rejectWriter) {
+        execThreads[i].setRejectHandler(new ConnectionRejectHandler(i));
+      }
+    }
+    this.startedExecThreads = false;
+    this.curConn = 0;
   }
 
   /**
    * Allow subclasses access to the Connection instance we hold.
    * This Connection is shared with the asynchronous SQL exec thread.
    * Any uses of the Connection must be synchronized on it.
+   * If the writer uses several connections, this is the one on which
+   * the statement being generated by getPreparedStatement() will run.
    * @return the Connection object used for this SQL transaction.
    */
   protected final Connection getConnection() {
-    return this.connection;
+    return this.connections[curConn];
   }
 
   /**
@@ -105,6 +172,17 @@ public abstract class AsyncSqlRecordWriter<K extends SqoopRecord, V>
     return this.conf;
   }
 
+  /**
+   * Get a PreparedStatement for the given SQL for use by
+   * getPreparedStatement(). Once the execution thread has run it, the
+   * statement is kept open to be returned by a later call with the same
+   * SQL, rather than preparing the SQL again.
+   */
+  protected final PreparedStatement prepareStatement(String sql)
+      throws SQLException {
+    return stmtCaches[curConn].prepare(sql);
+  }
+
   /**
    * Should return 'true' if the PreparedStatements generated by the
    * RecordWriter are intended to be executed in "batch" mode, or false
@@ -131,34 +209,180 @@ public abstract class AsyncSqlRecordWriter<K extends SqoopRecord, V>
   protected abstract PreparedStatement getPreparedStatement(
       List<SqoopRecord> userRecords) throws SQLException;
 
+  /**
+   * Generates statements for the execution thread of one connection when
+   * it isolates rejected records, and writes the rejected records.
+   */
+  private class ConnectionRejectHandler
+      implements AsyncSqlOutputFormat.RejectHandler {
+    private final int conn;
+
+    ConnectionRejectHandler(int conn) {
+      this.conn = conn;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public PreparedStatement getPreparedStatement(List<SqoopRecord> recs)
+        throws SQLException {
+      synchronized (stmtLock) {
+        int savedConn = curConn;
+        curConn = conn;
+        try {
+          return AsyncSqlRecordWriter.this.getPreparedStatement(recs);
+        } finally {
+          curConn = savedConn;
+        }
+      }
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void reject(SqoopRecord record, SQLException cause)
+        throws IOException {
+      rejectWriter.reject(record, cause);
+    }
+  }
+
+  /**
+   * @return the number of records to buffer before executing a statement.
+   */
+  private int getRecordsPerStatement() {
+    if (null == batchController) {
+      return rowsPerStmt;
+    } else {
+      return batchController.getRecordsPerStatement();
+    }
+  }
+
+  /**
+   * Report the number of rejected records and the batch sizes chosen by
+   * the batchController, if any.
+   */
+  private void reportCounters(TaskAttemptContext context) {
+    // The framework closes the writer with the task's context, which is
+    // the only one that has counters.
+    TaskInputOutputContext<?, ?, ?, ?> ioContext = null;
+    if (context instanceof TaskInputOutputContext) {
+      ioContext = (TaskInputOutputContext<?, ?, ?, ?>) context;
+    }
+
+    if (null != rejectWriter && rejectWriter.getNumRejects() > 0) {
+      LOG.warn("Rejected " + rejectWriter.getNumRejects() + " records");
+      if (null != ioContext) {
+        ioContext.getCounter(RejectFileWriter.Counter.REJECTED_RECORDS)
+            .increment(rejectWriter.getNumRejects());
+      }
+    }
+
+    if (null == batchController) {
+      return;
+    }
+
+    int recordsPerStmt = batchController.getRecordsPerStatement();
+    int stmtsPerTx = batchController.getStatementsPerTransaction();
+    LOG.info("Adaptive batching chose " + recordsPerStmt
+        + " records per statement and " + stmtsPerTx
+        + " statements per transaction");
+
+    if (null != ioContext) {
+      ioContext.getCounter(AdaptiveBatchController.Counter.ADAPTIVE_TASKS)
+          .increment(1);
+      ioContext.getCounter(
+          AdaptiveBatchController.Counter.RECORDS_PER_STATEMENT)
+          .increment(recordsPerStmt);
+      ioContext.getCounter(
+          AdaptiveBatchController.Counter.STATEMENTS_PER_TRANSACTION)
+          .increment(stmtsPerTx);
+      ioContext.getCounter(
+          AdaptiveBatchController.Counter.BATCH_SIZE_INCREASES)
+          .increment(batchController.getNumIncreases());
+      ioContext.getCounter(
+          AdaptiveBatchController.Counter.BATCH_SIZE_DECREASES)
+          .increment(batchController.getNumDecreases());
+    }
+  }
+
+  /**
+   * Choose the connection whose thread has the fewest operations waiting,
+   * starting the search after the last one used so that ties are shared
+   * out in turn.
+   */
+  private void chooseConnection() {
+    int best = curConn;
+    int bestPending = Integer.MAX_VALUE;
+    for (int i = 1; i <= execThreads.length; i++) {
+      int conn = (curConn + i) % execThreads.length;
+      int pending = execThreads[conn].getNumPending();
+      if (pending < bestPending) {
+        best = conn;
+        bestPending = pending;
+      }
+    }
+    curConn = best;
+  }
+
+  /**
+   * Rethrow any SQLException from a previous operation of any of the
+   * execution threads.
+   */
+  private void checkForErrors() throws SQLException {
+    for (AsyncSqlOutputFormat.AsyncSqlExecThread execThread : execThreads) {
+      SQLException lastException = execThread.getLastError();
+      if (null != lastException) {
+        LoggingUtils.logAll(LOG, lastException);
+        throw lastException;
+      }
+    }
+  }
+
   /**
    * Takes the current contents of 'records' and formats and executes the
-   * INSERT statement.
-   * @param closeConn if true, commits the transaction and closes the
-   * connection.
+   * INSERT statement. The statement is queued for the execution thread,
+   * so that the next one can be filled while it runs; this blocks only if
+   * the queue is full.
+   * @param commit if true, commits the transaction on every connection.
+   * @param stopThread if true, stops every execution thread.
    */
   private void execUpdate(boolean commit, boolean stopThread)
       throws InterruptedException, SQLException {
 
-    if (!startedExecThread) {
-      this.execThread.start();
-      this.startedExecThread = true;
+    if (!startedExecThreads) {
+      for (AsyncSqlOutputFormat.AsyncSqlExecThread execThread
+          : execThreads) {
+        execThread.start();
+      }
+      this.startedExecThreads = true;
     }
 
     PreparedStatement stmt = null;
+    int conn;
+    int numRows = records.size();
+    List<SqoopRecord> opRecords = null;
     boolean successfulPut = false;
     try {
-      if (records.size() > 0) {
-        stmt = getPreparedStatement(records);
-        this.records.clear();
+      synchronized (stmtLock) {
+        chooseConnection();
+        conn = curConn;
+        if (numRows > 0) {
+          stmt = getPreparedStatement(records);
+          if (null != rejectWriter) {
+            // The execution thread needs the records if the statement
+            // fails.
+            opRecords = this.records;
+            this.records = new ArrayList<SqoopRecord>(rowsPerStmt);
+          } else {
+            this.records.clear();
+          }
+        }
       }
 
       // Pass this operation off to the update thread. This will block if
-      // the update thread is already performing an update.
+      // the update thread's queue is full.
       AsyncSqlOutputFormat.AsyncDBOperation op =
           new AsyncSqlOutputFormat.AsyncDBOperation(stmt, isBatchExec(),
-                  commit, stopThread);
-      execThread.put(op);
+                  commit, stopThread, numRows, opRecords);
+      execThreads[conn].put(op);
       successfulPut = true; // op has been posted to the other thread.
     } finally {
       if (!successfulPut && null != stmt) {
@@ -167,12 +391,18 @@ public abstract class AsyncSqlRecordWriter<K extends SqoopRecord, V>
       }
     }
 
-    // Check for any previous SQLException. If one happened, rethrow it here.
-    SQLException lastException = execThread.getLastError();
-    if (null != lastException) {
-      LoggingUtils.logAll(LOG, lastException);
-      throw lastException;
+    if (commit || stopThread) {
+      // Every other connection must commit or stop as well.
+      for (int i = 0; i < execThreads.length; i++) {
+        if (i != conn) {
+          execThreads[i].put(new AsyncSqlOutputFormat.AsyncDBOperation(
+              null, isBatchExec(), commit, stopThread));
+        }
+      }
     }
+
+    // Check for any previous SQLException. If one happened, rethrow it here.
+    checkForErrors();
   }
 
   @Override
@@ -182,30 +412,55 @@ public abstract class AsyncSqlRecordWriter<K extends SqoopRecord, V>
     try {
       try {
         execUpdate(true, true);
-        execThread.join();
+        for (AsyncSqlOutputFormat.AsyncSqlExecThread execThread
+            : execThreads) {
+          execThread.join();
+        }
       } catch (SQLException sqle) {
         throw new IOException(sqle);
       }
 
       // If we're not leaving on an error return path already,
-      // now that execThread is definitely stopped, check that the
-      // error slot remains empty.
-      SQLException lastErr = execThread.getLastError();
-      if (null != lastErr) {
+      // now that the execThreads are definitely stopped, check that the
+      // error slots remain empty.
+      try {
+        checkForErrors();
+      } catch (SQLException lastErr) {
         throw new IOException(lastErr);
       }
+
+      reportCounters(context);
     } finally {
       try {
+        for (AsyncSqlOutputFormat.PreparedStatementCache stmtCache
+            : stmtCaches) {
+          stmtCache.close();
+        }
         closeConnection(context);
       } catch (SQLException sqle) {
         throw new IOException(sqle);
+      } finally {
+        if (null != rejectWriter) {
+          rejectWriter.close();
+        }
       }
     }
   }
 
   public void closeConnection(TaskAttemptContext context)
       throws SQLException {
-    this.connection.close();
+    SQLException lastErr = null;
+    for (Connection connection : connections) {
+      try {
+        connection.close();
+      } catch (SQLException sqle) {
+        lastErr = sqle;
+      }
+    }
+
+    if (null != lastErr) {
+      throw lastErr;
+    }
   }
 
   @Override
@@ -214,7 +469,7 @@ public abstract class AsyncSqlRecordWriter<K extends SqoopRecord, V>
       throws InterruptedException, IOException {
     try {
       records.add((SqoopRecord) key.clone());
-      if (records.size() >= this.rowsPerStmt) {
+      if (records.size() >= getRecordsPerStatement()) {
         execUpdate(false, false);
       }
     } catch (CloneNotSupportedException cnse) {
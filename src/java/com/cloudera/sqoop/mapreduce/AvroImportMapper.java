@@ -22,12 +22,16 @@ package com.cloudera.sqoop.mapreduce;
 
 import com.cloudera.sqoop.lib.BlobRef;
 import com.cloudera.sqoop.lib.ClobRef;
+import com.cloudera.sqoop.lib.LargeObjectLoader;
+import com.cloudera.sqoop.lib.LobRef;
 import com.cloudera.sqoop.lib.SqoopRecord;
+import com.cloudera.sqoop.orm.AvroSchemaGenerator;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.sql.Date;
+import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Map;
@@ -39,6 +43,7 @@ import org.apache.avro.mapred.AvroWrapper;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 /**
  * Imports records by transforming them to Avro records in an Avro data file.
@@ -50,29 +55,80 @@ public class AvroImportMapper
   private final AvroWrapper<GenericRecord> wrapper =
     new AvroWrapper<GenericRecord>();
   private Schema schema;
+  private LargeObjectLoader lobLoader;
 
   @Override
-  protected void setup(Context context) {
+  protected void setup(Context context)
+      throws IOException, InterruptedException {
     schema = AvroJob.getMapOutputSchema(context.getConfiguration());
+    lobLoader = new LargeObjectLoader(context.getConfiguration(),
+        FileOutputFormat.getWorkOutputPath(context));
   }
 
   @Override
   protected void map(LongWritable key, SqoopRecord val, Context context)
       throws IOException, InterruptedException {
+    try {
+      // Loading of LOBs was delayed until we have a Context.
+      val.loadLargeObjects(lobLoader);
+    } catch (SQLException sqlE) {
+      throw new IOException(sqlE);
+    }
+
     wrapper.datum(toGenericRecord(val));
     context.write(wrapper, NullWritable.get());
   }
 
+  @Override
+  protected void cleanup(Context context) throws IOException {
+    if (null != lobLoader) {
+      lobLoader.close();
+    }
+  }
 
   private GenericRecord toGenericRecord(SqoopRecord val) {
     Map<String, Object> fieldMap = val.getFieldMap();
     GenericRecord record = new GenericData.Record(schema);
     for (Map.Entry<String, Object> entry : fieldMap.entrySet()) {
-      record.put(entry.getKey(), toAvro(entry.getValue()));
+      String fieldName = entry.getKey();
+      Object avroObject = toAvro(entry.getValue());
+      if (avroObject instanceof LobRef) {
+        avroObject = toExternalLob((LobRef) avroObject,
+            schema.getField(fieldName).schema());
+      }
+      record.put(fieldName, avroObject);
     }
     return record;
   }
 
+  /**
+   * Convert a large object stored in a LobFile to a reference record,
+   * using the record branch of the field's union schema.
+   */
+  private GenericRecord toExternalLob(LobRef lob, Schema fieldSchema) {
+    Schema lobSchema = null;
+    if (fieldSchema.getType() == Schema.Type.UNION) {
+      for (Schema s : fieldSchema.getTypes()) {
+        if (s.getType() == Schema.Type.RECORD) {
+          lobSchema = s;
+        }
+      }
+    }
+    if (null == lobSchema) {
+      throw new IllegalArgumentException("Avro schema " + fieldSchema
+          + " cannot refer to the external large object " + lob);
+    }
+
+    GenericRecord lobRecord = new GenericData.Record(lobSchema);
+    lobRecord.put(AvroSchemaGenerator.EXTERNAL_LOB_FILE_FIELD,
+        lob.getFileName());
+    lobRecord.put(AvroSchemaGenerator.EXTERNAL_LOB_OFFSET_FIELD,
+        lob.getOffset());
+    lobRecord.put(AvroSchemaGenerator.EXTERNAL_LOB_LENGTH_FIELD,
+        lob.getLength());
+    return lobRecord;
+  }
+
   /**
    * Convert the Avro representation of a Java type (that has already been
    * converted from the SQL equivalent).
@@ -92,9 +148,12 @@ public class AvroImportMapper
       BytesWritable bw = (BytesWritable) o;
       return ByteBuffer.wrap(bw.getBytes(), 0, bw.getLength());
     } else if (o instanceof ClobRef) {
-      throw new UnsupportedOperationException("ClobRef not suported");
+      ClobRef clob = (ClobRef) o;
+      // External LOBs are left as references for toExternalLob().
+      return clob.isExternal() ? clob : clob.getData();
     } else if (o instanceof BlobRef) {
-      throw new UnsupportedOperationException("BlobRef not suported");
+      BlobRef blob = (BlobRef) o;
+      return blob.isExternal() ? blob : ByteBuffer.wrap(blob.getData());
     }
     // primitive types (Integer, etc) are left unchanged
     return o;
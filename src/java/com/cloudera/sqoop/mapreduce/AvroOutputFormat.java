@@ -26,12 +26,16 @@ import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.mapred.AvroWrapper;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
+import com.cloudera.sqoop.mapreduce.db.SplitCheckpointer;
+
 /** An {@link org.apache.hadoop.mapred.OutputFormat} for Avro data files. */
 public class AvroOutputFormat<T>
   extends FileOutputFormat<AvroWrapper<T>, NullWritable> {
@@ -40,15 +44,39 @@ public class AvroOutputFormat<T>
   public RecordWriter<AvroWrapper<T>, NullWritable> getRecordWriter(
       TaskAttemptContext context) throws IOException, InterruptedException {
 
-    Schema schema = AvroJob.getMapOutputSchema(context.getConfiguration());
+    final Configuration conf = context.getConfiguration();
+    final Schema schema = AvroJob.getMapOutputSchema(conf);
+
+    SplitCheckpointer checkpointer = SplitCheckpointer.forTask(conf,
+        context.getTaskAttemptID());
+    if (null != checkpointer) {
+      FileOutputCommitter committer =
+          (FileOutputCommitter) getOutputCommitter(context);
+      return new CheckpointedRecordWriter<AvroWrapper<T>, NullWritable>(
+          context, committer.getWorkPath(),
+          org.apache.avro.mapred.AvroOutputFormat.EXT, checkpointer,
+          new CheckpointedRecordWriter.SegmentFactory<AvroWrapper<T>,
+              NullWritable>() {
+            public RecordWriter<AvroWrapper<T>, NullWritable> createSegment(
+                Path file) throws IOException {
+              return getRecordWriter(file, schema, conf);
+            }
+          });
+    }
+
+    return getRecordWriter(getDefaultWorkFile(context,
+        org.apache.avro.mapred.AvroOutputFormat.EXT), schema, conf);
+  }
 
+  /**
+   * Create a RecordWriter for a single Avro data file.
+   */
+  private RecordWriter<AvroWrapper<T>, NullWritable> getRecordWriter(
+      Path path, Schema schema, Configuration conf) throws IOException {
     final DataFileWriter<T> WRITER =
       new DataFileWriter<T>(new GenericDatumWriter<T>());
 
-    Path path = getDefaultWorkFile(context,
-        org.apache.avro.mapred.AvroOutputFormat.EXT);
-    WRITER.create(schema,
-        path.getFileSystem(context.getConfiguration()).create(path));
+    WRITER.create(schema, path.getFileSystem(conf).create(path));
 
     return new RecordWriter<AvroWrapper<T>, NullWritable>() {
       @Override
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import com.cloudera.sqoop.mapreduce.db.SplitCheckpointer;
+
+/**
+ * A RecordWriter for a task that checkpoints its progress. It writes the
+ * task's output as a series of segment files, named part-m-NNNNN-SSSSS,
+ * starting a new segment after each checkpoint. The segments saved by
+ * the checkpoints are moved back into the work directory when the writer
+ * is closed.
+ */
+public class CheckpointedRecordWriter<K, V> extends RecordWriter<K, V>
+    implements SplitCheckpointer.SegmentWriter {
+
+  /**
+   * Creates the RecordWriter for a single segment file.
+   */
+  public interface SegmentFactory<K, V> {
+    RecordWriter<K, V> createSegment(Path file) throws IOException;
+  }
+
+  private final TaskAttemptContext context;
+  private final Path workPath;
+  private final String extension;
+  private final SplitCheckpointer checkpointer;
+  private final SegmentFactory<K, V> factory;
+
+  private int segmentNum;
+  private Path segmentPath;
+  private RecordWriter<K, V> segment;
+
+  /**
+   * @param context the context of the task attempt.
+   * @param workPath the attempt's work directory.
+   * @param extension the extension of each segment file.
+   * @param checkpointer the checkpointer of the task attempt.
+   * @param factory creates the writer for each segment.
+   */
+  public CheckpointedRecordWriter(TaskAttemptContext context, Path workPath,
+      String extension, SplitCheckpointer checkpointer,
+      SegmentFactory<K, V> factory) {
+    this.context = context;
+    this.workPath = workPath;
+    this.extension = extension;
+    this.checkpointer = checkpointer;
+    this.factory = factory;
+
+    // Number our segments after any saved by an earlier attempt.
+    this.segmentNum = checkpointer.getNumSegments();
+    checkpointer.setSegmentWriter(this);
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public void write(K key, V value) throws IOException, InterruptedException {
+    if (null == segment) {
+      segmentPath = new Path(workPath, FileOutputFormat.getUniqueFile(
+          context, "part", String.format("-%05d", segmentNum) + extension));
+      segment = factory.createSegment(segmentPath);
+      segmentNum++;
+    }
+    segment.write(key, value);
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public Path closeSegment() throws IOException {
+    if (null == segment) {
+      return null;
+    }
+
+    try {
+      segment.close(context);
+    } catch (InterruptedException ie) {
+      throw new IOException("Interrupted while closing " + segmentPath, ie);
+    }
+
+    segment = null;
+    return segmentPath;
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public void close(TaskAttemptContext ctxt) throws IOException,
+      InterruptedException {
+    try {
+      if (null != segment) {
+        segment.close(ctxt);
+        segment = null;
+      }
+      checkpointer.finish(workPath);
+    } finally {
+      SplitCheckpointer.release(ctxt.getTaskAttemptID());
+    }
+  }
+}
@@ -25,16 +25,23 @@ import com.cloudera.sqoop.config.ConfigurationHelper;
 import com.cloudera.sqoop.lib.LargeObjectLoader;
 import com.cloudera.sqoop.manager.ConnManager;
 import com.cloudera.sqoop.manager.ImportJobContext;
+import com.cloudera.sqoop.mapreduce.db.CompositeKeySplitter;
 import com.cloudera.sqoop.mapreduce.db.DBConfiguration;
 import com.cloudera.sqoop.mapreduce.db.DataDrivenDBInputFormat;
+import com.cloudera.sqoop.mapreduce.db.SplitCheckpointer;
 import com.cloudera.sqoop.orm.AvroSchemaGenerator;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+import java.util.UUID;
 
 import org.apache.avro.Schema;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.InputFormat;
@@ -53,6 +60,14 @@ public class DataDrivenImportJob extends ImportJobBase {
   public static final Log LOG = LogFactory.getLog(
       DataDrivenImportJob.class.getName());
 
+  // Directory in which map tasks claim chunks of the import, if the
+  // import is cut into chunks.
+  private Path chunkClaimDir;
+
+  // Directory holding the checkpoints of the map tasks, if they take
+  // checkpoints.
+  private Path checkpointDir;
+
   @SuppressWarnings("unchecked")
   public DataDrivenImportJob(final SqoopOptions opts) {
     super(opts, null, DataDrivenDBInputFormat.class, null, null);
@@ -131,9 +146,10 @@ public class DataDrivenImportJob extends ImportJobBase {
             username, options.getPassword(), options.getFetchSize());
       }
 
+      String [] colNames = null;
       if (null != tableName) {
         // Import a table.
-        String [] colNames = options.getColumns();
+        colNames = options.getColumns();
         if (null == colNames) {
           colNames = mgr.getColumnNames(tableName);
         }
@@ -149,12 +165,27 @@ public class DataDrivenImportJob extends ImportJobBase {
         // It's ok if the where clause is null in DBInputFormat.setInput.
         String whereClause = options.getWhereClause();
 
+        // Escape each column of a composite split key separately.
+        String [] splitByCols = getSplitByCols(splitByCol);
+        String escapedSplitByCol = null;
+        if (null != splitByCols) {
+          StringBuilder sb = new StringBuilder();
+          for (int i = 0; i < splitByCols.length; i++) {
+            splitByCols[i] = mgr.escapeColName(splitByCols[i]);
+            if (i > 0) {
+              sb.append(", ");
+            }
+            sb.append(splitByCols[i]);
+          }
+          escapedSplitByCol = sb.toString();
+        }
+
         // We can't set the class properly in here, because we may not have the
         // jar loaded in this JVM. So we start by calling setInput() with
         // DBWritable and then overriding the string manually.
         DataDrivenDBInputFormat.setInput(job, DBWritable.class,
             mgr.escapeTableName(tableName), whereClause,
-            mgr.escapeColName(splitByCol), sqlColNames);
+            escapedSplitByCol, sqlColNames);
 
         // If user specified boundary query on the command line propagate it to
         // the job
@@ -162,6 +193,18 @@ public class DataDrivenImportJob extends ImportJobBase {
           DataDrivenDBInputFormat.setBoundingQuery(job.getConfiguration(),
                   options.getBoundaryQuery());
         }
+
+        String sourceQuery = "SELECT " + escapedSplitByCol
+            + " FROM " + mgr.escapeTableName(tableName);
+        if (null != whereClause) {
+          sourceQuery = sourceQuery + " WHERE (" + whereClause + ")";
+        }
+
+        if (useCompositeKey(splitByCols)) {
+          configureSplitPointsQuery(job, mgr, splitByCols, sourceQuery);
+        } else if (useBalancedSplits(splitByCol)) {
+          configureHistogramQuery(job, mgr, escapedSplitByCol, sourceQuery);
+        }
       } else {
         // Import a free-form query.
         String inputQuery = options.getSqlQuery();
@@ -170,13 +213,18 @@ public class DataDrivenImportJob extends ImportJobBase {
 
         String inputBoundingQuery = options.getBoundaryQuery();
 
+        // The bounds of a composite split key are those of its leading
+        // column.
+        String [] splitByCols = getSplitByCols(splitByCol);
+        String leadingCol = null == splitByCols ? null : splitByCols[0];
+
         if(inputBoundingQuery == null) {
           inputBoundingQuery =
-            mgr.getInputBoundsQuery(splitByCol, sanitizedQuery);
+            mgr.getInputBoundsQuery(leadingCol, sanitizedQuery);
           if (inputBoundingQuery == null) {
-            if (splitByCol != null) {
-              inputBoundingQuery = "SELECT MIN(" + splitByCol + "), MAX("
-                      + splitByCol + ") FROM (" + sanitizedQuery + ") AS t1";
+            if (leadingCol != null) {
+              inputBoundingQuery = "SELECT MIN(" + leadingCol + "), MAX("
+                      + leadingCol + ") FROM (" + sanitizedQuery + ") AS t1";
             } else {
               inputBoundingQuery = "";
             }
@@ -186,6 +234,46 @@ public class DataDrivenImportJob extends ImportJobBase {
             inputQuery, inputBoundingQuery);
         new DBConfiguration(job.getConfiguration()).setInputOrderBy(
             splitByCol);
+
+        if (useCompositeKey(splitByCols)) {
+          configureSplitPointsQuery(job, mgr, splitByCols, sanitizedQuery);
+        } else if (useBalancedSplits(splitByCol)) {
+          configureHistogramQuery(job, mgr, splitByCol, sanitizedQuery);
+        }
+      }
+
+      if (useChunks()) {
+        configureChunks(job);
+      }
+
+      new DBConfiguration(job.getConfiguration()).setInputBinaryLiteralFormat(
+          mgr.getBinaryLiteralFormat());
+      new DBConfiguration(job.getConfiguration()).setInputRowLimitFormat(
+          mgr.getRowLimitFormat());
+
+      int pageSize = options.getPageSize();
+      if (options.getCheckpointRows() > 0) {
+        if (canCheckpoint(mgr, tableName, splitByCol, colNames)) {
+          configureCheckpoints(job);
+          if (pageSize <= 0) {
+            // Checkpoints are taken between pages.
+            pageSize = (int) Math.min(Integer.MAX_VALUE,
+                options.getCheckpointRows());
+          }
+        }
+      }
+
+      if (pageSize > 0) {
+        if (null == tableName || null == splitByCol) {
+          LOG.warn("Only a table with a split column can be read in pages; "
+              + "reading each split with a single query.");
+        } else if (null == mgr.getRowLimitFormat()) {
+          LOG.warn("This database cannot limit the rows of a query; "
+              + "reading each split with a single query.");
+        } else {
+          new DBConfiguration(job.getConfiguration()).setInputPageSize(
+              pageSize);
+        }
       }
 
       LOG.debug("Using table class: " + tableClassName);
@@ -205,5 +293,207 @@ public class DataDrivenImportJob extends ImportJobBase {
       }
     }
   }
-}
 
+  @Override
+  protected boolean runJob(Job job) throws ClassNotFoundException, IOException,
+      InterruptedException {
+    try {
+      return super.runJob(job);
+    } finally {
+      if (null != chunkClaimDir) {
+        FileSystem fs = chunkClaimDir.getFileSystem(job.getConfiguration());
+        if (!fs.delete(chunkClaimDir, true)) {
+          LOG.warn("Could not remove chunk claim directory " + chunkClaimDir);
+        }
+        chunkClaimDir = null;
+      }
+
+      if (null != checkpointDir) {
+        FileSystem fs = checkpointDir.getFileSystem(job.getConfiguration());
+        if (!fs.delete(checkpointDir, true)) {
+          LOG.warn("Could not remove checkpoint directory " + checkpointDir);
+        }
+        checkpointDir = null;
+      }
+    }
+  }
+
+  /**
+   * @return true if the map tasks can checkpoint their progress. Logs the
+   * reason if they cannot.
+   */
+  private boolean canCheckpoint(ConnManager mgr, String tableName,
+      String splitByCol, String [] colNames) {
+    String reason = null;
+    if (null == tableName || null == splitByCol) {
+      reason = "only a table with a split column can be checkpointed";
+    } else if (null == mgr.getRowLimitFormat()) {
+      // Checkpoints are taken between pages.
+      reason = "this database cannot limit the rows of a query";
+    } else if (useChunks()) {
+      reason = "imports cut into chunks cannot be checkpointed";
+    } else if (null != options.getHBaseTable()
+        || (options.getFileLayout() != SqoopOptions.FileLayout.TextFile
+        && options.getFileLayout()
+        != SqoopOptions.FileLayout.AvroDataFile)) {
+      reason = "only text and Avro data files can be checkpointed";
+    } else {
+      // Large objects may be written to files of their own, which are not
+      // part of the checkpointed segments.
+      Map<String, Integer> colTypes = mgr.getColumnTypes(tableName);
+      if (null != colTypes && null != colNames) {
+        for (String col : colNames) {
+          Integer type = colTypes.get(col);
+          if (null != type && (type == Types.BLOB || type == Types.CLOB)) {
+            reason = "tables with BLOB or CLOB columns cannot be "
+                + "checkpointed";
+            break;
+          }
+        }
+      }
+
+      // The checkpoint records the last value read of the leading split
+      // column.
+      String pageCol = CompositeKeySplitter.getColumns(splitByCol)[0];
+      Integer pageColType = null == colTypes ? null : colTypes.get(pageCol);
+      if (null == reason && null != pageColType
+          && !SplitCheckpointer.isSupportedKeyType(pageColType)) {
+        reason = "the split column " + pageCol + " has SQL type "
+            + pageColType + ", whose values cannot be checkpointed";
+      }
+    }
+
+    if (null != reason) {
+      LOG.warn("Not checkpointing map tasks: " + reason + ".");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Have the map tasks checkpoint their progress in a fresh directory under
+   * hadoop.tmp.dir, so that a failed task can be resumed by a later
+   * attempt.
+   */
+  private void configureCheckpoints(Job job) {
+    checkpointDir = new Path(job.getConfiguration().get("hadoop.tmp.dir"),
+        "sqoop-checkpoints/" + UUID.randomUUID());
+    LOG.info("Checkpointing map tasks every " + options.getCheckpointRows()
+        + " rows in " + checkpointDir);
+
+    DBConfiguration dbConf = new DBConfiguration(job.getConfiguration());
+    dbConf.setInputCheckpointRows(options.getCheckpointRows());
+
+    // Attempts of a task share its checkpoint, so they must not run at the
+    // same time.
+    ConfigurationHelper.setJobMapSpeculativeExecution(job, false);
+    dbConf.setInputCheckpointDir(checkpointDir.toString());
+  }
+
+  /**
+   * @return true if the user asked for the import to be cut into chunks
+   * that are shared out between the map tasks as they finish.
+   */
+  private boolean useChunks() {
+    return options.getChunksPerMapper() > 1 && options.getNumMappers() > 1;
+  }
+
+  /**
+   * Cut the import into chunks, which map tasks claim by creating files
+   * in a fresh directory under hadoop.tmp.dir.
+   */
+  private void configureChunks(Job job) {
+    chunkClaimDir = new Path(job.getConfiguration().get("hadoop.tmp.dir"),
+        "sqoop-chunks/" + UUID.randomUUID());
+    LOG.info("Cutting import into " + options.getChunksPerMapper()
+        + " chunks per map task; claiming chunks in " + chunkClaimDir);
+
+    DBConfiguration dbConf = new DBConfiguration(job.getConfiguration());
+    dbConf.setInputChunksPerSplit(options.getChunksPerMapper());
+
+    // A speculative attempt would not see the chunks claimed by the attempt
+    // it races against, so its output could be missing some of the rows.
+    ConfigurationHelper.setJobMapSpeculativeExecution(job, false);
+    dbConf.setInputChunkClaimDir(chunkClaimDir.toString());
+  }
+
+  /**
+   * @return true if the user asked for splits balanced by row count, and
+   * there is more than one split to balance.
+   */
+  private boolean useBalancedSplits(String splitByCol) {
+    return options.useBalancedSplits() && null != splitByCol
+        && options.getNumMappers() > 1;
+  }
+
+  /**
+   * Ask the ConnManager for a query returning a histogram of the split
+   * column over the rows of 'sourceQuery', and pass it on to the
+   * InputFormat. If the ConnManager cannot provide one, splits are
+   * generated from the minimum and maximum values as usual.
+   */
+  private void configureHistogramQuery(Job job, ConnManager mgr,
+      String splitByCol, String sourceQuery) {
+    String histogramQuery = mgr.getInputHistogramQuery(splitByCol,
+        sourceQuery, getNumSplits());
+    if (null == histogramQuery) {
+      LOG.info("Balanced splits are not supported by "
+          + mgr.getClass().getName() + "; splitting by value range.");
+      return;
+    }
+
+    DataDrivenDBInputFormat.setHistogramQuery(job.getConfiguration(),
+        histogramQuery);
+  }
+
+  /**
+   * @return the number of splits the InputFormat will generate.
+   */
+  private int getNumSplits() {
+    int numSplits = options.getNumMappers();
+    if (useChunks()) {
+      numSplits *= options.getChunksPerMapper();
+    }
+    return numSplits;
+  }
+
+  /**
+   * @return the columns of the split key, which may be a comma-separated
+   * list of columns, or null if there is no split column.
+   */
+  private String [] getSplitByCols(String splitByCol) {
+    if (null == splitByCol) {
+      return null;
+    }
+    return CompositeKeySplitter.getColumns(splitByCol);
+  }
+
+  /**
+   * @return true if the split key has more than one column, and there is
+   * more than one split to generate over it.
+   */
+  private boolean useCompositeKey(String [] splitByCols) {
+    return null != splitByCols && splitByCols.length > 1
+        && options.getNumMappers() > 1;
+  }
+
+  /**
+   * Ask the ConnManager for a query returning the split points of a
+   * composite split key over the rows of 'sourceQuery', and pass it on to
+   * the InputFormat. If the ConnManager cannot provide one, the import is
+   * split on the leading column of the key.
+   */
+  private void configureSplitPointsQuery(Job job, ConnManager mgr,
+      String [] splitByCols, String sourceQuery) {
+    String splitPointsQuery = mgr.getInputSplitPointsQuery(splitByCols,
+        sourceQuery, getNumSplits());
+    if (null == splitPointsQuery) {
+      LOG.info("Composite split keys are not supported by "
+          + mgr.getClass().getName() + "; splitting on " + splitByCols[0]);
+      return;
+    }
+
+    DataDrivenDBInputFormat.setSplitPointsQuery(job.getConfiguration(),
+        splitPointsQuery);
+  }
+}
@@ -21,7 +21,6 @@
 package com.cloudera.sqoop.mapreduce;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.List;
@@ -77,14 +76,8 @@ public class ExportBatchOutputFormat<K extends SqoopRecord, V>
     protected PreparedStatement getPreparedStatement(
         List<SqoopRecord> userRecords) throws SQLException {
 
-      PreparedStatement stmt = null;
-
-      // Synchronize on connection to ensure this does not conflict
-      // with the operations in the update thread.
-      Connection conn = getConnection();
-      synchronized (conn) {
-        stmt = conn.prepareStatement(getInsertStatement(userRecords.size()));
-      }
+      PreparedStatement stmt = prepareStatement(
+          getCachedInsertStatement(userRecords.size()));
 
       // Inject the record parameters into the VALUES clauses.
       for (SqoopRecord record : userRecords) {
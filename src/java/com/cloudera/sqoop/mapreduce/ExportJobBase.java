@@ -247,6 +247,41 @@ public class ExportJobBase extends JobBase {
 
     job.setMapOutputKeyClass(SqoopRecord.class);
     job.setMapOutputValueClass(NullWritable.class);
+
+    if (options.getConnectionsPerMapper() > 1) {
+      job.getConfiguration().setInt(
+          AsyncSqlOutputFormat.CONNECTIONS_PER_TASK_KEY,
+          options.getConnectionsPerMapper());
+    }
+
+    if (options.getMaxRejects() >= 0) {
+      Path rejectDir = getRejectDir();
+      FileSystem fs = rejectDir.getFileSystem(job.getConfiguration());
+      if (fs.exists(rejectDir)) {
+        throw new IOException("Reject directory " + rejectDir
+            + " already exists");
+      }
+
+      job.getConfiguration().setLong(AsyncSqlOutputFormat.MAX_REJECTS_KEY,
+          options.getMaxRejects());
+      job.getConfiguration().set(AsyncSqlOutputFormat.REJECT_DIR_KEY,
+          rejectDir.toString());
+    }
+  }
+
+  /**
+   * @return the directory to which rejected records are written. Unless
+   * one was given, this is the export directory with "_rejects" appended.
+   */
+  protected Path getRejectDir() throws IOException {
+    Configuration conf = options.getConf();
+    if (null != options.getRejectDir()) {
+      Path rejectDir = new Path(options.getRejectDir());
+      return rejectDir.makeQualified(FileSystem.get(conf));
+    }
+
+    Path inputPath = getInputPath();
+    return new Path(inputPath.getParent(), inputPath.getName() + "_rejects");
   }
 
   @Override
@@ -276,11 +311,39 @@ public class ExportJobBase extends JobBase {
       LOG.info("Transferred " + perfCounters.toString());
       long numRecords =  ConfigurationHelper.getNumMapInputRecords(job);
       LOG.info("Exported " + numRecords + " records.");
+      logAdaptiveBatchSizes(jobCounters);
+
+      long numRejects = jobCounters.findCounter(
+          RejectFileWriter.Counter.REJECTED_RECORDS).getValue();
+      if (numRejects > 0) {
+        LOG.warn("Rejected " + numRejects + " records; see "
+            + getRejectDir());
+      }
     }
 
     return success;
   }
 
+  /**
+   * Log the average batch sizes chosen by the tasks, if they adapted them.
+   */
+  private void logAdaptiveBatchSizes(Counters jobCounters) {
+    long numTasks = jobCounters.findCounter(
+        AdaptiveBatchController.Counter.ADAPTIVE_TASKS).getValue();
+    if (numTasks <= 0) {
+      return;
+    }
+
+    long recordsPerStmt = jobCounters.findCounter(
+        AdaptiveBatchController.Counter.RECORDS_PER_STATEMENT).getValue();
+    long stmtsPerTx = jobCounters.findCounter(
+        AdaptiveBatchController.Counter.STATEMENTS_PER_TRANSACTION)
+        .getValue();
+    LOG.info("Tasks chose on average " + (recordsPerStmt / numTasks)
+        + " records per statement and " + (stmtsPerTx / numTasks)
+        + " statements per transaction.");
+  }
+
   /**
    * Run an export job to dump a table from HDFS to a database. If a staging
    * table is specified and the connection manager supports staging of data,
@@ -21,11 +21,12 @@
 package com.cloudera.sqoop.mapreduce;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -93,6 +94,10 @@ public class ExportOutputFormat<K extends SqoopRecord, V>
     protected String [] columnNames; // The columns to insert into.
     protected int columnCount; // If columnNames is null, tells ## of cols.
 
+    // INSERT statements by the number of rows they insert.
+    private Map<Integer, String> insertStatements =
+        new HashMap<Integer, String>();
+
     public ExportRecordWriter(TaskAttemptContext context)
         throws ClassNotFoundException, SQLException {
       super(context);
@@ -135,14 +140,8 @@ public class ExportOutputFormat<K extends SqoopRecord, V>
     protected PreparedStatement getPreparedStatement(
         List<SqoopRecord> userRecords) throws SQLException {
 
-      PreparedStatement stmt = null;
-
-      // Synchronize on connection to ensure this does not conflict
-      // with the operations in the update thread.
-      Connection conn = getConnection();
-      synchronized (conn) {
-        stmt = conn.prepareStatement(getInsertStatement(userRecords.size()));
-      }
+      PreparedStatement stmt = prepareStatement(
+          getCachedInsertStatement(userRecords.size()));
 
       // Inject the record parameters into the VALUES clauses.
       int position = 0;
@@ -153,6 +152,19 @@ public class ExportOutputFormat<K extends SqoopRecord, V>
       return stmt;
     }
 
+    /**
+     * @return the result of getInsertStatement(numRows), which is only
+     * generated once for each number of rows.
+     */
+    protected final String getCachedInsertStatement(int numRows) {
+      String sql = insertStatements.get(numRows);
+      if (null == sql) {
+        sql = getInsertStatement(numRows);
+        insertStatements.put(numRows, sql);
+      }
+      return sql;
+    }
+
     /**
      * @return an INSERT statement suitable for inserting 'numRows' rows.
      */
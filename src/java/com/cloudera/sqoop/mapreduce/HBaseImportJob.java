@@ -44,6 +44,7 @@ import com.cloudera.sqoop.lib.FieldMapProcessor;
 import com.cloudera.sqoop.lib.SqoopRecord;
 import com.cloudera.sqoop.manager.ConnManager;
 import com.cloudera.sqoop.manager.ImportJobContext;
+import com.cloudera.sqoop.mapreduce.db.CompositeKeySplitter;
 import com.cloudera.sqoop.util.ImportException;
 
 /**
@@ -101,6 +102,12 @@ public class HBaseImportJob extends DataDrivenImportJob {
       // User didn't explicitly set one. If there's a split-by column set,
       // use that.
       rowKeyCol = options.getSplitByCol();
+      if (null != rowKeyCol
+          && CompositeKeySplitter.getColumns(rowKeyCol).length > 1) {
+        throw new IOException("Cannot use the composite split-by key "
+            + rowKeyCol + " as the row key. Use --hbase-row-key to specify "
+            + "the input column that names each row.");
+      }
     }
 
     if (null == rowKeyCol) {
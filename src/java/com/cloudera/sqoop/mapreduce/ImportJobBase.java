@@ -44,6 +44,7 @@ import com.cloudera.sqoop.util.ImportException;
 import com.cloudera.sqoop.util.PerfCounters;
 import com.cloudera.sqoop.config.ConfigurationHelper;
 import com.cloudera.sqoop.io.CodecMap;
+import com.cloudera.sqoop.lib.LargeObjectLoader;
 import com.cloudera.sqoop.manager.ImportJobContext;
 
 /**
@@ -100,6 +101,10 @@ public class ImportJobBase extends JobBase {
       }
       FileOutputFormat.setOutputCompressorClass(job, codecClass);
 
+      // Compress the records of any external LOB files, too.
+      job.getConfiguration().set(LargeObjectLoader.LOB_COMPRESSION_CODEC_KEY,
+          codecName == null ? CodecMap.DEFLATE : codecName);
+
       if (options.getFileLayout() == SqoopOptions.FileLayout.SequenceFile) {
         SequenceFileOutputFormat.setOutputCompressionType(job,
             CompressionType.BLOCK);
@@ -21,6 +21,9 @@
 package com.cloudera.sqoop.mapreduce;
 
 import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -28,11 +31,15 @@ import java.util.StringTokenizer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Reducer;
 
+import com.cloudera.sqoop.SqoopOptions.UpdatePartitioning;
+import com.cloudera.sqoop.config.ConfigurationHelper;
 import com.cloudera.sqoop.manager.ConnManager;
 import com.cloudera.sqoop.manager.ExportJobContext;
 import com.cloudera.sqoop.mapreduce.db.DBConfiguration;
@@ -76,10 +83,163 @@ public class JdbcUpdateExportJob extends ExportJobBase {
     }
   }
 
+  @Override
+  protected void configureMapper(Job job, String tableName,
+      String tableClassName) throws ClassNotFoundException, IOException {
+    super.configureMapper(job, tableName, tableClassName);
+
+    if (options.getUpdatePartitioning() == UpdatePartitioning.None) {
+      return;
+    }
+
+    // Shuffle the records to the writers by their update key. The map
+    // output key must be the record class itself, as with MergeJob.
+    job.getConfiguration().set("mapred.mapoutput.key.class", tableClassName);
+    job.setPartitionerClass(UpdateKeyPartitioner.class);
+    job.setSortComparatorClass(UpdateKeyComparator.class);
+    job.setReducerClass(Reducer.class);
+  }
+
+  @Override
+  protected int configureNumTasks(Job job) throws IOException {
+    int numMapTasks = super.configureNumTasks(job);
+
+    UpdatePartitioning partitioning = options.getUpdatePartitioning();
+    if (partitioning == UpdatePartitioning.None) {
+      return numMapTasks;
+    }
+
+    // The reduce tasks do the writing, so there are as many of them as
+    // there would have been writing map tasks.
+    job.setNumReduceTasks(numMapTasks);
+    ConfigurationHelper.setJobReduceSpeculativeExecution(job, false);
+
+    Configuration conf = job.getConfiguration();
+    String mode = UpdateKeyPartitioner.MODE_HASH;
+    if (partitioning == UpdatePartitioning.Range && numMapTasks > 1) {
+      double [] splitPoints = getRangeSplitPoints(numMapTasks);
+      if (null != splitPoints) {
+        String [] points = new String[splitPoints.length];
+        for (int i = 0; i < splitPoints.length; i++) {
+          points[i] = Double.toString(splitPoints[i]);
+        }
+        conf.setStrings(UpdateKeyPartitioner.SPLIT_POINTS_KEY, points);
+        mode = UpdateKeyPartitioner.MODE_RANGE;
+      } else {
+        LOG.warn("Could not find key ranges for update partitioning; "
+            + "partitioning by hash instead.");
+      }
+    }
+    conf.set(UpdateKeyPartitioner.MODE_KEY, mode);
+    LOG.info("Partitioning updates among " + numMapTasks
+        + " writers by " + mode + " of the update key");
+
+    return numMapTasks;
+  }
+
+  /**
+   * Divide the range between the lowest and highest values of the first
+   * update key column in the table into equal parts.
+   * @return the points between the parts, or null if the table is empty
+   * or the column is not a number or a date.
+   */
+  private double [] getRangeSplitPoints(int numRanges) throws IOException {
+    ConnManager mgr = context.getConnManager();
+    String keyCol = options.getUpdateKeyCol().split(",")[0].trim();
+    String query = "SELECT MIN(" + mgr.escapeColName(keyCol) + "), MAX("
+        + mgr.escapeColName(keyCol) + ") FROM "
+        + mgr.escapeTableName(context.getTableName());
+
+    Double lo;
+    Double hi;
+    Statement stmt = null;
+    ResultSet rs = null;
+    try {
+      stmt = mgr.getConnection().createStatement();
+      rs = stmt.executeQuery(query);
+      if (!rs.next()) {
+        return null;
+      }
+      lo = UpdateKeyPartitioner.toRangeValue(rs.getObject(1));
+      hi = UpdateKeyPartitioner.toRangeValue(rs.getObject(2));
+    } catch (SQLException sqlE) {
+      throw new IOException("Could not read the range of " + keyCol, sqlE);
+    } finally {
+      try {
+        if (null != rs) {
+          rs.close();
+        }
+        if (null != stmt) {
+          stmt.close();
+        }
+      } catch (SQLException sqlE) {
+        LOG.warn("Error closing statement: " + sqlE);
+      }
+    }
+
+    if (null == lo || null == hi || hi <= lo) {
+      return null;
+    }
+
+    double [] splitPoints = new double[numRanges - 1];
+    for (int i = 0; i < splitPoints.length; i++) {
+      splitPoints[i] = lo + (hi - lo) * (i + 1) / numRanges;
+    }
+    return splitPoints;
+  }
+
+  /**
+   * @return true if the records are inserted into a staging table, from
+   * which the connection manager applies them to the table in bulk.
+   */
+  protected boolean isStagedUpdate() {
+    return null != options.getStagingTableName();
+  }
+
+  /**
+   * Configure the job to insert the records into the staging table, in
+   * the column order of the generated class.
+   */
+  protected void configureStagingOutputFormat(Job job, String tableName,
+      String tableClassName) throws IOException {
+    ConnManager mgr = context.getConnManager();
+    String username = options.getUsername();
+    if (null == username || username.length() == 0) {
+      DBConfiguration.configureDB(job.getConfiguration(),
+          mgr.getDriverClass(),
+          options.getConnectString());
+    } else {
+      DBConfiguration.configureDB(job.getConfiguration(),
+          mgr.getDriverClass(),
+          options.getConnectString(),
+          username, options.getPassword());
+    }
+
+    String [] colNames = options.getDbOutputColumns();
+    if (null == colNames) {
+      colNames = mgr.getColumnNames(tableName);
+    }
+    DBOutputFormat.setOutput(job, tableName, colNames);
+
+    if (options.isBatchMode()) {
+      job.setOutputFormatClass(ExportBatchOutputFormat.class);
+    } else {
+      job.setOutputFormatClass(ExportOutputFormat.class);
+    }
+    job.getConfiguration().set(SQOOP_EXPORT_TABLE_CLASS_KEY, tableClassName);
+    job.getConfiguration().set(SQOOP_EXPORT_UPDATE_COL_KEY,
+        options.getUpdateKeyCol());
+  }
+
   @Override
   protected void configureOutputFormat(Job job, String tableName,
       String tableClassName) throws IOException {
 
+    if (isStagedUpdate()) {
+      configureStagingOutputFormat(job, tableName, tableClassName);
+      return;
+    }
+
     ConnManager mgr = context.getConnManager();
     try {
       String username = options.getUsername();
@@ -53,6 +53,11 @@ public class JdbcUpsertExportJob extends JdbcUpdateExportJob {
   protected void configureOutputFormat(Job job, String tableName,
       String tableClassName) throws IOException {
 
+    if (isStagedUpdate()) {
+      configureStagingOutputFormat(job, tableName, tableClassName);
+      return;
+    }
+
     ConnManager mgr = context.getConnManager();
     try {
       String username = options.getUsername();
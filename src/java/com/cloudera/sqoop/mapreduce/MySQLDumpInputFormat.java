@@ -31,7 +31,8 @@ import com.cloudera.sqoop.mapreduce.db.DataDrivenDBInputFormat;
 
 /**
  * InputFormat designed to take data-driven splits and feed them to a mysqldump
- * invocation running in the mapper.
+ * invocation running in the mapper. It is also used to feed them to the
+ * COPY commands of Postgresql direct imports.
  *
  * The key emitted by this mapper is a WHERE clause to use in the command
  * to mysqldump.
@@ -24,7 +24,14 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 
 import org.apache.commons.logging.Log;
@@ -40,12 +47,18 @@ import com.cloudera.sqoop.util.AsyncSink;
 import com.cloudera.sqoop.util.JdbcUrl;
 import com.cloudera.sqoop.util.LoggingAsyncSink;
 import com.cloudera.sqoop.util.NullAsyncSink;
+import com.cloudera.sqoop.util.LoggingUtils;
 import com.cloudera.sqoop.util.TaskId;
 
 /**
  * Mapper that starts a 'mysqlimport' process and uses that to export rows from
  * HDFS to a MySQL database at high speed.
  *
+ * If sqoop.mysql.export.local.infile is set, the mapper instead runs a
+ * LOAD DATA LOCAL INFILE statement over JDBC, and streams the rows to it
+ * through MySQL Connector/J's local infile input stream; no mysqlimport
+ * process or FIFO is needed.
+ *
  * map() methods are actually provided by subclasses that read from
  * SequenceFiles (containing existing SqoopRecords) or text files
  * (containing delimited lines) and deliver these results to the fifo
@@ -66,6 +79,15 @@ public class MySQLExportMapper<KEYIN, VALIN>
 
   public static final long DEFAULT_CHECKPOINT_BYTES = 32 * 1024 * 1024;
 
+  /** Configuration key that specifies whether to export using LOAD DATA
+   * LOCAL INFILE over JDBC rather than mysqlimport.
+   */
+  public static final String MYSQL_LOCAL_INFILE_KEY =
+      "sqoop.mysql.export.local.infile";
+
+  /** Size of the buffer between the mapper and the LOAD DATA statement. */
+  private static final int LOCAL_INFILE_BUFFER_SIZE = 1024 * 1024;
+
   // Configured value for MSYQL_CHECKPOINT_BYTES_KEY.
   protected long checkpointDistInBytes;
 
@@ -90,6 +112,15 @@ public class MySQLExportMapper<KEYIN, VALIN>
   /** Character set used to write to mysqlimport. */
   protected String mysqlCharSet;
 
+  /** True if we use LOAD DATA LOCAL INFILE rather than mysqlimport. */
+  protected boolean useLocalInfile;
+
+  /** Connection on which LOAD DATA LOCAL INFILE statements run. */
+  private Connection loadConnection;
+
+  /** Thread running the current LOAD DATA LOCAL INFILE statement. */
+  private LoadDataThread loadThread;
+
   /**
    * Tally of bytes written to current mysqlimport instance.
    * We commit an interim tx and open a new mysqlimport after this
@@ -227,19 +258,341 @@ public class MySQLExportMapper<KEYIN, VALIN>
     this.bytesWritten = 0;
   }
 
+  /**
+   * Runs a LOAD DATA LOCAL INFILE statement, which reads the rows from
+   * an in-memory pipe until the mapper closes the pipe's output stream.
+   * Unlike a PipedOutputStream, a write to the pipe fails as soon as the
+   * statement has ended, rather than blocking forever if the statement
+   * failed before it read anything (e.g., because the server or driver
+   * does not allow LOCAL INFILE).
+   */
+  private static class LoadDataThread extends Thread {
+    private final Statement stmt;
+    private final String sql;
+
+    // The pipe's circular buffer; all pipe state is guarded by 'lock'.
+    private final Object lock = new Object();
+    private final byte [] buf;
+    private int readPos;
+    private int count;
+    private boolean closed;
+
+    private volatile boolean finished;
+    private volatile SQLException err;
+
+    LoadDataThread(Statement stmt, String sql, int bufferSize) {
+      this.stmt = stmt;
+      this.sql = sql;
+      this.buf = new byte[bufferSize];
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        stmt.execute(sql);
+      } catch (SQLException sqlE) {
+        this.err = sqlE;
+      } finally {
+        synchronized (lock) {
+          this.finished = true;
+          lock.notifyAll();
+        }
+      }
+    }
+
+    /** @return the error from the statement, if it failed. */
+    public SQLException getError() {
+      return err;
+    }
+
+    /**
+     * Throw an IOException if the statement has already ended, since
+     * nothing written from now on can be loaded.
+     */
+    public void checkRunning() throws IOException {
+      if (finished) {
+        if (null != err) {
+          throw new IOException("LOAD DATA LOCAL INFILE failed", err);
+        }
+        throw new IOException(
+            "LOAD DATA LOCAL INFILE ended before reading all rows");
+      }
+    }
+
+    /** @return the stream from which the statement reads the rows. */
+    public InputStream getInputStream() {
+      return new InputStream() {
+        @Override
+        public int read() throws IOException {
+          byte [] one = new byte[1];
+          int n = read(one, 0, 1);
+          return n == -1 ? -1 : (one[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte [] b, int off, int len) throws IOException {
+          if (len == 0) {
+            return 0;
+          }
+
+          synchronized (lock) {
+            while (count == 0 && !closed) {
+              waitForPipe();
+            }
+
+            if (count == 0) {
+              return -1; // The mapper closed the pipe.
+            }
+
+            int n = Math.min(len, Math.min(count, buf.length - readPos));
+            System.arraycopy(buf, readPos, b, off, n);
+            readPos = (readPos + n) % buf.length;
+            count -= n;
+            lock.notifyAll();
+            return n;
+          }
+        }
+      };
+    }
+
+    /** @return the stream to which the mapper writes the rows. */
+    public OutputStream getOutputStream() {
+      return new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte [] b, int off, int len) throws IOException {
+          synchronized (lock) {
+            while (len > 0) {
+              checkRunning();
+              if (count == buf.length) {
+                waitForPipe();
+                continue;
+              }
+
+              int writePos = (readPos + count) % buf.length;
+              int n = Math.min(len,
+                  Math.min(buf.length - count, buf.length - writePos));
+              System.arraycopy(b, off, buf, writePos, n);
+              count += n;
+              off += n;
+              len -= n;
+              lock.notifyAll();
+            }
+          }
+        }
+
+        @Override
+        public void close() {
+          synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+          }
+        }
+      };
+    }
+
+    /** Wait, holding 'lock', for the other end of the pipe to act. */
+    private void waitForPipe() throws IOException {
+      try {
+        lock.wait();
+      } catch (InterruptedException ie) {
+        throw new InterruptedIOException(
+            "Interrupted while waiting for LOAD DATA LOCAL INFILE");
+      }
+    }
+  }
+
+  /**
+   * @return the LOAD DATA LOCAL INFILE statement equivalent to the
+   * mysqlimport command line built by initMySQLImportProcess().
+   */
+  private String getLoadDataStatement() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("LOAD DATA LOCAL INFILE 'sqoop-export.txt' INTO TABLE `");
+    sb.append(conf.get(MySQLUtils.TABLE_NAME_KEY, "UNKNOWN_TABLE"));
+    sb.append("` CHARACTER SET latin1");
+
+    // Specify the delimiters to use.
+    int outputFieldDelim = conf.getInt(MySQLUtils.OUTPUT_FIELD_DELIM_KEY,
+        (int) ',');
+    int outputRecordDelim = conf.getInt(MySQLUtils.OUTPUT_RECORD_DELIM_KEY,
+        (int) '\n');
+    int enclosedBy = conf.getInt(MySQLUtils.OUTPUT_ENCLOSED_BY_KEY, 0);
+    int escapedBy = conf.getInt(MySQLUtils.OUTPUT_ESCAPED_BY_KEY, 0);
+    boolean encloseRequired = conf.getBoolean(
+        MySQLUtils.OUTPUT_ENCLOSE_REQUIRED_KEY, false);
+
+    sb.append(" FIELDS TERMINATED BY 0x");
+    sb.append(Integer.toString(outputFieldDelim, 16));
+    if (0 != enclosedBy) {
+      if (!encloseRequired) {
+        sb.append(" OPTIONALLY");
+      }
+      sb.append(" ENCLOSED BY 0x");
+      sb.append(Integer.toString(enclosedBy, 16));
+    }
+
+    if (0 != escapedBy) {
+      sb.append(" ESCAPED BY 0x");
+      sb.append(Integer.toString(escapedBy, 16));
+    }
+
+    sb.append(" LINES TERMINATED BY 0x");
+    sb.append(Integer.toString(outputRecordDelim, 16));
+
+    // Specify the subset of columns we're exporting.
+    DBConfiguration dbConf = new DBConfiguration(conf);
+    String [] cols = dbConf.getInputFieldNames();
+    if (null != cols) {
+      sb.append(" (");
+      boolean first = true;
+      for (String col : cols) {
+        if (!first) {
+          sb.append(",");
+        }
+        sb.append(col);
+        first = false;
+      }
+      sb.append(")");
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Hand the stream from which a LOAD DATA LOCAL INFILE statement should
+   * read to MySQL Connector/J. This is not part of the JDBC API, so the
+   * method is found by reflection.
+   */
+  private void setLocalInfileInputStream(Statement stmt, InputStream in)
+      throws IOException {
+    try {
+      Class<?> mysqlStmtClass = Class.forName("com.mysql.jdbc.Statement",
+          true, stmt.getClass().getClassLoader());
+      Object mysqlStmt = stmt;
+      if (!mysqlStmtClass.isInstance(stmt)) {
+        mysqlStmt = stmt.unwrap(mysqlStmtClass);
+      }
+      Method setStream = mysqlStmtClass.getMethod(
+          "setLocalInfileInputStream", InputStream.class);
+      setStream.invoke(mysqlStmt, in);
+    } catch (ClassNotFoundException cnfe) {
+      throw new IOException("LOAD DATA LOCAL INFILE requires MySQL "
+          + "Connector/J", cnfe);
+    } catch (NoSuchMethodException nsme) {
+      throw new IOException("LOAD DATA LOCAL INFILE requires MySQL "
+          + "Connector/J 5.1.3 or later", nsme);
+    } catch (IllegalAccessException iae) {
+      throw new IOException("Could not set the local infile stream", iae);
+    } catch (InvocationTargetException ite) {
+      throw new IOException("Could not set the local infile stream",
+          ite.getCause());
+    } catch (SQLException sqlE) {
+      throw new IOException("Could not set the local infile stream", sqlE);
+    }
+  }
+
+  /**
+   * Start a LOAD DATA LOCAL INFILE statement in the background, reading
+   * from a pipe whose other end is 'importStream'.
+   */
+  private void initLocalInfileLoad() throws IOException {
+    try {
+      if (null == this.loadConnection) {
+        DBConfiguration dbConf = new DBConfiguration(conf);
+        this.loadConnection = dbConf.getConnection();
+        this.loadConnection.setAutoCommit(false);
+      }
+
+      Statement stmt = this.loadConnection.createStatement();
+      String sql = getLoadDataStatement();
+      LoadDataThread thread = new LoadDataThread(stmt, sql,
+          LOCAL_INFILE_BUFFER_SIZE);
+      setLocalInfileInputStream(stmt, thread.getInputStream());
+
+      LOG.debug("Starting export with statement: " + sql);
+      this.loadThread = thread;
+      this.loadThread.start();
+
+      this.importStream = new BufferedOutputStream(
+          thread.getOutputStream());
+    } catch (ClassNotFoundException cnfe) {
+      throw new IOException("Could not load JDBC driver", cnfe);
+    } catch (SQLException sqlE) {
+      LoggingUtils.logAll(LOG, sqlE);
+      throw new IOException("Could not start LOAD DATA LOCAL INFILE", sqlE);
+    }
+
+    this.bytesWritten = 0;
+  }
+
+  /**
+   * Start the next transaction of the export, using mysqlimport or
+   * LOAD DATA LOCAL INFILE.
+   */
+  private void initExport() throws IOException {
+    if (useLocalInfile) {
+      initLocalInfileLoad();
+    } else {
+      initMySQLImportProcess();
+    }
+  }
+
   @Override
   public void run(Context context) throws IOException, InterruptedException {
     this.conf = context.getConfiguration();
     setup(context);
-    initMySQLImportProcess();
     try {
-      while (context.nextKeyValue()) {
-        map(context.getCurrentKey(), context.getCurrentValue(), context);
+      initExport();
+      try {
+        while (context.nextKeyValue()) {
+          map(context.getCurrentKey(), context.getCurrentValue(), context);
+        }
+        cleanup(context);
+      } finally {
+        // Shut down the mysqlimport process or LOAD DATA statement.
+        closeExportHandles();
       }
-      cleanup(context);
     } finally {
-      // Shut down the mysqlimport process.
-      closeExportHandles();
+      closeLoadConnection();
+    }
+  }
+
+  private void closeLoadConnection() throws IOException {
+    if (null != this.loadConnection) {
+      try {
+        this.loadConnection.close();
+      } catch (SQLException sqlE) {
+        throw new IOException("Could not close connection", sqlE);
+      } finally {
+        this.loadConnection = null;
+      }
+    }
+  }
+
+  /**
+   * Wait for the current LOAD DATA LOCAL INFILE statement to read the end
+   * of its stream, and commit it.
+   */
+  private void finishLocalInfileLoad() throws IOException,
+      InterruptedException {
+    LOG.debug("Waiting for LOAD DATA LOCAL INFILE to complete");
+    this.loadThread.join();
+    SQLException err = this.loadThread.getError();
+    this.loadThread = null;
+    try {
+      if (null != err) {
+        throw err;
+      }
+      this.loadConnection.commit();
+    } catch (SQLException sqlE) {
+      LoggingUtils.logAll(LOG, sqlE);
+      throw new IOException("LOAD DATA LOCAL INFILE failed", sqlE);
     }
   }
 
@@ -252,6 +605,10 @@ public class MySQLExportMapper<KEYIN, VALIN>
       this.importStream = null;
     }
 
+    if (null != this.loadThread) {
+      finishLocalInfileLoad();
+    }
+
     if (null != this.mysqlImportProcess) {
       // We started mysqlimport; wait for it to finish.
       LOG.info("Waiting for mysqlimport to complete");
@@ -313,6 +670,8 @@ public class MySQLExportMapper<KEYIN, VALIN>
     // TODO: Support additional encodings.
     this.mysqlCharSet = MySQLUtils.MYSQL_DEFAULT_CHARSET;
 
+    this.useLocalInfile = conf.getBoolean(MYSQL_LOCAL_INFILE_KEY, false);
+
     this.checkpointDistInBytes = conf.getLong(
         MYSQL_CHECKPOINT_BYTES_KEY, DEFAULT_CHECKPOINT_BYTES);
     if (this.checkpointDistInBytes < 0) {
@@ -337,6 +696,11 @@ public class MySQLExportMapper<KEYIN, VALIN>
     // latin-1 (ISO8859_1). We'll convert to latin-1 for now.
     // TODO: Support user-configurable encodings.
 
+    if (null != this.loadThread) {
+      // Don't buffer rows for a LOAD DATA statement that already failed.
+      this.loadThread.checkRunning();
+    }
+
     byte [] mysqlBytes = record.getBytes(this.mysqlCharSet);
     this.importStream.write(mysqlBytes, 0, mysqlBytes.length);
     this.bytesWritten += mysqlBytes.length;
@@ -348,12 +712,13 @@ public class MySQLExportMapper<KEYIN, VALIN>
     }
 
     // If bytesWritten is too big, then we should start a new tx by closing
-    // mysqlimport and opening a new instance of the process.
+    // mysqlimport and opening a new instance of the process (or committing
+    // the LOAD DATA statement and starting another).
     if (this.checkpointDistInBytes != 0
         && this.bytesWritten > this.checkpointDistInBytes) {
       LOG.info("Checkpointing current export.");
       closeExportHandles();
-      initMySQLImportProcess();
+      initExport();
       this.bytesWritten = 0;
     }
   }
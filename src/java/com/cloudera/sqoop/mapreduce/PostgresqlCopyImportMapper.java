@@ -0,0 +1,187 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import com.cloudera.sqoop.mapreduce.db.DBConfiguration;
+import com.cloudera.sqoop.util.PerfCounters;
+
+/**
+ * Mapper that copies the rows of its split out of a Postgresql database
+ * with COPY (SELECT ...) TO STDOUT, through the copy API of the JDBC
+ * driver, and writes them directly to HDFS.
+ */
+public class PostgresqlCopyImportMapper
+    extends Mapper<String, NullWritable, String, NullWritable> {
+
+  public static final Log LOG = LogFactory.getLog(
+      PostgresqlCopyImportMapper.class.getName());
+
+  /** The " TO STDOUT WITH ..." clause of the COPY command. */
+  public static final String COPY_OPTIONS_KEY =
+      "sqoop.postgresql.copy.options";
+
+  /** The record delimiter written after each row. */
+  public static final String RECORD_DELIM_KEY =
+      "sqoop.postgresql.copy.record.delim";
+
+  private Configuration conf;
+
+  @Override
+  protected void setup(Context context) {
+    this.conf = context.getConfiguration();
+  }
+
+  /**
+   * @return the COPY command which copies out the rows of the split.
+   */
+  private String getCopyCommand(String splitConditions) {
+    DBConfiguration dbConf = new DBConfiguration(conf);
+    StringBuilder sb = new StringBuilder();
+    sb.append("COPY (SELECT ");
+    String [] fieldNames = dbConf.getInputFieldNames();
+    if (null == fieldNames) {
+      sb.append("*");
+    } else {
+      for (int i = 0; i < fieldNames.length; i++) {
+        if (i > 0) {
+          sb.append(", ");
+        }
+        sb.append(fieldNames[i]);
+      }
+    }
+
+    sb.append(" FROM ").append(dbConf.getInputTableName());
+    sb.append(" WHERE ");
+    String conditions = dbConf.getInputConditions();
+    if (null != conditions && conditions.length() > 0) {
+      // Put the user's conditions first.
+      sb.append("( ").append(conditions).append(" ) AND ");
+    }
+    sb.append(splitConditions);
+    sb.append(")");
+    sb.append(conf.get(COPY_OPTIONS_KEY, " TO STDOUT WITH CSV"));
+    return sb.toString();
+  }
+
+  /**
+   * Import the rows of the split into HDFS.
+   */
+  public void map(String splitConditions, NullWritable val, Context context)
+      throws IOException, InterruptedException {
+
+    LOG.info("Beginning COPY fast path import");
+
+    String copyCmd = getCopyCommand(splitConditions);
+    LOG.debug("Copy command is " + copyCmd);
+    String recordDelim = Character.toString(
+        (char) conf.getInt(RECORD_DELIM_KEY, '\n'));
+
+    PerfCounters counters = new PerfCounters();
+    Connection conn = null;
+    try {
+      conn = new DBConfiguration(conf).getConnection();
+      conn.setAutoCommit(false);
+      Statement stmt = conn.createStatement();
+      try {
+        stmt.executeUpdate("SET client_encoding TO 'UTF8'");
+      } finally {
+        stmt.close();
+      }
+
+      Object copyOut = startCopy(conn, copyCmd);
+      Method readFromCopy = Class.forName("org.postgresql.copy.CopyOut",
+          true, conn.getClass().getClassLoader()).getMethod("readFromCopy");
+      counters.startClock();
+      while (true) {
+        byte [] row = (byte []) readFromCopy.invoke(copyOut);
+        if (null == row) {
+          break; // EOF.
+        }
+
+        // Each row ends with a newline, which we replace with the
+        // user's record delimiter.
+        int len = row.length;
+        if (len > 0 && row[len - 1] == '\n') {
+          len--;
+        }
+        context.write(new String(row, 0, len, "UTF-8"), null);
+        context.write(recordDelim, null);
+        counters.addBytes(1 + len);
+      }
+      counters.stopClock();
+      conn.commit();
+      LOG.info("Transferred " + counters.toString());
+    } catch (ClassNotFoundException cnfe) {
+      throw new IOException("Could not load the JDBC driver", cnfe);
+    } catch (NoSuchMethodException nsme) {
+      throw new IOException("COPY import requires version 8.4 or later "
+          + "of the PostgreSQL JDBC driver", nsme);
+    } catch (IllegalAccessException iae) {
+      throw new IOException("Could not copy rows", iae);
+    } catch (InvocationTargetException ite) {
+      throw new IOException("Could not copy rows", ite.getCause());
+    } catch (SQLException sqlE) {
+      throw new IOException("Could not copy rows", sqlE);
+    } finally {
+      if (null != conn) {
+        try {
+          conn.close();
+        } catch (SQLException sqlE) {
+          LOG.warn("Could not close connection: " + sqlE);
+        }
+      }
+    }
+  }
+
+  /**
+   * Start copying out of the database. The copy API is not part of JDBC,
+   * so its methods are found by reflection.
+   * @return the org.postgresql.copy.CopyOut to read the rows from.
+   */
+  private Object startCopy(Connection conn, String sql)
+      throws ClassNotFoundException, NoSuchMethodException,
+      IllegalAccessException, InvocationTargetException, SQLException {
+    ClassLoader loader = conn.getClass().getClassLoader();
+    Class<?> pgConnClass = Class.forName("org.postgresql.PGConnection",
+        true, loader);
+    Object pgConn = conn;
+    if (!pgConnClass.isInstance(conn)) {
+      pgConn = conn.unwrap(pgConnClass);
+    }
+
+    Object copyManager = pgConnClass.getMethod("getCopyAPI").invoke(pgConn);
+    return copyManager.getClass().getMethod("copyOut", String.class)
+        .invoke(copyManager, sql);
+  }
+}
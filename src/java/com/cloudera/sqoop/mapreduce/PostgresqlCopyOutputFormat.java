@@ -0,0 +1,407 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import com.cloudera.sqoop.lib.BlobRef;
+import com.cloudera.sqoop.lib.ClobRef;
+import com.cloudera.sqoop.lib.SqoopRecord;
+import com.cloudera.sqoop.mapreduce.db.DBConfiguration;
+import com.cloudera.sqoop.orm.ClassWriter;
+
+/**
+ * Copy the emitted keys into a PostgreSQL table with a single
+ * COPY ... FROM STDIN statement per task, through the copy API of the
+ * PostgreSQL JDBC driver. Each task's rows are committed in one
+ * transaction when the task finishes.
+ *
+ * If per-task staging is enabled, each task instead copies its rows into
+ * a table of its own, named after the output table and the task number,
+ * which the task (re)creates like the output table in the same
+ * transaction. A retried task thus replaces the rows of its failed
+ * attempts, and the job moves the rows of every task's table to the
+ * output table once all of the tasks have succeeded.
+ *
+ * Uses DBOutputFormat/DBConfiguration for configuring the output.
+ */
+public class PostgresqlCopyOutputFormat<K extends SqoopRecord, V>
+    extends OutputFormat<K, V> {
+
+  private static final Log LOG =
+      LogFactory.getLog(PostgresqlCopyOutputFormat.class);
+
+  /** If true, each task copies its rows into its own staging table. */
+  public static final String TASK_STAGING_KEY =
+      "sqoop.export.postgresql.task.staging";
+
+  /** Number of bytes of COPY data buffered before sending them. */
+  public static final String BUFFER_SIZE_KEY =
+      "sqoop.export.postgresql.copy.buffer.size";
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private static final String NULL_VALUE = "\\N";
+
+  /**
+   * @return the name of the staging table into which the given task
+   * copies its rows, when per-task staging is enabled.
+   */
+  public static String getTaskStagingTableName(String tableName,
+      int taskNum) {
+    return String.format("%s_%05d", tableName, taskNum);
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public void checkOutputSpecs(JobContext context)
+      throws IOException, InterruptedException {
+    Configuration conf = context.getConfiguration();
+    DBConfiguration dbConf = new DBConfiguration(conf);
+
+    // Sanity check all the configuration values we need.
+    if (null == conf.get(DBConfiguration.URL_PROPERTY)) {
+      throw new IOException("Database connection URL is not set.");
+    } else if (null == dbConf.getOutputTableName()) {
+      throw new IOException("Table name is not set for export");
+    } else if (null == dbConf.getOutputFieldNames()) {
+      throw new IOException("Output field names are not set for export");
+    }
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public OutputCommitter getOutputCommitter(TaskAttemptContext context)
+      throws IOException, InterruptedException {
+    return new NullOutputCommitter();
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public RecordWriter<K, V> getRecordWriter(TaskAttemptContext context)
+      throws IOException {
+    try {
+      return new CopyRecordWriter(context);
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * RecordWriter which formats each record as a line of COPY text, and
+   * streams the lines to the database through the driver's CopyIn.
+   */
+  public class CopyRecordWriter extends RecordWriter<K, V> {
+
+    private Connection conn;
+    private String tableName;
+    private String [] columnNames;
+    private String [] fieldNames;
+
+    // The org.postgresql.copy.CopyIn receiving our data, and its methods.
+    private Object copyIn;
+    private Method writeToCopy;
+    private Method endCopy;
+    private Method cancelCopy;
+
+    private ByteArrayOutputStream buffer;
+    private int bufferSize;
+    private StringBuilder line;
+
+    public CopyRecordWriter(TaskAttemptContext context)
+        throws ClassNotFoundException, SQLException, IOException {
+      Configuration conf = context.getConfiguration();
+      DBConfiguration dbConf = new DBConfiguration(conf);
+      this.columnNames = dbConf.getOutputFieldNames();
+      this.tableName = dbConf.getOutputTableName();
+
+      // Records hold their fields under the names of the generated class.
+      this.fieldNames = new String[columnNames.length];
+      for (int i = 0; i < columnNames.length; i++) {
+        fieldNames[i] = ClassWriter.toJavaIdentifier(columnNames[i]);
+      }
+
+      this.bufferSize = conf.getInt(BUFFER_SIZE_KEY, DEFAULT_BUFFER_SIZE);
+      this.buffer = new ByteArrayOutputStream(bufferSize);
+      this.line = new StringBuilder();
+
+      this.conn = dbConf.getConnection();
+      boolean started = false;
+      try {
+        conn.setAutoCommit(false);
+        Statement stmt = conn.createStatement();
+        try {
+          stmt.executeUpdate("SET client_encoding TO 'UTF8'");
+          if (conf.getBoolean(TASK_STAGING_KEY, false)) {
+            String stagingTable = getTaskStagingTableName(tableName,
+                context.getTaskAttemptID().getTaskID().getId());
+            LOG.info("Copying rows into staging table " + stagingTable);
+            stmt.executeUpdate("DROP TABLE IF EXISTS " + stagingTable);
+            stmt.executeUpdate("CREATE TABLE " + stagingTable + " (LIKE "
+                + tableName + " INCLUDING DEFAULTS)");
+            this.tableName = stagingTable;
+          }
+        } finally {
+          stmt.close();
+        }
+
+        startCopy(getCopyStatement());
+        started = true;
+      } finally {
+        if (!started) {
+          closeConnection(true);
+        }
+      }
+    }
+
+    /**
+     * @return the COPY statement reading the rows of the table from STDIN.
+     */
+    protected String getCopyStatement() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("COPY ").append(tableName).append(" (");
+      for (int i = 0; i < columnNames.length; i++) {
+        if (i > 0) {
+          sb.append(", ");
+        }
+        sb.append(columnNames[i]);
+      }
+      sb.append(") FROM STDIN");
+      return sb.toString();
+    }
+
+    /**
+     * Start a COPY through the driver's copy API. This is not part of the
+     * JDBC API, so its methods are found by reflection.
+     */
+    private void startCopy(String sql) throws IOException {
+      LOG.debug("Starting copy: " + sql);
+      try {
+        ClassLoader loader = conn.getClass().getClassLoader();
+        Class<?> pgConnClass = Class.forName("org.postgresql.PGConnection",
+            true, loader);
+        Object pgConn = conn;
+        if (!pgConnClass.isInstance(conn)) {
+          pgConn = conn.unwrap(pgConnClass);
+        }
+
+        Object copyManager = pgConnClass.getMethod("getCopyAPI")
+            .invoke(pgConn);
+        Class<?> copyInClass = Class.forName("org.postgresql.copy.CopyIn",
+            true, loader);
+        writeToCopy = copyInClass.getMethod("writeToCopy", byte[].class,
+            int.class, int.class);
+        endCopy = copyInClass.getMethod("endCopy");
+        cancelCopy = copyInClass.getMethod("cancelCopy");
+        copyIn = copyManager.getClass().getMethod("copyIn", String.class)
+            .invoke(copyManager, sql);
+      } catch (ClassNotFoundException cnfe) {
+        throw new IOException("COPY export requires the PostgreSQL JDBC "
+            + "driver", cnfe);
+      } catch (NoSuchMethodException nsme) {
+        throw new IOException("COPY export requires version 8.4 or later "
+            + "of the PostgreSQL JDBC driver", nsme);
+      } catch (IllegalAccessException iae) {
+        throw new IOException("Could not start copy", iae);
+      } catch (InvocationTargetException ite) {
+        throw new IOException("Could not start copy", ite.getCause());
+      } catch (SQLException sqlE) {
+        throw new IOException("Could not start copy", sqlE);
+      }
+    }
+
+    /**
+     * Invoke one of the methods of our CopyIn.
+     */
+    private Object invokeCopy(Method method, Object... args)
+        throws IOException {
+      try {
+        return method.invoke(copyIn, args);
+      } catch (IllegalAccessException iae) {
+        throw new IOException("Could not copy rows into " + tableName, iae);
+      } catch (InvocationTargetException ite) {
+        throw new IOException("Could not copy rows into " + tableName,
+            ite.getCause());
+      }
+    }
+
+    private void flush() throws IOException {
+      if (buffer.size() > 0) {
+        byte [] data = buffer.toByteArray();
+        invokeCopy(writeToCopy, data, 0, data.length);
+        buffer.reset();
+      }
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void write(K key, V value)
+        throws InterruptedException, IOException {
+      Map<String, Object> fields = key.getFieldMap();
+      line.setLength(0);
+      for (int i = 0; i < fieldNames.length; i++) {
+        if (i > 0) {
+          line.append('\t');
+        }
+        if (!fields.containsKey(fieldNames[i])) {
+          throw new IOException("Record has no field for column "
+              + columnNames[i]);
+        }
+        appendValue(fields.get(fieldNames[i]));
+      }
+      line.append('\n');
+
+      buffer.write(line.toString().getBytes("UTF-8"));
+      if (buffer.size() >= bufferSize) {
+        flush();
+      }
+    }
+
+    /**
+     * Append a field to the current line in the COPY text format.
+     */
+    private void appendValue(Object value) throws IOException {
+      if (null == value) {
+        line.append(NULL_VALUE);
+      } else if (value instanceof BigDecimal) {
+        line.append(((BigDecimal) value).toPlainString());
+      } else if (value instanceof BytesWritable) {
+        BytesWritable bytes = (BytesWritable) value;
+        appendBytes(bytes.getBytes(), bytes.getLength());
+      } else if (value instanceof BlobRef) {
+        BlobRef blob = (BlobRef) value;
+        if (blob.isExternal()) {
+          throw new IOException("Cannot copy externally stored BLOBs");
+        }
+        byte [] data = blob.getData();
+        appendBytes(data, data.length);
+      } else if (value instanceof ClobRef) {
+        ClobRef clob = (ClobRef) value;
+        if (clob.isExternal()) {
+          throw new IOException("Cannot copy externally stored CLOBs");
+        }
+        appendText(clob.getData());
+      } else {
+        appendText(value.toString());
+      }
+    }
+
+    /**
+     * Append a string, escaping the characters that COPY treats specially.
+     */
+    private void appendText(String str) {
+      for (int i = 0; i < str.length(); i++) {
+        char c = str.charAt(i);
+        switch (c) {
+        case '\\':
+          line.append("\\\\");
+          break;
+        case '\t':
+          line.append("\\t");
+          break;
+        case '\n':
+          line.append("\\n");
+          break;
+        case '\r':
+          line.append("\\r");
+          break;
+        default:
+          line.append(c);
+        }
+      }
+    }
+
+    /**
+     * Append a bytea value in the escape format, which every server
+     * version accepts. Each byte is written as an octal escape, whose
+     * backslash must itself be escaped for COPY.
+     */
+    private void appendBytes(byte [] data, int len) {
+      for (int i = 0; i < len; i++) {
+        int b = data[i] & 0xff;
+        line.append("\\\\");
+        line.append((char) ('0' + (b >> 6)));
+        line.append((char) ('0' + ((b >> 3) & 7)));
+        line.append((char) ('0' + (b & 7)));
+      }
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void close(TaskAttemptContext context)
+        throws IOException, InterruptedException {
+      boolean committed = false;
+      try {
+        flush();
+        Object rows = invokeCopy(endCopy);
+        copyIn = null;
+        conn.commit();
+        committed = true;
+        LOG.info("Copied " + rows + " rows into " + tableName);
+      } catch (SQLException sqlE) {
+        throw new IOException("Could not commit rows copied into "
+            + tableName, sqlE);
+      } finally {
+        if (!committed && null != copyIn) {
+          try {
+            invokeCopy(cancelCopy);
+          } catch (IOException ioe) {
+            LOG.warn("Could not cancel copy: " + ioe);
+          }
+        }
+        closeConnection(!committed);
+      }
+    }
+
+    private void closeConnection(boolean rollback) {
+      try {
+        if (rollback) {
+          conn.rollback();
+        }
+      } catch (SQLException sqlE) {
+        LOG.warn("Could not roll back copy: " + sqlE);
+      }
+
+      try {
+        conn.close();
+      } catch (SQLException sqlE) {
+        LOG.warn("Could not close connection: " + sqlE);
+      }
+    }
+  }
+}
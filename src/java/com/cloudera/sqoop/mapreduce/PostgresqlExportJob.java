@@ -0,0 +1,163 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.mapreduce.Job;
+
+import com.cloudera.sqoop.manager.ConnManager;
+import com.cloudera.sqoop.manager.ExportJobContext;
+
+/**
+ * Run an export that copies each task's records into PostgreSQL with
+ * COPY ... FROM STDIN.
+ *
+ * When a staging table is given, each task copies its records into a
+ * table of its own, and the records of all of the tasks are moved into the
+ * staging table once the job succeeds. runExport() then moves them to the
+ * output table as usual.
+ */
+public class PostgresqlExportJob extends JdbcExportJob {
+
+  public static final Log LOG =
+      LogFactory.getLog(PostgresqlExportJob.class.getName());
+
+  public PostgresqlExportJob(final ExportJobContext context) {
+    super(context, null, null, PostgresqlCopyOutputFormat.class);
+  }
+
+  private boolean isTaskStaging() {
+    return null != options.getStagingTableName();
+  }
+
+  @Override
+  protected void configureOutputFormat(Job job, String tableName,
+      String tableClassName) throws IOException {
+    super.configureOutputFormat(job, tableName, tableClassName);
+    job.getConfiguration().setBoolean(
+        PostgresqlCopyOutputFormat.TASK_STAGING_KEY, isTaskStaging());
+  }
+
+  @Override
+  protected boolean runJob(Job job) throws ClassNotFoundException, IOException,
+      InterruptedException {
+    if (!isTaskStaging()) {
+      return super.runJob(job);
+    }
+
+    String stagingTable = options.getStagingTableName();
+    int numTasks = job.getConfiguration().getInt(EXPORT_MAP_TASKS_KEY, 1);
+    boolean success = false;
+    try {
+      success = super.runJob(job);
+      if (success) {
+        migrateTaskStagingTables(stagingTable, numTasks);
+      }
+    } finally {
+      dropTaskStagingTables(stagingTable, numTasks);
+    }
+
+    return success;
+  }
+
+  /**
+   * @return the names of the per-task staging tables that the tasks
+   * created, out of those that up to numTasks tasks could have created.
+   */
+  private List<String> getTaskStagingTables(String stagingTable,
+      int numTasks) {
+    ConnManager mgr = context.getConnManager();
+    Set<String> tables = new HashSet<String>();
+    String [] allTables = mgr.listTables();
+    if (null != allTables) {
+      for (String table : allTables) {
+        tables.add(table.toLowerCase());
+      }
+    }
+
+    List<String> taskTables = new ArrayList<String>();
+    for (int i = 0; i < numTasks; i++) {
+      String taskTable = PostgresqlCopyOutputFormat.getTaskStagingTableName(
+          stagingTable, i);
+      if (tables.contains(taskTable.toLowerCase())) {
+        taskTables.add(taskTable);
+      }
+    }
+
+    return taskTables;
+  }
+
+  /**
+   * Move the records of every task's staging table to the staging table.
+   */
+  private void migrateTaskStagingTables(String stagingTable, int numTasks)
+      throws IOException {
+    ConnManager mgr = context.getConnManager();
+    for (String taskTable : getTaskStagingTables(stagingTable, numTasks)) {
+      try {
+        mgr.migrateData(taskTable, stagingTable);
+      } catch (SQLException sqlE) {
+        throw new IOException("Failed to move data from task staging table "
+            + taskTable, sqlE);
+      }
+    }
+  }
+
+  /**
+   * Drop the per-task staging tables. Failures are logged but ignored.
+   */
+  private void dropTaskStagingTables(String stagingTable, int numTasks) {
+    ConnManager mgr = context.getConnManager();
+    for (String taskTable : getTaskStagingTables(stagingTable, numTasks)) {
+      Connection conn = null;
+      try {
+        conn = mgr.getConnection();
+        Statement stmt = conn.createStatement();
+        try {
+          stmt.executeUpdate("DROP TABLE " + taskTable);
+          conn.commit();
+        } finally {
+          stmt.close();
+        }
+      } catch (SQLException sqlE) {
+        LOG.warn("Could not drop task staging table " + taskTable + ": "
+            + sqlE);
+        try {
+          if (null != conn) {
+            conn.rollback();
+          }
+        } catch (SQLException rollbackE) {
+          LOG.warn("Could not roll back: " + rollbackE);
+        }
+      }
+    }
+  }
+}
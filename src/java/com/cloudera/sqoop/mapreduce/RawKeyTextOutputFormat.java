@@ -30,11 +30,14 @@ import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.util.*;
 
+import com.cloudera.sqoop.mapreduce.db.SplitCheckpointer;
+
 /** An {@link OutputFormat} that writes plain text files.
  * Only writes the key. Does not write any delimiter/newline after the key.
  */
@@ -77,7 +80,7 @@ public class RawKeyTextOutputFormat<K, V> extends FileOutputFormat<K, V> {
   public RecordWriter<K, V> getRecordWriter(TaskAttemptContext context)
       throws IOException {
     boolean isCompressed = getCompressOutput(context);
-    Configuration conf = context.getConfiguration();
+    final Configuration conf = context.getConfiguration();
     String ext = "";
     CompressionCodec codec = null;
 
@@ -90,12 +93,36 @@ public class RawKeyTextOutputFormat<K, V> extends FileOutputFormat<K, V> {
       ext = codec.getDefaultExtension();
     }
 
-    Path file = getDefaultWorkFile(context, ext);
+    SplitCheckpointer checkpointer = SplitCheckpointer.forTask(conf,
+        context.getTaskAttemptID());
+    if (null != checkpointer) {
+      final CompressionCodec segmentCodec = codec;
+      FileOutputCommitter committer =
+          (FileOutputCommitter) getOutputCommitter(context);
+      return new CheckpointedRecordWriter<K, V>(context,
+          committer.getWorkPath(), ext, checkpointer,
+          new CheckpointedRecordWriter.SegmentFactory<K, V>() {
+            public RecordWriter<K, V> createSegment(Path file)
+                throws IOException {
+              return getRecordWriter(file, segmentCodec, conf);
+            }
+          });
+    }
+
+    return getRecordWriter(getDefaultWorkFile(context, ext), codec, conf);
+  }
+
+  /**
+   * Create a RecordWriter for a single file.
+   * @param codec the codec with which to compress the file, or null.
+   */
+  private RecordWriter<K, V> getRecordWriter(Path file,
+      CompressionCodec codec, Configuration conf) throws IOException {
     FileSystem fs = file.getFileSystem(conf);
     FSDataOutputStream fileOut = fs.create(file, false);
     DataOutputStream ostream = fileOut;
 
-    if (isCompressed) {
+    if (null != codec) {
       ostream = new DataOutputStream(codec.createOutputStream(fileOut));
     }
 
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.SQLException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import com.cloudera.sqoop.lib.SqoopRecord;
+
+/**
+ * Writes the records of an export task which the database refused, along
+ * with the errors it gave, to a pair of files in the reject directory.
+ *
+ * The records go to rejects-m-NNNNN, one per line, formatted by the
+ * record class. The errors go to rejects-m-NNNNN.err, with line N holding
+ * the error for record N. A later attempt of the same task overwrites the
+ * files of an earlier one. The files are only created if a record is
+ * rejected.
+ *
+ * Once more than the allowed number of records have been rejected, the
+ * task fails. This class is shared by the execution threads of a task,
+ * so its methods are synchronized.
+ */
+public class RejectFileWriter {
+
+  /** Counters for the rejected records. */
+  public enum Counter {
+    /** Number of records refused by the database. */
+    REJECTED_RECORDS
+  }
+
+  private static final Log LOG = LogFactory.getLog(RejectFileWriter.class);
+
+  private final Configuration conf;
+  private final Path recordsPath;
+  private final Path errorsPath;
+  private final long maxRejects;
+
+  private Writer recordsOut;
+  private Writer errorsOut;
+  private long numRejects;
+
+  /**
+   * @param conf the configuration of the task.
+   * @param rejectDir the directory in which to write the files.
+   * @param taskNum the number of the map task writing them.
+   * @param maxRejects the number of records which may be rejected before
+   * the task fails.
+   */
+  public RejectFileWriter(Configuration conf, Path rejectDir, int taskNum,
+      long maxRejects) {
+    this.conf = conf;
+    this.recordsPath = new Path(rejectDir,
+        String.format("rejects-m-%05d", taskNum));
+    this.errorsPath = recordsPath.suffix(".err");
+    this.maxRejects = maxRejects;
+  }
+
+  /**
+   * Write a record which the database refused.
+   * @param record the record.
+   * @param cause the error from the statement which wrote only this record.
+   * @throws IOException if the files cannot be written, or if more than
+   * the allowed number of records have now been rejected.
+   */
+  public synchronized void reject(SqoopRecord record, SQLException cause)
+      throws IOException {
+    numRejects++;
+    if (numRejects > maxRejects) {
+      throw new IOException("More than " + maxRejects
+          + " records were rejected; the last error was: " + cause);
+    }
+
+    if (null == recordsOut) {
+      LOG.info("Writing rejected records to " + recordsPath);
+      FileSystem fs = recordsPath.getFileSystem(conf);
+      recordsOut = new OutputStreamWriter(fs.create(recordsPath, true),
+          "UTF-8");
+      errorsOut = new OutputStreamWriter(fs.create(errorsPath, true),
+          "UTF-8");
+    }
+
+    recordsOut.write(record.toString(false));
+    recordsOut.write('\n');
+
+    String message = cause.getMessage();
+    if (null != message) {
+      message = message.replace('\r', ' ').replace('\n', ' ');
+    }
+    errorsOut.write(cause.getSQLState() + ": " + message + "\n");
+  }
+
+  /**
+   * @return the number of records rejected so far.
+   */
+  public synchronized long getNumRejects() {
+    return numRejects;
+  }
+
+  /**
+   * Close the files, if any were written.
+   */
+  public synchronized void close() throws IOException {
+    try {
+      if (null != recordsOut) {
+        recordsOut.close();
+      }
+    } finally {
+      if (null != errorsOut) {
+        errorsOut.close();
+      }
+      recordsOut = null;
+      errorsOut = null;
+    }
+  }
+}
@@ -62,7 +62,8 @@ public class TextImportMapper
       throw new IOException(sqlE);
     }
 
-    outkey.set(val.toString());
+    outkey.clear();
+    val.writeTo(outkey);
     context.write(outkey, NullWritable.get());
   }
 
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.cloudera.sqoop.lib.SqoopRecord;
+import com.cloudera.sqoop.orm.ClassWriter;
+
+/**
+ * Orders the records of an update-based export by their update key, so
+ * that each task writes its rows in key order. Nulls sort first.
+ *
+ * The records are read back from their serialized form to be compared,
+ * so the record class and the update key columns are taken from the job
+ * configuration. Each comparison reads only the update key fields, through
+ * their getters in the record class.
+ */
+public class UpdateKeyComparator implements RawComparator<SqoopRecord>,
+    Configurable {
+
+  private Configuration conf;
+  private Method [] keyGetters;
+
+  private DataInputBuffer buffer;
+  private SqoopRecord record1;
+  private SqoopRecord record2;
+
+  @Override
+  /** {@inheritDoc} */
+  public void setConf(Configuration config) {
+    this.conf = config;
+    this.buffer = new DataInputBuffer();
+
+    String className = config.get(ExportJobBase.SQOOP_EXPORT_TABLE_CLASS_KEY);
+    try {
+      Class<? extends SqoopRecord> recordClass =
+          config.getClassByName(className).asSubclass(SqoopRecord.class);
+      this.keyGetters = getKeyGetters(recordClass, getKeyFields(config));
+      this.record1 = ReflectionUtils.newInstance(recordClass, config);
+      this.record2 = ReflectionUtils.newInstance(recordClass, config);
+    } catch (ClassNotFoundException cnfe) {
+      throw new RuntimeException("Could not load record class "
+          + className, cnfe);
+    }
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public Configuration getConf() {
+    return conf;
+  }
+
+  /**
+   * @return the names under which the update key columns are held in the
+   * fields of the generated record class.
+   */
+  public static String [] getKeyFields(Configuration conf) {
+    String updateKeyColumns =
+        conf.get(ExportJobBase.SQOOP_EXPORT_UPDATE_COL_KEY);
+    if (null == updateKeyColumns) {
+      throw new RuntimeException("Update key column not set in export job");
+    }
+
+    Set<String> keyFields = new LinkedHashSet<String>();
+    StringTokenizer stok = new StringTokenizer(updateKeyColumns, ",");
+    while (stok.hasMoreTokens()) {
+      String nextUpdateKey = stok.nextToken().trim();
+      if (nextUpdateKey.length() > 0) {
+        keyFields.add(ClassWriter.toJavaIdentifier(nextUpdateKey));
+      }
+    }
+
+    return keyFields.toArray(new String[keyFields.size()]);
+  }
+
+  /**
+   * @return the getters of the update key fields in a record class.
+   */
+  public static Method [] getKeyGetters(Class<?> recordClass,
+      String [] keyFields) {
+    Method [] getters = new Method[keyFields.length];
+    for (int i = 0; i < keyFields.length; i++) {
+      try {
+        getters[i] = recordClass.getMethod("get_" + keyFields[i]);
+      } catch (NoSuchMethodException nsme) {
+        throw new RuntimeException("Record has no update key field "
+            + keyFields[i], nsme);
+      }
+    }
+    return getters;
+  }
+
+  /**
+   * @return the value of an update key field of a record.
+   */
+  public static Object getKeyValue(SqoopRecord record, Method getter) {
+    try {
+      return getter.invoke(record);
+    } catch (IllegalAccessException iae) {
+      throw new RuntimeException(iae);
+    } catch (InvocationTargetException ite) {
+      throw new RuntimeException(ite.getCause());
+    }
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public int compare(byte [] b1, int s1, int l1, byte [] b2, int s2, int l2) {
+    try {
+      buffer.reset(b1, s1, l1);
+      record1.readFields(buffer);
+      buffer.reset(b2, s2, l2);
+      record2.readFields(buffer);
+    } catch (IOException ioe) {
+      throw new RuntimeException(ioe);
+    }
+
+    return compare(record1, record2);
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public int compare(SqoopRecord r1, SqoopRecord r2) {
+    for (Method getter : keyGetters) {
+      int cmp = compareValues(getKeyValue(r1, getter),
+          getKeyValue(r2, getter));
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Compare two values of the same field.
+   */
+  @SuppressWarnings("unchecked")
+  private static int compareValues(Object v1, Object v2) {
+    if (null == v1) {
+      return null == v2 ? 0 : -1;
+    } else if (null == v2) {
+      return 1;
+    } else if (v1 instanceof Comparable
+        && v1.getClass().equals(v2.getClass())) {
+      return ((Comparable<Object>) v1).compareTo(v2);
+    } else {
+      // Large objects have no natural order; all we need is for equal
+      // keys to sort together.
+      return v1.toString().compareTo(v2.toString());
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+import com.cloudera.sqoop.lib.SqoopRecord;
+
+/**
+ * Sends each record of an update-based export to a reduce task chosen by
+ * its update key, so that every row of the table is written by a single
+ * task and tasks do not contend for the same rows and index pages.
+ *
+ * In hash mode, the task is chosen by a hash of all of the update key
+ * columns. In range mode, it is chosen by comparing the first update key
+ * column with a list of split points (see {@link #SPLIT_POINTS_KEY});
+ * records with a null key, or a key which is not a number or a date, are
+ * hashed instead.
+ */
+public class UpdateKeyPartitioner
+    extends Partitioner<SqoopRecord, NullWritable> implements Configurable {
+
+  /** Configuration key holding the partitioning mode. */
+  public static final String MODE_KEY =
+      "sqoop.mapreduce.export.update.partitioning";
+
+  /** Hash the update key to choose a reduce task. */
+  public static final String MODE_HASH = "hash";
+
+  /** Choose a reduce task by ranges of the first update key column. */
+  public static final String MODE_RANGE = "range";
+
+  /**
+   * Configuration key holding the split points for range mode: one less
+   * than the number of reduce tasks, in ascending order. Numbers are
+   * compared by value and dates by their time in milliseconds.
+   */
+  public static final String SPLIT_POINTS_KEY =
+      "sqoop.mapreduce.export.update.split.points";
+
+  private Configuration conf;
+  private String [] keyFields;
+  private Method [] keyGetters;
+  private double [] splitPoints;
+
+  @Override
+  /** {@inheritDoc} */
+  public void setConf(Configuration config) {
+    this.conf = config;
+    this.keyFields = UpdateKeyComparator.getKeyFields(config);
+    this.keyGetters = null;
+    this.splitPoints = null;
+
+    if (MODE_RANGE.equals(config.get(MODE_KEY, MODE_HASH))) {
+      String [] points = config.getStrings(SPLIT_POINTS_KEY, new String[0]);
+      this.splitPoints = new double[points.length];
+      for (int i = 0; i < points.length; i++) {
+        splitPoints[i] = Double.parseDouble(points[i]);
+      }
+    }
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public Configuration getConf() {
+    return conf;
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public int getPartition(SqoopRecord record, NullWritable ignored,
+      int numPartitions) {
+    if (null == keyGetters) {
+      keyGetters = UpdateKeyComparator.getKeyGetters(record.getClass(),
+          keyFields);
+    }
+
+    if (null != splitPoints && splitPoints.length == numPartitions - 1) {
+      Double rangeValue = toRangeValue(
+          UpdateKeyComparator.getKeyValue(record, keyGetters[0]));
+      if (null != rangeValue) {
+        int pos = Arrays.binarySearch(splitPoints, rangeValue);
+        // A value equal to a split point starts the next range.
+        return pos >= 0 ? pos + 1 : -(pos + 1);
+      }
+    }
+
+    int hash = 0;
+    for (Method getter : keyGetters) {
+      hash = 31 * hash
+          + hashValue(UpdateKeyComparator.getKeyValue(record, getter));
+    }
+    return (hash & Integer.MAX_VALUE) % numPartitions;
+  }
+
+  /**
+   * @return the value of the first update key column as compared with the
+   * split points, or null if it cannot be compared with them.
+   */
+  public static Double toRangeValue(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    } else if (value instanceof Date) {
+      return (double) ((Date) value).getTime();
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Hash a key value. Equal keys must hash to the same task, so decimals
+   * which differ only in their scale (e.g., 1.5 and 1.50) hash alike.
+   */
+  private static int hashValue(Object value) {
+    if (null == value) {
+      return 0;
+    } else if (value instanceof BigDecimal) {
+      BigDecimal decimal = (BigDecimal) value;
+      return decimal.signum() == 0 ? 0
+          : decimal.stripTrailingZeros().hashCode();
+    } else {
+      return value.hashCode();
+    }
+  }
+}
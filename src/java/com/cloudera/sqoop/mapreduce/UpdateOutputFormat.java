@@ -21,7 +21,6 @@
 package com.cloudera.sqoop.mapreduce;
 
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Arrays;
@@ -95,6 +94,9 @@ public class UpdateOutputFormat<K extends SqoopRecord, V>
     protected String [] columnNames; // The columns to update.
     protected String [] updateCols; // The columns containing the fixed key.
 
+    // The result of getUpdateStatement(), once generated.
+    private String updateStatement;
+
     public UpdateRecordWriter(TaskAttemptContext context)
         throws ClassNotFoundException, SQLException {
       super(context);
@@ -159,14 +161,10 @@ public class UpdateOutputFormat<K extends SqoopRecord, V>
     protected PreparedStatement getPreparedStatement(
         List<SqoopRecord> userRecords) throws SQLException {
 
-      PreparedStatement stmt = null;
-
-      // Synchronize on connection to ensure this does not conflict
-      // with the operations in the update thread.
-      Connection conn = getConnection();
-      synchronized (conn) {
-        stmt = conn.prepareStatement(getUpdateStatement());
+      if (null == updateStatement) {
+        updateStatement = getUpdateStatement();
       }
+      PreparedStatement stmt = prepareStatement(updateStatement);
 
       // Inject the record parameters into the UPDATE and WHERE clauses.  This
       // assumes that the update key column is the last column serialized in
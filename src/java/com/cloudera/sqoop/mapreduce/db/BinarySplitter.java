@@ -0,0 +1,278 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+import com.cloudera.sqoop.config.ConfigurationHelper;
+
+/**
+ * Implement DBSplitter over byte strings (BINARY, VARBINARY, etc.).
+ */
+public class BinarySplitter extends BigDecimalSplitter {
+
+  private static final char [] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  // Turns a string of hexadecimal digits into a SQL literal.
+  private final String literalFormat;
+
+  /**
+   * Create a splitter which writes byte strings with the standard
+   * hexadecimal literal syntax, X'0A1B'.
+   */
+  public BinarySplitter() {
+    this("X'%s'");
+  }
+
+  /**
+   * @param literalFormat a format string (as for String.format()) which
+   * turns a string of hexadecimal digits into a SQL literal.
+   */
+  public BinarySplitter(String literalFormat) {
+    this.literalFormat = literalFormat;
+  }
+
+  /**
+   * This works like the TextSplitter, but over bytes rather than
+   * characters. Databases compare byte strings as sequences of unsigned
+   * bytes, so we interpret a byte string b_0, b_1 .. b_n as the number
+   * 0.b_0 b_1 .. b_n in base 256, use the BigDecimalSplitter to establish
+   * even split points between the low and high values, and map those back
+   * into byte strings. Any common prefix of the low and high values is
+   * removed first, and added back to every split point.
+   */
+  public List<InputSplit> split(Configuration conf, ResultSet results,
+      String colName) throws SQLException {
+
+    byte [] minBytes = getBytes(results, 1);
+    byte [] maxBytes = getBytes(results, 2);
+
+    boolean minIsNull = false;
+
+    // As in TextSplitter, a null min value is interpolated as the empty
+    // string, with [null, null] added as a special case split.
+    if (null == minBytes) {
+      minBytes = new byte[0];
+      minIsNull = true;
+    }
+
+    if (null == maxBytes) {
+      // If the max value is null, then the min value has to be null too.
+      List<InputSplit> splits = new ArrayList<InputSplit>();
+      splits.add(new DataDrivenDBInputFormat.DataDrivenDBInputSplit(
+          colName + " IS NULL", colName + " IS NULL"));
+      return splits;
+    }
+
+    int numSplits = ConfigurationHelper.getConfNumMaps(conf);
+
+    String lowClausePrefix = colName + " >= ";
+    String highClausePrefix = colName + " < ";
+
+    List<byte []> splitPoints = split(numSplits, minBytes, maxBytes);
+    List<InputSplit> splits = new ArrayList<InputSplit>();
+
+    // Convert the list of split points into an actual set of InputSplits.
+    String start = formatBytes(splitPoints.get(0));
+    for (int i = 1; i < splitPoints.size(); i++) {
+      String end = formatBytes(splitPoints.get(i));
+
+      if (i == splitPoints.size() - 1) {
+        // This is the last one; use a closed interval.
+        splits.add(new DataDrivenDBInputFormat.DataDrivenDBInputSplit(
+            lowClausePrefix + start, colName + " <= " + end));
+      } else {
+        // Normal open-interval case.
+        splits.add(new DataDrivenDBInputFormat.DataDrivenDBInputSplit(
+            lowClausePrefix + start, highClausePrefix + end));
+      }
+
+      start = end;
+    }
+
+    if (minIsNull) {
+      // Add the special null split at the end.
+      splits.add(new DataDrivenDBInputFormat.DataDrivenDBInputSplit(
+          colName + " IS NULL", colName + " IS NULL"));
+    }
+
+    return splits;
+  }
+
+  /**
+   * @return the split points between minBytes and maxBytes, in ascending
+   * order and without repeats, starting with minBytes and ending with
+   * maxBytes.
+   */
+  List<byte []> split(int numSplits, byte [] minBytes, byte [] maxBytes)
+      throws SQLException {
+
+    // Pull out any common prefix of the two values.
+    int maxPrefixLen = Math.min(minBytes.length, maxBytes.length);
+    int sharedLen;
+    for (sharedLen = 0; sharedLen < maxPrefixLen; sharedLen++) {
+      if (minBytes[sharedLen] != maxBytes[sharedLen]) {
+        break;
+      }
+    }
+
+    byte [] commonPrefix = Arrays.copyOfRange(minBytes, 0, sharedLen);
+    BigDecimal minVal = bytesToBigDecimal(
+        Arrays.copyOfRange(minBytes, sharedLen, minBytes.length));
+    BigDecimal maxVal = bytesToBigDecimal(
+        Arrays.copyOfRange(maxBytes, sharedLen, maxBytes.length));
+
+    List<BigDecimal> splitValues = split(
+        new BigDecimal(numSplits), minVal, maxVal);
+
+    // Converting back to bytes truncates each value, which may map
+    // neighboring split points onto the same byte string; keep only the
+    // points strictly between minBytes and maxBytes, without repeats.
+    List<byte []> splitPoints = new ArrayList<byte []>();
+    splitPoints.add(minBytes);
+    for (BigDecimal bd : splitValues) {
+      byte [] point = toSplitPoint(commonPrefix, bigDecimalToBytes(bd));
+      if (compareBytes(point, splitPoints.get(splitPoints.size() - 1)) > 0
+          && compareBytes(point, maxBytes) < 0) {
+        splitPoints.add(point);
+      }
+    }
+
+    // The user-specified boundaries are the first and last entries in the
+    // list; this gives a single split when the two are equal.
+    splitPoints.add(maxBytes);
+
+    return splitPoints;
+  }
+
+  private static final BigDecimal ONE_PLACE = new BigDecimal(256);
+
+  // Maximum number of bytes to convert. As in TextSplitter, this keeps
+  // the fractions manageable; 16 bytes is enough to tell apart any two
+  // UUIDs.
+  private static final int MAX_BYTES = 16;
+
+  /**
+   * Return a BigDecimal representation of the byte string 'bytes' suitable
+   * for use in a numerically-sorting order.
+   */
+  BigDecimal bytesToBigDecimal(byte [] bytes) {
+    // Start with 1/256 to compute the first digit.
+    BigDecimal curPlace = ONE_PLACE;
+    BigDecimal result = BigDecimal.ZERO;
+
+    int len = Math.min(bytes.length, MAX_BYTES);
+
+    for (int i = 0; i < len; i++) {
+      result = result.add(tryDivide(new BigDecimal(bytes[i] & 0xff),
+          curPlace));
+      curPlace = curPlace.multiply(ONE_PLACE);
+    }
+
+    return result;
+  }
+
+  /**
+   * Return the byte string encoded in a BigDecimal. Repeatedly multiply
+   * the value by 256; the integer portion after each multiplication is
+   * the next byte. Unlike TextSplitter, zero digits are kept, since a zero
+   * byte in the middle of a byte string is significant; we stop when
+   * nothing is left of the value.
+   */
+  byte [] bigDecimalToBytes(BigDecimal bd) {
+    BigDecimal cur = bd;
+    byte [] buf = new byte[MAX_BYTES];
+    int len = 0;
+
+    while (len < MAX_BYTES && cur.signum() > 0) {
+      cur = cur.multiply(ONE_PLACE);
+      int digit = cur.intValue();
+      cur = cur.subtract(new BigDecimal(digit));
+      buf[len++] = (byte) digit;
+    }
+
+    return Arrays.copyOf(buf, len);
+  }
+
+  /**
+   * Build a split point from the common prefix of the low and high values
+   * and an interpolated suffix.
+   */
+  protected byte [] toSplitPoint(byte [] commonPrefix, byte [] suffix) {
+    byte [] result = Arrays.copyOf(commonPrefix,
+        commonPrefix.length + suffix.length);
+    System.arraycopy(suffix, 0, result, commonPrefix.length, suffix.length);
+    return result;
+  }
+
+  /**
+   * Compare two byte strings as the database does: byte by byte, as
+   * unsigned values, with a prefix sorting before any longer string.
+   */
+  static int compareBytes(byte [] a, byte [] b) {
+    int len = Math.min(a.length, b.length);
+    for (int i = 0; i < len; i++) {
+      int diff = (a[i] & 0xff) - (b[i] & 0xff);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+
+    return a.length - b.length;
+  }
+
+  /**
+   * Read a column of the current row as a byte string.
+   * @return the bytes, or null if the value is NULL.
+   */
+  protected byte [] getBytes(ResultSet results, int colNum)
+      throws SQLException {
+    return results.getBytes(colNum);
+  }
+
+  /**
+   * Format a byte string as a SQL literal, with the literal format this
+   * splitter was created with.
+   */
+  protected String formatBytes(byte [] bytes) {
+    return String.format(literalFormat, toHex(bytes));
+  }
+
+  /**
+   * @return the bytes as a string of upper-case hexadecimal digits.
+   */
+  protected static String toHex(byte [] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(HEX_DIGITS[(b >> 4) & 0xf]);
+      sb.append(HEX_DIGITS[b & 0xf]);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Hands out chunks of an import to the tasks that read them, so that a
+ * task which finishes its own chunks early can take over chunks that a
+ * slower task has not yet started.
+ *
+ * A chunk is claimed by renaming a file into place under a name derived
+ * from the chunk, in a directory shared by all of the tasks; the file
+ * system guarantees that only one rename() to a given path succeeds. The
+ * file holds the id of the task that claimed the chunk, and is completely
+ * written before it is renamed, so that a claim is never seen without its
+ * owner. A later attempt of a failed task uses the owners to find the
+ * chunks whose output was lost with the failed attempt.
+ *
+ * Each claimer scans every chunk once, starting with its own share of
+ * them, so the chunks are all read once every claimer has finished.
+ */
+public class ChunkClaimer {
+
+  private static final Log LOG = LogFactory.getLog(ChunkClaimer.class);
+
+  private static final String CHUNK_FILE_PREFIX = "chunk-";
+
+  // Claims are written under this prefix before being renamed into place.
+  private static final String TEMP_FILE_PREFIX = "_claim-";
+
+  private final FileSystem fs;
+  private final Path claimDir;
+  private final String owner;
+  private final int numChunks;
+  private final int firstChunk;
+
+  // Number of chunks scanned so far, starting at firstChunk.
+  private int numScanned;
+
+  /**
+   * @param fs the file system holding the claim directory.
+   * @param claimDir the directory shared by all of the claimers.
+   * @param owner the id of the task claiming chunks. Later attempts of
+   * the same task must use the same id.
+   * @param numChunks the total number of chunks.
+   * @param firstChunk the first chunk this claimer tries to claim.
+   */
+  public ChunkClaimer(FileSystem fs, Path claimDir, String owner,
+      int numChunks, int firstChunk) {
+    this.fs = fs;
+    this.claimDir = claimDir;
+    this.owner = owner;
+    this.numChunks = numChunks;
+    this.firstChunk = numChunks > 0 ? firstChunk % numChunks : 0;
+    this.numScanned = 0;
+  }
+
+  private Path getChunkPath(int chunk) {
+    return new Path(claimDir, CHUNK_FILE_PREFIX + chunk);
+  }
+
+  /**
+   * Try to claim a single chunk.
+   * @return true if the chunk is now ours, false if it was already
+   * claimed by another task.
+   */
+  private boolean tryClaim(int chunk) throws IOException {
+    Path chunkPath = getChunkPath(chunk);
+    if (fs.exists(chunkPath)) {
+      return false; // Someone else got there first.
+    }
+
+    // Write the claim in full under a name private to this task, so that
+    // renaming it publishes the claim and its owner at once. A dead
+    // attempt of this task may have left the file behind; overwrite it.
+    Path tempPath = new Path(claimDir,
+        TEMP_FILE_PREFIX + chunk + "-" + owner);
+    FSDataOutputStream out = fs.create(tempPath, true);
+    try {
+      out.writeUTF(owner);
+    } finally {
+      out.close();
+    }
+
+    // The rename fails if another task claimed the chunk since we checked.
+    // (The local file system replaces an existing file instead, but local
+    // jobs run their tasks one at a time.)
+    if (!fs.rename(tempPath, chunkPath)) {
+      fs.delete(tempPath, false);
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Claim the next chunk that no other task has claimed.
+   * @return the index of the chunk, or -1 if all chunks have been claimed.
+   */
+  public int claimNext() throws IOException {
+    while (numScanned < numChunks) {
+      int chunk = (firstChunk + numScanned) % numChunks;
+      numScanned++;
+      if (tryClaim(chunk)) {
+        LOG.debug("Claimed chunk " + chunk);
+        return chunk;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Find the chunks that were claimed by an earlier attempt of this task.
+   * Their output was discarded along with that attempt, so they must be
+   * read again.
+   * @return the indexes of the chunks, in ascending order.
+   */
+  public List<Integer> recoverClaims() throws IOException {
+    List<Integer> chunks = new ArrayList<Integer>();
+    FileStatus [] claims = fs.listStatus(claimDir);
+    if (null == claims) {
+      return chunks;
+    }
+
+    for (FileStatus claim : claims) {
+      String name = claim.getPath().getName();
+      if (!name.startsWith(CHUNK_FILE_PREFIX)) {
+        continue;
+      }
+
+      String claimOwner = readOwner(claim.getPath());
+      if (owner.equals(claimOwner)) {
+        chunks.add(Integer.valueOf(
+            name.substring(CHUNK_FILE_PREFIX.length())));
+      }
+    }
+
+    Collections.sort(chunks);
+    return chunks;
+  }
+
+  /**
+   * Read the id of the task which claimed a chunk.
+   * @return the owner, or null if it could not be read.
+   */
+  private String readOwner(Path claimPath) throws IOException {
+    FSDataInputStream in = fs.open(claimPath);
+    try {
+      return in.readUTF();
+    } catch (IOException ioe) {
+      // Claims are renamed into place once written, so this one did not
+      // come from a claimer; it cannot be ours.
+      LOG.warn("Could not read the owner of chunk claim " + claimPath
+          + "; skipping it: " + ioe);
+      return null;
+    } finally {
+      in.close();
+    }
+  }
+}
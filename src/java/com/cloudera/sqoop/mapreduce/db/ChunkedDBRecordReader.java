@@ -0,0 +1,187 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.db.DBWritable;
+
+/**
+ * A RecordReader for a task of a work-stealing import. It claims chunks
+ * of the import one at a time until none are left, reading each chunk
+ * with the RecordReader that the InputFormat would use for a split of
+ * the same range.
+ */
+public class ChunkedDBRecordReader<T extends DBWritable>
+    extends RecordReader<LongWritable, T> {
+
+  private static final Log LOG =
+      LogFactory.getLog(ChunkedDBRecordReader.class);
+
+  private DataDrivenDBInputFormat<T> inputFormat;
+  private Configuration conf;
+  private TaskAttemptContext context;
+
+  private List<DataDrivenDBInputFormat.DataDrivenDBInputSplit> chunks;
+  private ChunkClaimer claimer;
+
+  // Chunks claimed by an earlier attempt of this task, to be read first.
+  private LinkedList<Integer> recoveredChunks;
+
+  private RecordReader<LongWritable, T> chunkReader;
+  private int numChunksRead;
+  private int numOwnChunks;
+  private boolean done;
+
+  public ChunkedDBRecordReader(DataDrivenDBInputFormat<T> format,
+      Configuration conf) {
+    this.inputFormat = format;
+    this.conf = conf;
+    this.recoveredChunks = new LinkedList<Integer>();
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public void initialize(InputSplit split, TaskAttemptContext ctxt)
+      throws IOException, InterruptedException {
+    DataDrivenDBInputFormat.ChunkedInputSplit chunkedSplit =
+        (DataDrivenDBInputFormat.ChunkedInputSplit) split;
+    this.context = ctxt;
+    this.chunks = chunkedSplit.getChunks();
+    this.numOwnChunks = chunkedSplit.getNumOwnChunks();
+
+    TaskAttemptID attemptId = ctxt.getTaskAttemptID();
+    Path claimDir = new Path(chunkedSplit.getClaimDir());
+    FileSystem fs = claimDir.getFileSystem(conf);
+    fs.mkdirs(claimDir);
+    this.claimer = new ChunkClaimer(fs, claimDir,
+        attemptId.getTaskID().toString(), chunks.size(),
+        chunkedSplit.getFirstChunk());
+
+    if (attemptId.getId() > 0) {
+      // The output of earlier attempts was discarded, including the
+      // chunks that they claimed; read those again.
+      recoveredChunks.addAll(claimer.recoverClaims());
+      LOG.info("Re-reading " + recoveredChunks.size()
+          + " chunks claimed by earlier attempts");
+    }
+  }
+
+  /**
+   * Close the reader for the current chunk, if any, and open a reader
+   * for the next chunk.
+   * @return false if there are no more chunks to read.
+   */
+  private boolean nextChunk() throws IOException, InterruptedException {
+    closeChunk();
+
+    int chunk;
+    if (!recoveredChunks.isEmpty()) {
+      chunk = recoveredChunks.removeFirst();
+    } else {
+      chunk = claimer.claimNext();
+    }
+
+    if (chunk < 0) {
+      LOG.info("Read " + numChunksRead + " of " + chunks.size()
+          + " chunks");
+      return false;
+    }
+
+    DataDrivenDBInputFormat.DataDrivenDBInputSplit chunkSplit =
+        chunks.get(chunk);
+    LOG.debug("Reading chunk " + chunk + ": " + chunkSplit.getLowerClause()
+        + " AND " + chunkSplit.getUpperClause());
+
+    // Each chunk's reader closes its connection when it is done, so
+    // make sure the InputFormat opens a fresh one for the next reader.
+    inputFormat.closeConnection();
+    chunkReader = inputFormat.createDBRecordReader(chunkSplit, conf);
+    chunkReader.initialize(chunkSplit, context);
+    return true;
+  }
+
+  private void closeChunk() throws IOException {
+    if (null != chunkReader) {
+      chunkReader.close();
+      chunkReader = null;
+      numChunksRead++;
+    }
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public boolean nextKeyValue() throws IOException, InterruptedException {
+    while (!done) {
+      if (null != chunkReader && chunkReader.nextKeyValue()) {
+        return true;
+      }
+
+      if (!nextChunk()) {
+        done = true;
+      }
+    }
+
+    return false;
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public LongWritable getCurrentKey() throws IOException,
+      InterruptedException {
+    return chunkReader.getCurrentKey();
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public T getCurrentValue() throws IOException, InterruptedException {
+    return chunkReader.getCurrentValue();
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public float getProgress() throws IOException {
+    if (done) {
+      return 1.0f;
+    }
+
+    // We expect to read about our own share of the chunks.
+    return Math.min(1.0f, numChunksRead / (float) Math.max(1, numOwnChunks));
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public void close() throws IOException {
+    closeChunk();
+  }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+/**
+ * Generates splits over a key made up of several columns, such as a
+ * composite primary key, from a sample of split points.
+ *
+ * The split points are a ResultSet with one row per split, ordered by the
+ * key, holding the first key of each split (one column per key column).
+ * Typically these are the first rows of the tiles of an NTILE() over the
+ * key. Each split then covers the keys from its own split point up to the
+ * next split point, using tuple comparisons expanded into plain boolean
+ * expressions, e.g. for the key (a, b) and the split point (5, 'x'):
+ *
+ *   (a &gt; 5) OR (a = 5 AND b &gt;= 'x')
+ *
+ * Rows with a NULL in any key column are not ordered by such expressions;
+ * these are read by a separate split.
+ */
+public class CompositeKeySplitter {
+
+  private static final Log LOG =
+      LogFactory.getLog(CompositeKeySplitter.class);
+
+  private final DBSplitter [] typeSplitters;
+
+  /**
+   * @param typeSplitters the splitters for the types of the key columns,
+   * used to format the key values as in HistogramSplitter. Entries may be
+   * null.
+   */
+  public CompositeKeySplitter(DBSplitter [] typeSplitters) {
+    this.typeSplitters = typeSplitters;
+  }
+
+  /**
+   * Given a ResultSet containing the split points (not yet advanced to
+   * its first row), generate the splits between them.
+   * @return the splits, or null if there are no split points or a key
+   * column type cannot be split this way.
+   */
+  public List<InputSplit> split(Configuration conf, ResultSet results,
+      String [] colNames) throws SQLException {
+
+    ResultSetMetaData metadata = results.getMetaData();
+    if (metadata.getColumnCount() != colNames.length) {
+      LOG.warn("Expected " + colNames.length + " columns of split points; "
+          + "got " + metadata.getColumnCount());
+      return null;
+    }
+
+    HistogramSplitter [] formatters = new HistogramSplitter[colNames.length];
+    int [] sqlDataTypes = new int[colNames.length];
+    for (int i = 0; i < colNames.length; i++) {
+      sqlDataTypes[i] = metadata.getColumnType(i + 1);
+      formatters[i] = new HistogramSplitter(typeSplitters[i]);
+      if (!formatters[i].isSupportedType(sqlDataTypes[i])) {
+        LOG.info("Cannot split on column " + colNames[i] + " of SQL type "
+            + sqlDataTypes[i] + " as part of a composite key");
+        return null;
+      }
+    }
+
+    // Read the split points, skipping any holding a NULL, and any repeats.
+    List<String []> points = new ArrayList<String []>();
+    while (results.next()) {
+      String [] point = new String[colNames.length];
+      boolean hasNull = false;
+      for (int i = 0; i < colNames.length && !hasNull; i++) {
+        point[i] = formatters[i].formatValue(results, i + 1,
+            sqlDataTypes[i]);
+        hasNull = null == point[i];
+      }
+
+      if (!hasNull && (points.isEmpty()
+          || !Arrays.equals(point, points.get(points.size() - 1)))) {
+        points.add(point);
+      }
+    }
+
+    if (points.isEmpty()) {
+      LOG.info("Found no split points for the composite key");
+      return null;
+    }
+
+    StringBuilder notNull = new StringBuilder();
+    StringBuilder anyNull = new StringBuilder();
+    for (int i = 0; i < colNames.length; i++) {
+      if (i > 0) {
+        notNull.append(" AND ");
+        anyNull.append(" OR ");
+      }
+      notNull.append(colNames[i]).append(" IS NOT NULL");
+      anyNull.append(colNames[i]).append(" IS NULL");
+    }
+
+    // The first split starts at the smallest key, and the last one ends
+    // at the largest, so these bounds are left open.
+    List<InputSplit> splits = new ArrayList<InputSplit>();
+    for (int i = 0; i < points.size(); i++) {
+      String lowClause = (i == 0) ? notNull.toString()
+          : notNull + " AND (" + compareKey(colNames, points.get(i), ">",
+          ">=") + ")";
+      String highClause = (i == points.size() - 1) ? notNull.toString()
+          : compareKey(colNames, points.get(i + 1), "<", "<");
+      splits.add(new DataDrivenDBInputFormat.DataDrivenDBInputSplit(
+          lowClause, highClause));
+    }
+
+    splits.add(new DataDrivenDBInputFormat.DataDrivenDBInputSplit(
+        anyNull.toString(), anyNull.toString()));
+
+    return splits;
+  }
+
+  /**
+   * Expand the tuple comparison (colNames) op (values) into a boolean
+   * expression which does not need row value constructors.
+   * @param op the comparison for all but the last column.
+   * @param lastOp the comparison for the last column.
+   */
+  static String compareKey(String [] colNames, String [] values, String op,
+      String lastOp) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < colNames.length; i++) {
+      if (i > 0) {
+        sb.append(" OR ");
+      }
+      sb.append("(");
+      for (int j = 0; j < i; j++) {
+        sb.append(colNames[j]).append(" = ").append(values[j]);
+        sb.append(" AND ");
+      }
+      sb.append(colNames[i]).append(" ");
+      sb.append(i == colNames.length - 1 ? lastOp : op);
+      sb.append(" ").append(values[i]).append(")");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Split a comma-separated list of (possibly quoted) column names, such
+   * as the value of --split-by for a composite key.
+   */
+  public static String [] getColumns(String colList) {
+    List<String> cols = new ArrayList<String>();
+    char closeQuote = 0;
+    int start = 0;
+    for (int i = 0; i < colList.length(); i++) {
+      char c = colList.charAt(i);
+      if (0 != closeQuote) {
+        if (c == closeQuote) {
+          closeQuote = 0;
+        }
+      } else if (c == '"' || c == '`') {
+        closeQuote = c;
+      } else if (c == '[') {
+        closeQuote = ']';
+      } else if (c == ',') {
+        cols.add(colList.substring(start, i).trim());
+        start = i + 1;
+      }
+    }
+    cols.add(colList.substring(start).trim());
+    return cols.toArray(new String[cols.size()]);
+  }
+}
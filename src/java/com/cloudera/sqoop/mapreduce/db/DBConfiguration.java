@@ -88,6 +88,48 @@ public class DBConfiguration {
   public static final String INPUT_BOUNDING_QUERY =
       "mapred.jdbc.input.bounding.query";
 
+  /** Input query to get a histogram of the values of the split column. */
+  public static final String INPUT_HISTOGRAM_QUERY =
+      "mapred.jdbc.input.histogram.query";
+
+  /** Input query to get the split points of a composite split key. */
+  public static final String INPUT_SPLIT_POINTS_QUERY =
+      "mapred.jdbc.input.split.points.query";
+
+  /**
+   * Format of a binary literal in the database, as returned by
+   * ConnManager.getBinaryLiteralFormat().
+   */
+  public static final String INPUT_BINARY_LITERAL_FORMAT =
+      "mapred.jdbc.input.binary.literal.format";
+
+  /** Maximum number of rows to read with each query of a paged split. */
+  public static final String INPUT_PAGE_SIZE =
+      "mapred.jdbc.input.page.size";
+
+  /**
+   * Format of a query limited to its first rows, as returned by
+   * ConnManager.getRowLimitFormat().
+   */
+  public static final String INPUT_ROW_LIMIT_FORMAT =
+      "mapred.jdbc.input.row.limit.format";
+
+  /** Number of rows a task reads between checkpoints of its progress. */
+  public static final String INPUT_CHECKPOINT_ROWS =
+      "mapred.jdbc.input.checkpoint.rows";
+
+  /** Directory holding the checkpoints of an import's tasks. */
+  public static final String INPUT_CHECKPOINT_DIR =
+      "mapred.jdbc.input.checkpoint.dir";
+
+  /** Number of chunks to cut each split into for work-stealing imports. */
+  public static final String INPUT_CHUNKS_PER_SPLIT =
+      "mapred.jdbc.input.chunks.per.split";
+
+  /** Directory in which tasks claim chunks of a work-stealing import. */
+  public static final String INPUT_CHUNK_CLAIM_DIR =
+      "mapred.jdbc.input.chunk.claim.dir";
+
   /** Class name implementing DBWritable which will hold input tuples. */
   public static final String INPUT_CLASS_PROPERTY =
     "mapreduce.jdbc.input.class";
@@ -274,6 +316,90 @@ public class DBConfiguration {
     return conf.get(DBConfiguration.INPUT_BOUNDING_QUERY);
   }
 
+  public void setInputHistogramQuery(String query) {
+    if (query != null && query.length() > 0) {
+      conf.set(DBConfiguration.INPUT_HISTOGRAM_QUERY, query);
+    }
+  }
+
+  public String getInputHistogramQuery() {
+    return conf.get(DBConfiguration.INPUT_HISTOGRAM_QUERY);
+  }
+
+  public void setInputSplitPointsQuery(String query) {
+    if (query != null && query.length() > 0) {
+      conf.set(DBConfiguration.INPUT_SPLIT_POINTS_QUERY, query);
+    }
+  }
+
+  public String getInputSplitPointsQuery() {
+    return conf.get(DBConfiguration.INPUT_SPLIT_POINTS_QUERY);
+  }
+
+  public void setInputBinaryLiteralFormat(String format) {
+    if (format != null && format.length() > 0) {
+      conf.set(DBConfiguration.INPUT_BINARY_LITERAL_FORMAT, format);
+    }
+  }
+
+  public String getInputBinaryLiteralFormat() {
+    return conf.get(DBConfiguration.INPUT_BINARY_LITERAL_FORMAT);
+  }
+
+  public void setInputPageSize(int rows) {
+    conf.setInt(DBConfiguration.INPUT_PAGE_SIZE, rows);
+  }
+
+  public int getInputPageSize() {
+    return conf.getInt(DBConfiguration.INPUT_PAGE_SIZE, 0);
+  }
+
+  public void setInputRowLimitFormat(String format) {
+    if (format != null && format.length() > 0) {
+      conf.set(DBConfiguration.INPUT_ROW_LIMIT_FORMAT, format);
+    }
+  }
+
+  public String getInputRowLimitFormat() {
+    return conf.get(DBConfiguration.INPUT_ROW_LIMIT_FORMAT);
+  }
+
+  public void setInputCheckpointRows(long rows) {
+    conf.setLong(DBConfiguration.INPUT_CHECKPOINT_ROWS, rows);
+  }
+
+  public long getInputCheckpointRows() {
+    return conf.getLong(DBConfiguration.INPUT_CHECKPOINT_ROWS, 0);
+  }
+
+  public void setInputCheckpointDir(String dir) {
+    if (dir != null && dir.length() > 0) {
+      conf.set(DBConfiguration.INPUT_CHECKPOINT_DIR, dir);
+    }
+  }
+
+  public String getInputCheckpointDir() {
+    return conf.get(DBConfiguration.INPUT_CHECKPOINT_DIR);
+  }
+
+  public void setInputChunksPerSplit(int chunks) {
+    conf.setInt(DBConfiguration.INPUT_CHUNKS_PER_SPLIT, chunks);
+  }
+
+  public int getInputChunksPerSplit() {
+    return conf.getInt(DBConfiguration.INPUT_CHUNKS_PER_SPLIT, 1);
+  }
+
+  public void setInputChunkClaimDir(String dir) {
+    if (dir != null && dir.length() > 0) {
+      conf.set(DBConfiguration.INPUT_CHUNK_CLAIM_DIR, dir);
+    }
+  }
+
+  public String getInputChunkClaimDir() {
+    return conf.get(DBConfiguration.INPUT_CHUNK_CLAIM_DIR);
+  }
+
   public Class<?> getInputClass() {
     return conf.getClass(DBConfiguration.INPUT_CLASS_PROPERTY,
                          NullDBWritable.class);
@@ -99,6 +99,14 @@ public class DBRecordReader<T extends DBWritable> extends
   // CHECKSTYLE:ON
 
   protected ResultSet executeQuery(String query) throws SQLException {
+    return executeQuery(query, new Object[0]);
+  }
+
+  /**
+   * Execute a query, binding 'params' to its parameters in order.
+   */
+  protected ResultSet executeQuery(String query, Object [] params)
+      throws SQLException {
     this.statement = connection.prepareStatement(query,
         ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 
@@ -108,10 +116,28 @@ public class DBRecordReader<T extends DBWritable> extends
       statement.setFetchSize(fetchSize);
     }
 
+    for (int i = 0; i < params.length; i++) {
+      statement.setObject(i + 1, params[i]);
+    }
+
     LOG.debug("Executing query: " + query);
     return statement.executeQuery();
   }
 
+  /**
+   * Run the next query over this split. The default implementation reads
+   * the whole split with the single query returned by getSelectQuery();
+   * subclasses may read it with a series of queries instead.
+   * @return the results of the query, or null if the split has been read.
+   */
+  protected ResultSet executeNextQuery() throws SQLException {
+    if (null != results) {
+      return null;
+    }
+
+    return executeQuery(getSelectQuery());
+  }
+
   /** Returns the query for selecting the records,
    * subclasses can override this for custom behaviour.*/
   protected String getSelectQuery() {
@@ -234,10 +260,14 @@ public class DBRecordReader<T extends DBWritable> extends
       }
       if (null == this.results) {
         // First time into this method, run the query.
-        this.results = executeQuery(getSelectQuery());
+        this.results = executeNextQuery();
       }
-      if (!results.next()) {
-        return false;
+      while (!results.next()) {
+        ResultSet nextResults = executeNextQuery();
+        if (null == nextResults) {
+          return false;
+        }
+        this.results = nextResults;
       }
 
       // Set the key field value as the output key value
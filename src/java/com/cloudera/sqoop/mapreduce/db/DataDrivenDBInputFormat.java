@@ -25,25 +25,30 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.db.DBWritable;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 
+import com.cloudera.sqoop.config.ConfigurationConstants;
 import com.cloudera.sqoop.config.ConfigurationHelper;
 
 /**
@@ -73,6 +78,7 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
 
     private String lowerBoundClause;
     private String upperBoundClause;
+    private long rowCount;
 
     /**
      * Default Constructor.
@@ -88,16 +94,31 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
      * on the 'upper' end.
      */
     public DataDrivenDBInputSplit(final String lower, final String upper) {
+      this(lower, upper, 0);
+    }
+
+    /**
+     * Convenience Constructor.
+     * @param lower the string to be put in the WHERE clause to guard
+     * on the 'lower' end.
+     * @param upper the string to be put in the WHERE clause to guard
+     * on the 'upper' end.
+     * @param rows the estimated number of rows in the split, or 0 if
+     * unknown.
+     */
+    public DataDrivenDBInputSplit(final String lower, final String upper,
+        final long rows) {
       this.lowerBoundClause = lower;
       this.upperBoundClause = upper;
+      this.rowCount = rows;
     }
 
 
     /**
-     * @return The total row count in this split.
+     * @return The estimated row count in this split, or 0 if unknown.
      */
     public long getLength() throws IOException {
-      return 0; // unfortunately, we don't know this.
+      return rowCount;
     }
 
     @Override
@@ -105,6 +126,7 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
     public void readFields(DataInput input) throws IOException {
       this.lowerBoundClause = Text.readString(input);
       this.upperBoundClause = Text.readString(input);
+      this.rowCount = input.readLong();
     }
 
     @Override
@@ -112,6 +134,7 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
     public void write(DataOutput output) throws IOException {
       Text.writeString(output, this.lowerBoundClause);
       Text.writeString(output, this.upperBoundClause);
+      output.writeLong(this.rowCount);
     }
 
     public String getLowerClause() {
@@ -123,6 +146,103 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
     }
   }
 
+  /**
+   * A InputSplit for a task of a work-stealing import. It holds every
+   * chunk of the import; the task reads its own share of the chunks
+   * first, and then any chunks that other tasks have not yet claimed.
+   * @see ChunkClaimer
+   */
+  public static class ChunkedInputSplit extends InputSplit
+      implements Writable {
+
+    private List<DataDrivenDBInputSplit> chunks;
+    private int firstChunk;
+    private int numOwnChunks;
+    private String claimDir;
+
+    /**
+     * Default Constructor.
+     */
+    public ChunkedInputSplit() {
+      this.chunks = new ArrayList<DataDrivenDBInputSplit>();
+    }
+
+    /**
+     * Convenience Constructor.
+     * @param chunks all of the chunks of the import.
+     * @param firstChunk the index of the first chunk in this task's share.
+     * @param numOwnChunks the number of chunks in this task's share.
+     * @param claimDir the directory in which chunks are claimed.
+     */
+    public ChunkedInputSplit(List<DataDrivenDBInputSplit> chunks,
+        int firstChunk, int numOwnChunks, String claimDir) {
+      this.chunks = chunks;
+      this.firstChunk = firstChunk;
+      this.numOwnChunks = numOwnChunks;
+      this.claimDir = claimDir;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public String[] getLocations() throws IOException {
+      return new String[] {};
+    }
+
+    /**
+     * @return The estimated row count of this task's share of the chunks.
+     */
+    public long getLength() throws IOException {
+      long length = 0;
+      for (int i = 0; i < numOwnChunks; i++) {
+        length += chunks.get(firstChunk + i).getLength();
+      }
+      return length;
+    }
+
+    public List<DataDrivenDBInputSplit> getChunks() {
+      return chunks;
+    }
+
+    public int getFirstChunk() {
+      return firstChunk;
+    }
+
+    public int getNumOwnChunks() {
+      return numOwnChunks;
+    }
+
+    public String getClaimDir() {
+      return claimDir;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void readFields(DataInput input) throws IOException {
+      int numChunks = input.readInt();
+      chunks = new ArrayList<DataDrivenDBInputSplit>(numChunks);
+      for (int i = 0; i < numChunks; i++) {
+        DataDrivenDBInputSplit chunk = new DataDrivenDBInputSplit();
+        chunk.readFields(input);
+        chunks.add(chunk);
+      }
+      firstChunk = input.readInt();
+      numOwnChunks = input.readInt();
+      claimDir = Text.readString(input);
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public void write(DataOutput output) throws IOException {
+      output.writeInt(chunks.size());
+      for (DataDrivenDBInputSplit chunk : chunks) {
+        chunk.write(output);
+      }
+      output.writeInt(firstChunk);
+      output.writeInt(numOwnChunks);
+      Text.writeString(output, claimDir);
+    }
+  }
+
   /**
    * @return the DBSplitter implementation to use to divide the table/query
    * into InputSplits.
@@ -158,18 +278,129 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
     case Types.TIMESTAMP:
       return new DateSplitter();
 
+    case Types.BINARY:
+    case Types.VARBINARY:
+    case Types.LONGVARBINARY:
+      // The split points must be written as literals, whose syntax
+      // differs from one database to another.
+      String literalFormat = getBinaryLiteralFormat();
+      if (null == literalFormat) {
+        return null;
+      }
+      return new BinarySplitter(literalFormat);
+
     default:
-      // TODO: Support BINARY, VARBINARY, LONGVARBINARY, DISTINCT, CLOB,
-      // BLOB, ARRAY, STRUCT, REF, DATALINK, and JAVA_OBJECT.
+      // TODO: Support DISTINCT, CLOB, BLOB, ARRAY, STRUCT, REF, DATALINK,
+      // and JAVA_OBJECT. Types.OTHER columns are handled by
+      // getSplitter(ResultSetMetaData, int), which can tell UUIDs apart.
+      return null;
+    }
+  }
+
+  /**
+   * @return the format of a binary literal in the database, as configured
+   * for the job; or null if it is not known.
+   */
+  protected String getBinaryLiteralFormat() {
+    DBConfiguration dbConf = getDBConf();
+    if (null == dbConf) {
       return null;
     }
+    return dbConf.getInputBinaryLiteralFormat();
+  }
+
+  /**
+   * @return the DBSplitter implementation to use to divide the table/query
+   * on the given column of a ResultSet, or null if it cannot be split.
+   */
+  protected DBSplitter getSplitter(ResultSetMetaData metadata, int colNum)
+      throws SQLException {
+    int sqlDataType = metadata.getColumnType(colNum);
+    if (sqlDataType == Types.OTHER) {
+      // The only values of this type that we know how to split are UUIDs.
+      // Other values of the type (e.g., PostgreSQL's json, inet and
+      // interval) cannot be split.
+      return isUuidColumn(metadata, colNum) ? new UuidSplitter() : null;
+    }
+
+    // MySQL has an unsigned integer which we need to allocate space for
+    if (sqlDataType == Types.INTEGER && !metadata.isSigned(colNum)) {
+      sqlDataType = Types.BIGINT;
+    }
+
+    return getSplitter(sqlDataType);
+  }
+
+  /**
+   * @return true if the given column of a ResultSet holds UUIDs.
+   */
+  protected boolean isUuidColumn(ResultSetMetaData metadata, int colNum)
+      throws SQLException {
+    return "uuid".equalsIgnoreCase(metadata.getColumnTypeName(colNum))
+        || UUID.class.getName().equals(metadata.getColumnClassName(colNum));
   }
 
   @Override
   /** {@inheritDoc} */
   public List<InputSplit> getSplits(JobContext job) throws IOException {
-
     int targetNumTasks = ConfigurationHelper.getJobNumMaps(job);
+    int chunksPerSplit = getDBConf().getInputChunksPerSplit();
+    String claimDir = getDBConf().getInputChunkClaimDir();
+    if (targetNumTasks > 1 && chunksPerSplit > 1) {
+      if (null == claimDir) {
+        LOG.warn("No chunk claim directory is set; "
+            + "not splitting the import into chunks.");
+      } else {
+        return getChunkedSplits(job, targetNumTasks, chunksPerSplit,
+            claimDir);
+      }
+    }
+
+    return getRangeSplits(job, targetNumTasks);
+  }
+
+  /**
+   * Cut the import into targetNumTasks * chunksPerSplit chunks, and
+   * generate one ChunkedInputSplit for each task.
+   */
+  protected List<InputSplit> getChunkedSplits(JobContext job,
+      int targetNumTasks, int chunksPerSplit, String claimDir)
+      throws IOException {
+    Configuration chunkConf = new Configuration(job.getConfiguration());
+    int targetNumChunks = targetNumTasks * chunksPerSplit;
+    chunkConf.setInt(ConfigurationConstants.PROP_MAPRED_MAP_TASKS,
+        targetNumChunks);
+    List<InputSplit> rangeSplits = getRangeSplits(
+        new JobContext(chunkConf, job.getJobID()), targetNumChunks);
+
+    List<DataDrivenDBInputSplit> chunks =
+        new ArrayList<DataDrivenDBInputSplit>(rangeSplits.size());
+    for (InputSplit split : rangeSplits) {
+      chunks.add((DataDrivenDBInputSplit) split);
+    }
+
+    // The splitter may have produced fewer chunks than we asked for.
+    int numTasks = Math.min(targetNumTasks, chunks.size());
+    LOG.info("Splitting the import into " + chunks.size() + " chunks for "
+        + numTasks + " tasks");
+
+    List<InputSplit> splits = new ArrayList<InputSplit>(numTasks);
+    for (int i = 0; i < numTasks; i++) {
+      int firstChunk = i * chunks.size() / numTasks;
+      int endChunk = (i + 1) * chunks.size() / numTasks;
+      splits.add(new ChunkedInputSplit(chunks, firstChunk,
+          endChunk - firstChunk, claimDir));
+    }
+
+    return splits;
+  }
+
+  /**
+   * Generate splits that each cover a range of values of the split column.
+   */
+  protected List<InputSplit> getRangeSplits(JobContext job,
+      int targetNumTasks) throws IOException {
+
     String boundaryQuery = getDBConf().getInputBoundingQuery();
 
     // If user do not forced us to use his boundary query and we don't have to
@@ -183,6 +414,28 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
       return singletonSplit;
     }
 
+    // A composite split key is split at sampled points of the key. If we
+    // cannot get them, fall back to splitting on the leading column.
+    String splitPointsQuery = getDBConf().getInputSplitPointsQuery();
+    if (null != splitPointsQuery) {
+      List<InputSplit> compositeKeySplits =
+          getCompositeKeySplits(job, splitPointsQuery);
+      if (null != compositeKeySplits) {
+        return compositeKeySplits;
+      }
+    }
+
+    // If we have a histogram of the split column, try to use it to balance
+    // the splits by row count.
+    String histogramQuery = getDBConf().getInputHistogramQuery();
+    if (null != histogramQuery) {
+      List<InputSplit> histogramSplits =
+          getHistogramSplits(job, histogramQuery);
+      if (null != histogramSplits) {
+        return histogramSplits;
+      }
+    }
+
     ResultSet results = null;
     Statement statement = null;
     Connection connection = getConnection();
@@ -198,21 +451,14 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
       // Based on the type of the results, use a different mechanism
       // for interpolating split points (i.e., numeric splits, text splits,
       // dates, etc.)
-      int sqlDataType = results.getMetaData().getColumnType(1);
-      boolean isSigned = results.getMetaData().isSigned(1);
-
-      // MySQL has an unsigned integer which we need to allocate space for
-      if (sqlDataType == Types.INTEGER && !isSigned){
-          sqlDataType = Types.BIGINT;
-      }
-
-      DBSplitter splitter = getSplitter(sqlDataType);
+      DBSplitter splitter = getSplitter(results.getMetaData(), 1);
       if (null == splitter) {
-        throw new IOException("Unknown SQL data type: " + sqlDataType);
+        throw new IOException("Unknown SQL data type: "
+            + results.getMetaData().getColumnType(1));
       }
 
       return splitter.split(job.getConfiguration(), results,
-          getDBConf().getInputOrderBy());
+          getSplitColumn());
     } catch (SQLException e) {
       throw new IOException(e);
     } finally {
@@ -243,6 +489,146 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
     }
   }
 
+  /**
+   * Generate splits with roughly equal numbers of rows from a histogram of
+   * the split column. See HistogramSplitter for the form of the histogram.
+   * @return the splits, or null if the histogram could not be used; the
+   * caller should then split the range between the minimum and maximum
+   * values of the split column instead.
+   */
+  protected List<InputSplit> getHistogramSplits(JobContext job,
+      String histogramQuery) throws IOException {
+
+    List<InputSplit> splits = null;
+    ResultSet results = null;
+    Statement statement = null;
+    Connection connection = getConnection();
+    try {
+      statement = connection.createStatement();
+
+      LOG.info("HistogramQuery: " + histogramQuery);
+      results = statement.executeQuery(histogramQuery);
+
+      HistogramSplitter splitter = new HistogramSplitter(
+          getSplitter(results.getMetaData(), 1));
+      splits = splitter.split(job.getConfiguration(), results,
+          getSplitColumn());
+    } catch (SQLException e) {
+      LOG.warn("Could not split using the histogram query; "
+          + "falling back to the bounding values query: " + e.toString());
+    } finally {
+      try {
+        if (null != results) {
+          results.close();
+        }
+      } catch (SQLException se) {
+        LOG.debug("SQLException closing resultset: " + se.toString());
+      }
+
+      try {
+        if (null != statement) {
+          statement.close();
+        }
+      } catch (SQLException se) {
+        LOG.debug("SQLException closing statement: " + se.toString());
+      }
+
+      try {
+        if (null != splits) {
+          connection.commit();
+          closeConnection();
+        } else {
+          // Leave the connection usable for the bounding values query.
+          connection.rollback();
+        }
+      } catch (SQLException se) {
+        LOG.debug("SQLException ending histogram transaction: "
+            + se.toString());
+      }
+    }
+
+    return splits;
+  }
+
+  /**
+   * Generate splits over a composite split key from its split points. See
+   * CompositeKeySplitter for the form of the split points.
+   * @return the splits, or null if the split points could not be used; the
+   * caller should then split on the leading column of the key instead.
+   */
+  protected List<InputSplit> getCompositeKeySplits(JobContext job,
+      String splitPointsQuery) throws IOException {
+
+    List<InputSplit> splits = null;
+    ResultSet results = null;
+    Statement statement = null;
+    Connection connection = getConnection();
+    try {
+      statement = connection.createStatement();
+
+      LOG.info("SplitPointsQuery: " + splitPointsQuery);
+      results = statement.executeQuery(splitPointsQuery);
+
+      ResultSetMetaData metadata = results.getMetaData();
+      DBSplitter [] typeSplitters =
+          new DBSplitter[metadata.getColumnCount()];
+      for (int i = 0; i < typeSplitters.length; i++) {
+        typeSplitters[i] = getSplitter(metadata, i + 1);
+      }
+
+      CompositeKeySplitter splitter = new CompositeKeySplitter(typeSplitters);
+      splits = splitter.split(job.getConfiguration(), results,
+          CompositeKeySplitter.getColumns(getDBConf().getInputOrderBy()));
+    } catch (SQLException e) {
+      LOG.warn("Could not split using the split points query; "
+          + "splitting on the leading key column: " + e.toString());
+    } finally {
+      try {
+        if (null != results) {
+          results.close();
+        }
+      } catch (SQLException se) {
+        LOG.debug("SQLException closing resultset: " + se.toString());
+      }
+
+      try {
+        if (null != statement) {
+          statement.close();
+        }
+      } catch (SQLException se) {
+        LOG.debug("SQLException closing statement: " + se.toString());
+      }
+
+      try {
+        if (null != splits) {
+          connection.commit();
+          closeConnection();
+        } else {
+          // Leave the connection usable for the next query.
+          connection.rollback();
+        }
+      } catch (SQLException se) {
+        LOG.debug("SQLException ending split points transaction: "
+            + se.toString());
+      }
+    }
+
+    return splits;
+  }
+
+  /**
+   * @return the column to split on by value range. This is the order-by
+   * column, or the leading column if that is a composite key.
+   */
+  protected String getSplitColumn() {
+    String orderBy = getDBConf().getInputOrderBy();
+    if (null == orderBy) {
+      return null;
+    }
+
+    return CompositeKeySplitter.getColumns(orderBy)[0];
+  }
+
   /**
    * @return a query which returns the minimum and maximum values for
    * the order-by column.
@@ -260,7 +646,7 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
     // Auto-generate one based on the table name we've been provided with.
     StringBuilder query = new StringBuilder();
 
-    String splitCol = getDBConf().getInputOrderBy();
+    String splitCol = getSplitColumn();
     query.append("SELECT MIN(").append(splitCol).append("), ");
     query.append("MAX(").append(splitCol).append(") FROM ");
     query.append(getDBConf().getInputTableName());
@@ -293,6 +679,41 @@ public class DataDrivenDBInputFormat<T extends DBWritable>
     conf.set(DBConfiguration.INPUT_BOUNDING_QUERY, query);
   }
 
+  /**
+   * Set a query returning a histogram of the split column, which is used to
+   * generate splits holding roughly equal numbers of rows. The query must
+   * return one row per bucket, ordered by value, holding the lowest value
+   * in the bucket, the highest value in the bucket, and the number of rows
+   * in the bucket. If the query fails, splits are generated from the
+   * bounding values query instead.
+   */
+  public static void setHistogramQuery(Configuration conf, String query) {
+    new DBConfiguration(conf).setInputHistogramQuery(query);
+  }
+
+  /**
+   * Set a query returning the split points of a composite split key, which
+   * is used to generate splits over the whole key rather than just its
+   * leading column. The query must return one row per split, ordered by
+   * the key, holding the first key of the split. If the query fails, splits
+   * are generated from the leading column of the key instead.
+   */
+  public static void setSplitPointsQuery(Configuration conf, String query) {
+    new DBConfiguration(conf).setInputSplitPointsQuery(query);
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public RecordReader<LongWritable, T> createRecordReader(InputSplit split,
+      TaskAttemptContext context) throws IOException, InterruptedException {
+
+    if (split instanceof ChunkedInputSplit) {
+      return new ChunkedDBRecordReader<T>(this, context.getConfiguration());
+    }
+
+    return super.createRecordReader(split, context);
+  }
+
   protected RecordReader<LongWritable, T> createDBRecordReader(
       DBInputSplit split, Configuration conf) throws IOException {
 
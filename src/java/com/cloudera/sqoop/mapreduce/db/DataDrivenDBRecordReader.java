@@ -22,11 +22,16 @@ package com.cloudera.sqoop.mapreduce.db;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.db.DBWritable;
 
 /**
@@ -34,6 +39,22 @@ import org.apache.hadoop.mapreduce.lib.db.DBWritable;
  * using data-driven WHERE clause splits.
  * Emits LongWritables containing the record number as
  * key and DBWritables as value.
+ *
+ * If a page size is configured, a split of a table is read in pages of
+ * about that many rows, ordered by the split column, rather than with a
+ * single query. Before each page, a query over the split column alone
+ * finds the value that ends the page; the page then holds the rows with
+ * values after the end of the previous page, up to and including this
+ * one. (A page is larger than the page size only if many rows share the
+ * value that ends it.) No query stays open for longer than it takes to
+ * read a page, and the transaction is committed between pages, so the
+ * database need not hold a cursor or snapshot open for the whole split.
+ * Rows whose split column is NULL are read last, with one more query.
+ *
+ * If checkpoints are configured as well, the reader takes a checkpoint
+ * (see SplitCheckpointer) at the first page boundary after every so many
+ * rows. A later attempt of the task starts with the page after the last
+ * checkpoint.
  */
 public class DataDrivenDBRecordReader<T extends DBWritable>
     extends DBRecordReader<T> {
@@ -43,6 +64,37 @@ public class DataDrivenDBRecordReader<T extends DBWritable>
 
   private String dbProductName; // database manufacturer string.
 
+  // The maximum number of rows in a page, or 0 if not reading in pages.
+  private int pageSize;
+
+  // The column by which pages are ordered.
+  private String pageColumn;
+
+  // The format of a query limited to its first rows; see
+  // ConnManager.getRowLimitFormat().
+  private String rowLimitFormat;
+
+  // The split column value that ended the last page, or null before the
+  // first page, and its SQL type.
+  private Object pageStart;
+  private int pageStartType;
+
+  // True once the query for rows with a NULL split column has been run.
+  private boolean readNullKeys;
+
+  private boolean pagesDone;
+
+  // The number of rows to read between checkpoints, or 0 if the task is
+  // not checkpointed.
+  private long checkpointRows;
+
+  private SplitCheckpointer checkpointer;
+
+  // The SQL type of the value last returned by getPageEnd().
+  private int pageEndType;
+
+  private long rowsSinceCheckpoint;
+
   // CHECKSTYLE:OFF
   // TODO(aaron): Refactor constructor to use fewer arguments.
   /**
@@ -55,59 +107,132 @@ public class DataDrivenDBRecordReader<T extends DBWritable>
       String dbProduct) throws SQLException {
     super(split, inputClass, conf, conn, dbConfig, cond, fields, table);
     this.dbProductName = dbProduct;
+
+    // Only a table with a split column can be read in pages, and only in
+    // a database which can limit the rows of a query.
+    int rows = dbConfig.getInputPageSize();
+    String orderBy = dbConfig.getInputOrderBy();
+    String limitFormat = dbConfig.getInputRowLimitFormat();
+    if (rows > 0 && null == dbConfig.getInputQuery()
+        && null != orderBy && orderBy.length() > 0 && null != limitFormat) {
+      this.pageSize = rows;
+      this.rowLimitFormat = limitFormat;
+      // Pages of a composite split key are ordered by its leading column.
+      this.pageColumn = CompositeKeySplitter.getColumns(orderBy)[0];
+      this.checkpointRows = dbConfig.getInputCheckpointRows();
+    }
   }
   // CHECKSTYLE:ON
 
+  @Override
+  /** {@inheritDoc} */
+  public void initialize(InputSplit inputSplit, TaskAttemptContext context)
+      throws IOException, InterruptedException {
+    super.initialize(inputSplit, context);
+    if (checkpointRows <= 0) {
+      return;
+    }
+
+    checkpointer = SplitCheckpointer.forTask(getConf(),
+        context.getTaskAttemptID());
+    if (null != checkpointer && null != checkpointer.getLastKey()) {
+      pageStart = checkpointer.getLastKey();
+      pageStartType = checkpointer.getLastKeyType();
+      LOG.info("Resuming split after checkpoint at " + pageStart);
+    }
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  public boolean nextKeyValue() throws IOException {
+    boolean hasNext = super.nextKeyValue();
+    if (hasNext) {
+      rowsSinceCheckpoint++;
+    }
+    return hasNext;
+  }
+
   @Override
   /** {@inheritDoc} */
   public float getProgress() throws IOException {
     return isDone() ? 1.0f : 0.0f;
   }
 
-  /** Returns the query for selecting the records,
-   * subclasses can override this for custom behaviour.*/
-  protected String getSelectQuery() {
-    StringBuilder query = new StringBuilder();
+  @Override
+  /** {@inheritDoc} */
+  protected boolean isDone() {
+    if (pageSize > 0) {
+      return pagesDone;
+    }
+    return super.isDone();
+  }
+
+  /**
+   * @return the conditions restricting a query to the rows of this split.
+   */
+  private String getSplitConditions() {
     DataDrivenDBInputFormat.DataDrivenDBInputSplit dataSplit =
         (DataDrivenDBInputFormat.DataDrivenDBInputSplit) getSplit();
-    DBConfiguration dbConf = getDBConf();
-    String [] fieldNames = getFieldNames();
-    String tableName = getTableName();
-    String conditions = getConditions();
-
-    // Build the WHERE clauses associated with the data split first.
-    // We need them in both branches of this function.
     StringBuilder conditionClauses = new StringBuilder();
     conditionClauses.append("( ").append(dataSplit.getLowerClause());
     conditionClauses.append(" ) AND ( ").append(dataSplit.getUpperClause());
     conditionClauses.append(" )");
+    return conditionClauses.toString();
+  }
 
-    if(dbConf.getInputQuery() == null) {
-      // We need to generate the entire query.
-      query.append("SELECT ");
+  /**
+   * @return the FROM and WHERE clauses of a query over the rows of this
+   * split of the table.
+   */
+  private String getTableFromWhere() {
+    StringBuilder query = new StringBuilder();
+    String tableName = getTableName();
+    String conditions = getConditions();
 
-      for (int i = 0; i < fieldNames.length; i++) {
-        query.append(fieldNames[i]);
-        if (i != fieldNames.length -1) {
-          query.append(", ");
-        }
-      }
+    query.append(" FROM ").append(tableName);
+    if (!dbProductName.startsWith("ORACLE")) {
+      // Seems to be necessary for hsqldb? Oracle explicitly does *not*
+      // use this clause.
+      query.append(" AS ").append(tableName);
+    }
+    query.append(" WHERE ");
+    if (conditions != null && conditions.length() > 0) {
+      // Put the user's conditions first.
+      query.append("( ").append(conditions).append(" ) AND ");
+    }
 
-      query.append(" FROM ").append(tableName);
-      if (!dbProductName.startsWith("ORACLE")) {
-        // Seems to be necessary for hsqldb? Oracle explicitly does *not*
-        // use this clause.
-        query.append(" AS ").append(tableName);
-      }
-      query.append(" WHERE ");
-      if (conditions != null && conditions.length() > 0) {
-        // Put the user's conditions first.
-        query.append("( ").append(conditions).append(" ) AND ");
+    // Now append the conditions associated with our split.
+    query.append(getSplitConditions());
+    return query.toString();
+  }
+
+  /**
+   * @return the SELECT clause of a query over the table.
+   */
+  private String getTableSelect() {
+    String [] fieldNames = getFieldNames();
+    StringBuilder query = new StringBuilder();
+    query.append("SELECT ");
+
+    for (int i = 0; i < fieldNames.length; i++) {
+      query.append(fieldNames[i]);
+      if (i != fieldNames.length -1) {
+        query.append(", ");
       }
+    }
+
+    return query.toString();
+  }
 
-      // Now append the conditions associated with our split.
-      query.append(conditionClauses.toString());
+  /** Returns the query for selecting the records,
+   * subclasses can override this for custom behaviour.*/
+  protected String getSelectQuery() {
+    StringBuilder query = new StringBuilder();
+    DBConfiguration dbConf = getDBConf();
 
+    if(dbConf.getInputQuery() == null) {
+      // We need to generate the entire query.
+      query.append(getTableSelect()).append(getTableFromWhere());
     } else {
       // User provided the query. We replace the special token with
       // our WHERE clause.
@@ -119,11 +244,146 @@ public class DataDrivenDBRecordReader<T extends DBWritable>
       }
 
       query.append(inputQuery.replace(DataDrivenDBInputFormat.SUBSTITUTE_TOKEN,
-          conditionClauses.toString()));
+          getSplitConditions()));
     }
 
     LOG.debug("Using query: " + query.toString());
 
     return query.toString();
   }
+
+  /**
+   * Limit a query, which starts with "SELECT ", to its first 'rows' rows
+   * in the syntax given by the configured row limit format.
+   */
+  protected String limitRows(String query, int rows) {
+    return String.format(rowLimitFormat,
+        query.substring("SELECT ".length()), rows);
+  }
+
+  /**
+   * @return the query for the split column value that ends the next page.
+   * It has a parameter for the end of the previous page, unless this is
+   * the first page.
+   */
+  protected String getPageEndQuery(boolean firstPage) {
+    StringBuilder query = new StringBuilder();
+    query.append("SELECT ").append(pageColumn).append(getTableFromWhere());
+    if (!firstPage) {
+      query.append(" AND ( ").append(pageColumn).append(" > ? )");
+    }
+    query.append(" AND ( ").append(pageColumn).append(" IS NOT NULL )");
+    query.append(" ORDER BY ").append(pageColumn);
+
+    return "SELECT MAX(" + pageColumn + ") FROM ("
+        + limitRows(query.toString(), pageSize) + ") t1";
+  }
+
+  /**
+   * @return the query for the rows of the next page. It has a parameter
+   * for the end of the previous page, unless this is the first page, and
+   * one for the end of this page.
+   */
+  protected String getPageQuery(boolean firstPage) {
+    StringBuilder query = new StringBuilder();
+    query.append(getTableSelect()).append(getTableFromWhere());
+    if (!firstPage) {
+      query.append(" AND ( ").append(pageColumn).append(" > ? )");
+    }
+    query.append(" AND ( ").append(pageColumn).append(" <= ? )");
+    return query.toString();
+  }
+
+  /**
+   * @return the query for the rows of this split whose split column is
+   * NULL, which are not in any page.
+   */
+  protected String getNullKeysQuery() {
+    return getTableSelect() + getTableFromWhere() + " AND ( " + pageColumn
+        + " IS NULL )";
+  }
+
+  /**
+   * @return the split column value that ends the next page, or null if
+   * there are no more pages. Sets pageEndType to its SQL type.
+   */
+  private Object getPageEnd() throws SQLException {
+    PreparedStatement endStatement = getConnection().prepareStatement(
+        getPageEndQuery(null == pageStart));
+    try {
+      if (null != pageStart) {
+        endStatement.setObject(1, pageStart);
+      }
+
+      ResultSet rs = endStatement.executeQuery();
+      try {
+        if (!rs.next()) {
+          return null;
+        }
+
+        pageEndType = rs.getMetaData().getColumnType(1);
+        if (pageEndType == Types.DATE || pageEndType == Types.TIMESTAMP) {
+          // Some drivers return their own classes for these from
+          // getObject(); a checkpoint can only record a Timestamp.
+          return rs.getTimestamp(1);
+        }
+        return rs.getObject(1);
+      } finally {
+        rs.close();
+      }
+    } finally {
+      endStatement.close();
+    }
+  }
+
+  @Override
+  /** {@inheritDoc} */
+  protected ResultSet executeNextQuery() throws SQLException {
+    if (pageSize <= 0) {
+      return super.executeNextQuery();
+    }
+
+    if (null != getStatement()) {
+      // End the previous page, and its transaction.
+      getStatement().close();
+      setStatement(null);
+      getConnection().commit();
+    }
+
+    if (readNullKeys) {
+      pagesDone = true;
+      return null;
+    }
+
+    if (null != checkpointer && null != pageStart
+        && rowsSinceCheckpoint >= checkpointRows) {
+      // Every row up to pageStart has been written.
+      try {
+        if (checkpointer.checkpoint(pageStart, pageStartType)) {
+          rowsSinceCheckpoint = 0;
+        }
+      } catch (IOException ioe) {
+        LOG.warn("Could not checkpoint split at " + pageStart, ioe);
+      }
+    }
+
+    Object pageEnd = getPageEnd();
+    if (null == pageEnd) {
+      readNullKeys = true;
+      return executeQuery(getNullKeysQuery());
+    }
+
+    Object [] params;
+    if (null == pageStart) {
+      params = new Object [] { pageEnd };
+    } else {
+      params = new Object [] { pageStart, pageEnd };
+    }
+
+    ResultSet results = executeQuery(getPageQuery(null == pageStart),
+        params);
+    pageStart = pageEnd;
+    pageStartType = pageEndType;
+    return results;
+  }
 }
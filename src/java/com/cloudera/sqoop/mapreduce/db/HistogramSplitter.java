@@ -0,0 +1,251 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+import com.cloudera.sqoop.config.ConfigurationHelper;
+
+/**
+ * Generates splits holding roughly equal numbers of rows from a histogram
+ * of the split column, rather than dividing the range between its minimum
+ * and maximum values evenly. This keeps the splits balanced when the
+ * values are skewed (e.g., sparse ranges of ids, or bursts of timestamps).
+ *
+ * The histogram is a ResultSet with one row per bucket, ordered by value,
+ * holding three columns: the lowest value in the bucket, the highest value
+ * in the bucket, and the number of rows in the bucket. Consecutive buckets
+ * are combined until each split holds about 1/numSplits of the rows. The
+ * row count of each split is reported by its getLength() method.
+ *
+ * Split boundaries are always the lowest value of a bucket, as returned by
+ * the database, so the splits agree with the database's own ordering of
+ * the values (including its collation for text columns).
+ */
+public class HistogramSplitter {
+
+  private static final Log LOG = LogFactory.getLog(HistogramSplitter.class);
+
+  private final DBSplitter typeSplitter;
+
+  /**
+   * @param typeSplitter the splitter for the type of the split column. If
+   * this is a DateSplitter or a BinarySplitter, it is used to format date
+   * or byte string boundaries. May be null.
+   */
+  public HistogramSplitter(DBSplitter typeSplitter) {
+    this.typeSplitter = typeSplitter;
+  }
+
+  /**
+   * Given a ResultSet containing the histogram of the split column
+   * (not yet advanced to its first row), determine a set of splits that
+   * divide the rows evenly.
+   * @return the splits, or null if the histogram is empty or the column
+   * type cannot be split this way.
+   */
+  public List<InputSplit> split(Configuration conf, ResultSet results,
+      String colName) throws SQLException {
+
+    int sqlDataType = results.getMetaData().getColumnType(1);
+    if (!isSupportedType(sqlDataType)) {
+      LOG.info("Cannot use a histogram to split a column of SQL type "
+          + sqlDataType);
+      return null;
+    }
+
+    int numSplits = ConfigurationHelper.getConfNumMaps(conf);
+    if (numSplits < 1) {
+      numSplits = 1;
+    }
+
+    // Read the buckets, skipping any which hold only NULL.
+    List<String> bucketStarts = new ArrayList<String>();
+    List<String> bucketEnds = new ArrayList<String>();
+    List<Long> bucketCounts = new ArrayList<Long>();
+    long totalRows = 0;
+    while (results.next()) {
+      String start = formatValue(results, 1, sqlDataType);
+      if (null == start) {
+        continue;
+      }
+
+      long count = Math.max(0, results.getLong(3));
+      bucketStarts.add(start);
+      bucketEnds.add(formatValue(results, 2, sqlDataType));
+      bucketCounts.add(count);
+      totalRows += count;
+    }
+
+    if (bucketStarts.isEmpty()) {
+      LOG.info("Split column histogram is empty");
+      return null;
+    }
+
+    // Walk the buckets, starting a new split whenever the rows seen so far
+    // reach the next multiple of totalRows / numSplits. A split can only
+    // start where a bucket begins with a different value than the one the
+    // previous bucket ended with, since the rows holding a value must all
+    // fall in the same split.
+    List<String> splitStarts = new ArrayList<String>();
+    List<Long> splitCounts = new ArrayList<Long>();
+    splitStarts.add(bucketStarts.get(0));
+    splitCounts.add(0L);
+    long rowsSeen = 0;
+    for (int i = 0; i < bucketStarts.size(); i++) {
+      int cur = splitStarts.size() - 1;
+      long target = totalRows * splitStarts.size() / numSplits;
+      if (i > 0 && rowsSeen >= target && splitStarts.size() < numSplits
+          && !bucketStarts.get(i).equals(bucketEnds.get(i - 1))
+          && !bucketStarts.get(i).equals(splitStarts.get(cur))) {
+        splitStarts.add(bucketStarts.get(i));
+        splitCounts.add(0L);
+        cur++;
+      }
+
+      splitCounts.set(cur, splitCounts.get(cur) + bucketCounts.get(i));
+      rowsSeen += bucketCounts.get(i);
+    }
+
+    // The first and last splits are left open-ended, so that they cover
+    // any values outside the histogram.
+    String notNull = colName + " IS NOT NULL";
+    List<InputSplit> splits = new ArrayList<InputSplit>();
+    for (int i = 0; i < splitStarts.size(); i++) {
+      String lowClause = (i == 0) ? notNull
+          : colName + " >= " + splitStarts.get(i);
+      String highClause = (i == splitStarts.size() - 1) ? notNull
+          : colName + " < " + splitStarts.get(i + 1);
+      splits.add(new DataDrivenDBInputFormat.DataDrivenDBInputSplit(
+          lowClause, highClause, splitCounts.get(i)));
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Histogram of " + bucketStarts.size() + " buckets and "
+          + totalRows + " rows gave " + splits.size() + " splits:");
+      for (int i = 0; i < splitStarts.size(); i++) {
+        LOG.debug("  " + splitStarts.get(i) + ": " + splitCounts.get(i)
+            + " rows");
+      }
+    }
+
+    return splits;
+  }
+
+  /**
+   * @return true if values of the given SQL type can be formatted as
+   * split boundaries.
+   */
+  protected boolean isSupportedType(int sqlDataType) {
+    switch (sqlDataType) {
+    case Types.TINYINT:
+    case Types.SMALLINT:
+    case Types.INTEGER:
+    case Types.BIGINT:
+    case Types.NUMERIC:
+    case Types.DECIMAL:
+    case Types.REAL:
+    case Types.FLOAT:
+    case Types.DOUBLE:
+    case Types.CHAR:
+    case Types.VARCHAR:
+    case Types.LONGVARCHAR:
+    case Types.DATE:
+    case Types.TIME:
+    case Types.TIMESTAMP:
+      return true;
+    case Types.BINARY:
+    case Types.VARBINARY:
+    case Types.LONGVARBINARY:
+    case Types.OTHER:
+      return typeSplitter instanceof BinarySplitter;
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * Format a column of the current row as a SQL literal.
+   * @return the literal, or null if the value is NULL.
+   */
+  protected String formatValue(ResultSet rs, int colNum, int sqlDataType)
+      throws SQLException {
+    switch (sqlDataType) {
+    case Types.TINYINT:
+    case Types.SMALLINT:
+    case Types.INTEGER:
+    case Types.BIGINT:
+      long longVal = rs.getLong(colNum);
+      return rs.wasNull() ? null : Long.toString(longVal);
+
+    case Types.NUMERIC:
+    case Types.DECIMAL:
+      BigDecimal decimal = rs.getBigDecimal(colNum);
+      return null == decimal ? null : decimal.toPlainString();
+
+    case Types.REAL:
+    case Types.FLOAT:
+    case Types.DOUBLE:
+      double doubleVal = rs.getDouble(colNum);
+      return rs.wasNull() ? null : Double.toString(doubleVal);
+
+    case Types.DATE:
+      return formatDate(rs.getDate(colNum));
+    case Types.TIME:
+      return formatDate(rs.getTime(colNum));
+    case Types.TIMESTAMP:
+      return formatDate(rs.getTimestamp(colNum));
+
+    case Types.BINARY:
+    case Types.VARBINARY:
+    case Types.LONGVARBINARY:
+    case Types.OTHER:
+      BinarySplitter binarySplitter = (BinarySplitter) typeSplitter;
+      byte [] bytes = binarySplitter.getBytes(rs, colNum);
+      return null == bytes ? null : binarySplitter.formatBytes(bytes);
+
+    default:
+      String str = rs.getString(colNum);
+      return null == str ? null : "'" + str.replace("'", "''") + "'";
+    }
+  }
+
+  private String formatDate(Date d) {
+    if (null == d) {
+      return null;
+    } else if (typeSplitter instanceof DateSplitter) {
+      return ((DateSplitter) typeSplitter).dateToString(d);
+    } else {
+      return "'" + d.toString() + "'";
+    }
+  }
+}
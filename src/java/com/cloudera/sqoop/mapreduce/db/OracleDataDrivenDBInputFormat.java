@@ -48,6 +48,11 @@ public class OracleDataDrivenDBInputFormat<T extends DBWritable>
     case Types.TIMESTAMP:
       return new OracleDateSplitter();
 
+    case Types.BINARY:
+    case Types.VARBINARY:
+    case Types.LONGVARBINARY:
+      return new OracleBinarySplitter();
+
     default:
       return super.getSplitter(sqlDataType);
     }
@@ -0,0 +1,456 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+
+/**
+ * Records how far a map task has got through its split, so that a later
+ * attempt of the task can carry on from there rather than from the start.
+ *
+ * The output of a checkpointed task is written as a series of segment
+ * files. At a checkpoint, the current segment is closed and moved out of
+ * the attempt's work directory, which is deleted if the attempt fails,
+ * into a directory shared by all attempts of the task. A state file in
+ * that directory then records the saved segments and the last split
+ * column value read into them. A later attempt reads the rows after that
+ * value, writing its segments after the saved ones. When the task
+ * succeeds, the saved segments are moved back into its work directory to
+ * be committed along with the rest of its output.
+ *
+ * The split column value is recorded as a string along with its SQL type,
+ * rather than as whatever object the JDBC driver returned, so only values
+ * of the types accepted by isSupportedKeyType() can be checkpointed.
+ *
+ * The RecordReader and RecordWriter of a task share a SplitCheckpointer,
+ * which they find with forTask().
+ */
+public class SplitCheckpointer {
+
+  private static final Log LOG = LogFactory.getLog(SplitCheckpointer.class);
+
+  private static final String STATE_FILE = "_checkpoint";
+
+  /**
+   * Writes the output of a task as a series of segments.
+   */
+  public interface SegmentWriter {
+    /**
+     * Close the current segment; later records go into a new one.
+     * @return the path of the closed segment, or null if it was empty.
+     */
+    Path closeSegment() throws IOException;
+  }
+
+  // The checkpointers of the tasks running in this JVM, by attempt id.
+  private static final Map<String, SplitCheckpointer> CHECKPOINTERS =
+      new HashMap<String, SplitCheckpointer>();
+
+  /**
+   * Get the checkpointer shared by the RecordReader and RecordWriter of
+   * a task attempt, creating it if necessary.
+   * @return the checkpointer, or null if the job does not checkpoint.
+   */
+  public static synchronized SplitCheckpointer forTask(Configuration conf,
+      TaskAttemptID attemptId) throws IOException {
+    String dir = new DBConfiguration(conf).getInputCheckpointDir();
+    if (null == dir) {
+      return null;
+    }
+
+    String key = attemptId.toString();
+    SplitCheckpointer checkpointer = CHECKPOINTERS.get(key);
+    if (null == checkpointer) {
+      Path taskDir = new Path(dir, attemptId.getTaskID().toString());
+      checkpointer = new SplitCheckpointer(taskDir.getFileSystem(conf),
+          taskDir);
+      CHECKPOINTERS.put(key, checkpointer);
+    }
+    return checkpointer;
+  }
+
+  /**
+   * Forget the checkpointer of a task attempt that has finished.
+   */
+  public static synchronized void release(TaskAttemptID attemptId) {
+    CHECKPOINTERS.remove(attemptId.toString());
+  }
+
+  private final FileSystem fs;
+  private final Path taskDir;
+
+  // Names of the segments saved in taskDir, in order.
+  private List<String> segments;
+
+  // The last split column value read into the saved segments, and its
+  // SQL type.
+  private Object lastKey;
+  private int lastKeyType;
+
+  private SegmentWriter segmentWriter;
+
+  /**
+   * Create a checkpointer, loading the checkpoint left by any earlier
+   * attempt of the task.
+   * @param fs the file system holding the task directory.
+   * @param taskDir the directory shared by all attempts of the task.
+   */
+  public SplitCheckpointer(FileSystem fs, Path taskDir) throws IOException {
+    this.fs = fs;
+    this.taskDir = taskDir;
+    this.segments = new ArrayList<String>();
+    load();
+  }
+
+  /**
+   * Read the state file, then remove anything in the task directory that
+   * it does not mention, such as a segment moved there by an attempt that
+   * died before recording it.
+   */
+  private void load() throws IOException {
+    Path stateFile = new Path(taskDir, STATE_FILE);
+    if (fs.exists(stateFile)) {
+      FSDataInputStream in = fs.open(stateFile);
+      try {
+        int numSegments = in.readInt();
+        for (int i = 0; i < numSegments; i++) {
+          segments.add(in.readUTF());
+        }
+        lastKeyType = in.readInt();
+        lastKey = decodeKey(in.readUTF(), lastKeyType);
+      } catch (IllegalArgumentException iae) {
+        throw new IOException("Could not read checkpoint " + stateFile,
+            iae);
+      } finally {
+        in.close();
+      }
+
+      for (String segment : segments) {
+        if (!fs.exists(new Path(taskDir, segment))) {
+          // An earlier attempt finished, moving the segments out, but did
+          // not commit its output. Start again from scratch.
+          LOG.info("Segment " + segment + " of checkpoint " + stateFile
+              + " is missing; discarding the checkpoint");
+          segments.clear();
+          lastKey = null;
+          break;
+        }
+      }
+    }
+
+    FileStatus [] files = fs.listStatus(taskDir);
+    if (null != files) {
+      for (FileStatus file : files) {
+        String name = file.getPath().getName();
+        if (!name.equals(STATE_FILE) && !segments.contains(name)) {
+          fs.delete(file.getPath(), true);
+        }
+      }
+    }
+
+    if (null != lastKey) {
+      LOG.info("Found checkpoint of " + segments.size()
+          + " segments, ending at " + lastKey);
+    }
+  }
+
+  /**
+   * Write the state file, replacing the previous one.
+   */
+  private void save() throws IOException {
+    Path stateFile = new Path(taskDir, STATE_FILE);
+    Path tmpFile = new Path(taskDir, STATE_FILE + ".tmp");
+    String encodedKey = encodeKey(lastKey, lastKeyType);
+    FSDataOutputStream out = fs.create(tmpFile, true);
+    try {
+      out.writeInt(segments.size());
+      for (String segment : segments) {
+        out.writeUTF(segment);
+      }
+      out.writeInt(lastKeyType);
+      out.writeUTF(encodedKey);
+    } finally {
+      out.close();
+    }
+
+    // If we die between these two steps, the next attempt starts over.
+    fs.delete(stateFile, false);
+    if (!fs.rename(tmpFile, stateFile)) {
+      throw new IOException("Could not rename " + tmpFile + " to "
+          + stateFile);
+    }
+  }
+
+  /**
+   * Set the writer whose segments are saved at each checkpoint.
+   */
+  public void setSegmentWriter(SegmentWriter writer) {
+    this.segmentWriter = writer;
+  }
+
+  /**
+   * @return the number of segments saved by earlier attempts of the task.
+   */
+  public int getNumSegments() {
+    return segments.size();
+  }
+
+  /**
+   * @return the last split column value read by earlier attempts of the
+   * task, or null if the task must be read from the start.
+   */
+  public Object getLastKey() {
+    return lastKey;
+  }
+
+  /**
+   * @return the SQL type of the value returned by getLastKey().
+   */
+  public int getLastKeyType() {
+    return lastKeyType;
+  }
+
+  /**
+   * Record that every row up to and including the split column value
+   * 'key' has been written to the output.
+   * @param key the split column value.
+   * @param sqlType the SQL type of the split column.
+   * @return true if the checkpoint was taken.
+   * @throws IllegalArgumentException if the value cannot be recorded.
+   */
+  public boolean checkpoint(Object key, int sqlType) throws IOException {
+    // Fail before moving any segment if the key cannot be recorded.
+    encodeKey(key, sqlType);
+
+    if (null == segmentWriter) {
+      LOG.debug("No segment writer; cannot checkpoint");
+      return false;
+    }
+
+    Path segment = segmentWriter.closeSegment();
+    if (null == segment) {
+      // Nothing written since the last checkpoint.
+      return false;
+    }
+
+    fs.mkdirs(taskDir);
+    Path saved = new Path(taskDir, segment.getName());
+    if (!fs.rename(segment, saved)) {
+      throw new IOException("Could not move " + segment + " to " + saved);
+    }
+
+    Object prevKey = lastKey;
+    int prevKeyType = lastKeyType;
+    segments.add(saved.getName());
+    lastKey = key;
+    lastKeyType = sqlType;
+    try {
+      save();
+    } catch (IOException ioe) {
+      // Put the segment back with the rest of the attempt's output.
+      segments.remove(segments.size() - 1);
+      lastKey = prevKey;
+      lastKeyType = prevKeyType;
+      fs.rename(saved, segment);
+      throw ioe;
+    }
+
+    LOG.debug("Checkpointed " + segments.size() + " segments, ending at "
+        + key);
+    return true;
+  }
+
+  /**
+   * Move the saved segments into the work directory of a task attempt that
+   * has written the rest of the output.
+   */
+  public void finish(Path workDir) throws IOException {
+    for (String segment : segments) {
+      Path saved = new Path(taskDir, segment);
+      Path dest = new Path(workDir, segment);
+      if (!fs.rename(saved, dest)) {
+        throw new IOException("Could not move " + saved + " to " + dest);
+      }
+    }
+  }
+
+  /**
+   * @return true if split column values of the given SQL type can be
+   * recorded in a checkpoint.
+   */
+  public static boolean isSupportedKeyType(int sqlType) {
+    switch (sqlType) {
+    case Types.BIT:
+    case Types.BOOLEAN:
+    case Types.TINYINT:
+    case Types.SMALLINT:
+    case Types.INTEGER:
+    case Types.BIGINT:
+    case Types.NUMERIC:
+    case Types.DECIMAL:
+    case Types.REAL:
+    case Types.FLOAT:
+    case Types.DOUBLE:
+    case Types.CHAR:
+    case Types.VARCHAR:
+    case Types.LONGVARCHAR:
+    case Types.NCHAR:
+    case Types.NVARCHAR:
+    case Types.LONGNVARCHAR:
+    case Types.DATE:
+    case Types.TIME:
+    case Types.TIMESTAMP:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * Encode a split column value as a string, to be read by decodeKey().
+   * @throws IllegalArgumentException if the value is not of a supported
+   * SQL type, or not of the class JDBC uses for that type.
+   */
+  static String encodeKey(Object key, int sqlType) {
+    if (null == key) {
+      throw new IllegalArgumentException("Cannot checkpoint a null split "
+          + "column value");
+    }
+
+    switch (sqlType) {
+    case Types.BIT:
+    case Types.BOOLEAN:
+      if (key instanceof Boolean) {
+        return key.toString();
+      }
+      break;
+    case Types.TINYINT:
+    case Types.SMALLINT:
+    case Types.INTEGER:
+    case Types.BIGINT:
+    case Types.NUMERIC:
+    case Types.DECIMAL:
+      if (key instanceof Number) {
+        return key.toString();
+      }
+      break;
+    case Types.REAL:
+    case Types.FLOAT:
+    case Types.DOUBLE:
+      if (key instanceof Number) {
+        return Double.toString(((Number) key).doubleValue());
+      }
+      break;
+    case Types.CHAR:
+    case Types.VARCHAR:
+    case Types.LONGVARCHAR:
+    case Types.NCHAR:
+    case Types.NVARCHAR:
+    case Types.LONGNVARCHAR:
+      if (key instanceof String) {
+        return (String) key;
+      }
+      break;
+    case Types.DATE:
+    case Types.TIME:
+    case Types.TIMESTAMP:
+      if (key instanceof java.util.Date) {
+        // Record the nanoseconds of a Timestamp as well as its millis.
+        java.util.Date date = (java.util.Date) key;
+        int nanos = (date instanceof Timestamp)
+            ? ((Timestamp) date).getNanos()
+            : (int) ((date.getTime() % 1000 + 1000) % 1000) * 1000000;
+        return Long.toString(date.getTime()) + " " + nanos;
+      }
+      break;
+    default:
+      break;
+    }
+
+    throw new IllegalArgumentException("Cannot checkpoint split column "
+        + "value " + key + " of SQL type " + sqlType + " ("
+        + key.getClass().getName() + ")");
+  }
+
+  /**
+   * Decode a split column value written by encodeKey().
+   * @return the value, as a standard JDBC class for its SQL type.
+   */
+  static Object decodeKey(String str, int sqlType) {
+    switch (sqlType) {
+    case Types.BIT:
+    case Types.BOOLEAN:
+      return Boolean.valueOf(str);
+    case Types.TINYINT:
+    case Types.SMALLINT:
+    case Types.INTEGER:
+    case Types.BIGINT:
+      try {
+        return Long.valueOf(str);
+      } catch (NumberFormatException nfe) {
+        // An unsigned BIGINT beyond the range of a long.
+        return new BigDecimal(str);
+      }
+    case Types.NUMERIC:
+    case Types.DECIMAL:
+      return new BigDecimal(str);
+    case Types.REAL:
+    case Types.FLOAT:
+    case Types.DOUBLE:
+      return Double.valueOf(str);
+    case Types.DATE:
+    case Types.TIME:
+    case Types.TIMESTAMP:
+      int space = str.indexOf(' ');
+      long millis = Long.parseLong(str.substring(0, space));
+      if (sqlType == Types.TIME) {
+        return new Time(millis);
+      }
+      Timestamp ts = new Timestamp(millis);
+      ts.setNanos(Integer.parseInt(str.substring(space + 1)));
+      return ts;
+    default:
+      if (isSupportedKeyType(sqlType)) {
+        return str;
+      }
+      throw new IllegalArgumentException("Cannot read a split column value"
+          + " of SQL type " + sqlType);
+    }
+  }
+}
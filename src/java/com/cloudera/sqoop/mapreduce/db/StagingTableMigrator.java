@@ -0,0 +1,293 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.db.DBWritable;
+
+import com.cloudera.sqoop.config.ConfigurationConstants;
+
+/**
+ * Moves the rows of a staging table to the destination table in chunks,
+ * each of which is moved by its own transaction. The chunks are ranges
+ * of a key column, cut by the database's DBSplitter for the column's
+ * type just as an import is split, and several of them are moved at
+ * once over separate connections.
+ *
+ * Rows outside the chunks (e.g., those whose key is NULL) are moved by
+ * a final transaction once all of the chunks have been moved.
+ *
+ * Subclasses may override copyRows() to apply the staged rows to the
+ * destination table in some other way, e.g. as updates.
+ *
+ * Unlike a single INSERT ... SELECT, the migration is not atomic: if it
+ * fails, the chunks already moved stay in the destination table, and the
+ * rest of the rows stay in the staging table.
+ */
+public abstract class StagingTableMigrator {
+
+  private static final Log LOG = LogFactory.getLog(
+      StagingTableMigrator.class);
+
+  private final int numChunks;
+  private final int numThreads;
+  private final Class<? extends InputFormat> inputFormatClass;
+
+  /**
+   * @param numChunks the number of key ranges to cut the staging table
+   * into.
+   * @param numThreads the number of chunks to move at once.
+   */
+  public StagingTableMigrator(int numChunks, int numThreads) {
+    this(numChunks, numThreads, DataDrivenDBInputFormat.class);
+  }
+
+  /**
+   * @param numChunks the number of key ranges to cut the staging table
+   * into.
+   * @param numThreads the number of chunks to move at once.
+   * @param inputFormatClass the database's DataDrivenDBInputFormat, whose
+   * splitters cut the chunks, as returned by ConnManager.getInputFormat().
+   */
+  public StagingTableMigrator(int numChunks, int numThreads,
+      Class<? extends InputFormat> inputFormatClass) {
+    this.numChunks = Math.max(1, numChunks);
+    this.numThreads = Math.max(1, Math.min(numThreads, numChunks));
+    this.inputFormatClass = inputFormatClass;
+  }
+
+  /**
+   * @return an instance of the database's DataDrivenDBInputFormat, or of
+   * DataDrivenDBInputFormat itself if the database reads its tables some
+   * other way.
+   */
+  private DataDrivenDBInputFormat<?> newInputFormat() throws SQLException {
+    if (null == inputFormatClass
+        || !DataDrivenDBInputFormat.class.isAssignableFrom(inputFormatClass)) {
+      return new DataDrivenDBInputFormat<DBWritable>();
+    }
+
+    try {
+      return (DataDrivenDBInputFormat<?>) inputFormatClass.newInstance();
+    } catch (InstantiationException ie) {
+      throw new SQLException("Could not create " + inputFormatClass, ie);
+    } catch (IllegalAccessException iae) {
+      throw new SQLException("Could not create " + inputFormatClass, iae);
+    }
+  }
+
+  /**
+   * @return a new connection to the database, with auto-commit disabled.
+   */
+  protected abstract Connection newConnection() throws SQLException;
+
+  /**
+   * @return the WHERE clauses selecting the rows of each chunk, or null if
+   * the key column is of a type which cannot be split.
+   */
+  protected List<String> getChunkClauses(Connection conn, String fromTable,
+      String keyCol) throws SQLException {
+    Statement stmt = conn.createStatement();
+    try {
+      ResultSet rs = stmt.executeQuery("SELECT MIN(" + keyCol + "), MAX("
+          + keyCol + ") FROM " + fromTable);
+      try {
+        rs.next();
+        DBSplitter splitter = newInputFormat().getSplitter(
+            rs.getMetaData(), 1);
+        if (null == splitter) {
+          return null;
+        }
+
+        Configuration conf = new Configuration();
+        conf.setInt(ConfigurationConstants.PROP_MAPRED_MAP_TASKS, numChunks);
+        List<String> clauses = new ArrayList<String>();
+        for (InputSplit split : splitter.split(conf, rs, keyCol)) {
+          DataDrivenDBInputFormat.DataDrivenDBInputSplit chunk =
+              (DataDrivenDBInputFormat.DataDrivenDBInputSplit) split;
+          clauses.add("( " + chunk.getLowerClause() + " ) AND ( "
+              + chunk.getUpperClause() + " )");
+        }
+        return clauses;
+      } finally {
+        rs.close();
+      }
+    } finally {
+      stmt.close();
+    }
+  }
+
+  /**
+   * Copy the rows matching a WHERE clause (or all of them, if it is null)
+   * to the destination table, as the first step of moving them.
+   * @return the number of rows copied, which must match the number then
+   * deleted from the staging table; or -1 if the counts cannot be compared.
+   */
+  protected long copyRows(Statement stmt, String fromTable, String toTable,
+      String whereClause) throws SQLException {
+    String where = (null == whereClause) ? "" : " WHERE " + whereClause;
+    return stmt.executeUpdate("INSERT INTO " + toTable
+        + " ( SELECT * FROM " + fromTable + where + " )");
+  }
+
+  /**
+   * Move the rows matching a WHERE clause (or all of them, if it is null)
+   * in a single transaction.
+   * @return the number of rows moved.
+   */
+  protected long migrateRows(Connection conn, String fromTable,
+      String toTable, String whereClause) throws SQLException {
+    String where = (null == whereClause) ? "" : " WHERE " + whereClause;
+    Statement stmt = conn.createStatement();
+    try {
+      long copyCount = copyRows(stmt, fromTable, toTable, whereClause);
+      int deleteCount = stmt.executeUpdate("DELETE FROM " + fromTable
+          + where);
+
+      // If the counts do not match, fail the transaction
+      if (copyCount >= 0 && copyCount != deleteCount) {
+        conn.rollback();
+        throw new SQLException("Inconsistent record counts migrating "
+            + fromTable + where);
+      }
+      conn.commit();
+      return deleteCount;
+    } finally {
+      stmt.close();
+    }
+  }
+
+  /**
+   * Move all of the rows of fromTable to toTable.
+   * @param keyCol the (escaped) column whose ranges make up the chunks.
+   * @return false if the key column could not be split, in which case no
+   * rows were moved.
+   */
+  public boolean migrate(String fromTable, String toTable, String keyCol)
+      throws SQLException {
+    Connection conn = newConnection();
+    try {
+      final List<String> clauses = getChunkClauses(conn, fromTable, keyCol);
+      if (null == clauses) {
+        LOG.warn("Cannot split the staging table by " + keyCol);
+        return false;
+      }
+
+      LOG.info("Migrating " + clauses.size() + " chunks of " + fromTable
+          + " to " + toTable + " over " + numThreads + " connections");
+      long numRows = migrateChunks(fromTable, toTable, clauses);
+
+      // Move any rows that fell outside the chunks.
+      numRows += migrateRows(conn, fromTable, toTable, null);
+      LOG.info("Migrated " + numRows + " records from " + fromTable
+          + " to " + toTable);
+      return true;
+    } finally {
+      try {
+        conn.close();
+      } catch (SQLException sqlE) {
+        LOG.warn("Could not close connection: " + sqlE);
+      }
+    }
+  }
+
+  /**
+   * Move the chunks selected by each of the clauses, on numThreads
+   * connections at once.
+   * @return the number of rows moved.
+   */
+  private long migrateChunks(final String fromTable, final String toTable,
+      List<String> clauses) throws SQLException {
+    final ConcurrentLinkedQueue<String> pending =
+        new ConcurrentLinkedQueue<String>(clauses);
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<Long>> results = new ArrayList<Future<Long>>();
+    for (int i = 0; i < numThreads; i++) {
+      results.add(executor.submit(new Callable<Long>() {
+        public Long call() throws SQLException {
+          Connection conn = newConnection();
+          try {
+            long rows = 0;
+            String clause;
+            while (!failed.get() && (clause = pending.poll()) != null) {
+              try {
+                rows += migrateRows(conn, fromTable, toTable, clause);
+              } catch (SQLException sqlE) {
+                failed.set(true);
+                throw sqlE;
+              }
+            }
+            return rows;
+          } finally {
+            conn.close();
+          }
+        }
+      }));
+    }
+    executor.shutdown();
+
+    long numRows = 0;
+    SQLException error = null;
+    for (Future<Long> result : results) {
+      try {
+        numRows += result.get();
+      } catch (ExecutionException ee) {
+        if (null == error) {
+          error = (ee.getCause() instanceof SQLException)
+              ? (SQLException) ee.getCause()
+              : new SQLException(ee.getCause());
+        }
+      } catch (InterruptedException ie) {
+        failed.set(true);
+        if (null == error) {
+          error = new SQLException(ie);
+        }
+      }
+    }
+
+    if (null != error) {
+      LOG.error("Migrated " + numRows + " records before failing; the "
+          + "rest remain in " + fromTable);
+      throw error;
+    }
+
+    return numRows;
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Implement DBSplitter over UUID values, such as those of a PostgreSQL
+ * uuid column, which JDBC reports as Types.OTHER. Databases order UUIDs
+ * by their 16 bytes, so we split them as byte strings with the
+ * BinarySplitter, and format the split points as UUID literals.
+ */
+public class UuidSplitter extends BinarySplitter {
+
+  private static final int UUID_BYTES = 16;
+
+  @Override
+  protected byte [] getBytes(ResultSet results, int colNum)
+      throws SQLException {
+    String str = results.getString(colNum);
+    if (null == str) {
+      return null;
+    }
+
+    UUID uuid;
+    try {
+      uuid = UUID.fromString(str);
+    } catch (IllegalArgumentException iae) {
+      throw new SQLException("Cannot split on a column holding value '"
+          + str + "'; only UUID values of this SQL type can be split.");
+    }
+
+    byte [] bytes = new byte[UUID_BYTES];
+    long msb = uuid.getMostSignificantBits();
+    long lsb = uuid.getLeastSignificantBits();
+    for (int i = 0; i < 8; i++) {
+      bytes[i] = (byte) (msb >>> (56 - 8 * i));
+      bytes[i + 8] = (byte) (lsb >>> (56 - 8 * i));
+    }
+    return bytes;
+  }
+
+  @Override
+  protected byte [] toSplitPoint(byte [] commonPrefix, byte [] suffix) {
+    // Every UUID is exactly 16 bytes long; pad or truncate the point.
+    return Arrays.copyOf(super.toSplitPoint(commonPrefix, suffix),
+        UUID_BYTES);
+  }
+
+  @Override
+  protected String formatBytes(byte [] value) {
+    byte [] bytes = Arrays.copyOf(value, UUID_BYTES);
+    long msb = 0;
+    long lsb = 0;
+    for (int i = 0; i < 8; i++) {
+      msb = (msb << 8) | (bytes[i] & 0xff);
+      lsb = (lsb << 8) | (bytes[i + 8] & 0xff);
+    }
+    return "'" + new UUID(msb, lsb).toString() + "'";
+  }
+}
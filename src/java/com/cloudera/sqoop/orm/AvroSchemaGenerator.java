@@ -38,10 +38,24 @@ import com.cloudera.sqoop.manager.ConnManager;
  */
 public class AvroSchemaGenerator {
 
+  /**
+   * Name of the record type which refers to a large object stored in a
+   * LobFile, rather than inline with the rest of the record. Its fields
+   * hold the path of the LobFile relative to the imported dataset, and
+   * the offset and length of the large object in that file.
+   */
+  public static final String EXTERNAL_LOB_RECORD = "ExternalLob";
+  public static final String EXTERNAL_LOB_FILE_FIELD = "file";
+  public static final String EXTERNAL_LOB_OFFSET_FIELD = "offset";
+  public static final String EXTERNAL_LOB_LENGTH_FIELD = "length";
+
   private final SqoopOptions options;
   private final ConnManager connManager;
   private final String tableName;
 
+  // Shared by all the large object columns of the table.
+  private Schema externalLobSchema;
+
   public AvroSchemaGenerator(final SqoopOptions opts, final ConnManager connMgr,
       final String table) {
     this.options = opts;
@@ -107,7 +121,11 @@ public class AvroSchemaGenerator {
         return Type.LONG;
       case Types.BINARY:
       case Types.VARBINARY:
+      case Types.BLOB:
+      case Types.LONGVARBINARY:
         return Type.BYTES;
+      case Types.CLOB:
+        return Type.STRING;
       default:
         throw new IllegalArgumentException("Cannot convert SQL type "
             + sqlType);
@@ -119,8 +137,34 @@ public class AvroSchemaGenerator {
     // a column and NULL.
     List<Schema> childSchemas = new ArrayList<Schema>();
     childSchemas.add(Schema.create(toAvroType(sqlType)));
+    if (isLargeObjectType(sqlType)) {
+      // Large objects above the inline LOB limit are stored in a LobFile,
+      // and only a reference to them is kept in the record.
+      childSchemas.add(getExternalLobSchema());
+    }
     childSchemas.add(Schema.create(Schema.Type.NULL));
     return Schema.createUnion(childSchemas);
   }
 
+  private boolean isLargeObjectType(int sqlType) {
+    return sqlType == Types.BLOB || sqlType == Types.CLOB
+        || sqlType == Types.LONGVARBINARY;
+  }
+
+  private Schema getExternalLobSchema() {
+    if (null == externalLobSchema) {
+      List<Field> fields = new ArrayList<Field>();
+      fields.add(new Field(EXTERNAL_LOB_FILE_FIELD,
+          Schema.create(Type.STRING), null, null));
+      fields.add(new Field(EXTERNAL_LOB_OFFSET_FIELD,
+          Schema.create(Type.LONG), null, null));
+      fields.add(new Field(EXTERNAL_LOB_LENGTH_FIELD,
+          Schema.create(Type.LONG), null, null));
+      externalLobSchema = Schema.createRecord(EXTERNAL_LOB_RECORD,
+          "A large object stored in a LobFile", null, false);
+      externalLobSchema.setFields(fields);
+    }
+    return externalLobSchema;
+  }
+
 }
@@ -25,11 +25,13 @@ import com.cloudera.sqoop.SqoopOptions;
 import com.cloudera.sqoop.manager.ConnManager;
 import com.cloudera.sqoop.lib.BigDecimalSerializer;
 import com.cloudera.sqoop.lib.BooleanParser;
+import com.cloudera.sqoop.lib.ByteRecordParser;
 import com.cloudera.sqoop.lib.DelimiterSet;
 import com.cloudera.sqoop.lib.FieldFormatter;
 import com.cloudera.sqoop.lib.JdbcWritableBridge;
 import com.cloudera.sqoop.lib.LargeObjectLoader;
 import com.cloudera.sqoop.lib.LobSerializer;
+import com.cloudera.sqoop.lib.RecordFormatter;
 import com.cloudera.sqoop.lib.RecordParser;
 import com.cloudera.sqoop.lib.BlobRef;
 import com.cloudera.sqoop.lib.ClobRef;
@@ -41,6 +43,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
@@ -111,13 +114,18 @@ public class ClassWriter {
    * This number is retrieved by the SqoopRecord.getClassFormatVersion()
    * method.
    */
-  public static final int CLASS_WRITER_VERSION = 3;
+  public static final int CLASS_WRITER_VERSION = 4;
 
   private SqoopOptions options;
   private ConnManager connManager;
   private String tableName;
   private CompilationManager compileManager;
 
+  // When the user asks for primitive fields, maps each column held in a
+  // primitive field to its bit in the generated class' null bitmap.
+  // Null otherwise.
+  private Map<String, Integer> nullBits;
+
   /**
    * Creates a new ClassWriter to generate an ORM class for a table
    * or arbitrary query.
@@ -301,8 +309,115 @@ public class ClassWriter {
     }
   }
 
+  /**
+   * @param javaType
+   * @return the name of the primitive type used to hold a column of the
+   * given (boxed) java type when primitive fields are enabled, or null if
+   * the type is always held as an object.
+   */
+  private static String primitiveForType(String javaType) {
+    if (javaType.equals("Integer")) {
+      return "int";
+    } else if (javaType.equals("Long")) {
+      return "long";
+    } else if (javaType.equals("Float")) {
+      return "float";
+    } else if (javaType.equals("Double")) {
+      return "double";
+    } else if (javaType.equals("Boolean")) {
+      return "boolean";
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * @return the primitive type name with its first letter capitalized, as
+   * used in method names such as ResultSet.getInt() or DataInput.readInt().
+   */
+  private static String capitalize(String primType) {
+    return Character.toUpperCase(primType.charAt(0)) + primType.substring(1);
+  }
+
+  /**
+   * @return true if the named column is held in a primitive field with its
+   * nullness tracked in the null bitmap.
+   */
+  private boolean isPrimitiveField(String colName) {
+    return null != nullBits && nullBits.containsKey(colName);
+  }
+
+  /**
+   * @return the name of the bitmap word which tracks the nullness of the
+   * column, qualified by 'obj' (e.g., "this").
+   */
+  private String nullBitsWord(String obj, String colName) {
+    return obj + ".__nulls" + (nullBits.get(colName) / Long.SIZE);
+  }
+
+  /**
+   * @return the mask selecting the column's bit within its bitmap word.
+   */
+  private String nullBitMask(String colName) {
+    return "0x" + Long.toHexString(1L << (nullBits.get(colName) % Long.SIZE))
+        + "L";
+  }
+
+  /**
+   * @return a boolean expression which is true if the primitive field for
+   * the column of 'obj' holds SQL NULL.
+   */
+  private String isNullExpr(String obj, String colName) {
+    return "(" + nullBitsWord(obj, colName) + " & " + nullBitMask(colName)
+        + ") != 0";
+  }
+
+  /**
+   * @return a statement marking the primitive field as holding SQL NULL.
+   */
+  private String setNullStmt(String colName) {
+    return nullBitsWord("this", colName) + " |= " + nullBitMask(colName)
+        + ";";
+  }
+
+  /**
+   * @return a statement marking the primitive field as holding a value.
+   */
+  private String clearNullStmt(String colName) {
+    return nullBitsWord("this", colName) + " &= ~" + nullBitMask(colName)
+        + ";";
+  }
+
+  /**
+   * @return a statement which sets the column to SQL NULL, for either
+   * storage style.
+   */
+  private String assignNullStmt(String colName) {
+    if (isPrimitiveField(colName)) {
+      return setNullStmt(colName);
+    } else {
+      return "this." + colName + " = null;";
+    }
+  }
+
+  /**
+   * @return a boolean expression which is true if the column holds SQL
+   * NULL, for either storage style.
+   */
+  private String isNullCheck(String colName) {
+    if (isPrimitiveField(colName)) {
+      return isNullExpr("this", colName);
+    } else {
+      return "null == this." + colName;
+    }
+  }
+
   private String stringifierForType(String javaType, String colName) {
-    if (javaType.equals("String")) {
+    if (isPrimitiveField(colName)) {
+      return isNullExpr("this", colName) + "?\""
+          + this.options.getNullNonStringValue() + "\":" + "\"\" + "
+          + colName;
+    } else if (javaType.equals("String")) {
       // Check if it is null, and write the null representation in such case
       String r = colName  + "==null?\"" + this.options.getNullStringValue()
           + "\":" + colName;
@@ -383,6 +498,16 @@ public class ClassWriter {
    */
   private String rpcGetterForMaybeNull(String javaType, String inputObj,
       String colName) {
+    if (isPrimitiveField(colName)) {
+      String primType = primitiveForType(javaType);
+      return "    if (" + inputObj + ".readBoolean()) { \n"
+          + "        " + setNullStmt(colName) + "\n"
+          + "    } else {\n"
+          + "        this." + colName + " = " + inputObj + ".read"
+          + capitalize(primType) + "();\n"
+          + "        " + clearNullStmt(colName) + "\n"
+          + "    }\n";
+    }
     return "    if (" + inputObj + ".readBoolean()) { \n"
         + "        this." + colName + " = null;\n"
         + "    } else {\n"
@@ -448,7 +573,7 @@ public class ClassWriter {
    */
   private String rpcSetterForMaybeNull(String javaType, String outputObj,
       String colName) {
-    return "    if (null == this." + colName + ") { \n"
+    return "    if (" + isNullCheck(colName) + ") { \n"
         + "        " + outputObj + ".writeBoolean(true);\n"
         + "    } else {\n"
         + "        " + outputObj + ".writeBoolean(false);\n"
@@ -466,6 +591,14 @@ public class ClassWriter {
   private void generateFields(Map<String, Integer> columnTypes,
       String [] colNames, String className, StringBuilder sb) {
 
+    if (null != nullBits) {
+      // Every primitive field starts out null.
+      int words = (nullBits.size() + Long.SIZE - 1) / Long.SIZE;
+      for (int i = 0; i < words; i++) {
+        sb.append("  private long __nulls" + i + " = -1L;\n");
+      }
+    }
+
     for (String col : colNames) {
       int sqlType = columnTypes.get(col);
       String javaType = toJavaType(col, sqlType);
@@ -474,6 +607,11 @@ public class ClassWriter {
         continue;
       }
 
+      if (isPrimitiveField(col)) {
+        generatePrimitiveField(col, javaType, className, sb);
+        continue;
+      }
+
       sb.append("  private " + javaType + " " + col + ";\n");
       sb.append("  public " + javaType + " get_" + col + "() {\n");
       sb.append("    return " + col + ";\n");
@@ -490,6 +628,37 @@ public class ClassWriter {
     }
   }
 
+  /**
+   * Generate a primitive member field for a column, with a getter, setter
+   * and with method that use the boxed type and map null onto the column's
+   * bit in the null bitmap.
+   */
+  private void generatePrimitiveField(String col, String javaType,
+      String className, StringBuilder sb) {
+    String primType = primitiveForType(javaType);
+
+    sb.append("  private " + primType + " " + col + ";\n");
+    sb.append("  public " + javaType + " get_" + col + "() {\n");
+    sb.append("    return " + isNullExpr("this", col) + " ? null : "
+        + javaType + ".valueOf(" + col + ");\n");
+    sb.append("  }\n");
+    sb.append("  public void set_" + col + "(" + javaType + " " + col
+        + ") {\n");
+    sb.append("    if (null == " + col + ") {\n");
+    sb.append("      " + setNullStmt(col) + "\n");
+    sb.append("    } else {\n");
+    sb.append("      this." + col + " = " + col + "." + primType
+        + "Value();\n");
+    sb.append("      " + clearNullStmt(col) + "\n");
+    sb.append("    }\n");
+    sb.append("  }\n");
+    sb.append("  public " + className + " with_" + col + "(" + javaType + " "
+        + col + ") {\n");
+    sb.append("    set_" + col + "(" + col + ");\n");
+    sb.append("    return this;\n");
+    sb.append("  }\n");
+  }
+
   /**
    * Generate an equals method that compares the fields for each column.
    * @param columnTypes - mapping from column names to sql types
@@ -516,6 +685,21 @@ public class ClassWriter {
         LOG.error("Cannot resolve SQL type " + sqlType);
         continue;
       }
+      if (isPrimitiveField(col)) {
+        // Float and Double compare as their equals() methods do.
+        String valuesEqual;
+        if (javaType.equals("Float") || javaType.equals("Double")) {
+          valuesEqual = javaType + ".compare(this." + col + ", that." + col
+              + ") == 0";
+        } else {
+          valuesEqual = "this." + col + " == that." + col;
+        }
+        sb.append("    equal = equal && ((" + nullBitsWord("this", col)
+            + " ^ " + nullBitsWord("that", col) + ") & " + nullBitMask(col)
+            + ") == 0 && (" + isNullExpr("this", col) + " || " + valuesEqual
+            + ");\n");
+        continue;
+      }
       sb.append("    equal = equal && (this." + col + " == null ? that." + col
           + " == null : this." + col + ".equals(that." + col + "));\n");
     }
@@ -552,6 +736,19 @@ public class ClassWriter {
         continue;
       }
 
+      if (isPrimitiveField(col)) {
+        // Read the primitive directly rather than boxing it.
+        String primType = primitiveForType(javaType);
+        sb.append("    this." + col + " = __dbResults.get"
+            + capitalize(primType) + "(" + fieldNum + ");\n");
+        sb.append("    if (__dbResults.wasNull()) {\n");
+        sb.append("      " + setNullStmt(col) + "\n");
+        sb.append("    } else {\n");
+        sb.append("      " + clearNullStmt(col) + "\n");
+        sb.append("    }\n");
+        continue;
+      }
+
       String getterMethod = dbGetterForType(javaType);
       if (null == getterMethod) {
         LOG.error("No db getter method for Java type " + javaType);
@@ -636,6 +833,18 @@ public class ClassWriter {
         continue;
       }
 
+      if (isPrimitiveField(col)) {
+        String primType = primitiveForType(javaType);
+        sb.append("    if (" + isNullExpr("this", col) + ") {\n");
+        sb.append("      __dbStmt.setNull(" + fieldNum + " + __off, "
+            + sqlType + ");\n");
+        sb.append("    } else {\n");
+        sb.append("      __dbStmt.set" + capitalize(primType) + "(" + fieldNum
+            + " + __off, " + col + ");\n");
+        sb.append("    }\n");
+        continue;
+      }
+
       String setterMethod = dbSetterForType(javaType);
       if (null == setterMethod) {
         LOG.error("No db setter method for Java type " + javaType);
@@ -745,8 +954,13 @@ public class ClassWriter {
         }
 
         sb.append("    if (\"" + colName + "\".equals(__fieldName)) {\n");
-        sb.append("      this." + colName + " = (" + javaType
-            + ") __fieldVal;\n");
+        if (isPrimitiveField(colName)) {
+          sb.append("      set_" + colName + "((" + javaType
+              + ") __fieldVal);\n");
+        } else {
+          sb.append("      this." + colName + " = (" + javaType
+              + ") __fieldVal;\n");
+        }
         sb.append("    }\n");
         first = false;
       }
@@ -770,8 +984,13 @@ public class ClassWriter {
     sb.append("    Map<String, Object> __sqoop$field_map = "
         + "new TreeMap<String, Object>();\n");
     for (String colName : colNames) {
-      sb.append("    __sqoop$field_map.put(\"" + colName + "\", this."
-          + colName + ");\n");
+      if (isPrimitiveField(colName)) {
+        sb.append("    __sqoop$field_map.put(\"" + colName + "\", get_"
+            + colName + "());\n");
+      } else {
+        sb.append("    __sqoop$field_map.put(\"" + colName + "\", this."
+            + colName + ");\n");
+      }
     }
     sb.append("    return __sqoop$field_map;\n");
     sb.append("  }\n\n");
@@ -867,6 +1086,80 @@ public class ClassWriter {
     sb.append("  }\n");
   }
 
+  /**
+   * Generate the writeTo() methods, which format the record like toString()
+   * but append the UTF-8 bytes directly to a Text via a reusable
+   * RecordFormatter.
+   * @param columnTypes - mapping from column names to sql types
+   * @param colNames - ordered list of column names for table.
+   * @param sb - StringBuilder to append code to
+   */
+  private void generateWriteTo(Map<String, Integer> columnTypes,
+      String [] colNames, StringBuilder sb) {
+
+    sb.append("  private RecordFormatter __formatter;\n");
+
+    sb.append("  public void writeTo(Text __out) {\n");
+    sb.append("    writeTo(__out, __outputDelimiters, true);\n");
+    sb.append("  }\n");
+
+    sb.append("  public void writeTo(Text __out, DelimiterSet delimiters, ");
+    sb.append("boolean useRecordDelim) {\n");
+    sb.append("    if (null == this.__formatter "
+        + "|| !this.__formatter.uses(delimiters)) {\n");
+    sb.append("      this.__formatter = new RecordFormatter(delimiters);\n");
+    sb.append("    }\n");
+    sb.append("    RecordFormatter __f = this.__formatter;\n");
+    sb.append("    __f.reset();\n");
+
+    for (String col : colNames) {
+      int sqlType = columnTypes.get(col);
+      String javaType = toJavaType(col, sqlType);
+      if (null == javaType) {
+        LOG.error("No Java type for SQL type " + sqlType
+                  + " for column " + col);
+        continue;
+      }
+
+      String stringExpr = stringifierForType(javaType, col);
+      if (null == stringExpr) {
+        LOG.error("No toString method for Java type " + javaType);
+        continue;
+      }
+
+      if (javaType.equals("String") && options.doHiveDropDelims()) {
+        sb.append("    __f.appendFormatted(FieldFormatter.hiveStringDropDelims("
+          + stringExpr + ", delimiters));\n");
+      } else if (javaType.equals("String")
+        && options.getHiveDelimsReplacement() != null) {
+        sb.append("    __f.appendFormatted("
+          + "FieldFormatter.hiveStringReplaceDelims("
+          + stringExpr + ", \"" + options.getHiveDelimsReplacement() + "\", "
+          + "delimiters));\n");
+      } else if (javaType.equals("Integer") || javaType.equals("Long")) {
+        // Format integral values straight into the buffer.
+        sb.append("    if (" + isNullCheck(col) + ") {\n");
+        sb.append("      __f.appendField(\""
+            + this.options.getNullNonStringValue() + "\");\n");
+        sb.append("    } else {\n");
+        if (isPrimitiveField(col)) {
+          sb.append("      __f.appendField(" + col + ");\n");
+        } else {
+          sb.append("      __f.appendField(" + col + ".longValue());\n");
+        }
+        sb.append("    }\n");
+      } else {
+        sb.append("    __f.appendField(" + stringExpr + ");\n");
+      }
+    }
+
+    sb.append("    if (useRecordDelim) {\n");
+    sb.append("      __f.appendRecordDelim();\n");
+    sb.append("    }\n");
+    sb.append("    __f.writeTo(__out);\n");
+    sb.append("  }\n");
+  }
+
   /**
    * Helper method for generateParser(). Writes out the parse() method for one
    * particular type we support as an input string-ish type.
@@ -890,61 +1183,107 @@ public class ClassWriter {
   private void parseNullVal(String javaType, String colName, StringBuilder sb) {
     if (javaType.equals("String")) {
       sb.append("    if (__cur_str.equals(\""
-         + this.options.getInNullStringValue() + "\")) { this.");
-      sb.append(colName);
-      sb.append(" = null; } else {\n");
+         + this.options.getInNullStringValue() + "\")) { ");
+      sb.append(assignNullStmt(colName));
+      sb.append(" } else {\n");
     } else {
       sb.append("    if (__cur_str.equals(\""
          + this.options.getInNullNonStringValue());
-      sb.append("\") || __cur_str.length() == 0) { this.");
-      sb.append(colName);
-      sb.append(" = null; } else {\n");
+      sb.append("\") || __cur_str.length() == 0) { ");
+      sb.append(assignNullStmt(colName));
+      sb.append(" } else {\n");
     }
   }
 
   /**
-   * Helper method for generateParser(). Generates the code that loads one
-   * field of a specified name and type from the next element of the field
-   * strings list.
+   * Helper method for parseColumn() and parseColumnFromBytes(). Returns an
+   * expression which converts the string held in 'strExpr' to the
+   * primitive type used to hold a column of the given java type.
    */
-  private void parseColumn(String colName, int colType, StringBuilder sb) {
-    // assume that we have __it and __cur_str vars, based on
-    // __loadFromFields() code.
-    sb.append("    __cur_str = __it.next();\n");
-    String javaType = toJavaType(colName, colType);
+  private String primitiveParserForType(String javaType, String strExpr) {
+    if (javaType.equals("Integer")) {
+      return "Integer.parseInt(" + strExpr + ")";
+    } else if (javaType.equals("Long")) {
+      return "Long.parseLong(" + strExpr + ")";
+    } else if (javaType.equals("Float")) {
+      return "Float.parseFloat(" + strExpr + ")";
+    } else if (javaType.equals("Double")) {
+      return "Double.parseDouble(" + strExpr + ")";
+    } else {
+      // BooleanParser.valueOf() already returns a primitive.
+      return parserForType(javaType, strExpr);
+    }
+  }
 
-    parseNullVal(javaType, colName, sb);
+  /**
+   * Helper method for parseColumn() and parseColumnFromBytes(). Writes the
+   * statements that store a parsed, non-null value into the column.
+   */
+  private void assignParsedValue(String colName, String parseExpr,
+      StringBuilder sb) {
+    sb.append("      this." + colName + " = " + parseExpr + ";\n");
+    if (isPrimitiveField(colName)) {
+      sb.append("      " + clearNullStmt(colName) + "\n");
+    }
+  }
+
+  /**
+   * Helper method for parseColumn() and parseColumnFromBytes(). Returns an
+   * expression which converts the string held in 'strExpr' to the
+   * specified Java type, or null if no such conversion is available.
+   */
+  private String parserForType(String javaType, String strExpr) {
     if (javaType.equals("String")) {
       // TODO(aaron): Distinguish between 'null' and null. Currently they both
       // set the actual object to null.
-      sb.append("      this." + colName + " = __cur_str;\n");
+      return strExpr;
     } else if (javaType.equals("Integer")) {
-      sb.append("      this." + colName + " = Integer.valueOf(__cur_str);\n");
+      return "Integer.valueOf(" + strExpr + ")";
     } else if (javaType.equals("Long")) {
-      sb.append("      this." + colName + " = Long.valueOf(__cur_str);\n");
+      return "Long.valueOf(" + strExpr + ")";
     } else if (javaType.equals("Float")) {
-      sb.append("      this." + colName + " = Float.valueOf(__cur_str);\n");
+      return "Float.valueOf(" + strExpr + ")";
     } else if (javaType.equals("Double")) {
-      sb.append("      this." + colName + " = Double.valueOf(__cur_str);\n");
+      return "Double.valueOf(" + strExpr + ")";
     } else if (javaType.equals("Boolean")) {
-      sb.append("      this." + colName
-          + " = BooleanParser.valueOf(__cur_str);\n");
+      return "BooleanParser.valueOf(" + strExpr + ")";
     } else if (javaType.equals("java.sql.Date")) {
-      sb.append("      this." + colName
-          + " = java.sql.Date.valueOf(__cur_str);\n");
+      return "java.sql.Date.valueOf(" + strExpr + ")";
     } else if (javaType.equals("java.sql.Time")) {
-      sb.append("      this." + colName
-          + " = java.sql.Time.valueOf(__cur_str);\n");
+      return "java.sql.Time.valueOf(" + strExpr + ")";
     } else if (javaType.equals("java.sql.Timestamp")) {
-      sb.append("      this." + colName
-          + " = java.sql.Timestamp.valueOf(__cur_str);\n");
+      return "java.sql.Timestamp.valueOf(" + strExpr + ")";
     } else if (javaType.equals("java.math.BigDecimal")) {
-      sb.append("      this." + colName
-          + " = new java.math.BigDecimal(__cur_str);\n");
+      return "new java.math.BigDecimal(" + strExpr + ")";
     } else if (javaType.equals(ClobRef.class.getName())) {
-      sb.append("      this." + colName + " = ClobRef.parse(__cur_str);\n");
+      return "ClobRef.parse(" + strExpr + ")";
     } else if (javaType.equals(BlobRef.class.getName())) {
-      sb.append("      this." + colName + " = BlobRef.parse(__cur_str);\n");
+      return "BlobRef.parse(" + strExpr + ")";
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Helper method for generateParser(). Generates the code that loads one
+   * field of a specified name and type from the next element of the field
+   * strings list.
+   */
+  private void parseColumn(String colName, int colType, StringBuilder sb) {
+    // assume that we have __it and __cur_str vars, based on
+    // __loadFromFields() code.
+    sb.append("    __cur_str = __it.next();\n");
+    String javaType = toJavaType(colName, colType);
+
+    parseNullVal(javaType, colName, sb);
+    String parseExpr;
+    if (isPrimitiveField(colName)) {
+      parseExpr = primitiveParserForType(javaType, "__cur_str");
+    } else {
+      parseExpr = parserForType(javaType, "__cur_str");
+    }
+    if (null != parseExpr) {
+      assignParsedValue(colName, parseExpr, sb);
     } else {
       LOG.error("No parser available for Java type " + javaType);
     }
@@ -952,6 +1291,93 @@ public class ClassWriter {
     sb.append("    }\n\n"); // the closing '{' based on code in parseNullVal();
   }
 
+  /**
+   * Helper method for generateByteParser(). Generates the code that loads
+   * one field of a specified name and type from field 'fieldNum' of the
+   * ByteRecordParser __p. Integral and decimal types are parsed directly
+   * from the bytes; all other types are decoded to a String first.
+   */
+  private void parseColumnFromBytes(String colName, int colType, int fieldNum,
+      StringBuilder sb) {
+    String javaType = toJavaType(colName, colType);
+
+    if (javaType.equals("String")) {
+      sb.append("    if (__p.fieldEquals(" + fieldNum
+          + ", __inNullStringBytes)) { ");
+      sb.append(assignNullStmt(colName));
+      sb.append(" } else {\n");
+    } else {
+      sb.append("    if (__p.fieldEquals(" + fieldNum
+          + ", __inNullNonStringBytes)");
+      sb.append(" || __p.getFieldLength(" + fieldNum + ") == 0) { ");
+      sb.append(assignNullStmt(colName));
+      sb.append(" } else {\n");
+    }
+
+    String parseExpr;
+    if (isPrimitiveField(colName)) {
+      if (javaType.equals("Integer")) {
+        parseExpr = "__p.getInt(" + fieldNum + ")";
+      } else if (javaType.equals("Long")) {
+        parseExpr = "__p.getLong(" + fieldNum + ")";
+      } else {
+        parseExpr = primitiveParserForType(javaType,
+            "__p.getString(" + fieldNum + ")");
+      }
+    } else if (javaType.equals("Integer")) {
+      parseExpr = "Integer.valueOf(__p.getInt(" + fieldNum + "))";
+    } else if (javaType.equals("Long")) {
+      parseExpr = "Long.valueOf(__p.getLong(" + fieldNum + "))";
+    } else if (javaType.equals("java.math.BigDecimal")) {
+      parseExpr = "__p.getBigDecimal(" + fieldNum + ")";
+    } else {
+      parseExpr = parserForType(javaType, "__p.getString(" + fieldNum + ")");
+    }
+
+    if (null != parseExpr) {
+      assignParsedValue(colName, parseExpr, sb);
+    } else {
+      LOG.error("No parser available for Java type " + javaType);
+    }
+
+    sb.append("    }\n\n");
+  }
+
+  /**
+   * Helper method for generateParser(). Writes out a parse(Text) method
+   * which splits the UTF-8 bytes of the record with a ByteRecordParser,
+   * avoiding the transcode to a String and the per-field Strings created
+   * by RecordParser.
+   */
+  private void generateByteParser(Map<String, Integer> columnTypes,
+      String [] colNames, StringBuilder sb) {
+    sb.append("  private static final byte [] __inNullStringBytes = "
+        + "ByteRecordParser.toUtf8(\""
+        + this.options.getInNullStringValue() + "\");\n");
+    sb.append("  private static final byte [] __inNullNonStringBytes = "
+        + "ByteRecordParser.toUtf8(\""
+        + this.options.getInNullNonStringValue() + "\");\n");
+    sb.append("  private ByteRecordParser __byteParser;\n");
+
+    sb.append("  public void parse(Text __record) "
+        + "throws RecordParser.ParseError {\n");
+    sb.append("    if (null == this.__byteParser) {\n");
+    sb.append("      this.__byteParser = "
+        + "new ByteRecordParser(__inputDelimiters);\n");
+    sb.append("    }\n");
+    sb.append("    this.__byteParser.parseRecord(__record);\n");
+    sb.append("    __loadFromBytes(this.__byteParser);\n");
+    sb.append("  }\n\n");
+
+    sb.append("  private void __loadFromBytes(ByteRecordParser __p) {\n");
+    int fieldNum = 0;
+    for (String colName : colNames) {
+      int colType = columnTypes.get(colName);
+      parseColumnFromBytes(colName, colType, fieldNum++, sb);
+    }
+    sb.append("  }\n\n");
+  }
+
   /**
    * Generate the parse() method.
    * @param columnTypes - mapping from column names to sql types
@@ -971,8 +1397,13 @@ public class ClassWriter {
     // The parser object which will do the heavy lifting for field splitting.
     sb.append("  private RecordParser __parser;\n");
 
-    // Generate wrapper methods which will invoke the parser.
-    generateParseMethod("Text", sb);
+    // Generate wrapper methods which will invoke the parser. Text records
+    // are split at the byte level if the delimiters allow it.
+    if (ByteRecordParser.supports(options.getInputDelimiters())) {
+      generateByteParser(columnTypes, colNames, sb);
+    } else {
+      generateParseMethod("Text", sb);
+    }
     generateParseMethod("CharSequence", sb);
     generateParseMethod("byte []", sb);
     generateParseMethod("char []", sb);
@@ -1226,6 +1657,28 @@ public class ClassWriter {
     return connManager.getColumnTypes(tableName, options.getSqlQuery());
   }
 
+  /**
+   * If primitive fields are enabled, assign each column which can be held
+   * in a primitive field a bit in the null bitmap.
+   * @param columnTypes - mapping from column names to sql types
+   * @param colNames - ordered list of column names for table.
+   */
+  private void assignNullBits(Map<String, Integer> columnTypes,
+      String [] colNames) {
+    if (!options.usePrimitiveFields()) {
+      nullBits = null;
+      return;
+    }
+
+    nullBits = new HashMap<String, Integer>();
+    for (String col : colNames) {
+      String javaType = toJavaType(col, columnTypes.get(col));
+      if (null != javaType && null != primitiveForType(javaType)) {
+        nullBits.put(col, Integer.valueOf(nullBits.size()));
+      }
+    }
+  }
+
   /**
    * Generate the ORM code for a table object containing the named columns.
    * @param columnTypes - mapping from column names to sql types
@@ -1241,6 +1694,8 @@ public class ClassWriter {
       throw new IllegalArgumentException("Attempted to generate class with "
           + "no columns!");
     }
+    assignNullBits(columnTypes, colNames);
+
     StringBuilder sb = new StringBuilder();
     sb.append("// ORM class for " + tableName + "\n");
     sb.append("// WARNING: This class is AUTO-GENERATED. "
@@ -1263,7 +1718,9 @@ public class ClassWriter {
     sb.append("import " + DelimiterSet.class.getCanonicalName() + ";\n");
     sb.append("import " + FieldFormatter.class.getCanonicalName() + ";\n");
     sb.append("import " + RecordParser.class.getCanonicalName() + ";\n");
+    sb.append("import " + RecordFormatter.class.getCanonicalName() + ";\n");
     sb.append("import " + BooleanParser.class.getCanonicalName() + ";\n");
+    sb.append("import " + ByteRecordParser.class.getCanonicalName() + ";\n");
     sb.append("import " + BlobRef.class.getCanonicalName() + ";\n");
     sb.append("import " + ClobRef.class.getCanonicalName() + ";\n");
     sb.append("import " + LargeObjectLoader.class.getCanonicalName() + ";\n");
@@ -1302,6 +1759,7 @@ public class ClassWriter {
     generateHadoopRead(columnTypes, colNames, sb);
     generateHadoopWrite(columnTypes, colNames, sb);
     generateToString(columnTypes, colNames, sb);
+    generateWriteTo(columnTypes, colNames, sb);
     generateParser(columnTypes, colNames, sb);
     generateCloneMethod(columnTypes, colNames, sb);
     generateGetFieldMap(columnTypes, colNames, sb);
@@ -77,11 +77,18 @@ public abstract class BaseSqoopTool extends SqoopTool {
   public static final String PASSWORD_PROMPT_ARG = "P";
   public static final String DIRECT_ARG = "direct";
   public static final String BATCH_ARG = "batch";
+  public static final String CONNECTIONS_PER_MAPPER_ARG =
+      "connections-per-mapper";
+  public static final String MAX_REJECTS_ARG = "max-rejects";
+  public static final String REJECT_DIR_ARG = "reject-dir";
   public static final String TABLE_ARG = "table";
   public static final String STAGING_TABLE_ARG = "staging-table";
   public static final String CLEAR_STAGING_TABLE_ARG = "clear-staging-table";
+  public static final String STAGING_MIGRATION_CHUNKS_ARG =
+      "staging-migration-chunks";
   public static final String COLUMNS_ARG = "columns";
   public static final String SPLIT_BY_ARG = "split-by";
+  public static final String BALANCED_SPLITS_ARG = "balanced-splits";
   public static final String WHERE_ARG = "where";
   public static final String HADOOP_HOME_ARG = "hadoop-home";
   public static final String HIVE_HOME_ARG = "hive-home";
@@ -94,6 +101,7 @@ public abstract class BaseSqoopTool extends SqoopTool {
   public static final String INPUT_NULL_NON_STRING = "input-null-non-string";
   public static final String MAP_COLUMN_JAVA = "map-column-java";
   public static final String MAP_COLUMN_HIVE = "map-column-hive";
+  public static final String PRIMITIVE_FIELDS_ARG = "primitive-fields";
 
   public static final String FMT_SEQUENCEFILE_ARG = "as-sequencefile";
   public static final String FMT_TEXTFILE_ARG = "as-textfile";
@@ -110,12 +118,15 @@ public abstract class BaseSqoopTool extends SqoopTool {
       "create-hive-table";
   public static final String NUM_MAPPERS_ARG = "num-mappers";
   public static final String NUM_MAPPERS_SHORT_ARG = "m";
+  public static final String CHUNKS_PER_MAPPER_ARG = "chunks-per-mapper";
   public static final String COMPRESS_ARG = "compress";
   public static final String COMPRESSION_CODEC_ARG = "compression-codec";
   public static final String COMPRESS_SHORT_ARG = "z";
   public static final String DIRECT_SPLIT_SIZE_ARG = "direct-split-size";
   public static final String INLINE_LOB_LIMIT_ARG = "inline-lob-limit";
   public static final String FETCH_SIZE_ARG = "fetch-size";
+  public static final String PAGE_SIZE_ARG = "page-size";
+  public static final String CHECKPOINT_ROWS_ARG = "checkpoint-rows";
   public static final String EXPORT_PATH_ARG = "export-dir";
   public static final String FIELDS_TERMINATED_BY_ARG = "fields-terminated-by";
   public static final String LINES_TERMINATED_BY_ARG = "lines-terminated-by";
@@ -144,6 +155,7 @@ public abstract class BaseSqoopTool extends SqoopTool {
   public static final String HELP_ARG = "help";
   public static final String UPDATE_KEY_ARG = "update-key";
   public static final String UPDATE_MODE_ARG = "update-mode";
+  public static final String UPDATE_PARTITIONING_ARG = "update-partitioning";
 
   // Arguments for incremental imports.
   public static final String INCREMENT_TYPE_ARG = "incremental";
@@ -583,6 +595,11 @@ public abstract class BaseSqoopTool extends SqoopTool {
         .withDescription("Override mapping for specific columns to java types")
         .withLongOpt(MAP_COLUMN_JAVA)
         .create());
+    codeGenOpts.addOption(OptionBuilder
+        .withDescription("Store numeric and boolean columns as primitive "
+        + "fields in the generated class")
+        .withLongOpt(PRIMITIVE_FIELDS_ARG)
+        .create());
 
     if (!multiTable) {
       codeGenOpts.addOption(OptionBuilder.withArgName("name")
@@ -866,6 +883,10 @@ public abstract class BaseSqoopTool extends SqoopTool {
       out.setMapColumn(in.getOptionValue(MAP_COLUMN_JAVA));
     }
 
+    if (in.hasOption(PRIMITIVE_FIELDS_ARG)) {
+      out.setPrimitiveFields(true);
+    }
+
     if (!multiTable && in.hasOption(CLASS_NAME_ARG)) {
       out.setClassName(in.getOptionValue(CLASS_NAME_ARG));
     }
@@ -32,6 +32,7 @@ import com.cloudera.sqoop.Sqoop;
 import com.cloudera.sqoop.SqoopOptions;
 import com.cloudera.sqoop.SqoopOptions.InvalidOptionsException;
 import com.cloudera.sqoop.SqoopOptions.UpdateMode;
+import com.cloudera.sqoop.SqoopOptions.UpdatePartitioning;
 import com.cloudera.sqoop.cli.RelatedOptions;
 import com.cloudera.sqoop.cli.ToolOptions;
 import com.cloudera.sqoop.manager.ExportJobContext;
@@ -158,11 +159,33 @@ public class ExportTool extends BaseSqoopTool {
         + "staging table can be deleted")
         .withLongOpt(CLEAR_STAGING_TABLE_ARG)
         .create());
+    exportOpts.addOption(OptionBuilder.withArgName("n")
+        .hasArg()
+        .withDescription("Move staged data to the destination table in n "
+            + "key ranges, in parallel transactions")
+        .withLongOpt(STAGING_MIGRATION_CHUNKS_ARG)
+        .create());
     exportOpts.addOption(OptionBuilder
         .withDescription("Indicates underlying statements "
         + "to be executed in batch mode")
         .withLongOpt(BATCH_ARG)
         .create());
+    exportOpts.addOption(OptionBuilder.withArgName("n")
+        .hasArg()
+        .withDescription("Use n database connections in each map task")
+        .withLongOpt(CONNECTIONS_PER_MAPPER_ARG)
+        .create());
+    exportOpts.addOption(OptionBuilder.withArgName("n")
+        .hasArg()
+        .withDescription("Write up to n records refused by the database "
+            + "in each map task to the reject directory")
+        .withLongOpt(MAX_REJECTS_ARG)
+        .create());
+    exportOpts.addOption(OptionBuilder.withArgName("dir")
+        .hasArg()
+        .withDescription("HDFS directory for rejected records")
+        .withLongOpt(REJECT_DIR_ARG)
+        .create());
     exportOpts.addOption(OptionBuilder
         .withArgName("mode")
         .hasArg()
@@ -170,6 +193,13 @@ public class ExportTool extends BaseSqoopTool {
             + "new rows are found with non-matching keys in database")
         .withLongOpt(UPDATE_MODE_ARG)
         .create());
+    exportOpts.addOption(OptionBuilder
+        .withArgName("mode")
+        .hasArg()
+        .withDescription("Shuffle update records to writer tasks by the "
+            + "update key ('hash' or 'range'); default is 'none'")
+        .withLongOpt(UPDATE_PARTITIONING_ARG)
+        .create());
 
     return exportOpts;
   }
@@ -225,6 +255,19 @@ public class ExportTool extends BaseSqoopTool {
         out.setBatchMode(true);
       }
 
+      if (in.hasOption(CONNECTIONS_PER_MAPPER_ARG)) {
+        out.setConnectionsPerMapper(Integer.parseInt(
+            in.getOptionValue(CONNECTIONS_PER_MAPPER_ARG)));
+      }
+
+      if (in.hasOption(MAX_REJECTS_ARG)) {
+        out.setMaxRejects(Long.parseLong(in.getOptionValue(MAX_REJECTS_ARG)));
+      }
+
+      if (in.hasOption(REJECT_DIR_ARG)) {
+        out.setRejectDir(in.getOptionValue(REJECT_DIR_ARG));
+      }
+
       if (in.hasOption(TABLE_ARG)) {
         out.setTableName(in.getOptionValue(TABLE_ARG));
       }
@@ -253,6 +296,11 @@ public class ExportTool extends BaseSqoopTool {
         out.setClearStagingTable(true);
       }
 
+      if (in.hasOption(STAGING_MIGRATION_CHUNKS_ARG)) {
+        out.setStagingMigrationChunks(Integer.parseInt(
+            in.getOptionValue(STAGING_MIGRATION_CHUNKS_ARG)));
+      }
+
       applyNewUpdateOptions(in, out);
       applyInputFormatOptions(in, out);
       applyOutputFormatOptions(in, out);
@@ -288,11 +336,6 @@ public class ExportTool extends BaseSqoopTool {
       // class.
       throw new InvalidOptionsException("Jar cannot be specified with "
           + "--jar-file when export is running in update mode.");
-    } else if (options.getStagingTableName() != null
-        && options.getUpdateKeyCol() != null) {
-      // Staging table may not be used when export is running in update mode
-      throw new InvalidOptionsException("Staging table cannot be used when "
-          + "export is running in update mode.");
     } else if (options.getStagingTableName() != null
         && options.getStagingTableName().equalsIgnoreCase(
             options.getTableName())) {
@@ -304,6 +347,27 @@ public class ExportTool extends BaseSqoopTool {
       // Option to clear staging table specified but not the staging table name
       throw new InvalidOptionsException("Option to clear the staging table is "
           + "specified but the staging table name is not.");
+    } else if (options.getStagingMigrationChunks() < 1) {
+      throw new InvalidOptionsException("--" + STAGING_MIGRATION_CHUNKS_ARG
+          + " must be at least 1." + HELP_STR);
+    } else if (options.getStagingMigrationChunks() > 1
+        && options.getStagingTableName() == null) {
+      throw new InvalidOptionsException("--" + STAGING_MIGRATION_CHUNKS_ARG
+          + " requires --" + STAGING_TABLE_ARG + "." + HELP_STR);
+    } else if (options.getUpdatePartitioning() != UpdatePartitioning.None
+        && options.getUpdateKeyCol() == null) {
+      throw new InvalidOptionsException("--" + UPDATE_PARTITIONING_ARG
+          + " requires --" + UPDATE_KEY_ARG + "." + HELP_STR);
+    } else if (options.getConnectionsPerMapper() < 1) {
+      throw new InvalidOptionsException("--" + CONNECTIONS_PER_MAPPER_ARG
+          + " must be at least 1." + HELP_STR);
+    } else if (options.getRejectDir() != null
+        && options.getMaxRejects() < 0) {
+      throw new InvalidOptionsException("--" + REJECT_DIR_ARG
+          + " requires --" + MAX_REJECTS_ARG + "." + HELP_STR);
+    } else if (options.getMaxRejects() >= 0 && options.isDirect()) {
+      throw new InvalidOptionsException("--" + MAX_REJECTS_ARG
+          + " cannot be used with --direct." + HELP_STR);
     }
   }
 
@@ -347,6 +411,21 @@ public class ExportTool extends BaseSqoopTool {
             + HELP_STR);
       }
     }
+
+    if (in.hasOption(UPDATE_PARTITIONING_ARG)) {
+      String partitioningStr = in.getOptionValue(UPDATE_PARTITIONING_ARG);
+      if ("none".equals(partitioningStr)) {
+        out.setUpdatePartitioning(UpdatePartitioning.None);
+      } else if ("hash".equals(partitioningStr)) {
+        out.setUpdatePartitioning(UpdatePartitioning.Hash);
+      } else if ("range".equals(partitioningStr)) {
+        out.setUpdatePartitioning(UpdatePartitioning.Range);
+      } else {
+        throw new InvalidOptionsException("Unknown update partitioning: "
+            + partitioningStr + ". Use 'none', 'hash' or 'range'."
+            + HELP_STR);
+      }
+    }
   }
 }
 
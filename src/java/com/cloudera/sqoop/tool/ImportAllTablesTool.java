@@ -62,6 +62,9 @@ public class ImportAllTablesTool extends ImportTool {
         LOG.error("manager.listTables() returned null");
         return 1;
       } else {
+        // Read the schemas of all the tables up front, rather than one
+        // at a time as each is imported.
+        manager.discoverTables(tables);
         for (String tableName : tables) {
           importTable(options, tableName, hiveImport);
         }
@@ -366,6 +366,12 @@ public class ImportTool extends BaseSqoopTool {
       HiveImport hiveImport) throws IOException, ImportException {
     String jarFile = null;
 
+    // Pages are bounded with the database's own row limit syntax.
+    if (options.getPageSize() > 0 && null == manager.getRowLimitFormat()) {
+      throw new ImportException("--" + PAGE_SIZE_ARG
+          + " is not supported for this database.");
+    }
+
     // Generate the ORM code for the tables.
     jarFile = codeGenerator.generateORM(options, tableName);
 
@@ -536,6 +542,11 @@ public class ImportTool extends BaseSqoopTool {
           .create());
     }
 
+    importOpts.addOption(OptionBuilder
+        .withDescription("Balance splits by row count using a histogram "
+            + "of the split column")
+        .withLongOpt(BALANCED_SPLITS_ARG)
+        .create());
     importOpts.addOption(OptionBuilder.withArgName("dir")
         .hasArg().withDescription("HDFS parent for table destination")
         .withLongOpt(WAREHOUSE_DIR_ARG)
@@ -556,6 +567,12 @@ public class ImportTool extends BaseSqoopTool {
         .hasArg().withDescription("Use 'n' map tasks to import in parallel")
         .withLongOpt(NUM_MAPPERS_ARG)
         .create(NUM_MAPPERS_SHORT_ARG));
+    importOpts.addOption(OptionBuilder.withArgName("n")
+        .hasArg()
+        .withDescription("Cut the import into 'n' chunks per map task, "
+            + "shared out as map tasks finish")
+        .withLongOpt(CHUNKS_PER_MAPPER_ARG)
+        .create());
     importOpts.addOption(OptionBuilder
         .withDescription("Enable compression")
         .withLongOpt(COMPRESS_ARG)
@@ -582,6 +599,18 @@ public class ImportTool extends BaseSqoopTool {
         + "database when more rows are needed")
         .withLongOpt(FETCH_SIZE_ARG)
         .create());
+    importOpts.addOption(OptionBuilder.withArgName("n")
+        .hasArg()
+        .withDescription("Read each split in pages of about 'n' rows, "
+        + "ordered by the split column")
+        .withLongOpt(PAGE_SIZE_ARG)
+        .create());
+    importOpts.addOption(OptionBuilder.withArgName("n")
+        .hasArg()
+        .withDescription("Checkpoint each map task after about 'n' rows, "
+        + "so a failed task resumes where it left off")
+        .withLongOpt(CHECKPOINT_ROWS_ARG)
+        .create());
 
     return importOpts;
   }
@@ -734,6 +763,10 @@ public class ImportTool extends BaseSqoopTool {
         }
       }
 
+      if (in.hasOption(BALANCED_SPLITS_ARG)) {
+        out.setBalancedSplits(true);
+      }
+
       if (in.hasOption(WAREHOUSE_DIR_ARG)) {
         out.setWarehouseDir(in.getOptionValue(WAREHOUSE_DIR_ARG));
       }
@@ -754,6 +787,11 @@ public class ImportTool extends BaseSqoopTool {
         out.setNumMappers(Integer.parseInt(in.getOptionValue(NUM_MAPPERS_ARG)));
       }
 
+      if (in.hasOption(CHUNKS_PER_MAPPER_ARG)) {
+        out.setChunksPerMapper(Integer.parseInt(
+            in.getOptionValue(CHUNKS_PER_MAPPER_ARG)));
+      }
+
       if (in.hasOption(COMPRESS_ARG)) {
         out.setUseCompression(true);
       }
@@ -776,6 +814,15 @@ public class ImportTool extends BaseSqoopTool {
         out.setFetchSize(new Integer(in.getOptionValue(FETCH_SIZE_ARG)));
       }
 
+      if (in.hasOption(PAGE_SIZE_ARG)) {
+        out.setPageSize(Integer.parseInt(in.getOptionValue(PAGE_SIZE_ARG)));
+      }
+
+      if (in.hasOption(CHECKPOINT_ROWS_ARG)) {
+        out.setCheckpointRows(Long.parseLong(
+            in.getOptionValue(CHECKPOINT_ROWS_ARG)));
+      }
+
       if (in.hasOption(JAR_FILE_NAME_ARG)) {
         out.setExistingJarName(in.getOptionValue(JAR_FILE_NAME_ARG));
       }
@@ -0,0 +1,289 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Measures the garbage generated when reading narrow numeric rows into
+ * a record, comparing the boxed fields that ClassWriter generates by
+ * default with the primitive fields and null bitmap it generates with
+ * --primitive-fields.
+ *
+ * The two record classes below mirror the generated readFields() and
+ * write(DataOutput) methods for a table of INTEGER and BIGINT columns.
+ * Rows are served from memory rather than a JDBC driver so that the
+ * only allocations measured are those made by the record itself.
+ *
+ * Run with:
+ * src/scripts/run-perftest.sh PrimitiveFieldsPerfTest [numColumns] [numRows]
+ */
+public class PrimitiveFieldsPerfTest {
+
+  private int numColumns = 16;
+  private int numRows = 20 * 1000 * 1000;
+  private int numPasses = 5;
+  private long startTime;
+
+  // Accumulates output so the JIT cannot discard the work.
+  private long sink;
+
+  public PrimitiveFieldsPerfTest(int cols, int rows) {
+    this.numColumns = cols;
+    this.numRows = rows;
+  }
+
+  /**
+   * An in-memory stand-in for a ResultSet over a pool of rows. Every
+   * eighth value is NULL.
+   */
+  private static class Rows {
+    private final long [][] values;
+    private final boolean [][] nulls;
+    private int row;
+    private boolean wasNull;
+
+    Rows(int numCols, int poolSize) {
+      Random r = new Random(42);
+      values = new long[poolSize][numCols];
+      nulls = new boolean[poolSize][numCols];
+      for (int i = 0; i < poolSize; i++) {
+        for (int c = 0; c < numCols; c++) {
+          // Avoid the small values cached by Integer.valueOf().
+          values[i][c] = r.nextInt();
+          nulls[i][c] = r.nextInt(8) == 0;
+        }
+      }
+    }
+
+    void next(int i) {
+      row = i % values.length;
+    }
+
+    int getInt(int col) {
+      wasNull = nulls[row][col - 1];
+      return wasNull ? 0 : (int) values[row][col - 1];
+    }
+
+    long getLong(int col) {
+      wasNull = nulls[row][col - 1];
+      return wasNull ? 0 : values[row][col - 1];
+    }
+
+    boolean wasNull() {
+      return wasNull;
+    }
+  }
+
+  /** A record with fields held as in the default generated classes. */
+  private interface Record {
+    void readFields(Rows rows);
+    void write(DataOutput out) throws IOException;
+  }
+
+  private static class BoxedRecord implements Record {
+    private final Integer [] ints;
+    private final Long [] longs;
+
+    BoxedRecord(int numCols) {
+      ints = new Integer[(numCols + 1) / 2];
+      longs = new Long[numCols / 2];
+    }
+
+    public void readFields(Rows rows) {
+      int col = 1;
+      for (int i = 0; i < ints.length; i++) {
+        int val = rows.getInt(col++);
+        ints[i] = rows.wasNull() ? null : Integer.valueOf(val);
+        if (i < longs.length) {
+          long lval = rows.getLong(col++);
+          longs[i] = rows.wasNull() ? null : Long.valueOf(lval);
+        }
+      }
+    }
+
+    public void write(DataOutput out) throws IOException {
+      for (int i = 0; i < ints.length; i++) {
+        if (null == ints[i]) {
+          out.writeBoolean(true);
+        } else {
+          out.writeBoolean(false);
+          out.writeInt(ints[i]);
+        }
+        if (i < longs.length) {
+          if (null == longs[i]) {
+            out.writeBoolean(true);
+          } else {
+            out.writeBoolean(false);
+            out.writeLong(longs[i]);
+          }
+        }
+      }
+    }
+  }
+
+  /** A record with fields held as with --primitive-fields. */
+  private static class PrimitiveRecord implements Record {
+    private final int [] ints;
+    private final long [] longs;
+    private long nulls;
+
+    PrimitiveRecord(int numCols) {
+      if (numCols > Long.SIZE) {
+        throw new IllegalArgumentException("At most " + Long.SIZE
+            + " columns are supported");
+      }
+      ints = new int[(numCols + 1) / 2];
+      longs = new long[numCols / 2];
+    }
+
+    public void readFields(Rows rows) {
+      int col = 1;
+      for (int i = 0; i < ints.length; i++) {
+        ints[i] = rows.getInt(col);
+        if (rows.wasNull()) {
+          nulls |= 1L << (col - 1);
+        } else {
+          nulls &= ~(1L << (col - 1));
+        }
+        col++;
+        if (i < longs.length) {
+          longs[i] = rows.getLong(col);
+          if (rows.wasNull()) {
+            nulls |= 1L << (col - 1);
+          } else {
+            nulls &= ~(1L << (col - 1));
+          }
+          col++;
+        }
+      }
+    }
+
+    public void write(DataOutput out) throws IOException {
+      int col = 0;
+      for (int i = 0; i < ints.length; i++) {
+        if ((nulls & (1L << col++)) != 0) {
+          out.writeBoolean(true);
+        } else {
+          out.writeBoolean(false);
+          out.writeInt(ints[i]);
+        }
+        if (i < longs.length) {
+          if ((nulls & (1L << col++)) != 0) {
+            out.writeBoolean(true);
+          } else {
+            out.writeBoolean(false);
+            out.writeLong(longs[i]);
+          }
+        }
+      }
+    }
+  }
+
+  private static long getGcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc
+        : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long getGcTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean gc
+        : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0, gc.getCollectionTime());
+    }
+    return time;
+  }
+
+  private void startTiming(String s) {
+    System.out.println(s);
+    startTime = System.currentTimeMillis();
+  }
+
+  private long stopTiming() {
+    long finishTime = System.currentTimeMillis();
+    long delta = finishTime - startTime;
+    System.out.println("Finished. Time elapsed: " + delta);
+    return delta;
+  }
+
+  /**
+   * Read every row into 'record' and serialize it, as the import
+   * mapper does when writing SequenceFiles.
+   * @return the number of collections that ran.
+   */
+  private long runRecords(String name, Rows rows, Record record)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    long gcCount = getGcCount();
+    long gcTime = getGcTime();
+    startTiming("Reading " + numRows + " rows into " + name);
+    for (int i = 0; i < numRows; i++) {
+      rows.next(i);
+      record.readFields(rows);
+      bytes.reset();
+      record.write(out);
+      sink += bytes.size();
+    }
+    stopTiming();
+
+    long collections = getGcCount() - gcCount;
+    System.out.println("Collections: " + collections + "; GC time: "
+        + (getGcTime() - gcTime) + " ms");
+    return collections;
+  }
+
+  public void run() throws IOException {
+    Rows rows = new Rows(numColumns, Math.min(numRows, 10000));
+    long boxedGcs = 0;
+    long primitiveGcs = 0;
+    for (int pass = 0; pass < numPasses; pass++) {
+      System.out.println("Pass " + pass);
+      boxedGcs = runRecords("boxed fields", rows,
+          new BoxedRecord(numColumns));
+      primitiveGcs = runRecords("primitive fields", rows,
+          new PrimitiveRecord(numColumns));
+    }
+
+    // Report the final (warmed-up) pass.
+    System.out.println("Boxed: " + boxedGcs + " collections; "
+        + "Primitive: " + primitiveGcs + " collections");
+    System.out.println("(checksum " + sink + ")");
+  }
+
+  public static void main(String [] args) throws Exception {
+    int cols = 16;
+    int rows = 20 * 1000 * 1000;
+    if (args.length > 0) {
+      cols = Integer.parseInt(args[0]);
+    }
+    if (args.length > 1) {
+      rows = Integer.parseInt(args[1]);
+    }
+    PrimitiveFieldsPerfTest test = new PrimitiveFieldsPerfTest(cols, rows);
+    test.run();
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.*;
+import org.apache.hadoop.io.*;
+import com.cloudera.sqoop.lib.*;
+
+/**
+ * Compares the throughput of RecordParser and ByteRecordParser when
+ * splitting wide delimited records, as TextExportMapper does.
+ * Each pass parses every field and converts the numeric ones, to
+ * approximate the work done by a generated class's parse(Text) method.
+ *
+ * Run with:
+ * src/scripts/run-perftest.sh RecordParserPerfTest [numColumns] [numRecords]
+ */
+public class RecordParserPerfTest {
+
+  private int numColumns = 40;
+  private int numRecords = 2 * 1000 * 1000;
+  private int numPasses = 5;
+  private DelimiterSet delims = DelimiterSet.DEFAULT_DELIMITERS;
+  private Text [] records;
+  private long startTime;
+
+  // Accumulates parsed values so the JIT cannot discard the work.
+  private long sink;
+
+  public RecordParserPerfTest(int cols, int recs) {
+    this.numColumns = cols;
+    this.numRecords = recs;
+  }
+
+  private void startTiming(String s) {
+    System.out.println(s);
+    startTime = System.currentTimeMillis();
+  }
+
+  private long stopTiming() {
+    long finishTime = System.currentTimeMillis();
+    long delta = finishTime - startTime;
+    System.out.println("Finished. Time elapsed: " + delta);
+    return delta;
+  }
+
+  /**
+   * Make a pool of records alternating between integer, decimal and
+   * string columns.
+   */
+  private void makeRecords() {
+    startTiming("Generating " + numRecords + " records of " + numColumns
+        + " columns");
+    Random r = new Random(42);
+    int poolSize = Math.min(numRecords, 10000);
+    records = new Text[poolSize];
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < poolSize; i++) {
+      sb.setLength(0);
+      for (int c = 0; c < numColumns; c++) {
+        if (c > 0) {
+          sb.append(delims.getFieldsTerminatedBy());
+        }
+
+        switch (c % 3) {
+        case 0:
+          sb.append(r.nextInt());
+          break;
+        case 1:
+          sb.append(r.nextInt(100000)).append('.').append(r.nextInt(100));
+          break;
+        default:
+          sb.append("value-").append(Long.toHexString(r.nextLong()));
+          break;
+        }
+      }
+      records[i] = new Text(sb.toString());
+    }
+    stopTiming();
+  }
+
+  private long runRecordParser() throws Exception {
+    startTiming("Parsing with RecordParser");
+    RecordParser parser = new RecordParser(delims);
+    for (int i = 0; i < numRecords; i++) {
+      List<String> fields = parser.parseRecord(records[i % records.length]);
+      for (int c = 0; c < numColumns; c++) {
+        String field = fields.get(c);
+        switch (c % 3) {
+        case 0:
+          sink += Integer.valueOf(field);
+          break;
+        case 1:
+          sink += new java.math.BigDecimal(field).scale();
+          break;
+        default:
+          sink += field.length();
+          break;
+        }
+      }
+    }
+    return stopTiming();
+  }
+
+  private long runByteRecordParser() throws Exception {
+    startTiming("Parsing with ByteRecordParser");
+    ByteRecordParser parser = new ByteRecordParser(delims);
+    for (int i = 0; i < numRecords; i++) {
+      parser.parseRecord(records[i % records.length]);
+      for (int c = 0; c < numColumns; c++) {
+        switch (c % 3) {
+        case 0:
+          sink += parser.getInt(c);
+          break;
+        case 1:
+          sink += parser.getBigDecimal(c).scale();
+          break;
+        default:
+          sink += parser.getString(c).length();
+          break;
+        }
+      }
+    }
+    return stopTiming();
+  }
+
+  public void run() throws Exception {
+    makeRecords();
+    long charTime = 0;
+    long byteTime = 0;
+    for (int pass = 0; pass < numPasses; pass++) {
+      System.out.println("Pass " + pass);
+      charTime = runRecordParser();
+      byteTime = runByteRecordParser();
+    }
+
+    // Report the final (warmed-up) pass.
+    System.out.println("RecordParser: " + charTime + " ms; "
+        + "ByteRecordParser: " + byteTime + " ms");
+    System.out.println("(checksum " + sink + ")");
+  }
+
+  public static void main(String [] args) throws Exception {
+    int cols = 40;
+    int recs = 2 * 1000 * 1000;
+    if (args.length > 0) {
+      cols = Integer.parseInt(args[0]);
+    }
+    if (args.length > 1) {
+      recs = Integer.parseInt(args[1]);
+    }
+    RecordParserPerfTest test = new RecordParserPerfTest(cols, recs);
+    test.run();
+  }
+}
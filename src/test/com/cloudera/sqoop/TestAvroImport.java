@@ -21,9 +21,11 @@
 package com.cloudera.sqoop;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.avro.Schema;
@@ -40,6 +42,8 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 
+import com.cloudera.sqoop.io.LobFile;
+import com.cloudera.sqoop.orm.AvroSchemaGenerator;
 import com.cloudera.sqoop.testutil.BaseSqoopTestCase;
 import com.cloudera.sqoop.testutil.CommonArgs;
 import com.cloudera.sqoop.testutil.HsqldbTestServer;
@@ -139,12 +143,83 @@ public class TestAvroImport extends ImportJobTestCase {
 
   }
 
-  private DataFileReader<GenericRecord> read(Path filename) throws IOException {
+  public void testInlineLobImport() throws IOException {
+    // HSQLDB does not support BLOB over JDBC, but LONGVARBINARY columns
+    // are imported as BLOBs.
+    String [] types = { "INTEGER", "LONGVARBINARY", };
+    String [] vals = { "1", "'0102'", };
+    createTableWithColTypes(types, vals);
+
+    runImport(getOutputArgv(true));
+
+    Path outputFile = new Path(getTablePath(), "part-m-00000.avro");
+    DataFileReader<GenericRecord> reader = read(outputFile);
+    List<Field> fields = reader.getSchema().getFields();
+    List<Schema> lobTypes = fields.get(1).schema().getTypes();
+    assertEquals(3, lobTypes.size());
+    assertEquals(Schema.Type.BYTES, lobTypes.get(0).getType());
+    assertEquals(AvroSchemaGenerator.EXTERNAL_LOB_RECORD,
+        lobTypes.get(1).getName());
+    assertEquals(Schema.Type.NULL, lobTypes.get(2).getType());
+
+    GenericRecord record1 = reader.next();
+    Object object = record1.get("DATA_COL1");
+    assertTrue(object instanceof ByteBuffer);
+    ByteBuffer b = ((ByteBuffer) object);
+    assertEquals(2, b.remaining());
+    assertEquals((byte) 1, b.get(0));
+    assertEquals((byte) 2, b.get(1));
+  }
+
+  public void testExternalLobImport() throws IOException {
+    String [] types = { "INTEGER", "LONGVARBINARY", };
+    String [] vals = { "1", "'0102'", };
+    createTableWithColTypes(types, vals);
+
+    ArrayList<String> args = new ArrayList<String>(
+        Arrays.asList(getOutputArgv(true)));
+    args.add("--inline-lob-limit");
+    args.add("0");
+    runImport(args.toArray(new String[0]));
+
+    Path outputFile = new Path(getTablePath(), "part-m-00000.avro");
+    DataFileReader<GenericRecord> reader = read(outputFile);
+    GenericRecord record1 = reader.next();
+    Object object = record1.get("DATA_COL1");
+    assertTrue(object instanceof GenericRecord);
+    GenericRecord lobRef = (GenericRecord) object;
+    assertEquals(2L, lobRef.get(
+        AvroSchemaGenerator.EXTERNAL_LOB_LENGTH_FIELD));
+
+    // The reference locates the data in a LobFile alongside the Avro file.
+    Path lobFile = new Path(getTablePath(),
+        lobRef.get(AvroSchemaGenerator.EXTERNAL_LOB_FILE_FIELD).toString());
+    long offset = (Long) lobRef.get(
+        AvroSchemaGenerator.EXTERNAL_LOB_OFFSET_FIELD);
+    LobFile.Reader lobReader = LobFile.open(lobFile, getLocalConf());
+    try {
+      lobReader.seek(offset);
+      assertTrue(lobReader.next());
+      InputStream is = lobReader.readBlobRecord();
+      assertEquals(1, is.read());
+      assertEquals(2, is.read());
+      assertEquals(-1, is.read());
+      is.close();
+    } finally {
+      lobReader.close();
+    }
+  }
+
+  private Configuration getLocalConf() {
     Configuration conf = new Configuration();
     if (!BaseSqoopTestCase.isOnPhysicalCluster()) {
       conf.set(CommonArgs.FS_DEFAULT_NAME, CommonArgs.LOCAL_FS);
     }
-    FsInput fsInput = new FsInput(filename, conf);
+    return conf;
+  }
+
+  private DataFileReader<GenericRecord> read(Path filename) throws IOException {
+    FsInput fsInput = new FsInput(filename, getLocalConf());
     DatumReader<GenericRecord> datumReader =
       new GenericDatumReader<GenericRecord>();
     return new DataFileReader<GenericRecord>(fsInput, datumReader);
@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -46,9 +47,14 @@ import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
 import org.apache.hadoop.io.compress.Decompressor;
 import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.SimpleLayout;
+import org.apache.log4j.WriterAppender;
 
 import com.cloudera.sqoop.lib.RecordParser;
 import com.cloudera.sqoop.lib.SqoopRecord;
+import com.cloudera.sqoop.mapreduce.db.StagingTableMigrator;
 import com.cloudera.sqoop.testutil.ExportJobTestCase;
 import com.cloudera.sqoop.tool.CodeGenTool;
 import com.cloudera.sqoop.util.ClassLoaderStack;
@@ -530,6 +536,18 @@ public class TestExport extends ExportJobTestCase {
     verifyExport(TOTAL_RECORDS);
   }
 
+  /**
+   * Ensure that each record is exported exactly once when a mapper writes
+   * over several connections.
+   */
+  public void testMultiConnectionExport() throws IOException, SQLException {
+    final int TOTAL_RECORDS = 40;
+    createTextFile(0, TOTAL_RECORDS, true);
+    createTable();
+    runExport(getArgv(true, 5, 2, "--connections-per-mapper", "2"));
+    verifyExport(TOTAL_RECORDS);
+  }
+
   /**
    * Ensure that when we don't force a commit with a statement cap,
    * it happens anyway.
@@ -542,6 +560,59 @@ public class TestExport extends ExportJobTestCase {
     verifyExport(TOTAL_RECORDS);
   }
 
+  /**
+   * Ensure that records refused by the database are written to the
+   * reject directory, and that the rest of the records are exported.
+   */
+  public void testMaxRejects() throws IOException, SQLException {
+    final int TOTAL_RECORDS = 20;
+    createTextFile(0, TOTAL_RECORDS, false);
+    createTable();
+
+    // These rows are already present, so exporting them again violates
+    // the primary key.
+    Connection conn = getConnection();
+    PreparedStatement statement = conn.prepareStatement(
+        "INSERT INTO " + getTableName() + " VALUES (?, ?)");
+    try {
+      for (int id : new int [] { 3, 7 }) {
+        statement.setInt(1, id);
+        statement.setString(2, getMsgPrefix() + id);
+        statement.executeUpdate();
+      }
+      conn.commit();
+    } finally {
+      statement.close();
+    }
+
+    Configuration conf = new Configuration();
+    if (!BaseSqoopTestCase.isOnPhysicalCluster()) {
+      conf.set(CommonArgs.FS_DEFAULT_NAME, CommonArgs.LOCAL_FS);
+    }
+    FileSystem fs = FileSystem.get(conf);
+    Path rejectDir = new Path(getTablePath().toString() + "_rejects");
+    fs.delete(rejectDir, true);
+
+    runExport(getArgv(true, 5, 2, "--max-rejects", "2"));
+    verifyExport(TOTAL_RECORDS);
+
+    BufferedReader r = new BufferedReader(new InputStreamReader(
+        fs.open(new Path(rejectDir, "rejects-m-00000"))));
+    try {
+      List<String> rejects = new ArrayList<String>();
+      String line;
+      while ((line = r.readLine()) != null) {
+        rejects.add(line);
+      }
+      assertEquals(2, rejects.size());
+      assertTrue(rejects.get(0).startsWith("3"));
+      assertTrue(rejects.get(1).startsWith("7"));
+    } finally {
+      r.close();
+      fs.delete(rejectDir, true);
+    }
+  }
+
   /** Run 2 mappers, make sure all records load in correctly. */
   public void testMultiMapTextExport() throws IOException, SQLException {
 
@@ -577,6 +648,46 @@ public class TestExport extends ExportJobTestCase {
     verifyExport(RECORDS_PER_MAP * NUM_FILES);
   }
 
+  /**
+   * Run 2 mappers with staging enabled, and move the staged records to
+   * the destination table in several chunks.
+   */
+  public void testMultiMapTextExportWithChunkedStaging()
+  throws IOException, SQLException {
+
+    final int RECORDS_PER_MAP = 10;
+    final int NUM_FILES = 2;
+
+    for (int f = 0; f < NUM_FILES; f++) {
+      createTextFile(f, RECORDS_PER_MAP, false);
+    }
+
+    createTable();
+    createStagingTable();
+
+    // Capture the migrator's log, to check that it moved the rows in chunks
+    // rather than falling back to a single transaction.
+    StringWriter migratorLog = new StringWriter();
+    WriterAppender appender = new WriterAppender(new SimpleLayout(),
+        migratorLog);
+    Logger logger = Logger.getLogger(StagingTableMigrator.class);
+    Level oldLevel = logger.getLevel();
+    logger.setLevel(Level.INFO);
+    logger.addAppender(appender);
+    try {
+      runExport(getArgv(true, 10, 10, "--staging-table",
+          getStagingTableName(), "--staging-migration-chunks", "4"));
+    } finally {
+      logger.removeAppender(appender);
+      logger.setLevel(oldLevel);
+    }
+
+    verifyExport(RECORDS_PER_MAP * NUM_FILES);
+    assertTrue("Staging table was not migrated in chunks: " + migratorLog,
+        migratorLog.toString().contains("Migrated "
+        + (RECORDS_PER_MAP * NUM_FILES) + " records from"));
+  }
+
   /** Export some rows from a SequenceFile, make sure they import correctly. */
   public void testSequenceFileExport() throws Exception {
 
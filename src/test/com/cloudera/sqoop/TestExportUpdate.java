@@ -602,6 +602,88 @@ public class TestExportUpdate extends ExportJobTestCase {
     verifyRow("A", "19", "19", "foo38", "38");
   }
 
+  private void runPartitionedUpdate(String partitioning) throws Exception {
+    // Updates are shuffled to two writers by the update key.
+    populateDatabase(20);
+    createUpdateFiles(2, 10, 0);
+    runExport(getArgv(true, 2, 2, "-m", "2", "--update-key", "A",
+        "--update-partitioning", partitioning));
+    verifyRowCount(20);
+    verifyRow("A", "0", "0", "foo0", "0");
+    verifyRow("A", "9", "9", "foo18", "18");
+    verifyRow("A", "10", "10", "foo20", "20");
+    verifyRow("A", "19", "19", "foo38", "38");
+  }
+
+  public void testHashPartitionedUpdate() throws Exception {
+    runPartitionedUpdate("hash");
+  }
+
+  public void testRangePartitionedUpdate() throws Exception {
+    runPartitionedUpdate("range");
+  }
+
+  public void testStringColRangePartitionedUpdate() throws Exception {
+    // Range partitioning falls back to hashing for a string key.
+    populateDatabase(10);
+    createUpdateFiles(1, 10, 1);
+    runExport(getArgv(true, 2, 2, "-m", "2", "--update-key", "B",
+        "--update-partitioning", "range"));
+    verifyRowCount(10);
+    verifyRow("B", "'foo0'", "0", "foo0", "0");
+    verifyRow("B", "'foo9'", "18", "foo9", "18");
+  }
+
+  /**
+   * Create an empty staging table with the columns of the table to update.
+   * @return the name of the staging table.
+   */
+  private String createStagingTable() throws SQLException {
+    String stagingTable = getTableName() + "_STAGE";
+    Connection conn = getConnection();
+    PreparedStatement statement = conn.prepareStatement(
+        "CREATE TABLE " + stagingTable
+        + " (A INT NOT NULL, B VARCHAR(32), C INT)");
+    try {
+      statement.executeUpdate();
+      conn.commit();
+    } finally {
+      statement.close();
+    }
+    return stagingTable;
+  }
+
+  public void testStagedUpdate() throws Exception {
+    // Update a few rows in the middle of the table by way of a staging
+    // table, ignoring updates for rows which do not exist.
+    populateDatabase(10);
+    String stagingTable = createStagingTable();
+    createUpdateFiles(2, 4, 0, 3, 8);
+    runExport(getArgv(true, 2, 2, "-m", "2", "--update-key", "A",
+        "--staging-table", stagingTable));
+    verifyRowCount(10);
+
+    verifyRow("A", "2", "2", "foo2", "2");
+    verifyRow("A", "3", "3", "foo6", "6");
+    verifyRow("A", "6", "6", "foo12", "12");
+    verifyRow("A", "7", "7", "foo7", "7");
+    verifyRow("A", "9", "9", "foo18", "18");
+  }
+
+  public void testStagedUpsert() throws Exception {
+    // Rows which do not exist are inserted from the staging table.
+    populateDatabase(10);
+    String stagingTable = createStagingTable();
+    createUpdateFiles(1, 10, 0, 5);
+    runExport(getArgv(true, 2, 2, "-m", "1", "--update-key", "A",
+        "--update-mode", "allowinsert", "--staging-table", stagingTable));
+    verifyRowCount(15);
+
+    verifyRow("A", "4", "4", "foo4", "4");
+    verifyRow("A", "5", "5", "foo10", "10");
+    verifyRow("A", "14", "14", "foo28", "28");
+  }
+
   public void testSubsetUpdate() throws Exception {
     // Update only a few rows in the middle of the table.
     populateDatabase(10);
@@ -25,6 +25,7 @@ import java.util.Properties;
 import junit.framework.TestCase;
 
 import com.cloudera.sqoop.lib.DelimiterSet;
+import com.cloudera.sqoop.tool.ExportTool;
 import com.cloudera.sqoop.tool.ImportTool;
 
 /**
@@ -238,6 +239,36 @@ public class TestSqoopOptions extends TestCase {
     assertEquals(4, opts.getNumMappers());
   }
 
+  private SqoopOptions parseExport(String connsPerMapper)
+      throws Exception {
+    String [] args = {
+      "--connect", "jdbc:hsqldb:mem:exportopts",
+      "--table", "t",
+      "--export-dir", "d",
+      "--connections-per-mapper", connsPerMapper,
+    };
+    ExportTool exportTool = new ExportTool();
+    SqoopOptions opts = exportTool.parseArguments(args, null, null, false);
+    exportTool.validateOptions(opts);
+    return opts;
+  }
+
+  public void testBadConnectionsPerMapper() throws Exception {
+    for (String conns : new String [] { "0", "-1" }) {
+      try {
+        parseExport(conns);
+        fail("Expected InvalidOptionsException for " + conns);
+      } catch (SqoopOptions.InvalidOptionsException ioe) {
+        // expected.
+      }
+    }
+  }
+
+  public void testGoodConnectionsPerMapper() throws Exception {
+    SqoopOptions opts = parseExport("2");
+    assertEquals(2, opts.getConnectionsPerMapper());
+  }
+
   public void testHivePartitionParams() throws Exception {
     String[] args = {
         "--hive-partition-key", "ds",
@@ -26,6 +26,7 @@ import junit.framework.TestSuite;
 
 import com.cloudera.sqoop.manager.DirectMySQLTest;
 import com.cloudera.sqoop.manager.DirectMySQLExportTest;
+import com.cloudera.sqoop.manager.DirectPostgresqlExportTest;
 import com.cloudera.sqoop.manager.JdbcMySQLExportTest;
 import com.cloudera.sqoop.manager.MySQLAuthTest;
 import com.cloudera.sqoop.manager.MySQLCompatTest;
@@ -56,6 +57,7 @@ public final class ThirdPartyTests extends TestCase {
     suite.addTestSuite(OracleManagerTest.class);
     suite.addTestSuite(OracleCompatTest.class);
     suite.addTestSuite(PostgresqlTest.class);
+    suite.addTestSuite(DirectPostgresqlExportTest.class);
 
     return suite;
   }
@@ -21,6 +21,7 @@
 package com.cloudera.sqoop.io;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -28,6 +29,8 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -434,6 +437,42 @@ public class TestLobFile extends TestCase {
     reader.close();
   }
 
+  public void testRandomAccess() throws Exception {
+    // Visit records spread over many IndexSegments in a scattered order,
+    // as dereferencing the LobRefs in a table would.
+
+    Path p = new Path(TEMP_BASE_DIR, "randomaccess.lob");
+
+    String [] records = new String[50];
+    for (int i = 0; i < records.length; i++) {
+      records[i] = "this is record number " + i;
+    }
+
+    long [] offsets = writeClobFile(p, null, records);
+
+    LobFile.Reader reader = LobFile.open(p, conf);
+    for (int i = 0; i < records.length; i++) {
+      int target = (i * 17) % records.length;
+      reader.seek(offsets[target]);
+      assertEquals(offsets[target], reader.tell());
+      verifyNextRecord(reader, target, records[target]);
+      assertEquals(offsets[target], reader.getRecordOffset());
+    }
+
+    // Once a record has been consumed, the reader is positioned at the
+    // following one, so sequential access needs no seek.
+    reader.seek(offsets[10]);
+    verifyNextRecord(reader, 10, records[10]);
+    assertEquals(offsets[11], reader.tell());
+    verifyNextRecord(reader, 11, records[11]);
+
+    // Seeking past the last record leaves nothing to read.
+    reader.seek(offsets[records.length - 1] + 1);
+    assertFalse(reader.next());
+
+    reader.close();
+  }
+
   /**
    * Verifies that a record to be read from a lob file has
    * as many bytes as we expect, and that the bytes are what we
@@ -576,5 +615,160 @@ public class TestLobFile extends TestCase {
       LOG.info("Got unsupported codec exception for lzo; expected -- good.");
     }
   }
+
+  /**
+   * Write a BLOB record holding the given bytes.
+   * @return the offset at which the record can be read.
+   */
+  private long writeBytes(LobFile.Writer writer, byte [] data)
+      throws Exception {
+    OutputStream os = writer.writeBlobRecord(data.length);
+    os.write(data);
+    os.close();
+    return writer.getRecordOffset();
+  }
+
+  /**
+   * Read all the bytes of the next record in the LobFile.
+   */
+  private byte [] readNextBytes(LobFile.Reader reader) throws Exception {
+    assertTrue(reader.next());
+    InputStream is = reader.readBlobRecord();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte [] buf = new byte[1024];
+    int bytesRead;
+    while ((bytesRead = is.read(buf)) != -1) {
+      bytes.write(buf, 0, bytesRead);
+    }
+    is.close();
+    return bytes.toByteArray();
+  }
+
+  public void testDuplicateRecords() throws Exception {
+    // Identical records are stored once, and both are read through the
+    // same offset.
+
+    Path p = new Path(TEMP_BASE_DIR, "duplicates.lob");
+    String [] records = {
+      "this record appears twice",
+      "this one appears only once",
+      "this record appears twice",
+    };
+
+    long [] offsets = new long[records.length];
+    LobFile.Writer writer = LobFile.create(p, conf, true, CodecMap.DEFLATE);
+    for (int i = 0; i < records.length; i++) {
+      Writer w = writer.writeClobRecord(records[i].length());
+      w.write(records[i]);
+      w.close();
+      offsets[i] = writer.getRecordOffset();
+    }
+    writer.close();
+
+    assertEquals(offsets[0], offsets[2]);
+    assertTrue(offsets[0] != offsets[1]);
+
+    // Only the two distinct records are in the file.
+    verifyClobFile(p, records[0], records[1]);
+
+    LobFile.Reader reader = LobFile.open(p, conf);
+    reader.seek(offsets[2]);
+    verifyNextRecord(reader, 0, records[2]);
+    reader.close();
+  }
+
+  public void testIncompressibleRecord() throws Exception {
+    // A record which would grow when compressed is stored as-is, while
+    // other records in the same file are still compressed.
+
+    Path p = new Path(TEMP_BASE_DIR, "incompressible.lob");
+    byte [] noise = new byte[4096];
+    new Random(42).nextBytes(noise);
+    byte [] repetitive = new byte[4096];
+    Arrays.fill(repetitive, (byte) 'x');
+
+    LobFile.Writer writer = LobFile.create(p, conf, false, CodecMap.DEFLATE);
+    long noiseStart = writeBytes(writer, noise);
+    long repetitiveStart = writeBytes(writer, repetitive);
+    long end = writer.tell();
+    writer.close();
+
+    // The record header takes 21 bytes; compressing the noise would have
+    // added a further 11 bytes or so of framing.
+    assertTrue(repetitiveStart - noiseStart < noise.length + 24);
+    assertTrue(end - repetitiveStart < repetitive.length / 10);
+
+    LobFile.Reader reader = LobFile.open(p, conf);
+    assertTrue(Arrays.equals(noise, readNextBytes(reader)));
+    assertTrue(Arrays.equals(repetitive, readNextBytes(reader)));
+    assertFalse(reader.next());
+    reader.close();
+  }
+
+  public void testSpooledRecords() throws Exception {
+    // Records too large to buffer in memory are spooled to a local file,
+    // and are still deduplicated and stored as-is if incompressible.
+
+    conf.setInt(LobFile.MAX_BUFFERED_RECORD_KEY, 100);
+    Path p = new Path(TEMP_BASE_DIR, "spooled.lob");
+    byte [] small = new byte[50];
+    byte [] large = new byte[1000];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte) (i % 7);
+    }
+    byte [] noise = new byte[4096];
+    new Random(42).nextBytes(noise);
+
+    LobFile.Writer writer = LobFile.create(p, conf, false, CodecMap.DEFLATE);
+    long first = writeBytes(writer, large);
+    writeBytes(writer, small);
+    long second = writeBytes(writer, large);
+    long noiseStart = writer.tell();
+    assertEquals(noiseStart, writeBytes(writer, noise));
+    long end = writer.tell();
+    writer.close();
+
+    assertEquals(first, second);
+    assertTrue(end - noiseStart < noise.length + 24);
+
+    LobFile.Reader reader = LobFile.open(p, conf);
+    assertTrue(Arrays.equals(large, readNextBytes(reader)));
+    assertTrue(Arrays.equals(small, readNextBytes(reader)));
+    assertTrue(Arrays.equals(noise, readNextBytes(reader)));
+    assertFalse(reader.next());
+
+    reader.seek(second);
+    assertTrue(Arrays.equals(large, readNextBytes(reader)));
+    reader.close();
+  }
+
+  public void testVersion0File() throws Exception {
+    // Files written in the original format can still be read.
+
+    Path p = new Path(TEMP_BASE_DIR, "version0.lob");
+    String [] records = {
+      "a record in a version 0 file",
+      "another record in a version 0 file",
+    };
+
+    long [] offsets = new long[records.length];
+    LobFile.Writer writer = LobFile.create(p, conf, true, CodecMap.DEFLATE,
+        4, 0);
+    for (int i = 0; i < records.length; i++) {
+      Writer w = writer.writeClobRecord(records[i].length());
+      w.write(records[i]);
+      w.close();
+      writer.finishRecord();
+      offsets[i] = writer.getRecordOffset();
+    }
+    writer.close();
+
+    verifyClobFile(p, records);
+
+    LobFile.Reader reader = LobFile.open(p, conf);
+    reader.seek(offsets[1]);
+    verifyNextRecord(reader, 1, records[1]);
+    reader.close();
+  }
 }
 
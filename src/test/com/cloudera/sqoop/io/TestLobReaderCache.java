@@ -0,0 +1,157 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.io;
+
+import java.io.File;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Test the bounds and eviction of the LobReaderCache.
+ */
+public class TestLobReaderCache extends TestCase {
+
+  public static final Path TEMP_BASE_DIR;
+
+  static {
+    String tmpDir = System.getProperty("test.build.data", "/tmp/");
+    if (!tmpDir.endsWith(File.separator)) {
+      tmpDir = tmpDir + File.separator;
+    }
+
+    TEMP_BASE_DIR = new Path(new Path(tmpDir), "lobcachetest");
+  }
+
+  private Configuration conf;
+  private FileSystem fs;
+  private Path file1;
+  private Path file2;
+
+  public void setUp() throws Exception {
+    conf = new Configuration();
+    conf.set("fs.default.name", "file:///");
+
+    fs = FileSystem.getLocal(conf);
+    fs.mkdirs(TEMP_BASE_DIR);
+    file1 = writeLobFile("cache1.lob");
+    file2 = writeLobFile("cache2.lob");
+  }
+
+  private Path writeLobFile(String name) throws Exception {
+    Path p = new Path(TEMP_BASE_DIR, name);
+    if (fs.exists(p)) {
+      fs.delete(p, false);
+    }
+
+    LobFile.Writer writer = LobFile.create(p, conf, true);
+    Writer w = writer.writeClobRecord(5);
+    w.write("hello");
+    w.close();
+    writer.close();
+    return p;
+  }
+
+  public void testReuse() throws Exception {
+    LobReaderCache cache = new LobReaderCache(4, 2, 60000);
+
+    // Two concurrent users of the same file each get a reader.
+    LobFile.Reader r1 = cache.get(file1, conf);
+    LobFile.Reader r2 = cache.get(file1, conf);
+    assertNotSame(r1, r2);
+    assertEquals(2, cache.getMissCount());
+
+    cache.recycle(r1);
+    cache.recycle(r2);
+    assertEquals(2, cache.size());
+
+    // The most recently returned reader is handed out first.
+    assertSame(r2, cache.get(file1, conf));
+    assertSame(r1, cache.get(file1, conf));
+    assertEquals(2, cache.getHitCount());
+    assertEquals(0, cache.size());
+
+    r1.close();
+    r2.close();
+  }
+
+  public void testReadersPerFile() throws Exception {
+    LobReaderCache cache = new LobReaderCache(4, 1, 60000);
+    LobFile.Reader r1 = cache.get(file1, conf);
+    LobFile.Reader r2 = cache.get(file1, conf);
+
+    cache.recycle(r1);
+    cache.recycle(r2);
+    assertEquals(1, cache.size());
+    assertFalse(r1.isClosed());
+    assertTrue(r2.isClosed());
+    assertEquals(1, cache.getEvictionCount());
+
+    cache.clear();
+    assertTrue(r1.isClosed());
+  }
+
+  public void testLeastRecentlyUsed() throws Exception {
+    LobReaderCache cache = new LobReaderCache(2, 2, 60000);
+    LobFile.Reader r1 = cache.get(file1, conf);
+    LobFile.Reader r2 = cache.get(file2, conf);
+    LobFile.Reader r3 = cache.get(file2, conf);
+
+    cache.recycle(r1);
+    cache.recycle(r2);
+    cache.recycle(r3);
+
+    // The first reader returned is closed to make room.
+    assertEquals(2, cache.size());
+    assertTrue(r1.isClosed());
+    assertFalse(r2.isClosed());
+    assertFalse(r3.isClosed());
+    assertEquals(1, cache.getEvictionCount());
+
+    LobFile.Reader r4 = cache.get(file1, conf);
+    assertNotSame(r1, r4);
+    assertEquals(4, cache.getMissCount());
+    r4.close();
+    cache.clear();
+  }
+
+  public void testIdleExpiry() throws Exception {
+    LobReaderCache cache = new LobReaderCache(4, 2, 60000);
+    LobFile.Reader r1 = cache.get(file1, conf);
+    cache.recycle(r1);
+
+    // A reader idle for longer than the configured time is closed.
+    Thread.sleep(20);
+    Configuration idleConf = new Configuration(conf);
+    idleConf.setLong(LobReaderCache.MAX_IDLE_MILLIS_KEY, 10);
+    LobFile.Reader r2 = cache.get(file1, idleConf);
+    assertNotSame(r1, r2);
+    assertTrue(r1.isClosed());
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(0, cache.getHitCount());
+
+    r2.close();
+  }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.lib;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.io.Text;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that the byte-level record parser agrees with RecordParser.
+ */
+public class TestByteRecordParser extends TestCase {
+
+  private static final DelimiterSet QUOTED =
+      new DelimiterSet(',', '\n', '\"', '\\', false);
+
+  private List<String> fields(ByteRecordParser parser, String record)
+      throws RecordParser.ParseError {
+    int count = parser.parseRecord(new Text(record));
+    List<String> out = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      out.add(parser.getString(i));
+    }
+    return out;
+  }
+
+  /**
+   * Parse 'record' with both parsers and check that they agree.
+   */
+  private void assertSameFields(DelimiterSet delims, String record)
+      throws RecordParser.ParseError {
+    List<String> expected = new ArrayList<String>(
+        new RecordParser(delims).parseRecord(record));
+    List<String> actual = fields(new ByteRecordParser(delims), record);
+    assertEquals("Mismatch parsing [" + record + "]", expected, actual);
+  }
+
+  public void testMatchesRecordParser() throws RecordParser.ParseError {
+    String [] records = {
+      "",
+      "\n",
+      "the field",
+      "the field\n",
+      "\"the field\"\n",
+      "\"the ,\nfield\"",
+      "\"the \\\"field\"",
+      "the \\,field",
+      "the \\\\field",
+      "field1,field2\n",
+      "\"field1\",field2\n",
+      "field1,\"field2\"",
+      ",",
+      ",\n",
+      ",,\n",
+      ",foo,\n",
+      ",foo,",
+      "foo,",
+      "foo,bar\nbaz",
+      "\nbaz",
+      "\\\nbaz",
+      "a\\,b\\,c,d\\\\e,\"f\\\"g\"",
+    };
+
+    for (String record : records) {
+      assertSameFields(QUOTED, record);
+      assertSameFields(DelimiterSet.DEFAULT_DELIMITERS, record);
+      assertSameFields(DelimiterSet.HIVE_DELIMITERS, record);
+    }
+  }
+
+  public void testEofIsEor() throws RecordParser.ParseError {
+    DelimiterSet delims = new DelimiterSet(',', ',', '\"', '\\', false);
+    assertSameFields(delims, "three,different,fields");
+    assertSameFields(delims, "three,\"different\",fields");
+  }
+
+  public void testMultiByteChars() throws RecordParser.ParseError {
+    assertSameFields(QUOTED, "caf\u00e9,\u65e5\u672c\\,\u8a9e,\"\u00fc,\"\n");
+  }
+
+  public void testWordScanning() throws RecordParser.ParseError {
+    // Put delimiters at every offset within a word, with fields both
+    // shorter and longer than a word.
+    StringBuilder sb = new StringBuilder();
+    for (int len = 0; len < 40; len++) {
+      for (int i = 0; i < len; i++) {
+        sb.append((char) ('a' + (i % 26)));
+      }
+      sb.append(len % 2 == 0 ? ',' : '\001');
+    }
+    sb.append("tail\nignored,fields");
+
+    String record = sb.toString();
+    assertSameFields(DelimiterSet.DEFAULT_DELIMITERS, record);
+    assertSameFields(DelimiterSet.HIVE_DELIMITERS, record);
+    assertSameFields(DelimiterSet.DEFAULT_DELIMITERS, "\n" + record);
+    assertSameFields(DelimiterSet.DEFAULT_DELIMITERS,
+        "0123456789abcdef0123456789abcdef");
+  }
+
+  public void testWordScanningOffset() throws RecordParser.ParseError {
+    ByteRecordParser parser = new ByteRecordParser(
+        DelimiterSet.DEFAULT_DELIMITERS);
+    byte [] buf = ByteRecordParser.toUtf8(
+        "xxxfirst-field-is-long,second,third-field-is-longer\nyyy");
+    assertEquals(3, parser.parseRecord(buf, 3, buf.length - 6));
+    assertEquals("first-field-is-long", parser.getString(0));
+    assertEquals("second", parser.getString(1));
+    assertEquals("third-field-is-longer", parser.getString(2));
+  }
+
+  public void testRepeatedParse() throws RecordParser.ParseError {
+    ByteRecordParser parser = new ByteRecordParser(QUOTED);
+    List<String> first = fields(parser, "a\\,b,\"c\"");
+    assertEquals(2, first.size());
+    assertEquals("a,b", first.get(0));
+    assertEquals("c", first.get(1));
+
+    List<String> second = fields(parser, "foo,bar,baz\n");
+    assertEquals(3, second.size());
+    assertEquals("foo", second.get(0));
+    assertEquals("baz", second.get(2));
+  }
+
+  public void testManyFields() throws RecordParser.ParseError {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(i);
+    }
+
+    ByteRecordParser parser = new ByteRecordParser(QUOTED);
+    assertEquals(100, parser.parseRecord(new Text(sb.toString())));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, parser.getInt(i));
+    }
+  }
+
+  public void testRequiredQuotes() {
+    ByteRecordParser parser = new ByteRecordParser(
+        new DelimiterSet(',', '\n', '\"', '\\', true));
+    try {
+      parser.parseRecord(new Text("\"field1\",field2"));
+      fail("Expected parse error for required quotes");
+    } catch (RecordParser.ParseError pe) {
+      // ok. expected.
+    }
+  }
+
+  public void testExpectedDelimiter() {
+    ByteRecordParser parser = new ByteRecordParser(QUOTED);
+    try {
+      parser.parseRecord(new Text("\"field1\"x,field2"));
+      fail("Expected parse error for text after encloser");
+    } catch (RecordParser.ParseError pe) {
+      // ok. expected.
+    }
+  }
+
+  public void testNumericFields() throws RecordParser.ParseError {
+    ByteRecordParser parser = new ByteRecordParser(QUOTED);
+    parser.parseRecord(new Text("42,-7,9223372036854775807,\"123\","
+        + "3.25,-0.50,12345678901234567890.5,1e3"));
+    assertEquals(42, parser.getInt(0));
+    assertEquals(-7, parser.getInt(1));
+    assertEquals(-7L, parser.getLong(1));
+    assertEquals(Long.MAX_VALUE, parser.getLong(2));
+    assertEquals(123, parser.getInt(3));
+    assertEquals(new BigDecimal("3.25"), parser.getBigDecimal(4));
+    assertEquals(new BigDecimal("-0.50"), parser.getBigDecimal(5));
+    assertEquals(new BigDecimal("12345678901234567890.5"),
+        parser.getBigDecimal(6));
+    assertEquals(new BigDecimal("1e3"), parser.getBigDecimal(7));
+  }
+
+  public void testBadNumbers() throws RecordParser.ParseError {
+    ByteRecordParser parser = new ByteRecordParser(QUOTED);
+    parser.parseRecord(new Text("abc,2147483648,-,"));
+    try {
+      parser.getInt(0);
+      fail("Expected NumberFormatException");
+    } catch (NumberFormatException nfe) {
+      // ok. expected.
+    }
+
+    try {
+      parser.getInt(1);
+      fail("Expected NumberFormatException for int overflow");
+    } catch (NumberFormatException nfe) {
+      // ok. expected.
+    }
+
+    assertEquals(2147483648L, parser.getLong(1));
+
+    try {
+      parser.getLong(2);
+      fail("Expected NumberFormatException");
+    } catch (NumberFormatException nfe) {
+      // ok. expected.
+    }
+
+    try {
+      parser.getBigDecimal(3);
+      fail("Expected NumberFormatException");
+    } catch (NumberFormatException nfe) {
+      // ok. expected.
+    }
+  }
+
+  public void testFieldEquals() throws RecordParser.ParseError {
+    ByteRecordParser parser = new ByteRecordParser(QUOTED);
+    parser.parseRecord(new Text("null,\\N,,nul"));
+    byte [] nullBytes = ByteRecordParser.toUtf8("null");
+    assertTrue(parser.fieldEquals(0, nullBytes));
+    assertTrue(parser.fieldEquals(1, ByteRecordParser.toUtf8("N")));
+    assertEquals(0, parser.getFieldLength(2));
+    assertFalse(parser.fieldEquals(3, nullBytes));
+  }
+
+  public void testMissingField() throws RecordParser.ParseError {
+    ByteRecordParser parser = new ByteRecordParser(QUOTED);
+    parser.parseRecord(new Text("a,b"));
+    try {
+      parser.getString(2);
+      fail("Expected NoSuchElementException");
+    } catch (NoSuchElementException nsee) {
+      // ok. expected.
+    }
+  }
+
+  public void testSupports() {
+    assertTrue(ByteRecordParser.supports(DelimiterSet.DEFAULT_DELIMITERS));
+    assertTrue(ByteRecordParser.supports(DelimiterSet.MYSQL_DELIMITERS));
+    assertFalse(ByteRecordParser.supports(
+        new DelimiterSet('\u00fe', '\n', '\000', '\000', false)));
+  }
+}
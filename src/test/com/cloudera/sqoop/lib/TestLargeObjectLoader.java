@@ -23,9 +23,13 @@ package com.cloudera.sqoop.lib;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+import com.cloudera.sqoop.io.CodecMap;
+import com.cloudera.sqoop.io.LobFile;
 import com.cloudera.sqoop.testutil.BaseSqoopTestCase;
 import com.cloudera.sqoop.testutil.CommonArgs;
 import junit.framework.TestCase;
@@ -130,5 +134,165 @@ public class TestLargeObjectLoader extends TestCase {
       assertEquals(blobData[i], buf[i]);
     }
   }
-}
 
+  public void testLobsLargerThanTransferBuffer()
+      throws IOException, InterruptedException, SQLException {
+    // LOBs which span several transfer buffers are read intact, whether
+    // they are stored inline or externally.
+    conf.setInt(LargeObjectLoader.TRANSFER_BUFFER_SIZE_KEY, 5);
+    ResultSet resultSet = new MockResultSet();
+    BlobRef blob = loader.readBlobRef(0, resultSet);
+    assertFalse(blob.isExternal());
+    byte [] blobData = MockResultSet.blobData();
+    byte [] data = blob.getData();
+    assertEquals(blobData.length, data.length);
+    for (int i = 0; i < data.length; i++) {
+      assertEquals(blobData[i], data[i]);
+    }
+
+    ClobRef clob = loader.readClobRef(0, resultSet);
+    assertFalse(clob.isExternal());
+    assertEquals(MockResultSet.CLOB_DATA, clob.toString());
+
+    conf.setLong(LargeObjectLoader.MAX_INLINE_LOB_LEN_KEY, 12);
+    blob = loader.readBlobRef(0, resultSet);
+    assertTrue(blob.isExternal());
+    clob = loader.readClobRef(0, resultSet);
+    assertTrue(clob.isExternal());
+    loader.close();
+    mapContext.getOutputCommitter().commitTask(mapContext);
+
+    InputStream is = blob.getDataStream(conf, outDir);
+    byte [] buf = new byte[4096];
+    int bytes = is.read(buf, 0, 4096);
+    is.close();
+    assertEquals(blobData.length, bytes);
+    for (int i = 0; i < bytes; i++) {
+      assertEquals(blobData[i], buf[i]);
+    }
+
+    Reader r = clob.getDataStream(conf, outDir);
+    char [] chars = new char[4096];
+    int charCount = r.read(chars, 0, 4096);
+    r.close();
+    assertEquals(MockResultSet.CLOB_DATA, new String(chars, 0, charCount));
+  }
+
+  public void testIdenticalExternalLobs()
+      throws IOException, InterruptedException, SQLException {
+    // External LOBs longer than the LobFile writer buffers in memory are
+    // still stored once if they are identical.
+    conf.setLong(LargeObjectLoader.MAX_INLINE_LOB_LEN_KEY, 4);
+    conf.setInt(LobFile.MAX_BUFFERED_RECORD_KEY, 8);
+    conf.set(LargeObjectLoader.LOB_COMPRESSION_CODEC_KEY, CodecMap.DEFLATE);
+    ResultSet resultSet = new MockResultSet();
+    BlobRef first = loader.readBlobRef(0, resultSet);
+    BlobRef second = loader.readBlobRef(0, resultSet);
+    ClobRef firstClob = loader.readClobRef(0, resultSet);
+    ClobRef secondClob = loader.readClobRef(0, resultSet);
+    assertTrue(first.isExternal());
+    assertEquals(first.getFileName(), second.getFileName());
+    assertEquals(first.getOffset(), second.getOffset());
+    assertTrue(firstClob.isExternal());
+    assertEquals(firstClob.getFileName(), secondClob.getFileName());
+    assertEquals(firstClob.getOffset(), secondClob.getOffset());
+    loader.close();
+    mapContext.getOutputCommitter().commitTask(mapContext);
+
+    byte [] blobData = MockResultSet.blobData();
+    InputStream is = second.getDataStream(conf, outDir);
+    byte [] buf = new byte[4096];
+    int bytes = is.read(buf, 0, 4096);
+    is.close();
+    assertEquals(blobData.length, bytes);
+    for (int i = 0; i < bytes; i++) {
+      assertEquals(blobData[i], buf[i]);
+    }
+
+    Reader r = secondClob.getDataStream(conf, outDir);
+    char [] chars = new char[4096];
+    int charCount = r.read(chars, 0, 4096);
+    r.close();
+    assertEquals(MockResultSet.CLOB_DATA, new String(chars, 0, charCount));
+  }
+
+  /**
+   * A ResultSet whose LOBs cannot report their lengths, as if doing so
+   * were too expensive.
+   */
+  private static class NoLengthResultSet extends MockResultSet {
+    @Override
+    public Blob getBlob(int i) {
+      return new MockBlob() {
+        @Override
+        public long length() {
+          throw new UnsupportedOperationException("length() called");
+        }
+      };
+    }
+
+    @Override
+    public Clob getClob(int i) {
+      return new MockClob() {
+        @Override
+        public long length() {
+          throw new UnsupportedOperationException("length() called");
+        }
+      };
+    }
+  }
+
+  public void testInlineLobsAreStreamed()
+      throws IOException, InterruptedException, SQLException {
+    // Inline LOBs are read without asking for their length; it is read
+    // from the stream instead.
+    ResultSet resultSet = new NoLengthResultSet();
+    BlobRef blob = loader.readBlobRef(0, resultSet);
+    assertFalse(blob.isExternal());
+    assertEquals(MockResultSet.blobData().length, blob.getData().length);
+
+    ClobRef clob = loader.readClobRef(0, resultSet);
+    assertFalse(clob.isExternal());
+    assertEquals(MockResultSet.CLOB_DATA, clob.toString());
+
+    // A LOB exactly at the limit is still inline.
+    conf.setLong(LargeObjectLoader.MAX_INLINE_LOB_LEN_KEY,
+        MockResultSet.CLOB_DATA.length());
+    clob = loader.readClobRef(0, resultSet);
+    assertFalse(clob.isExternal());
+    assertEquals(MockResultSet.CLOB_DATA, clob.toString());
+  }
+
+  public void testExternalLobsAreStreamed()
+      throws IOException, InterruptedException, SQLException {
+    // External LOBs are not asked for their length either; it is counted
+    // as they are written to the LobFile.
+    conf.setLong(LargeObjectLoader.MAX_INLINE_LOB_LEN_KEY, 4);
+    ResultSet resultSet = new NoLengthResultSet();
+    BlobRef blob = loader.readBlobRef(0, resultSet);
+    assertTrue(blob.isExternal());
+    byte [] blobData = MockResultSet.blobData();
+    assertEquals(blobData.length, blob.getLength());
+
+    ClobRef clob = loader.readClobRef(0, resultSet);
+    assertTrue(clob.isExternal());
+    assertEquals(MockResultSet.CLOB_DATA.length(), clob.getLength());
+
+    loader.close();
+    mapContext.getOutputCommitter().commitTask(mapContext);
+    InputStream is = blob.getDataStream(conf, outDir);
+    byte [] buf = new byte[4096];
+    int bytes = is.read(buf, 0, 4096);
+    is.close();
+    assertEquals(blobData.length, bytes);
+    for (int i = 0; i < bytes; i++) {
+      assertEquals(blobData[i], buf[i]);
+    }
+
+    Reader r = clob.getDataStream(conf, outDir);
+    char [] cbuf = new char[4096];
+    int chars = r.read(cbuf, 0, 4096);
+    r.close();
+    assertEquals(MockResultSet.CLOB_DATA, new String(cbuf, 0, chars));
+  }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.lib;
+
+import org.apache.hadoop.io.Text;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that RecordFormatter produces the same output as formatting each
+ * field with FieldFormatter.
+ */
+public class TestRecordFormatter extends TestCase {
+
+  private static final DelimiterSet [] DELIMITER_SETS = {
+    DelimiterSet.DEFAULT_DELIMITERS,
+    DelimiterSet.MYSQL_DELIMITERS,
+    DelimiterSet.HIVE_DELIMITERS,
+    new DelimiterSet(',', '\n', '\"', '\\', true),
+    new DelimiterSet(',', '\n', '\000', '\\', false),
+    new DelimiterSet('\t', '\n', '\"', '\000', false),
+    new DelimiterSet('\u00fe', '\n', '\000', '\000', false),
+    // Overlapping delimiters are handed back to FieldFormatter.
+    new DelimiterSet(',', '\n', '\"', ',', false),
+    new DelimiterSet('1', '\n', '\000', '\\', false),
+  };
+
+  private static final String [] FIELDS = {
+    "",
+    "plain",
+    "with,comma",
+    "with\nnewline",
+    "with\"quote",
+    "with'quote",
+    "with\\backslash",
+    "with\001ctrl-a",
+    "caf\u00e9 \u65e5\u672c \ud83d\ude00",
+    "unpaired \ud83d surrogate",
+    "\u00fe thorn",
+  };
+
+  private String expected(DelimiterSet delims, String [] fields,
+      boolean useRecordDelim) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        sb.append(delims.getFieldsTerminatedBy());
+      }
+      sb.append(FieldFormatter.escapeAndEnclose(fields[i], delims));
+    }
+    if (useRecordDelim) {
+      sb.append(delims.getLinesTerminatedBy());
+    }
+    return sb.toString();
+  }
+
+  private void assertBytesEqual(String expected, Text actual) {
+    Text expectedText = new Text(expected);
+    assertEquals(expectedText.getLength(), actual.getLength());
+    for (int i = 0; i < actual.getLength(); i++) {
+      assertEquals("Mismatch at byte " + i + " of [" + expected + "]",
+          expectedText.getBytes()[i], actual.getBytes()[i]);
+    }
+  }
+
+  public void testStringFields() {
+    for (DelimiterSet delims : DELIMITER_SETS) {
+      RecordFormatter formatter = new RecordFormatter(delims);
+      formatter.reset();
+      for (String field : FIELDS) {
+        formatter.appendField(field);
+      }
+      formatter.appendRecordDelim();
+
+      Text out = new Text();
+      formatter.writeTo(out);
+      assertBytesEqual(expected(delims, FIELDS, true), out);
+    }
+  }
+
+  public void testNumericFields() {
+    long [] values = { 0, 7, -7, 1234567890L, Long.MAX_VALUE, Long.MIN_VALUE };
+    String [] asStrings = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      asStrings[i] = Long.toString(values[i]);
+    }
+
+    for (DelimiterSet delims : DELIMITER_SETS) {
+      RecordFormatter formatter = new RecordFormatter(delims);
+      formatter.reset();
+      for (long val : values) {
+        formatter.appendField(val);
+      }
+
+      Text out = new Text();
+      formatter.writeTo(out);
+      assertBytesEqual(expected(delims, asStrings, false), out);
+    }
+  }
+
+  public void testReuse() {
+    RecordFormatter formatter = new RecordFormatter(
+        DelimiterSet.DEFAULT_DELIMITERS);
+    Text out = new Text();
+
+    formatter.reset();
+    formatter.appendField("first");
+    formatter.appendField(1);
+    formatter.appendRecordDelim();
+    formatter.writeTo(out);
+
+    formatter.reset();
+    formatter.appendField("second");
+    formatter.appendRecordDelim();
+    formatter.writeTo(out);
+
+    assertEquals("first,1\nsecond\n", out.toString());
+  }
+
+  public void testUses() {
+    RecordFormatter formatter = new RecordFormatter(
+        DelimiterSet.DEFAULT_DELIMITERS);
+    assertTrue(formatter.uses(DelimiterSet.DEFAULT_DELIMITERS));
+    assertTrue(formatter.uses(DelimiterSet.DEFAULT_DELIMITERS.copy()));
+    assertFalse(formatter.uses(DelimiterSet.HIVE_DELIMITERS));
+  }
+}
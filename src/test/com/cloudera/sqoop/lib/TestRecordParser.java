@@ -412,4 +412,25 @@ public class TestRecordParser extends TestCase {
         parser.parseRecord("foo,\"bar\""));
   }
 
+  public void testUnenclosedFields() throws RecordParser.ParseError {
+    // no encloser or escape; uses the split-on-delimiters fast path.
+    RecordParser parser = new RecordParser(DelimiterSet.DEFAULT_DELIMITERS);
+    String [] strings = { "field1", "", "\"field3\"", "field\\4" };
+    assertListsEqual(null, list(strings),
+        parser.parseRecord("field1,,\"field3\",field\\4\nfield5"));
+
+    String [] strings2 = { "", "" };
+    assertListsEqual(null, list(strings2), parser.parseRecord(",\n"));
+
+    String [] strings3 = { };
+    assertListsEqual(null, list(strings3), parser.parseRecord(""));
+  }
+
+  public void testUnenclosedNulChar() throws RecordParser.ParseError {
+    // A '\000' character is still treated as the (unset) escape character.
+    RecordParser parser = new RecordParser(DelimiterSet.DEFAULT_DELIMITERS);
+    String [] strings = { "a,b", "c" };
+    assertListsEqual(null, list(strings), parser.parseRecord("a\000,b,c"));
+  }
+
 }
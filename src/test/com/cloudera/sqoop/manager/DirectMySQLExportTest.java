@@ -155,6 +155,46 @@ public class DirectMySQLExportTest extends TestExport {
         "-D", MySQLExportMapper.MYSQL_CHECKPOINT_BYTES_KEY + "=10");
   }
 
+  /**
+   * Test an export using LOAD DATA LOCAL INFILE over JDBC.
+   */
+  public void testLocalInfileExport() throws IOException, SQLException {
+    multiFileTest(2, 10, 2,
+        "-D", MySQLExportMapper.MYSQL_LOCAL_INFILE_KEY + "=true");
+  }
+
+  /**
+   * Test a single LOAD DATA LOCAL INFILE mapper that runs several
+   * transactions serially.
+   */
+  public void testLocalInfileMultiTxExport()
+      throws IOException, SQLException {
+    multiFileTest(1, 20, 1,
+        "-D", MySQLExportMapper.MYSQL_LOCAL_INFILE_KEY + "=true",
+        "-D", MySQLExportMapper.MYSQL_CHECKPOINT_BYTES_KEY + "=10");
+  }
+
+  /**
+   * Test that a LOAD DATA LOCAL INFILE export over a connection that
+   * does not allow it fails, rather than blocking once more rows than
+   * the mapper's pipe can hold have been written.
+   */
+  public void testLocalInfileRefused() throws IOException, SQLException {
+    createTextFile(0, 100000, false);
+    createTable();
+    try {
+      runExport(getArgv(true, 10, 10,
+          "-D", MySQLExportMapper.MYSQL_LOCAL_INFILE_KEY + "=true",
+          "--connect", getConnectString() + "?allowLoadLocalInfile=false",
+          "-m", "1"));
+      fail("Export should fail when LOCAL INFILE is not allowed");
+    } catch (IOException ioe) {
+      LOG.info("Got expected exception: " + ioe);
+    }
+
+    verifyExport(0);
+  }
+
   /**
    * Test an authenticated export using mysqlimport.
    */
@@ -236,4 +276,15 @@ public class DirectMySQLExportTest extends TestExport {
     throws IOException, SQLException {
     // disable this test as staging is not supported in direct mode
   }
+
+  @Override
+  public void testMultiMapTextExportWithChunkedStaging()
+    throws IOException, SQLException {
+    // disable this test as staging is not supported in direct mode
+  }
+
+  @Override
+  public void testMaxRejects() throws IOException, SQLException {
+    // disable this test as rejects are not supported in direct mode
+  }
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.manager;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+
+import com.cloudera.sqoop.SqoopOptions;
+import com.cloudera.sqoop.TestExport;
+import com.cloudera.sqoop.mapreduce.PostgresqlCopyOutputFormat;
+
+/**
+ * Test the DirectPostgresqlManager implementation's exportTable()
+ * functionality.
+ *
+ * This uses the same database as PostgresqlTest; see that class for the
+ * setup it needs.
+ */
+public class DirectPostgresqlExportTest extends TestExport {
+
+  public static final Log LOG = LogFactory.getLog(
+      DirectPostgresqlExportTest.class.getName());
+
+  static final String TABLE_PREFIX = "EXPORT_PG_";
+
+  // instance variables populated during setUp, used during tests.
+  private DirectPostgresqlManager manager;
+  private Connection conn;
+
+  @Override
+  protected Connection getConnection() {
+    return conn;
+  }
+
+  @Override
+  protected boolean useHsqldbTestServer() {
+    return false;
+  }
+
+  @Override
+  protected String getConnectString() {
+    return PostgresqlTest.CONNECT_STRING;
+  }
+
+  @Override
+  protected String getTablePrefix() {
+    return TABLE_PREFIX;
+  }
+
+  @Override
+  protected String getDropTableStatement(String tableName) {
+    return "DROP TABLE IF EXISTS " + tableName;
+  }
+
+  @Before
+  public void setUp() {
+    super.setUp();
+
+    SqoopOptions options = new SqoopOptions(PostgresqlTest.CONNECT_STRING,
+        getTableName());
+    options.setUsername(PostgresqlTest.DATABASE_USER);
+    this.manager = new DirectPostgresqlManager(options);
+
+    try {
+      this.conn = manager.getConnection();
+      this.conn.setAutoCommit(false);
+    } catch (SQLException sqlE) {
+      LOG.error("Encountered SQL Exception: " + sqlE);
+      sqlE.printStackTrace();
+      fail("SQLException when running test setUp(): " + sqlE);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    super.tearDown();
+
+    if (null != this.conn) {
+      try {
+        this.conn.close();
+      } catch (SQLException sqlE) {
+        LOG.error("Got SQLException closing conn: " + sqlE.toString());
+      }
+    }
+
+    if (null != manager) {
+      try {
+        manager.close();
+        manager = null;
+      } catch (SQLException sqlE) {
+        LOG.error("Got SQLException: " + sqlE.toString());
+        fail("Got SQLException: " + sqlE.toString());
+      }
+    }
+  }
+
+  @Override
+  protected String [] getCodeGenArgv(String... extraArgs) {
+    return super.getCodeGenArgv(newStrArray(extraArgs,
+        "--username", PostgresqlTest.DATABASE_USER));
+  }
+
+  @Override
+  protected String [] getArgv(boolean includeHadoopFlags,
+      int rowsPerStatement, int statementsPerTx, String... additionalArgv) {
+
+    String [] subArgv = newStrArray(additionalArgv, "--direct",
+        "--username", PostgresqlTest.DATABASE_USER);
+    return super.getArgv(includeHadoopFlags, rowsPerStatement,
+        statementsPerTx, subArgv);
+  }
+
+  /**
+   * Test a copy whose rows are sent in many small buffers.
+   */
+  public void testSmallCopyBuffer() throws IOException, SQLException {
+    multiFileTest(2, 10, 2,
+        "-D", PostgresqlCopyOutputFormat.BUFFER_SIZE_KEY + "=16");
+  }
+
+  @Override
+  public void testMaxRejects() throws IOException, SQLException {
+    // disable this test as rejects are not supported in direct mode
+  }
+}
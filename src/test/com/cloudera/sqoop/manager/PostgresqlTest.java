@@ -178,10 +178,12 @@ public class PostgresqlTest extends ImportJobTestCase {
   }
 
 
-  private String [] getArgv(boolean isDirect, String tableName) {
+  private String [] getArgv(boolean isDirect, String tableName,
+      String... extraArgs) {
     ArrayList<String> args = new ArrayList<String>();
 
     CommonArgs.addHadoopFlags(args);
+    args.addAll(Arrays.asList(extraArgs));
 
     args.add("--table");
     args.add(tableName);
@@ -202,13 +204,14 @@ public class PostgresqlTest extends ImportJobTestCase {
   }
 
   private void doImportAndVerify(boolean isDirect, String [] expectedResults,
-      String tableName) throws IOException {
+      String tableName, String... extraArgs) throws IOException {
 
     Path warehousePath = new Path(this.getWarehouseDir());
     Path tablePath = new Path(warehousePath, tableName);
 
     Path filePath;
-    if (isDirect) {
+    if (isDirect && Arrays.asList(extraArgs).contains(
+        DirectPostgresqlManager.PSQL_IMPORT_KEY + "=true")) {
       filePath = new Path(tablePath, "data-00000");
     } else {
       filePath = new Path(tablePath, "part-m-00000");
@@ -220,7 +223,7 @@ public class PostgresqlTest extends ImportJobTestCase {
       FileListing.recursiveDeleteDir(tableFile);
     }
 
-    String [] argv = getArgv(isDirect, tableName);
+    String [] argv = getArgv(isDirect, tableName, extraArgs);
     try {
       runImport(argv);
     } catch (IOException ioe) {
@@ -267,6 +270,17 @@ public class PostgresqlTest extends ImportJobTestCase {
     doImportAndVerify(true, expectedResults, TABLE_NAME);
   }
 
+  @Test
+  public void testPsqlDirectImport() throws IOException {
+    String [] expectedResults = {
+      "2,Bob,2009-04-20,400,sales",
+      "3,Fred,2009-01-23,15,marketing",
+    };
+
+    doImportAndVerify(true, expectedResults, TABLE_NAME, "-D",
+        DirectPostgresqlManager.PSQL_IMPORT_KEY + "=true");
+  }
+
   @Test
   public void testListTables() throws IOException {
     SqoopOptions options = new SqoopOptions(new Configuration());
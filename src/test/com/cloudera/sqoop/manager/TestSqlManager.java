@@ -36,6 +36,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.cloudera.sqoop.SqoopOptions;
 import com.cloudera.sqoop.testutil.HsqldbTestServer;
 
 /**
@@ -116,6 +117,61 @@ public class TestSqlManager extends TestCase {
         colTypes);
   }
 
+  @Test
+  public void testCachedColNames() {
+    String [] colNames = manager.getColumnNames(
+        HsqldbTestServer.getTableName());
+    colNames[0] = "SOMETHING_ELSE";
+
+    // The caller's changes do not reach the cached copy.
+    colNames = manager.getColumnNames(HsqldbTestServer.getTableName());
+    assertEquals(HsqldbTestServer.getFieldNames()[0], colNames[0]);
+  }
+
+  /**
+   * An HsqldbManager that counts the tables it examines one at a time.
+   */
+  private static class CountingManager extends HsqldbManager {
+    private int numColumnNameReads;
+
+    public CountingManager(SqoopOptions opts) {
+      super(opts);
+    }
+
+    @Override
+    protected String[] readColumnNames(String tableName) {
+      numColumnNameReads++;
+      return super.readColumnNames(tableName);
+    }
+  }
+
+  @Test
+  public void testDiscoverTables() throws SQLException {
+    CountingManager countingManager = new CountingManager(
+        testServer.getSqoopOptions());
+    try {
+      countingManager.discoverTables(new String [] {
+        HsqldbTestServer.getTableName(), MISSING_TABLE,
+      });
+
+      String [] colNames = countingManager.getColumnNames(
+          HsqldbTestServer.getTableName());
+      assertNotNull("manager returned no colname list", colNames);
+      String [] knownFields = HsqldbTestServer.getFieldNames();
+      assertEquals(knownFields.length, colNames.length);
+      for (int i = 0; i < colNames.length; i++) {
+        assertEquals(knownFields[i], colNames[i]);
+      }
+
+      // The columns came from the discovery, not a query of the table.
+      assertEquals(0, countingManager.numColumnNameReads);
+
+      assertNull(countingManager.getColumnNames(MISSING_TABLE));
+    } finally {
+      countingManager.close();
+    }
+  }
+
   @Test
   public void testListTables() {
     String [] tables = manager.listTables();
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that the AdaptiveBatchController grows and shrinks batch sizes
+ * according to the rate of rows written.
+ */
+public class TestAdaptiveBatchController extends TestCase {
+
+  private static final long MILLIS = 1000000L;
+
+  /**
+   * Execute a window of statements of the current size, each taking the
+   * given time.
+   */
+  private void executeWindow(AdaptiveBatchController controller,
+      long nanos) {
+    int numRows = controller.getRecordsPerStatement();
+    for (int i = 0; i < AdaptiveBatchController.STATEMENT_WINDOW; i++) {
+      controller.statementExecuted(numRows, nanos);
+    }
+  }
+
+  public void testGrowWhileRateHolds() {
+    AdaptiveBatchController controller =
+        new AdaptiveBatchController(100, 1, 1000, 100, 1, 1000);
+
+    // Each statement takes the same time regardless of its size, so
+    // larger statements are always faster.
+    executeWindow(controller, 10 * MILLIS);
+    assertEquals(110, controller.getRecordsPerStatement());
+    executeWindow(controller, 10 * MILLIS);
+    assertEquals(120, controller.getRecordsPerStatement());
+    assertEquals(2, controller.getNumIncreases());
+    assertEquals(0, controller.getNumDecreases());
+  }
+
+  public void testShrinkWhenRateDrops() {
+    AdaptiveBatchController controller =
+        new AdaptiveBatchController(100, 1, 1000, 100, 1, 1000);
+    executeWindow(controller, 10 * MILLIS);
+    assertEquals(110, controller.getRecordsPerStatement());
+
+    // The larger statements are much slower per row.
+    executeWindow(controller, 30 * MILLIS);
+    assertEquals(55, controller.getRecordsPerStatement());
+    assertEquals(1, controller.getNumDecreases());
+  }
+
+  public void testIgnoreOtherSizes() {
+    AdaptiveBatchController controller =
+        new AdaptiveBatchController(100, 1, 1000, 100, 1, 1000);
+
+    // Partial statements are not measured.
+    for (int i = 0; i < 2 * AdaptiveBatchController.STATEMENT_WINDOW; i++) {
+      controller.statementExecuted(7, MILLIS);
+    }
+    assertEquals(100, controller.getRecordsPerStatement());
+  }
+
+  public void testBounds() {
+    AdaptiveBatchController controller =
+        new AdaptiveBatchController(100, 80, 105, 100, 1, 1000);
+    executeWindow(controller, 10 * MILLIS);
+    assertEquals(105, controller.getRecordsPerStatement());
+    executeWindow(controller, 10 * MILLIS);
+    assertEquals(105, controller.getRecordsPerStatement());
+    executeWindow(controller, 100 * MILLIS);
+    assertEquals(80, controller.getRecordsPerStatement());
+  }
+
+  public void testFixedSize() {
+    AdaptiveBatchController controller =
+        new AdaptiveBatchController(1, 1, 1, 100, 1, 1000);
+    executeWindow(controller, MILLIS);
+    executeWindow(controller, 100 * MILLIS);
+    assertEquals(1, controller.getRecordsPerStatement());
+    assertEquals(0, controller.getNumIncreases());
+    assertEquals(0, controller.getNumDecreases());
+  }
+
+  public void testTransactions() {
+    AdaptiveBatchController controller =
+        new AdaptiveBatchController(100, 1, 1000, 100, 1, 1000);
+    controller.transactionCommitted(10000, 1000 * MILLIS);
+    assertEquals(110, controller.getStatementsPerTransaction());
+    controller.transactionCommitted(11000, 1000 * MILLIS);
+    assertEquals(120, controller.getStatementsPerTransaction());
+    controller.transactionCommitted(12000, 2000 * MILLIS);
+    assertEquals(60, controller.getStatementsPerTransaction());
+  }
+
+  public void testUnlimitedTransactions() {
+    int unlimited = AsyncSqlOutputFormat.UNLIMITED_STATEMENTS_PER_TRANSACTION;
+    AdaptiveBatchController controller =
+        new AdaptiveBatchController(100, 1, 1000, unlimited, 1, 1000);
+    controller.transactionCommitted(10000, 1000 * MILLIS);
+    assertEquals(unlimited, controller.getStatementsPerTransaction());
+  }
+}
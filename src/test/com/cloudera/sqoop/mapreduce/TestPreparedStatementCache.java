@@ -0,0 +1,127 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that the PreparedStatementCache reuses executed statements.
+ */
+public class TestPreparedStatementCache extends TestCase {
+
+  private static final String DB_URL = "jdbc:hsqldb:mem:stmtcache";
+  private static final String DRIVER_CLASS = "org.hsqldb.jdbcDriver";
+
+  private Connection connection;
+  private AsyncSqlOutputFormat.PreparedStatementCache cache;
+
+  public void setUp() throws Exception {
+    Class.forName(DRIVER_CLASS);
+    connection = DriverManager.getConnection(DB_URL);
+    Statement s = connection.createStatement();
+    try {
+      s.executeUpdate("DROP TABLE cached IF EXISTS");
+      s.executeUpdate("CREATE TABLE cached(id INTEGER)");
+    } finally {
+      s.close();
+    }
+    cache = new AsyncSqlOutputFormat.PreparedStatementCache(connection);
+  }
+
+  public void tearDown() throws Exception {
+    cache.close();
+    Statement s = connection.createStatement();
+    try {
+      s.executeUpdate("DROP TABLE cached IF EXISTS");
+    } finally {
+      s.close();
+    }
+    connection.close();
+  }
+
+  private int countRows() throws Exception {
+    Statement s = connection.createStatement();
+    try {
+      ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM cached");
+      rs.next();
+      return rs.getInt(1);
+    } finally {
+      s.close();
+    }
+  }
+
+  public void testReuse() throws Exception {
+    String sql = "INSERT INTO cached VALUES (?)";
+    PreparedStatement first = cache.prepare(sql);
+    first.setInt(1, 1);
+    first.execute();
+    cache.release(first);
+
+    PreparedStatement second = cache.prepare(sql);
+    assertSame(first, second);
+    second.setInt(1, 2);
+    second.execute();
+    cache.release(second);
+    assertEquals(2, countRows());
+  }
+
+  public void testStatementsInUse() throws Exception {
+    String sql = "INSERT INTO cached VALUES (?)";
+    PreparedStatement first = cache.prepare(sql);
+    PreparedStatement second = cache.prepare(sql);
+    assertNotSame(first, second);
+    cache.release(first);
+    cache.release(second);
+
+    // Idle statements are handed out in the order they were released.
+    assertSame(first, cache.prepare(sql));
+    assertSame(second, cache.prepare(sql));
+  }
+
+  public void testDiscard() throws Exception {
+    String sql = "INSERT INTO cached VALUES (?)";
+    PreparedStatement first = cache.prepare(sql);
+    cache.discard(first);
+    assertNotSame(first, cache.prepare(sql));
+  }
+
+  public void testEviction() throws Exception {
+    int numStmts = AsyncSqlOutputFormat.PreparedStatementCache
+        .MAX_IDLE_STATEMENTS + 1;
+    PreparedStatement [] stmts = new PreparedStatement[numStmts];
+    for (int i = 0; i < numStmts; i++) {
+      stmts[i] = cache.prepare("INSERT INTO cached VALUES (" + i + ")");
+    }
+    for (int i = 0; i < numStmts; i++) {
+      cache.release(stmts[i]);
+    }
+
+    // The least recently used statement was closed to make room.
+    assertNotSame(stmts[0], cache.prepare("INSERT INTO cached VALUES (0)"));
+    assertSame(stmts[1], cache.prepare("INSERT INTO cached VALUES (1)"));
+  }
+}
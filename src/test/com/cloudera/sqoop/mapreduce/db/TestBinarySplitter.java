@@ -0,0 +1,145 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that the BinarySplitter and UuidSplitter create sane sets of splits.
+ */
+public class TestBinarySplitter extends TestCase {
+
+  private static byte [] bytes(int... vals) {
+    byte [] out = new byte[vals.length];
+    for (int i = 0; i < vals.length; i++) {
+      out[i] = (byte) vals[i];
+    }
+    return out;
+  }
+
+  private void assertAscending(List<byte []> points) {
+    for (int i = 1; i < points.size(); i++) {
+      assertTrue("Split point " + i + " is out of order",
+          BinarySplitter.compareBytes(points.get(i - 1), points.get(i)) < 0);
+    }
+  }
+
+  public void testConvertEmpty() {
+    BinarySplitter splitter = new BinarySplitter();
+    assertEquals(0, splitter.bigDecimalToBytes(
+        splitter.bytesToBigDecimal(new byte[0])).length);
+  }
+
+  public void testConvertBytes() {
+    BinarySplitter splitter = new BinarySplitter();
+    byte [] in = bytes(0x01, 0x00, 0xff, 0x80);
+    byte [] out = splitter.bigDecimalToBytes(splitter.bytesToBigDecimal(in));
+    assertEquals(0, BinarySplitter.compareBytes(in, out));
+  }
+
+  public void testConvertChomped() {
+    BinarySplitter splitter = new BinarySplitter();
+    byte [] in = new byte[20];
+    for (int i = 0; i < in.length; i++) {
+      in[i] = (byte) (i + 1);
+    }
+    byte [] out = splitter.bigDecimalToBytes(splitter.bytesToBigDecimal(in));
+    assertEquals(16, out.length);
+    assertEquals(16, out[15]);
+  }
+
+  public void testCompareUnsigned() {
+    assertTrue(BinarySplitter.compareBytes(bytes(0x7f), bytes(0x80)) < 0);
+    assertTrue(BinarySplitter.compareBytes(bytes(0x01), bytes(0x01, 0x00))
+        < 0);
+    assertEquals(0, BinarySplitter.compareBytes(bytes(0xff), bytes(0xff)));
+  }
+
+  public void testByteSplit() throws SQLException {
+    // This should give us 15 splits, one per leading hex digit.
+    BinarySplitter splitter = new BinarySplitter();
+    List<byte []> points = splitter.split(15, bytes(0x00), bytes(0xf0));
+    assertEquals(16, points.size());
+    for (int i = 0; i < 16; i++) {
+      assertEquals(0, BinarySplitter.compareBytes(bytes(i * 0x10),
+          points.get(i)));
+    }
+  }
+
+  public void testCommonPrefix() throws SQLException {
+    BinarySplitter splitter = new BinarySplitter();
+    byte [] min = bytes(0xca, 0xfe, 0x00, 0x01);
+    byte [] max = bytes(0xca, 0xfe, 0x00, 0x09);
+    List<byte []> points = splitter.split(4, min, max);
+    assertEquals(min, points.get(0));
+    assertEquals(max, points.get(points.size() - 1));
+    assertEquals(5, points.size());
+    assertAscending(points);
+    for (byte [] point : points) {
+      assertEquals((byte) 0xca, point[0]);
+      assertEquals((byte) 0xfe, point[1]);
+    }
+  }
+
+  public void testNarrowRange() throws SQLException {
+    // There is no room for split points between adjacent values.
+    BinarySplitter splitter = new BinarySplitter();
+    List<byte []> points = splitter.split(8, bytes(0x01), bytes(0x02));
+    assertTrue(points.size() >= 2);
+    assertAscending(points);
+  }
+
+  public void testEqualBounds() throws SQLException {
+    BinarySplitter splitter = new BinarySplitter();
+    List<byte []> points = splitter.split(4, bytes(0x05), bytes(0x05));
+    assertEquals(2, points.size());
+  }
+
+  public void testFormatBytes() {
+    assertEquals("X'00FF7F'", new BinarySplitter().formatBytes(
+        bytes(0x00, 0xff, 0x7f)));
+    assertEquals("HEXTORAW('0A')", new OracleBinarySplitter().formatBytes(
+        bytes(0x0a)));
+  }
+
+  public void testUuidSplit() throws SQLException {
+    UuidSplitter splitter = new UuidSplitter();
+    byte [] min = new byte[16];
+    byte [] max = new byte[16];
+    max[0] = (byte) 0x80;
+    List<byte []> points = splitter.split(4, min, max);
+    assertEquals(5, points.size());
+    assertAscending(points);
+    for (byte [] point : points) {
+      assertEquals(16, point.length);
+    }
+    assertEquals("'20000000-0000-0000-0000-000000000000'",
+        splitter.formatBytes(points.get(1)));
+  }
+
+  public void testFormatUuid() {
+    assertEquals("'00000000-0000-0000-0000-000000000000'",
+        new UuidSplitter().formatBytes(new byte[0]));
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Test that ChunkClaimers sharing a directory hand out each chunk once.
+ */
+public class TestChunkClaimer extends TestCase {
+
+  private static final Path CLAIM_DIR = new Path(
+      System.getProperty("test.build.data", "/tmp"), "chunkclaims");
+
+  private FileSystem fs;
+
+  public void setUp() throws IOException {
+    fs = FileSystem.getLocal(new Configuration());
+    fs.delete(CLAIM_DIR, true);
+    fs.mkdirs(CLAIM_DIR);
+  }
+
+  public void tearDown() throws IOException {
+    fs.delete(CLAIM_DIR, true);
+  }
+
+  private List<Integer> claimAll(ChunkClaimer claimer) throws IOException {
+    List<Integer> chunks = new ArrayList<Integer>();
+    int chunk;
+    while ((chunk = claimer.claimNext()) >= 0) {
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  public void testSingleClaimer() throws IOException {
+    ChunkClaimer claimer = new ChunkClaimer(fs, CLAIM_DIR, "task_0", 4, 2);
+    assertEquals(Arrays.asList(2, 3, 0, 1), claimAll(claimer));
+    assertEquals(-1, claimer.claimNext());
+  }
+
+  public void testStealing() throws IOException {
+    ChunkClaimer fast = new ChunkClaimer(fs, CLAIM_DIR, "task_0", 8, 0);
+    ChunkClaimer slow = new ChunkClaimer(fs, CLAIM_DIR, "task_1", 8, 4);
+
+    // The slow task reads one of its own chunks...
+    assertEquals(4, slow.claimNext());
+
+    // ...while the fast one reads its share, then the rest of the slow
+    // task's share.
+    assertEquals(Arrays.asList(0, 1, 2, 3, 5, 6, 7), claimAll(fast));
+    assertEquals(-1, slow.claimNext());
+  }
+
+  public void testRecoverClaims() throws IOException {
+    ChunkClaimer first = new ChunkClaimer(fs, CLAIM_DIR, "task_0", 6, 0);
+    ChunkClaimer other = new ChunkClaimer(fs, CLAIM_DIR, "task_1", 6, 3);
+    assertEquals(0, first.claimNext());
+    assertEquals(3, other.claimNext());
+    assertEquals(1, first.claimNext());
+
+    // A second attempt of task_0 finds the chunks claimed by the first.
+    ChunkClaimer retry = new ChunkClaimer(fs, CLAIM_DIR, "task_0", 6, 0);
+    assertEquals(Arrays.asList(0, 1), retry.recoverClaims());
+    assertEquals(Arrays.asList(2, 4, 5), claimAll(retry));
+  }
+
+  public void testUnreadableClaim() throws IOException {
+    // A claim whose owner cannot be read is skipped when recovering,
+    // and its chunk is not handed out again.
+    fs.create(new Path(CLAIM_DIR, "chunk-1"), false).close();
+
+    ChunkClaimer claimer = new ChunkClaimer(fs, CLAIM_DIR, "task_0", 3, 0);
+    assertEquals(0, claimer.claimNext());
+
+    ChunkClaimer retry = new ChunkClaimer(fs, CLAIM_DIR, "task_0", 3, 0);
+    assertEquals(Arrays.asList(0), retry.recoverClaims());
+    assertEquals(Arrays.asList(2), claimAll(retry));
+  }
+}
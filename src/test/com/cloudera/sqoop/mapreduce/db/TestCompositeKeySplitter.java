@@ -0,0 +1,133 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+/**
+ * Test that the CompositeKeySplitter generates splits over a composite key.
+ */
+public class TestCompositeKeySplitter extends TestCase {
+
+  private static final String DB_URL = "jdbc:hsqldb:mem:compositesplit";
+  private static final String DRIVER_CLASS = "org.hsqldb.jdbcDriver";
+
+  private static final String [] KEY = { "a", "b" };
+
+  private Connection connection;
+
+  public void setUp() throws Exception {
+    Class.forName(DRIVER_CLASS);
+    connection = DriverManager.getConnection(DB_URL);
+    Statement s = connection.createStatement();
+    try {
+      s.executeUpdate("DROP TABLE points IF EXISTS");
+      s.executeUpdate("CREATE TABLE points(a INTEGER, b VARCHAR(32))");
+    } finally {
+      s.close();
+    }
+  }
+
+  public void tearDown() throws Exception {
+    Statement s = connection.createStatement();
+    try {
+      s.executeUpdate("DROP TABLE points IF EXISTS");
+    } finally {
+      s.close();
+    }
+    connection.close();
+  }
+
+  private List<InputSplit> split(String... points) throws SQLException {
+    Statement s = connection.createStatement();
+    try {
+      for (String point : points) {
+        s.executeUpdate("INSERT INTO points VALUES(" + point + ")");
+      }
+
+      ResultSet rs = s.executeQuery(
+          "SELECT a, b FROM points ORDER BY a, b");
+      try {
+        return new CompositeKeySplitter(new DBSplitter[2]).split(
+            new Configuration(), rs, KEY);
+      } finally {
+        rs.close();
+      }
+    } finally {
+      s.close();
+    }
+  }
+
+  private void assertSplit(InputSplit split, String lower, String upper) {
+    DataDrivenDBInputFormat.DataDrivenDBInputSplit ddSplit =
+        (DataDrivenDBInputFormat.DataDrivenDBInputSplit) split;
+    assertEquals(lower, ddSplit.getLowerClause());
+    assertEquals(upper, ddSplit.getUpperClause());
+  }
+
+  public void testCompareKey() {
+    assertEquals("(a > 5) OR (a = 5 AND b >= 'x')",
+        CompositeKeySplitter.compareKey(KEY, new String [] { "5", "'x'" },
+        ">", ">="));
+    assertEquals("(a < 1) OR (a = 1 AND b < 2) OR (a = 1 AND b = 2 AND c < 3)",
+        CompositeKeySplitter.compareKey(new String [] { "a", "b", "c" },
+        new String [] { "1", "2", "3" }, "<", "<"));
+  }
+
+  public void testGetColumns() {
+    String [] cols = CompositeKeySplitter.getColumns("a, \"b,c\" ,`d`,[e,f]");
+    assertEquals(4, cols.length);
+    assertEquals("a", cols[0]);
+    assertEquals("\"b,c\"", cols[1]);
+    assertEquals("`d`", cols[2]);
+    assertEquals("[e,f]", cols[3]);
+
+    assertEquals(1, CompositeKeySplitter.getColumns("id").length);
+  }
+
+  public void testSplitPoints() throws Exception {
+    List<InputSplit> splits = split("1, 'a'", "1, 'q'", "1, 'q'", "4, 'b'");
+    String notNull = "a IS NOT NULL AND b IS NOT NULL";
+    String anyNull = "a IS NULL OR b IS NULL";
+    assertEquals(4, splits.size());
+    assertSplit(splits.get(0), notNull, "(a < 1) OR (a = 1 AND b < 'q')");
+    assertSplit(splits.get(1),
+        notNull + " AND ((a > 1) OR (a = 1 AND b >= 'q'))",
+        "(a < 4) OR (a = 4 AND b < 'b')");
+    assertSplit(splits.get(2),
+        notNull + " AND ((a > 4) OR (a = 4 AND b >= 'b'))", notNull);
+    assertSplit(splits.get(3), anyNull, anyNull);
+  }
+
+  public void testNoSplitPoints() throws Exception {
+    assertNull(split("NULL, 'a'"));
+  }
+}
@@ -37,6 +37,12 @@ import org.apache.hadoop.mapreduce.lib.db.*;
 import org.apache.hadoop.mapreduce.lib.output.*;
 import org.apache.hadoop.util.StringUtils;
 
+import com.cloudera.sqoop.SqoopOptions;
+import com.cloudera.sqoop.config.ConfigurationConstants;
+import com.cloudera.sqoop.manager.Db2Manager;
+import com.cloudera.sqoop.manager.PostgresqlManager;
+import com.cloudera.sqoop.manager.SQLServerManager;
+
 /**
  * Test aspects of DataDrivenDBInputFormat.
  */
@@ -158,6 +164,56 @@ public class TestDataDrivenDBInputFormat extends HadoopTestCase {
     }
   }
 
+  /**
+   * DBWritable class for a table that holds a single integer value.
+   */
+  public static class IntCol implements DBWritable, WritableComparable {
+    private int v;
+
+    public String toString() {
+      return Integer.toString(v);
+    }
+
+    public void readFields(ResultSet rs) throws SQLException {
+      v = rs.getInt(1);
+    }
+
+    public void write(PreparedStatement ps) {
+      // not needed.
+    }
+
+    public void readFields(DataInput in) throws IOException {
+      v = in.readInt();
+    }
+
+    public void write(DataOutput out) throws IOException {
+      out.writeInt(v);
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int hashCode() {
+      return v;
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public int compareTo(Object o) {
+      if (o instanceof IntCol) {
+        int other = ((IntCol) o).v;
+        return v < other ? -1 : (v == other ? 0 : 1);
+      } else {
+        return -1;
+      }
+    }
+
+    @Override
+    /** {@inheritDoc} */
+    public boolean equals(Object o) {
+      return (o instanceof IntCol) && compareTo(o) == 0;
+    }
+  }
+
   /**
    * Mapper that emits its input value as its output key.
    */
@@ -224,4 +280,268 @@ public class TestDataDrivenDBInputFormat extends HadoopTestCase {
       s.close();
     }
   }
+
+  public void testChunkedSplits() throws Exception {
+    Statement s = connection.createStatement();
+    final String INT_TABLE = "inttable";
+    final String COL = "foo";
+    final int NUM_ROWS = 100;
+    try {
+      try {
+        // delete the table if it already exists.
+        s.executeUpdate("DROP TABLE " + INT_TABLE);
+      } catch (SQLException e) {
+        // Ignored; the table may have simply not existed.
+      }
+
+      s.executeUpdate("CREATE TABLE " + INT_TABLE + "(" + COL + " INTEGER)");
+      for (int i = 0; i < NUM_ROWS; i++) {
+        s.executeUpdate("INSERT INTO " + INT_TABLE + " VALUES(" + i + ")");
+      }
+
+      // commit this tx.
+      connection.commit();
+
+      Configuration conf = new Configuration();
+      conf.set("fs.defaultFS", "file:///");
+      FileSystem fs = FileSystem.getLocal(conf);
+      fs.delete(new Path(OUT_DIR), true);
+      Path claimDir = new Path(OUT_DIR + ".chunks");
+      fs.delete(claimDir, true);
+
+      // Cut the import into about 3 * 4 chunks.
+      Job job = new Job(conf);
+      job.setMapperClass(ValMapper.class);
+      job.setReducerClass(Reducer.class);
+      job.setMapOutputKeyClass(IntCol.class);
+      job.setMapOutputValueClass(NullWritable.class);
+      job.setOutputKeyClass(IntCol.class);
+      job.setOutputValueClass(NullWritable.class);
+      job.setNumReduceTasks(1);
+      job.getConfiguration().setInt("mapred.map.tasks", 3);
+      FileOutputFormat.setOutputPath(job, new Path(OUT_DIR));
+      DBConfiguration.configureDB(job.getConfiguration(), DRIVER_CLASS,
+          DB_URL, null, null);
+      DataDrivenDBInputFormat.setInput(job, IntCol.class, INT_TABLE, null,
+          COL, COL);
+      DBConfiguration dbConf = new DBConfiguration(job.getConfiguration());
+      dbConf.setInputChunksPerSplit(4);
+      dbConf.setInputChunkClaimDir(claimDir.toString());
+
+      boolean ret = job.waitForCompletion(true);
+      assertTrue("job failed", ret);
+
+      // Every row must have been read exactly once.
+      assertEquals("Did not get all the records", NUM_ROWS,
+          job.getCounters().findCounter("org.apache.hadoop.mapred.Task$Counter",
+          "REDUCE_INPUT_GROUPS").getValue());
+      assertEquals("Got duplicate records", NUM_ROWS,
+          job.getCounters().findCounter("org.apache.hadoop.mapred.Task$Counter",
+          "REDUCE_OUTPUT_RECORDS").getValue());
+      fs.delete(claimDir, true);
+    } finally {
+      s.close();
+    }
+  }
+
+  public void testPagedSplits() throws Exception {
+    Statement s = connection.createStatement();
+    final String INT_TABLE = "pagedtable";
+    final String COL = "foo";
+    final int NUM_ROWS = 100;
+    final int NUM_VALUES = 40;
+    try {
+      try {
+        // delete the table if it already exists.
+        s.executeUpdate("DROP TABLE " + INT_TABLE);
+      } catch (SQLException e) {
+        // Ignored; the table may have simply not existed.
+      }
+
+      // Repeat each value a few times, so that some pages end in the
+      // middle of a run of rows sharing a value.
+      s.executeUpdate("CREATE TABLE " + INT_TABLE + "(" + COL + " INTEGER)");
+      for (int i = 0; i < NUM_ROWS; i++) {
+        s.executeUpdate("INSERT INTO " + INT_TABLE + " VALUES("
+            + (i % NUM_VALUES) + ")");
+      }
+
+      // commit this tx.
+      connection.commit();
+
+      Configuration conf = new Configuration();
+      conf.set("fs.defaultFS", "file:///");
+      FileSystem fs = FileSystem.getLocal(conf);
+      fs.delete(new Path(OUT_DIR), true);
+
+      Job job = new Job(conf);
+      job.setMapperClass(ValMapper.class);
+      job.setReducerClass(Reducer.class);
+      job.setMapOutputKeyClass(IntCol.class);
+      job.setMapOutputValueClass(NullWritable.class);
+      job.setOutputKeyClass(IntCol.class);
+      job.setOutputValueClass(NullWritable.class);
+      job.setNumReduceTasks(1);
+      job.getConfiguration().setInt("mapred.map.tasks", 2);
+      FileOutputFormat.setOutputPath(job, new Path(OUT_DIR));
+      DBConfiguration.configureDB(job.getConfiguration(), DRIVER_CLASS,
+          DB_URL, null, null);
+      DataDrivenDBInputFormat.setInput(job, IntCol.class, INT_TABLE, null,
+          COL, COL);
+      DBConfiguration dbConf = new DBConfiguration(job.getConfiguration());
+      dbConf.setInputPageSize(7);
+      dbConf.setInputRowLimitFormat("SELECT %1$s LIMIT %2$d");
+
+      boolean ret = job.waitForCompletion(true);
+      assertTrue("job failed", ret);
+
+      // Every row must have been read exactly once.
+      assertEquals("Did not get all the values", NUM_VALUES,
+          job.getCounters().findCounter("org.apache.hadoop.mapred.Task$Counter",
+          "REDUCE_INPUT_GROUPS").getValue());
+      assertEquals("Did not get all the records", NUM_ROWS,
+          job.getCounters().findCounter("org.apache.hadoop.mapred.Task$Counter",
+          "REDUCE_INPUT_RECORDS").getValue());
+    } finally {
+      s.close();
+    }
+  }
+
+  public void testOtherTypeSplitter() throws Exception {
+    Statement s = connection.createStatement();
+    final String OTHER_TABLE = "othertable";
+    try {
+      try {
+        // delete the table if it already exists.
+        s.executeUpdate("DROP TABLE " + OTHER_TABLE);
+      } catch (SQLException e) {
+        // Ignored; the table may have simply not existed.
+      }
+
+      s.executeUpdate("CREATE TABLE " + OTHER_TABLE
+          + "(obj OTHER, id INTEGER)");
+      connection.commit();
+
+      ResultSet rs = s.executeQuery("SELECT obj, id FROM " + OTHER_TABLE);
+      try {
+        // Only the UUID values of Types.OTHER columns can be split.
+        ResultSetMetaData metadata = rs.getMetaData();
+        DataDrivenDBInputFormat<IntCol> format =
+            new DataDrivenDBInputFormat<IntCol>();
+        assertEquals(Types.OTHER, metadata.getColumnType(1));
+        assertNull(format.getSplitter(metadata, 1));
+        assertTrue(format.getSplitter(metadata, 2)
+            instanceof IntegerSplitter);
+      } finally {
+        rs.close();
+      }
+    } finally {
+      s.close();
+    }
+  }
+
+  /**
+   * Split a VARBINARY column for a database with the given binary
+   * literal format.
+   * @return the splits, or null if the column cannot be split.
+   */
+  private java.util.List<InputSplit> splitBinary(final String literalFormat)
+      throws Exception {
+    Statement s = connection.createStatement();
+    final String BINARY_TABLE = "binarytable";
+    try {
+      try {
+        // delete the table if it already exists.
+        s.executeUpdate("DROP TABLE " + BINARY_TABLE);
+      } catch (SQLException e) {
+        // Ignored; the table may have simply not existed.
+      }
+
+      s.executeUpdate("CREATE TABLE " + BINARY_TABLE + "(b VARBINARY(4))");
+      s.executeUpdate("INSERT INTO " + BINARY_TABLE + " VALUES ('00')");
+      s.executeUpdate("INSERT INTO " + BINARY_TABLE + " VALUES ('F0')");
+      connection.commit();
+
+      ResultSet rs = s.executeQuery("SELECT MIN(b), MAX(b) FROM "
+          + BINARY_TABLE);
+      try {
+        assertTrue(rs.next());
+        DataDrivenDBInputFormat<IntCol> format =
+            new DataDrivenDBInputFormat<IntCol>() {
+              @Override
+              protected String getBinaryLiteralFormat() {
+                return literalFormat;
+              }
+            };
+        DBSplitter splitter = format.getSplitter(rs.getMetaData(), 1);
+        if (null == splitter) {
+          return null;
+        }
+
+        Configuration conf = new Configuration();
+        conf.setInt(ConfigurationConstants.PROP_MAPRED_MAP_TASKS, 2);
+        return splitter.split(conf, rs, "b");
+      } finally {
+        rs.close();
+      }
+    } finally {
+      s.close();
+    }
+  }
+
+  public void testBinaryLiterals() throws Exception {
+    // Without a known literal syntax, binary columns are not split.
+    assertNull(splitBinary(null));
+
+    SqoopOptions options = new SqoopOptions();
+    options.setConnectString("jdbc:postgresql://localhost/db");
+    java.util.List<InputSplit> splits = splitBinary(
+        new PostgresqlManager(options).getBinaryLiteralFormat());
+    assertEquals(2, splits.size());
+    DataDrivenDBInputFormat.DataDrivenDBInputSplit split =
+        (DataDrivenDBInputFormat.DataDrivenDBInputSplit) splits.get(0);
+    assertEquals("b >= decode('00', 'hex')", split.getLowerClause());
+    assertEquals("b < decode('78', 'hex')", split.getUpperClause());
+
+    options.setConnectString("jdbc:sqlserver://localhost");
+    splits = splitBinary(
+        new SQLServerManager(options).getBinaryLiteralFormat());
+    split = (DataDrivenDBInputFormat.DataDrivenDBInputSplit) splits.get(1);
+    assertEquals("b >= 0x78", split.getLowerClause());
+    assertEquals("b <= 0xF0", split.getUpperClause());
+  }
+
+  /**
+   * @return the query for the end of a first page of seven rows, in the
+   * given row limit format.
+   */
+  private String getPageEndQuery(String rowLimitFormat) throws Exception {
+    Configuration conf = new Configuration();
+    DBConfiguration dbConf = new DBConfiguration(conf);
+    dbConf.setInputOrderBy("id");
+    dbConf.setInputPageSize(7);
+    dbConf.setInputRowLimitFormat(rowLimitFormat);
+    DataDrivenDBInputFormat.DataDrivenDBInputSplit split =
+        new DataDrivenDBInputFormat.DataDrivenDBInputSplit("id >= 0",
+        "id < 10");
+    DataDrivenDBRecordReader<IntCol> reader =
+        new DataDrivenDBRecordReader<IntCol>(split, IntCol.class, conf,
+        connection, dbConf, null, new String [] { "id" }, "t", "DB");
+    return reader.getPageEndQuery(true);
+  }
+
+  public void testRowLimitFormats() throws Exception {
+    SqoopOptions options = new SqoopOptions();
+    options.setConnectString("jdbc:sqlserver://localhost");
+    assertEquals("SELECT MAX(id) FROM (SELECT TOP 7 id FROM t AS t "
+        + "WHERE ( id >= 0 ) AND ( id < 10 ) AND ( id IS NOT NULL ) "
+        + "ORDER BY id) t1",
+        getPageEndQuery(new SQLServerManager(options).getRowLimitFormat()));
+
+    options.setConnectString("jdbc:db2://localhost/db");
+    assertEquals("SELECT MAX(id) FROM (SELECT id FROM t AS t "
+        + "WHERE ( id >= 0 ) AND ( id < 10 ) AND ( id IS NOT NULL ) "
+        + "ORDER BY id FETCH FIRST 7 ROWS ONLY) t1",
+        getPageEndQuery(new Db2Manager(options).getRowLimitFormat()));
+  }
 }
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+import com.cloudera.sqoop.config.ConfigurationConstants;
+
+/**
+ * Test that the HistogramSplitter generates splits of balanced row counts.
+ */
+public class TestHistogramSplitter extends TestCase {
+
+  private static final String DB_URL = "jdbc:hsqldb:mem:histsplit";
+  private static final String DRIVER_CLASS = "org.hsqldb.jdbcDriver";
+
+  private Connection connection;
+
+  public void setUp() throws Exception {
+    Class.forName(DRIVER_CLASS);
+    connection = DriverManager.getConnection(DB_URL);
+  }
+
+  public void tearDown() throws Exception {
+    Statement s = connection.createStatement();
+    try {
+      s.executeUpdate("DROP TABLE hist IF EXISTS");
+    } finally {
+      s.close();
+    }
+    connection.close();
+  }
+
+  /**
+   * Create a histogram table of the given SQL type holding the buckets
+   * (lo, hi, count), given as SQL literals.
+   */
+  private void createHistogram(String sqlType, String [][] buckets)
+      throws SQLException {
+    Statement s = connection.createStatement();
+    try {
+      s.executeUpdate("DROP TABLE hist IF EXISTS");
+      s.executeUpdate("CREATE TABLE hist(lo " + sqlType + ", hi " + sqlType
+          + ", cnt BIGINT)");
+      for (String [] bucket : buckets) {
+        s.executeUpdate("INSERT INTO hist VALUES(" + bucket[0] + ", "
+            + bucket[1] + ", " + bucket[2] + ")");
+      }
+    } finally {
+      s.close();
+    }
+  }
+
+  private List<InputSplit> split(int numSplits) throws SQLException {
+    Configuration conf = new Configuration();
+    conf.setInt(ConfigurationConstants.PROP_MAPRED_MAP_TASKS, numSplits);
+    Statement s = connection.createStatement();
+    try {
+      ResultSet rs = s.executeQuery(
+          "SELECT lo, hi, cnt FROM hist ORDER BY lo");
+      try {
+        return new HistogramSplitter(new IntegerSplitter()).split(conf, rs,
+            "c");
+      } finally {
+        rs.close();
+      }
+    } finally {
+      s.close();
+    }
+  }
+
+  private void assertSplit(InputSplit split, String lower, String upper,
+      long rows) throws Exception {
+    DataDrivenDBInputFormat.DataDrivenDBInputSplit ddSplit =
+        (DataDrivenDBInputFormat.DataDrivenDBInputSplit) split;
+    assertEquals(lower, ddSplit.getLowerClause());
+    assertEquals(upper, ddSplit.getUpperClause());
+    assertEquals(rows, ddSplit.getLength());
+  }
+
+  public void testEvenBuckets() throws Exception {
+    createHistogram("INTEGER", new String [][] {
+      { "0", "9", "10" },
+      { "10", "19", "10" },
+      { "20", "29", "10" },
+      { "30", "39", "10" },
+    });
+
+    List<InputSplit> splits = split(2);
+    assertEquals(2, splits.size());
+    assertSplit(splits.get(0), "c IS NOT NULL", "c < 20", 20);
+    assertSplit(splits.get(1), "c >= 20", "c IS NOT NULL", 20);
+  }
+
+  public void testSkewedBuckets() throws Exception {
+    // Most of the rows are in a narrow range at the top of the column.
+    createHistogram("BIGINT", new String [][] {
+      { "0", "999999", "10" },
+      { "1000000", "1000009", "10" },
+      { "1000010", "1000019", "10" },
+      { "1000020", "1000029", "10" },
+    });
+
+    List<InputSplit> splits = split(4);
+    assertEquals(4, splits.size());
+    assertSplit(splits.get(0), "c IS NOT NULL", "c < 1000000", 10);
+    assertSplit(splits.get(1), "c >= 1000000", "c < 1000010", 10);
+    assertSplit(splits.get(2), "c >= 1000010", "c < 1000020", 10);
+    assertSplit(splits.get(3), "c >= 1000020", "c IS NOT NULL", 10);
+  }
+
+  public void testRepeatedValues() throws Exception {
+    // A single value fills several buckets; it must stay in one split.
+    createHistogram("INTEGER", new String [][] {
+      { "1", "4", "10" },
+      { "5", "5", "10" },
+      { "5", "5", "10" },
+      { "5", "8", "10" },
+    });
+
+    List<InputSplit> splits = split(4);
+    assertEquals(2, splits.size());
+    assertSplit(splits.get(0), "c IS NOT NULL", "c < 5", 10);
+    assertSplit(splits.get(1), "c >= 5", "c IS NOT NULL", 30);
+  }
+
+  public void testNullBucket() throws Exception {
+    createHistogram("INTEGER", new String [][] {
+      { "NULL", "NULL", "100" },
+      { "1", "10", "10" },
+      { "11", "20", "10" },
+    });
+
+    List<InputSplit> splits = split(2);
+    assertEquals(2, splits.size());
+    assertSplit(splits.get(0), "c IS NOT NULL", "c < 11", 10);
+    assertSplit(splits.get(1), "c >= 11", "c IS NOT NULL", 10);
+  }
+
+  public void testTextBuckets() throws Exception {
+    createHistogram("VARCHAR(32)", new String [][] {
+      { "'apple'", "'banana'", "5" },
+      { "'o''brien'", "'zebra'", "5" },
+    });
+
+    List<InputSplit> splits = split(2);
+    assertEquals(2, splits.size());
+    assertSplit(splits.get(0), "c IS NOT NULL", "c < 'o''brien'", 5);
+    assertSplit(splits.get(1), "c >= 'o''brien'", "c IS NOT NULL", 5);
+  }
+
+  public void testEmptyHistogram() throws Exception {
+    createHistogram("INTEGER", new String [0][]);
+    assertNull(split(4));
+  }
+
+  public void testUnsupportedType() throws Exception {
+    createHistogram("BOOLEAN", new String [][] {
+      { "false", "true", "5" },
+    });
+    assertNull(split(4));
+  }
+
+  public void testSplitLengthSerialization() throws Exception {
+    DataDrivenDBInputFormat.DataDrivenDBInputSplit split =
+        new DataDrivenDBInputFormat.DataDrivenDBInputSplit(
+        "c >= 1", "c < 5", 42);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    split.write(new DataOutputStream(bytes));
+
+    DataDrivenDBInputFormat.DataDrivenDBInputSplit copy =
+        new DataDrivenDBInputFormat.DataDrivenDBInputSplit();
+    copy.readFields(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals("c >= 1", copy.getLowerClause());
+    assertEquals("c < 5", copy.getUpperClause());
+    assertEquals(42, copy.getLength());
+  }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright 2011 The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.sqoop.mapreduce.db;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Test that a SplitCheckpointer saves segments and resumes from them.
+ */
+public class TestSplitCheckpointer extends TestCase {
+
+  private static final Path TEST_DIR = new Path(
+      System.getProperty("test.build.data", "/tmp"), "splitcheckpoints");
+  private static final Path TASK_DIR = new Path(TEST_DIR, "task");
+  private static final Path WORK_DIR = new Path(TEST_DIR, "work");
+
+  private FileSystem fs;
+
+  /**
+   * A SegmentWriter that writes an empty segment file whenever asked to,
+   * numbering them from zero.
+   */
+  private class FakeSegmentWriter implements SplitCheckpointer.SegmentWriter {
+    private int segmentNum;
+    private Path segment;
+
+    public FakeSegmentWriter(int firstSegment) {
+      this.segmentNum = firstSegment;
+    }
+
+    public void write() throws IOException {
+      if (null == segment) {
+        segment = new Path(WORK_DIR, "part-" + segmentNum++);
+        fs.create(segment, false).close();
+      }
+    }
+
+    public Path closeSegment() {
+      Path closed = segment;
+      segment = null;
+      return closed;
+    }
+  }
+
+  public void setUp() throws IOException {
+    fs = FileSystem.getLocal(new Configuration());
+    fs.delete(TEST_DIR, true);
+    fs.mkdirs(WORK_DIR);
+  }
+
+  public void tearDown() throws IOException {
+    fs.delete(TEST_DIR, true);
+  }
+
+  public void testResume() throws IOException {
+    SplitCheckpointer first = new SplitCheckpointer(fs, TASK_DIR);
+    assertNull(first.getLastKey());
+    assertEquals(0, first.getNumSegments());
+
+    FakeSegmentWriter writer = new FakeSegmentWriter(0);
+    first.setSegmentWriter(writer);
+    writer.write();
+    assertTrue(first.checkpoint(Integer.valueOf(10), Types.INTEGER));
+    writer.write();
+    assertTrue(first.checkpoint(Integer.valueOf(20), Types.INTEGER));
+    writer.write(); // Lost with the attempt.
+    assertFalse(fs.exists(new Path(WORK_DIR, "part-0")));
+    assertTrue(fs.exists(new Path(TASK_DIR, "part-1")));
+
+    // A second attempt carries on after the last checkpoint.
+    fs.delete(WORK_DIR, true);
+    fs.mkdirs(WORK_DIR);
+    SplitCheckpointer second = new SplitCheckpointer(fs, TASK_DIR);
+    assertEquals(Long.valueOf(20), second.getLastKey());
+    assertEquals(Types.INTEGER, second.getLastKeyType());
+    assertEquals(2, second.getNumSegments());
+
+    writer = new FakeSegmentWriter(second.getNumSegments());
+    second.setSegmentWriter(writer);
+    writer.write();
+    writer.closeSegment();
+    second.finish(WORK_DIR);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(fs.exists(new Path(WORK_DIR, "part-" + i)));
+    }
+  }
+
+  public void testEmptySegment() throws IOException {
+    SplitCheckpointer checkpointer = new SplitCheckpointer(fs, TASK_DIR);
+    assertFalse(checkpointer.checkpoint(Integer.valueOf(1), Types.INTEGER));
+
+    checkpointer.setSegmentWriter(new FakeSegmentWriter(0));
+    assertFalse(checkpointer.checkpoint(Integer.valueOf(1), Types.INTEGER));
+    assertNull(checkpointer.getLastKey());
+  }
+
+  public void testMissingSegment() throws IOException {
+    SplitCheckpointer first = new SplitCheckpointer(fs, TASK_DIR);
+    FakeSegmentWriter writer = new FakeSegmentWriter(0);
+    first.setSegmentWriter(writer);
+    writer.write();
+    assertTrue(first.checkpoint("m", Types.VARCHAR));
+
+    // The attempt moved its segments out, then failed to commit them.
+    first.finish(WORK_DIR);
+    SplitCheckpointer second = new SplitCheckpointer(fs, TASK_DIR);
+    assertNull(second.getLastKey());
+    assertEquals(0, second.getNumSegments());
+  }
+
+  public void testStraySegment() throws IOException {
+    SplitCheckpointer first = new SplitCheckpointer(fs, TASK_DIR);
+    FakeSegmentWriter writer = new FakeSegmentWriter(0);
+    first.setSegmentWriter(writer);
+    writer.write();
+    assertTrue(first.checkpoint("m", Types.VARCHAR));
+
+    // A segment that an attempt moved but did not record is removed.
+    Path stray = new Path(TASK_DIR, "part-1");
+    fs.create(stray, false).close();
+    SplitCheckpointer second = new SplitCheckpointer(fs, TASK_DIR);
+    assertEquals("m", second.getLastKey());
+    assertEquals(1, second.getNumSegments());
+    assertFalse(fs.exists(stray));
+  }
+
+  /**
+   * Check that a key survives being written to a checkpoint and read
+   * back by a later attempt.
+   */
+  private void assertKeyRestored(Object expected, Object key, int sqlType)
+      throws IOException {
+    fs.delete(TASK_DIR, true);
+    SplitCheckpointer first = new SplitCheckpointer(fs, TASK_DIR);
+    FakeSegmentWriter writer = new FakeSegmentWriter(0);
+    first.setSegmentWriter(writer);
+    writer.write();
+    assertTrue(first.checkpoint(key, sqlType));
+
+    SplitCheckpointer second = new SplitCheckpointer(fs, TASK_DIR);
+    assertEquals(expected, second.getLastKey());
+    assertEquals(sqlType, second.getLastKeyType());
+  }
+
+  public void testKeyTypes() throws IOException {
+    assertKeyRestored(Long.valueOf(5000000000L), Long.valueOf(5000000000L),
+        Types.BIGINT);
+    assertKeyRestored(new BigDecimal("12.340"), new BigDecimal("12.340"),
+        Types.DECIMAL);
+    assertKeyRestored(Double.valueOf(0.1), Double.valueOf(0.1),
+        Types.DOUBLE);
+    assertKeyRestored(Boolean.TRUE, Boolean.TRUE, Types.BIT);
+
+    Timestamp ts = Timestamp.valueOf("2011-03-04 05:06:07.123456789");
+    assertKeyRestored(ts, ts, Types.TIMESTAMP);
+    Time time = Time.valueOf("05:06:07");
+    assertKeyRestored(time, time, Types.TIME);
+  }
+
+  public void testUnsupportedKey() throws IOException {
+    // The key is checked before any segment is moved.
+    SplitCheckpointer checkpointer = new SplitCheckpointer(fs, TASK_DIR);
+    FakeSegmentWriter writer = new FakeSegmentWriter(0);
+    checkpointer.setSegmentWriter(writer);
+    writer.write();
+    assertFalse(SplitCheckpointer.isSupportedKeyType(Types.OTHER));
+    try {
+      checkpointer.checkpoint(new Object(), Types.OTHER);
+      fail("Checkpointed a key of an unsupported type");
+    } catch (IllegalArgumentException iae) {
+      // expected.
+    }
+    try {
+      checkpointer.checkpoint(new Object(), Types.TIMESTAMP);
+      fail("Checkpointed a key of an unexpected class");
+    } catch (IllegalArgumentException iae) {
+      // expected.
+    }
+    assertTrue(fs.exists(new Path(WORK_DIR, "part-0")));
+    assertNull(checkpointer.getLastKey());
+  }
+}
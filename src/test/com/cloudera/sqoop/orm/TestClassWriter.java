@@ -466,4 +466,66 @@ public class TestClassWriter extends TestCase {
       ClassLoaderStack.setCurrentClassLoader(prevClassLoader);
     }
   }
+
+  private static final String PRIMITIVE_CLASS_AND_PACKAGE_NAME =
+      "primitive.pkg.prefix.classname";
+
+  @Test
+  public void testPrimitiveFields() throws IOException,
+      ClassNotFoundException, InstantiationException, IllegalAccessException,
+      NoSuchMethodException, InvocationTargetException {
+
+    // Set the option strings in an "argv" to redirect our srcdir and bindir
+    String [] argv = {
+      "--bindir", JAR_GEN_DIR,
+      "--outdir", CODE_GEN_DIR,
+      "--class-name", PRIMITIVE_CLASS_AND_PACKAGE_NAME,
+      "--primitive-fields",
+    };
+
+    File ormJarFile = runGenerationTest(argv,
+        PRIMITIVE_CLASS_AND_PACKAGE_NAME);
+    ClassLoader prevClassLoader = ClassLoaderStack.addJarFile(
+        ormJarFile.getCanonicalPath(),
+        PRIMITIVE_CLASS_AND_PACKAGE_NAME);
+    try {
+      Class tableClass = Class.forName(
+          PRIMITIVE_CLASS_AND_PACKAGE_NAME,
+          true,
+          Thread.currentThread().getContextClassLoader());
+
+      try {
+        Field intfield = tableClass.getDeclaredField("INTFIELD1");
+        assertEquals(Integer.TYPE, intfield.getType());
+      } catch (NoSuchFieldException ex) {
+        fail("Can't find field for INTFIELD1");
+      }
+
+      // The accessors still use the boxed type, with null for SQL NULL.
+      Method getter = tableClass.getMethod("get_INTFIELD1");
+      Method setter = tableClass.getMethod("set_INTFIELD1", Integer.class);
+      Method equalsImplementation =
+          tableClass.getMethod("equals", Object.class);
+
+      Object instance1 = tableClass.newInstance();
+      Object instance2 = tableClass.newInstance();
+      assertNull(getter.invoke(instance1));
+      assertTrue((Boolean) equalsImplementation.invoke(instance1, instance2));
+
+      setter.invoke(instance1, Integer.valueOf(0));
+      assertEquals(Integer.valueOf(0), getter.invoke(instance1));
+      assertFalse((Boolean) equalsImplementation.invoke(instance1, instance2));
+
+      setter.invoke(instance2, Integer.valueOf(0));
+      assertTrue((Boolean) equalsImplementation.invoke(instance1, instance2));
+
+      setter.invoke(instance1, (Integer) null);
+      assertNull(getter.invoke(instance1));
+      assertFalse((Boolean) equalsImplementation.invoke(instance1, instance2));
+    } finally {
+      if (null != prevClassLoader) {
+        ClassLoaderStack.setCurrentClassLoader(prevClassLoader);
+      }
+    }
+  }
 }